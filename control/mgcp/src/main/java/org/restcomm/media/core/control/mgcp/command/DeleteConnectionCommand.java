@@ -112,8 +112,8 @@ public class DeleteConnectionCommand extends AbstractMgcpCommand {
         } else {
             // Delete single connection bound to a specific call
             MgcpConnection deleted = endpoint.deleteConnection(callId, connectionId);
-            // TODO Gather statistics from connection
-            context.connectionParams = "PS=" + 0 + ", PR=" + 0;
+            final String connectionParams = deleted.getConnectionParameters();
+            context.connectionParams = (connectionParams == null) ? "" : connectionParams;
         }
     }
     
@@ -0,0 +1,516 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.command;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Executes MGCP commands one at a time for each endpoint, while commands for different endpoints run in parallel.
+ * <p>
+ * Each endpoint has a mailbox. Commands are queued in the mailbox of their endpoint, which is drained by a single task of
+ * the underlying executor. A mailbox only holds an executor thread while it has commands to run, and yields the thread to
+ * other endpoints after a few commands. Idle mailboxes are discarded. Endpoint names are case-insensitive, so mailboxes are
+ * keyed by the lower case name.
+ * </p>
+ * <p>
+ * Commands that touch several endpoints, like a CRCX with a second endpoint (Z2) or any command targeting all endpoints
+ * of a kind (<code>*</code> wildcard), are queued in the mailbox of every endpoint they touch. Such a command runs once
+ * every one of those mailboxes reaches it, so it is ordered against the commands of each endpoint. A <code>*</code>
+ * wildcard also keeps a mailbox of its own until it is drained, where commands submitted meanwhile for a matching
+ * endpoint wait.
+ * </p>
+ * <p>
+ * Commands targeting any endpoint of a kind (<code>$</code> wildcard) create a new endpoint, so they are not serialized.
+ * </p>
+ */
+public class MgcpCommandExecutor {
+
+    private static final Logger log = LogManager.getLogger(MgcpCommandExecutor.class);
+
+    /** Maximum number of commands run by a mailbox before yielding its thread */
+    public static final int THROUGHPUT = 8;
+
+    private static final String WILDCARD_ANY = "$";
+    private static final String WILDCARD_ALL = "*";
+
+    // Mailbox no longer accepting commands
+    private static final int RETIRED = -1;
+
+    private final ListeningExecutorService executor;
+    private final ConcurrentHashMap<String, Mailbox> mailboxes;
+
+    // Mailboxes of pending * wildcard commands, oldest first
+    private final List<Mailbox> wildcards;
+
+    // Commands of a single endpoint share the lock, commands of many endpoints queue under exclusive access
+    private final ReadWriteLock lock;
+
+    // Metrics
+    private final AtomicInteger maxQueueDepth;
+
+    public MgcpCommandExecutor(ListeningExecutorService executor) {
+        this.executor = executor;
+        this.mailboxes = new ConcurrentHashMap<>(500);
+        this.wildcards = new CopyOnWriteArrayList<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.maxQueueDepth = new AtomicInteger(0);
+    }
+
+    /**
+     * Submits a command for execution, after every command previously submitted for the same endpoint.
+     * 
+     * @param endpointId The identifier of the endpoint targeted by the command. May be null.
+     * @param command The command to be executed
+     * @return The future result of the command
+     */
+    public ListenableFuture<MgcpCommandResult> submit(String endpointId, MgcpCommand command) {
+        return submit(endpointId, null, command);
+    }
+
+    /**
+     * Submits a command for execution, after every command previously submitted for any of the endpoints it touches.
+     * 
+     * @param endpointId The identifier of the endpoint targeted by the command. May be null.
+     * @param secondEndpointId The identifier of the second endpoint touched by the command (Z2). May be null.
+     * @param command The command to be executed
+     * @return The future result of the command
+     */
+    public ListenableFuture<MgcpCommandResult> submit(String endpointId, String secondEndpointId, MgcpCommand command) {
+        final String key = toKey(endpointId);
+        final String secondKey = toKey(secondEndpointId);
+
+        if (key == null && secondKey == null) {
+            return this.executor.submit(command);
+        }
+
+        final ListenableFutureTask<MgcpCommandResult> task = ListenableFutureTask.create(command);
+        if (secondKey == null && !isPattern(key)) {
+            submitSolo(key, task);
+        } else if (key == null && !isPattern(secondKey)) {
+            submitSolo(secondKey, task);
+        } else {
+            submitJoint(key, secondKey, task);
+        }
+        return task;
+    }
+
+    private static String toKey(String endpointId) {
+        if (endpointId == null || endpointId.contains(WILDCARD_ANY)) {
+            return null;
+        }
+        return endpointId.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static boolean isPattern(String key) {
+        return key.contains(WILDCARD_ALL);
+    }
+
+    private void submitSolo(String key, ListenableFutureTask<MgcpCommandResult> task) {
+        final Item item = new Solo(task);
+        this.lock.readLock().lock();
+        try {
+            while (true) {
+                final Mailbox mailbox = route(key);
+                final int depth = mailbox.enqueue(item);
+                if (depth != RETIRED) {
+                    updateMaxQueueDepth(depth);
+                    return;
+                }
+                // Mailbox went idle meanwhile
+                discard(mailbox);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void submitJoint(String key, String secondKey, ListenableFutureTask<MgcpCommandResult> task) {
+        this.lock.writeLock().lock();
+        try {
+            // Gather the mailboxes of every endpoint touched by the command
+            final List<Mailbox> participants = new ArrayList<>(2);
+            addParticipants(key, participants);
+            addParticipants(secondKey, participants);
+
+            final Joint joint = new Joint(task, participants.toArray(new Mailbox[participants.size()]));
+            for (Mailbox participant : participants) {
+                // Mailboxes never retire while they hold a command, so the command reaches all of them or none
+                int depth = participant.enqueue(joint);
+                while (depth == RETIRED) {
+                    discard(participant);
+                    participant = create(participant.key);
+                    joint.replace(participant);
+                    depth = participant.enqueue(joint);
+                }
+                updateMaxQueueDepth(depth);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void addParticipants(String key, List<Mailbox> participants) {
+        if (key == null) {
+            return;
+        }
+
+        if (isPattern(key)) {
+            // Order against every endpoint the wildcard may touch that has pending commands
+            final Mailbox own = this.mailboxes.get(key);
+            final Iterator<Mailbox> iterator = this.mailboxes.values().iterator();
+            while (iterator.hasNext()) {
+                final Mailbox mailbox = iterator.next();
+                if (mailbox != own && (mailbox.isPattern() ? overlaps(key, mailbox.key) : matches(key, mailbox.key))) {
+                    addParticipant(mailbox, participants);
+                }
+            }
+            addParticipant(own == null ? create(key) : own, participants);
+        } else {
+            addParticipant(route(key), participants);
+        }
+    }
+
+    private static void addParticipant(Mailbox mailbox, List<Mailbox> participants) {
+        if (!participants.contains(mailbox)) {
+            participants.add(mailbox);
+        }
+    }
+
+    /**
+     * Gets the mailbox where commands of an endpoint must be queued: the mailbox of the latest pending <code>*</code>
+     * wildcard command that touches the endpoint, or the mailbox of the endpoint itself.
+     */
+    private Mailbox route(String key) {
+        for (int i = this.wildcards.size() - 1; i >= 0; i--) {
+            final Mailbox wildcard = this.wildcards.get(i);
+            if (matches(wildcard.key, key)) {
+                return wildcard;
+            }
+        }
+
+        final Mailbox mailbox = this.mailboxes.get(key);
+        return mailbox == null ? create(key) : mailbox;
+    }
+
+    private Mailbox create(String key) {
+        final Mailbox created = new Mailbox(key);
+        final Mailbox existing = this.mailboxes.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (created.isPattern()) {
+            this.wildcards.add(created);
+        }
+        return created;
+    }
+
+    private void discard(Mailbox mailbox) {
+        if (this.mailboxes.remove(mailbox.key, mailbox) && mailbox.isPattern()) {
+            this.wildcards.remove(mailbox);
+        }
+    }
+
+    private static boolean matches(String pattern, String key) {
+        final int star = pattern.indexOf(WILDCARD_ALL);
+        if (star < 0) {
+            return pattern.equals(key);
+        }
+        final String suffix = pattern.substring(pattern.lastIndexOf(WILDCARD_ALL) + 1);
+        return key.length() >= star + suffix.length() && key.regionMatches(0, pattern, 0, star) && key.endsWith(suffix);
+    }
+
+    private static boolean overlaps(String pattern, String other) {
+        // Patterns may touch the same endpoint if one prefix extends the other
+        final String prefix = pattern.substring(0, pattern.indexOf(WILDCARD_ALL));
+        final String otherPrefix = other.substring(0, other.indexOf(WILDCARD_ALL));
+        return prefix.startsWith(otherPrefix) || otherPrefix.startsWith(prefix);
+    }
+
+    /**
+     * Gets the number of commands of an endpoint that are waiting or running.
+     * 
+     * @param endpointId The endpoint identifier
+     * @return The queue depth of the endpoint
+     */
+    public int getQueueDepth(String endpointId) {
+        final Mailbox mailbox = this.mailboxes.get(endpointId.toLowerCase(Locale.ENGLISH));
+        return mailbox == null ? 0 : mailbox.depth();
+    }
+
+    /**
+     * Gets the queue depth of every endpoint with pending commands.
+     * 
+     * @return A snapshot of the queue depths, indexed by lower case endpoint identifier
+     */
+    public Map<String, Integer> getQueueDepths() {
+        final Map<String, Integer> depths = new HashMap<>(this.mailboxes.size());
+        final Iterator<Mailbox> iterator = this.mailboxes.values().iterator();
+        while (iterator.hasNext()) {
+            final Mailbox mailbox = iterator.next();
+            final int depth = mailbox.depth();
+            if (depth > 0) {
+                depths.put(mailbox.key, depth);
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * Gets the deepest queue observed for any endpoint.
+     * 
+     * @return The highest queue depth
+     */
+    public int getMaxQueueDepth() {
+        return this.maxQueueDepth.get();
+    }
+
+    private void updateMaxQueueDepth(int depth) {
+        int max = this.maxQueueDepth.get();
+        while (depth > max && !this.maxQueueDepth.compareAndSet(max, depth)) {
+            max = this.maxQueueDepth.get();
+        }
+    }
+
+    /**
+     * Entry of a mailbox.
+     */
+    private interface Item {
+
+        /**
+         * Runs the entry on behalf of a mailbox.
+         * 
+         * @return Whether the mailbox may move on to its next entry. If false, the mailbox is resumed later on.
+         */
+        boolean run(Mailbox mailbox);
+
+        /**
+         * Cancels the entry on behalf of a mailbox that can no longer be drained.
+         */
+        void abort(Mailbox mailbox);
+
+    }
+
+    /**
+     * Command of a single endpoint.
+     */
+    private static final class Solo implements Item {
+
+        private final ListenableFutureTask<MgcpCommandResult> task;
+
+        private Solo(ListenableFutureTask<MgcpCommandResult> task) {
+            this.task = task;
+        }
+
+        @Override
+        public boolean run(Mailbox mailbox) {
+            // Task outcome, including failure, is reported through its future
+            this.task.run();
+            return true;
+        }
+
+        @Override
+        public void abort(Mailbox mailbox) {
+            this.task.cancel(false);
+        }
+
+    }
+
+    /**
+     * Command queued in the mailboxes of several endpoints. Runs when the last of them reaches it, while the others wait.
+     */
+    private static final class Joint implements Item {
+
+        private final ListenableFutureTask<MgcpCommandResult> task;
+        private final Mailbox[] participants;
+        private final boolean[] suspended;
+        private final AtomicInteger waiting;
+
+        private Joint(ListenableFutureTask<MgcpCommandResult> task, Mailbox[] participants) {
+            this.task = task;
+            this.participants = participants;
+            this.suspended = new boolean[participants.length];
+            this.waiting = new AtomicInteger(participants.length);
+        }
+
+        private void replace(Mailbox mailbox) {
+            for (int i = 0; i < this.participants.length; i++) {
+                if (this.participants[i].key.equals(mailbox.key)) {
+                    this.participants[i] = mailbox;
+                }
+            }
+        }
+
+        @Override
+        public boolean run(Mailbox mailbox) {
+            return arrive(mailbox, true);
+        }
+
+        @Override
+        public void abort(Mailbox mailbox) {
+            this.task.cancel(false);
+            arrive(mailbox, false);
+        }
+
+        private boolean arrive(Mailbox mailbox, boolean suspend) {
+            int index = 0;
+            while (this.participants[index] != mailbox) {
+                index++;
+            }
+
+            // Published to the last participant by the decrement
+            this.suspended[index] = suspend;
+            if (this.waiting.decrementAndGet() > 0) {
+                return false;
+            }
+
+            this.suspended[index] = false;
+            this.task.run();
+            for (int i = 0; i < this.participants.length; i++) {
+                if (this.suspended[i]) {
+                    this.participants[i].resume();
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Queue of commands for an endpoint, or for a <code>*</code> wildcard, drained by at most one thread at a time.
+     */
+    private final class Mailbox implements Runnable {
+
+        private final String key;
+        private final Queue<Item> queue;
+
+        // Commands waiting or running. Whoever moves it from zero is responsible for draining the queue.
+        private final AtomicInteger pending;
+
+        private Mailbox(String key) {
+            this.key = key;
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.pending = new AtomicInteger(0);
+        }
+
+        private boolean isPattern() {
+            return MgcpCommandExecutor.isPattern(this.key);
+        }
+
+        private int depth() {
+            return Math.max(this.pending.get(), 0);
+        }
+
+        private int enqueue(Item item) {
+            while (true) {
+                final int count = this.pending.get();
+                if (count == RETIRED) {
+                    return RETIRED;
+                }
+                if (this.pending.compareAndSet(count, count + 1)) {
+                    this.queue.offer(item);
+                    if (count == 0) {
+                        schedule();
+                    }
+                    return count + 1;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < THROUGHPUT; i++) {
+                if (!take().run(this)) {
+                    // Waiting for the other endpoints of a command
+                    return;
+                }
+                if (this.pending.decrementAndGet() == 0) {
+                    retire();
+                    return;
+                }
+            }
+            // Yield thread to other endpoints
+            schedule();
+        }
+
+        private void resume() {
+            if (this.pending.decrementAndGet() == 0) {
+                retire();
+            } else {
+                schedule();
+            }
+        }
+
+        private Item take() {
+            // Command is counted right before being queued, so it may take a moment to show up
+            Item item;
+            while ((item = this.queue.poll()) == null) {
+                Thread.yield();
+            }
+            return item;
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                log.warn("Could not execute MGCP commands of endpoint " + this.key + ". Aborting pending commands.", e);
+                abort();
+            }
+        }
+
+        private void abort() {
+            do {
+                take().abort(this);
+            } while (this.pending.decrementAndGet() > 0);
+            retire();
+        }
+
+        private void retire() {
+            // Fails if a command was submitted meanwhile, in which case its submitter drains the queue
+            if (this.pending.compareAndSet(0, RETIRED)) {
+                discard(this);
+            }
+        }
+
+    }
+
+}
@@ -162,6 +162,18 @@ public interface MgcpConnection extends MgcpEventSubject {
      */
     void listen(MgcpRequestedEvent event) throws UnsupportedMgcpEventException;
 
+    /**
+     * Gets the statistics gathered by the connection, formatted as MGCP connection parameters.
+     * <p>
+     * Once the connection is closed, the statistics gathered up to the moment of closure are returned.
+     * </p>
+     * 
+     * @return The connection parameters. An empty string if the connection gathers no statistics.
+     * 
+     * @see <a href="https://tools.ietf.org/html/rfc3435#section-2.3.9">RFC3435 - Section 2.3.9</a>
+     */
+    String getConnectionParameters();
+
     /**
      * Gets the in-band audio component of the connection.
      * 
@@ -197,6 +197,12 @@ public class MgcpLocalConnection extends AbstractMgcpConnection {
         }
     }
 
+    @Override
+    public String getConnectionParameters() {
+        // Local connections do not exchange RTP traffic
+        return "";
+    }
+
     @Override
     public AudioComponent getAudioComponent() {
         return this.audioChannel.getAudioComponent();
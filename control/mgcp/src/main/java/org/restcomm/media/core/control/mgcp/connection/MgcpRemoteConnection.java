@@ -35,10 +35,14 @@ import org.restcomm.media.core.control.mgcp.pkg.MgcpEventProvider;
 import org.restcomm.media.core.control.mgcp.pkg.MgcpRequestedEvent;
 import org.restcomm.media.core.control.mgcp.pkg.r.RtpPackage;
 import org.restcomm.media.core.control.mgcp.pkg.r.rto.RtpTimeoutEvent;
+import org.restcomm.media.core.control.mgcp.pkg.r.rto.RtpTimeoutStartTime;
+import org.restcomm.media.core.rtcp.RtcpVoipMetrics;
 import org.restcomm.media.core.rtp.CnameGenerator;
+import org.restcomm.media.core.rtp.RtpInactivityListener;
 import org.restcomm.media.core.rtp.RtpListener;
 import org.restcomm.media.core.rtp.channels.AudioChannel;
 import org.restcomm.media.core.rtp.channels.MediaChannelProvider;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
 import org.restcomm.media.core.rtp.sdp.SdpFactory;
 import org.restcomm.media.core.sdp.SdpException;
 import org.restcomm.media.core.sdp.SessionDescription;
@@ -56,7 +60,7 @@ import com.google.common.util.concurrent.ListeningScheduledExecutorService;
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
-public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpListener {
+public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpListener, RtpInactivityListener {
 
     private static final Logger log = LogManager.getLogger(MgcpRemoteConnection.class);
 
@@ -68,6 +72,8 @@ public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpL
     private boolean webrtc;
     private SessionDescription localSdp;
     private SessionDescription remoteSdp;
+    private String connectionParameters;
+    private volatile int inactivityTimeout;
 
     // Media Channels
     private final AudioChannel audioChannel;
@@ -83,10 +89,13 @@ public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpL
         this.webrtc = false;
         this.localSdp = null;
         this.remoteSdp = null;
+        this.connectionParameters = "";
+        this.inactivityTimeout = 0;
         
         // Media Channels
         this.audioChannel = channelProvider.provideAudioChannel();
         this.audioChannel.setCname(this.cname);
+        this.audioChannel.setRtpListener(this);
     }
 
     public MgcpRemoteConnection(int identifier, int callId, int timeout, MgcpEventProvider eventProvider, MediaChannelProvider channelProvider, ListeningScheduledExecutorService executor) {
@@ -440,6 +449,8 @@ public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpL
 
                     // Close audio channel
                     if (this.audioChannel.isOpen()) {
+                        // Gather statistics before channel resets them
+                        this.connectionParameters = buildConnectionParameters();
                         this.audioChannel.close();
                     }
 
@@ -469,7 +480,19 @@ public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpL
     }
     
     private void listen(RtpTimeoutEvent timeoutEvent) {
-        // TODO start inter-rtp timer or override existing one.
+        // Start inter-rtp timer or override existing one.
+        // Waiting for RTCP is approximated by waiting for the first RTP packet.
+        final boolean immediately = !RtpTimeoutStartTime.WAIT_RTCP.equals(timeoutEvent.getWhen());
+        this.inactivityTimeout = timeoutEvent.getTimeout();
+        this.audioChannel.watchInactivity(this.inactivityTimeout, immediately, this);
+    }
+
+    @Override
+    public void onRtpInactivity(long idleTime) {
+        if (log.isInfoEnabled()) {
+            log.info("Connection " + getHexIdentifier() + " received no RTP for " + idleTime + "ms");
+        }
+        notify(this, new RtpTimeoutEvent(getIdentifier(), this.inactivityTimeout));
     }
     
     @Override
@@ -488,6 +511,81 @@ public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpL
         }
     }
     
+    @Override
+    public String getConnectionParameters() {
+        synchronized (this.stateLock) {
+            if (MgcpConnectionState.CLOSED.equals(this.state)) {
+                return this.connectionParameters;
+            }
+            return buildConnectionParameters();
+        }
+    }
+
+    private String buildConnectionParameters() {
+        final JitterBufferStatistics jitterBuffer = this.audioChannel.getJitterBufferStatistics();
+        final StringBuilder builder = new StringBuilder();
+        builder.append("PS=").append(this.audioChannel.getPacketsSent());
+        builder.append(", OS=").append(this.audioChannel.getOctetsSent());
+        builder.append(", PR=").append(this.audioChannel.getPacketsReceived());
+        builder.append(", OR=").append(this.audioChannel.getOctetsReceived());
+        builder.append(", JI=").append(Math.round(jitterBuffer.getJitter()));
+        builder.append(", X-JI-MAX=").append(Math.round(jitterBuffer.getMaxJitter()));
+        builder.append(", X-JB-DELAY=").append(jitterBuffer.getPlayoutDelay());
+        builder.append(", X-JB-TARGET=").append(jitterBuffer.getTargetPlayoutDelay());
+        builder.append(", X-JB-LATE=").append(jitterBuffer.getLateDrops());
+        builder.append(", X-JB-OVERFLOW=").append(jitterBuffer.getOverflowDrops());
+        builder.append(", X-JB-DUP=").append(jitterBuffer.getDuplicates());
+        builder.append(", X-JB-REORDER=").append(jitterBuffer.getReordered());
+        builder.append(", X-JB-CONCEALED=").append(jitterBuffer.getConcealedFrames());
+        builder.append(", X-JB-UNDERRUN=").append(jitterBuffer.getUnderruns());
+
+        // RTCP XR VoIP metrics (RFC3611). Rates and densities in 1/256, durations in ms, MOS multiplied by 10.
+        final RtcpVoipMetrics voipMetrics = this.audioChannel.getVoipMetrics();
+        if (voipMetrics != null) {
+            builder.append(", X-XR-LR=").append(voipMetrics.getLossRate());
+            builder.append(", X-XR-DR=").append(voipMetrics.getDiscardRate());
+            builder.append(", X-XR-BD=").append(voipMetrics.getBurstDensity());
+            builder.append(", X-XR-GD=").append(voipMetrics.getGapDensity());
+            builder.append(", X-XR-BDUR=").append(voipMetrics.getBurstDuration());
+            builder.append(", X-XR-GDUR=").append(voipMetrics.getGapDuration());
+            builder.append(", X-XR-RTD=").append(voipMetrics.getRoundTripDelay());
+            builder.append(", X-XR-ESD=").append(voipMetrics.getEndSystemDelay());
+            builder.append(", X-XR-R=").append(voipMetrics.getRFactor());
+            builder.append(", X-XR-MOSLQ=").append(voipMetrics.getMosLq());
+            builder.append(", X-XR-MOSCQ=").append(voipMetrics.getMosCq());
+        }
+
+        // Quality of the sent stream, as reported by the remote peer
+        final RtcpVoipMetrics remoteVoipMetrics = this.audioChannel.getRemoteVoipMetrics();
+        if (remoteVoipMetrics != null) {
+            builder.append(", X-XR-REM-LR=").append(remoteVoipMetrics.getLossRate());
+            builder.append(", X-XR-REM-R=").append(remoteVoipMetrics.getRFactor());
+            builder.append(", X-XR-REM-MOSCQ=").append(remoteVoipMetrics.getMosCq());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Relays RTP packets between this connection and another remote connection of the same endpoint, skipping media
+     * processing while both negotiated the same codecs.
+     * 
+     * @param peer The connection to relay packets to and from.
+     */
+    public void relay(MgcpRemoteConnection peer) {
+        this.audioChannel.relay(peer.audioChannel);
+    }
+
+    /**
+     * Stops relaying RTP packets, resuming full media processing.
+     */
+    public void stopRelay() {
+        this.audioChannel.stopRelay();
+    }
+
+    public boolean isRelaying() {
+        return this.audioChannel.isRelaying();
+    }
+
     @Override
     public AudioComponent getAudioComponent() {
         return this.audioChannel.getAudioComponent();
@@ -540,6 +638,7 @@ public class MgcpRemoteConnection extends AbstractMgcpConnection implements RtpL
         this.webrtc = false;
         this.localSdp = null;
         this.remoteSdp = null;
+        this.inactivityTimeout = 0;
     }
     
     @Override
@@ -162,16 +162,28 @@ public class MgcpController implements ServerManager, MgcpMessageObserver {
             // Start transaction that will execute the command
             this.transactions.process(from, to, request, command, MessageDirection.INCOMING);
         } catch (DuplicateMgcpTransactionException e) {
-            // Transaction is already being processed
-            // Send provisional message
-            MgcpResponseCode provisional = MgcpResponseCode.TRANSACTION_BEING_EXECUTED;
+            final MgcpResponse response = e.getResponse();
+            if (response != null) {
+                // Transaction was already executed
+                // Repeat response without executing the command again
+                if (log.isDebugEnabled()) {
+                    log.debug("Received duplicate request tx=" + request.getTransactionId() + " from " + from.toString()
+                            + ". Repeating response with code " + response.getCode());
+                }
 
-            if (log.isDebugEnabled()) {
-                log.debug("Received duplicate request tx=" + request.getTransactionId() + " from " + from.toString()
-                        + ". Sending provisional response with code " + provisional.code());
-            }
+                this.context.getChannel().send(response, from, new SendChannelCallback());
+            } else {
+                // Transaction is already being processed
+                // Send provisional message
+                MgcpResponseCode provisional = MgcpResponseCode.TRANSACTION_BEING_EXECUTED;
 
-            sendResponse(from, request.getTransactionId(), provisional.code(), provisional.message());
+                if (log.isDebugEnabled()) {
+                    log.debug("Received duplicate request tx=" + request.getTransactionId() + " from " + from.toString()
+                            + ". Sending provisional response with code " + provisional.code());
+                }
+
+                sendResponse(from, request.getTransactionId(), provisional.code(), provisional.message());
+            }
         }
     }
 
@@ -85,6 +85,7 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
     // Events and Signals
     private NotifiedEntity notifiedEntity;
     private ConcurrentHashMap<String, MgcpSignal> signals;
+    private volatile boolean briefSignals;
     // TODO requestedEndpointEvents needs to be synchronized!
     private MgcpRequestedEvent[] requestedEndpointEvents;
     private final Multimap<Integer, MgcpRequestedEvent> requestedConnectionEvents;
@@ -110,6 +111,7 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
         // Events and Signals
         this.notifiedEntity = new NotifiedEntity();
         this.signals = new ConcurrentHashMap<>(5);
+        this.briefSignals = false;
         this.requestedEndpointEvents = EMPTY_ENDPOINT_EVENTS;
         this.requestedConnectionEvents = Multimaps.synchronizedSetMultimap(HashMultimap.<Integer, MgcpRequestedEvent>create());
 
@@ -391,6 +393,7 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
          * If the time-out signal is parameterized, the original set of parameters MUST remain in effect, regardless of what
          * values are provided subsequently. A given signal MUST NOT appear more than once in a SignalRequests.
          */
+        this.briefSignals = false;
         if (request.countSignals() == 0) {
             // List is empty. Cancel all ongoing events.
             cancelSignals();
@@ -423,6 +426,7 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
                     case BRIEF:
                         // Brief signals can be executed right away and do not need to be queued.
                         // Their execution is fast and do not generate events.
+                        this.briefSignals = true;
                         signal.execute();
                         break;
 
@@ -443,6 +447,8 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
                 }
             }
         }
+
+        onSignalsChanged();
     }
 
     @Override
@@ -453,6 +459,7 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
                 log.debug("Canceling signal " + ongoing.toString() + " on endpoint " + getEndpointId().toString());
             }
             ongoing.cancel();
+            onSignalsChanged();
         }
     }
     
@@ -466,6 +473,31 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
         }
     }
 
+    /**
+     * Gets whether the media group of the endpoint is idle, meaning that no signal is executing and no endpoint event is
+     * requested. Media of the connections does not need to reach the media group in this case.
+     * 
+     * @return <code>true</code> if the media group is idle; otherwise returns <code>false</code>
+     */
+    protected boolean isMediaGroupIdle() {
+        if (this.briefSignals || this.requestedEndpointEvents.length > 0) {
+            return false;
+        }
+        for (MgcpSignal signal : this.signals.values()) {
+            if (signal.isExecuting()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Event that is called when signals or requested events of the endpoint change, including the completion of a signal. <br>
+     * <b>To be overriden by subclasses.</b>
+     */
+    protected void onSignalsChanged() {
+    }
+
     /**
      * Event that is called when a new connection is created in the endpoint. <br>
      * <b>To be overridden by subclasses.</b>
@@ -536,6 +568,7 @@ public class GenericMgcpEndpoint implements MgcpEndpoint {
         // Process event (if eligible)
         if(originator instanceof MgcpSignal) {
             request = onEndpointEvent((MgcpSignal) originator, event);
+            onSignalsChanged();
         } else if (originator instanceof MgcpConnection) {
             request = onConnectionEvent((MgcpConnection) originator, event);
         }
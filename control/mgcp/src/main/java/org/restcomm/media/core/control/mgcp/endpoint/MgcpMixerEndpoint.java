@@ -21,13 +21,22 @@
 
 package org.restcomm.media.core.control.mgcp.endpoint;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.restcomm.media.core.component.audio.AudioMixer;
 import org.restcomm.media.core.component.oob.OOBMixer;
 import org.restcomm.media.core.control.mgcp.connection.MgcpConnection;
 import org.restcomm.media.core.control.mgcp.connection.MgcpConnectionProvider;
+import org.restcomm.media.core.control.mgcp.connection.MgcpRemoteConnection;
 
 /**
  * Implementation of an MGCP Endpoint that mixes audio frames from all sources.
+ * <p>
+ * When the endpoint bridges exactly two remote connections and its media group is idle, RTP packets are relayed between the
+ * connections without going through the mixer, as long as both negotiated the same codecs. Full media processing resumes as
+ * soon as a signal is requested or a third connection joins the endpoint.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
@@ -38,24 +47,90 @@ public class MgcpMixerEndpoint extends GenericMgcpEndpoint {
     private final AudioMixer inbandMixer;
     private final OOBMixer outbandMixer;
 
+    // Media relay
+    private final List<MgcpConnection> relayCandidates;
+    private boolean relayEnabled;
+    private boolean relaying;
+
     public MgcpMixerEndpoint(EndpointIdentifier endpointId, AudioMixer inbandMixer, OOBMixer outbandMixer, MgcpConnectionProvider connectionProvider, MediaGroup mediaGroup) {
         super(endpointId, connectionProvider, mediaGroup);
         this.inbandMixer = inbandMixer;
         this.outbandMixer = outbandMixer;
+        this.relayCandidates = new ArrayList<>(2);
+        this.relayEnabled = true;
+        this.relaying = false;
+    }
+
+    /**
+     * Sets whether RTP packets can be relayed between two remote connections, bypassing the mixer.
+     * 
+     * @param relayEnabled <code>true</code> to allow relaying; otherwise <code>false</code>
+     */
+    public void setRelayEnabled(boolean relayEnabled) {
+        synchronized (this.relayCandidates) {
+            this.relayEnabled = relayEnabled;
+        }
+        updateRelay();
+    }
+
+    public boolean isRelayEnabled() {
+        return relayEnabled;
     }
 
     @Override
     protected void onConnectionCreated(MgcpConnection connection) {
         this.inbandMixer.addComponent(connection.getAudioComponent());
         this.outbandMixer.addComponent(connection.getOutOfBandComponent());
+
+        synchronized (this.relayCandidates) {
+            this.relayCandidates.add(connection);
+        }
+        updateRelay();
     }
 
     @Override
     protected void onConnectionDeleted(MgcpConnection connection) {
+        synchronized (this.relayCandidates) {
+            this.relayCandidates.remove(connection);
+            if (connection instanceof MgcpRemoteConnection) {
+                ((MgcpRemoteConnection) connection).stopRelay();
+            }
+        }
+        updateRelay();
+
         this.inbandMixer.release(connection.getAudioComponent());
         this.outbandMixer.release(connection.getOutOfBandComponent());
     }
 
+    @Override
+    protected void onSignalsChanged() {
+        updateRelay();
+    }
+
+    /**
+     * Relays media between the connections of the endpoint if it bridges two remote connections and the media group is idle.
+     * Otherwise, makes sure media goes through the mixer.
+     */
+    private void updateRelay() {
+        synchronized (this.relayCandidates) {
+            final boolean relay = this.relayEnabled && this.relayCandidates.size() == 2
+                    && this.relayCandidates.get(0) instanceof MgcpRemoteConnection
+                    && this.relayCandidates.get(1) instanceof MgcpRemoteConnection && isMediaGroupIdle();
+
+            if (relay && !this.relaying) {
+                ((MgcpRemoteConnection) this.relayCandidates.get(0)).relay((MgcpRemoteConnection) this.relayCandidates.get(1));
+                this.relaying = true;
+            } else if (!relay && this.relaying) {
+                for (MgcpConnection connection : this.relayCandidates) {
+                    if (connection instanceof MgcpRemoteConnection) {
+                        ((MgcpRemoteConnection) connection).stopRelay();
+                    }
+                }
+                this.relaying = false;
+            }
+        }
+    }
+
     @Override
     protected void onActivated() {
         // Wire media group to mixer
@@ -76,6 +151,12 @@ public class MgcpMixerEndpoint extends GenericMgcpEndpoint {
         // Stop mixer
         this.inbandMixer.stop();
         this.outbandMixer.stop();
+
+        // Connections deleted in bulk are not reported one by one
+        synchronized (this.relayCandidates) {
+            this.relayCandidates.clear();
+            this.relaying = false;
+        }
     }
 
 }
@@ -21,6 +21,8 @@
 
 package org.restcomm.media.core.control.mgcp.exception;
 
+import org.restcomm.media.core.control.mgcp.message.MgcpResponse;
+
 /**
  * Exception that occurs when a registry contains duplicate entry for same MGCP transaction.
  * 
@@ -31,12 +33,29 @@ public class DuplicateMgcpTransactionException extends MgcpTransactionException
 
     private static final long serialVersionUID = -7131127100174915729L;
 
+    private final transient MgcpResponse response;
+
     public DuplicateMgcpTransactionException(String message, Throwable cause) {
         super(message, cause);
+        this.response = null;
     }
 
     public DuplicateMgcpTransactionException(String message) {
+        this(message, (MgcpResponse) null);
+    }
+
+    public DuplicateMgcpTransactionException(String message, MgcpResponse response) {
         super(message);
+        this.response = response;
+    }
+
+    /**
+     * Gets the response already sent to the transaction.
+     * 
+     * @return The response to be repeated, or null if the transaction is still being executed
+     */
+    public MgcpResponse getResponse() {
+        return response;
     }
 
 }
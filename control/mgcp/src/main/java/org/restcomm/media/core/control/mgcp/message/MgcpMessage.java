@@ -21,26 +21,45 @@
 
 package org.restcomm.media.core.control.mgcp.message;
 
-import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.restcomm.media.core.control.mgcp.util.collections.Parameters;
 
 /**
  * Represents a generic MGCP message.
+ * <p>
+ * Parameters of a parsed message are kept as slices of the original data and only turned into strings when read. Reading a
+ * parameter thus updates the message, so access to parameters is synchronized: a message is decoded by a network thread
+ * and read by the threads executing its command.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
 public abstract class MgcpMessage {
 
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int PARAMETER_COUNT = MgcpParameterType.values().length;
+
     protected int transactionId;
     protected final Parameters<MgcpParameterType> parameters;
-    protected final ByteBuffer data;
+
+    // Parameter values not materialized yet, indexed by parameter type
+    private byte[] data;
+    private final int[] offsets;
+    private final int[] lengths;
+    private int slices;
     
     public MgcpMessage() {
         this.transactionId = -1;
         this.parameters = new Parameters<>();
-        this.data = ByteBuffer.allocate(8192);
+        this.data = null;
+        this.offsets = new int[PARAMETER_COUNT];
+        this.lengths = new int[PARAMETER_COUNT];
+        Arrays.fill(this.lengths, -1);
+        this.slices = 0;
     }
     
     public int getTransactionId() {
@@ -52,32 +71,101 @@ public abstract class MgcpMessage {
     }
     
     public boolean isSdpDetected() {
-        return this.parameters.containsKey(MgcpParameterType.SDP);
+        return hasParameter(MgcpParameterType.SDP);
     }
     
-    public Parameters<MgcpParameterType> getParameters() {
+    public synchronized Parameters<MgcpParameterType> getParameters() {
+        materializeParameters();
         return parameters.clone();
     }
     
-    public String getParameter(MgcpParameterType type) {
+    public synchronized String getParameter(MgcpParameterType type) {
+        materializeParameter(type);
         return this.parameters.getString(type).orNull();
     }
     
-    public boolean hasParameter(MgcpParameterType type) {
-        return this.parameters.containsKey(type);
+    public synchronized boolean hasParameter(MgcpParameterType type) {
+        return this.lengths[type.ordinal()] >= 0 || this.parameters.containsKey(type);
     }
     
-    public void addParameter(MgcpParameterType type, String value) {
+    public synchronized void addParameter(MgcpParameterType type, String value) {
+        clearSlice(type);
         this.parameters.put(type, value);
     }
+
+    public synchronized void addParameters(Parameters<MgcpParameterType> parameters) {
+        for (MgcpParameterType type : parameters.keySet()) {
+            clearSlice(type);
+        }
+        this.parameters.putAll(parameters);
+    }
+
+    /**
+     * Adds a parameter whose value is a slice of the raw message. The value is only decoded when read.
+     * 
+     * @param type The parameter type
+     * @param data The raw message. Must not be modified afterwards.
+     * @param offset The offset of the value
+     * @param length The length of the value
+     */
+    synchronized void addParameter(MgcpParameterType type, byte[] data, int offset, int length) {
+        if (this.data != data) {
+            // Slices of a previous buffer must be decoded before being dropped
+            materializeParameters();
+            this.data = data;
+        }
+        this.parameters.remove(type);
+
+        final int index = type.ordinal();
+        if (this.lengths[index] < 0) {
+            this.slices++;
+        }
+        this.offsets[index] = offset;
+        this.lengths[index] = length;
+    }
     
-    public void removeParameter(MgcpParameterType type) {
+    public synchronized void removeParameter(MgcpParameterType type) {
+        clearSlice(type);
         this.parameters.remove(type);
     }
     
-    public void removeParameters() {
+    public synchronized void removeParameters() {
+        if (this.slices > 0) {
+            Arrays.fill(this.lengths, -1);
+            this.slices = 0;
+        }
+        this.data = null;
         this.parameters.clear();
     }
+
+    private void clearSlice(MgcpParameterType type) {
+        final int index = type.ordinal();
+        if (this.lengths[index] >= 0) {
+            this.lengths[index] = -1;
+            this.slices--;
+        }
+    }
+
+    private void materializeParameter(MgcpParameterType type) {
+        final int index = type.ordinal();
+        final int length = this.lengths[index];
+        if (length >= 0) {
+            this.parameters.put(type, new String(this.data, this.offsets[index], length, CHARSET));
+            this.lengths[index] = -1;
+            this.slices--;
+        }
+    }
+
+    /**
+     * Decodes every parameter still kept as a slice of the raw message.
+     */
+    protected synchronized void materializeParameters() {
+        if (this.slices > 0) {
+            for (MgcpParameterType type : MgcpParameterType.values()) {
+                materializeParameter(type);
+            }
+        }
+    }
     
     public abstract boolean isRequest();
     
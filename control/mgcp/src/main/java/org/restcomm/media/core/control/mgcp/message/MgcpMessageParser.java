@@ -21,135 +21,336 @@
 
 package org.restcomm.media.core.control.mgcp.message;
 
+import java.nio.charset.StandardCharsets;
+
 import org.restcomm.media.core.control.mgcp.exception.MgcpParseException;
 
 /**
- * Parses text into MGCP Message objects.
+ * Parses raw data into MGCP Message objects.
+ * <p>
+ * Messages are tokenized in a single pass over the data. Commands and parameter codes are resolved through switch tables and
+ * parameter values, including the SDP, are handed to the message as slices of the data. They are only turned into strings
+ * when read. Lines may end either with LF or CRLF.
+ * </p>
+ * <p>
+ * The parser holds no state, so it can be shared among threads.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
 public class MgcpMessageParser {
 
+    // Commands, as four upper case ASCII characters
+    private static final int CRCX = ('C' << 24) | ('R' << 16) | ('C' << 8) | 'X';
+    private static final int MDCX = ('M' << 24) | ('D' << 16) | ('C' << 8) | 'X';
+    private static final int DLCX = ('D' << 24) | ('L' << 16) | ('C' << 8) | 'X';
+    private static final int RQNT = ('R' << 24) | ('Q' << 16) | ('N' << 8) | 'T';
+    private static final int AUCX = ('A' << 24) | ('U' << 16) | ('C' << 8) | 'X';
+    private static final int AUEP = ('A' << 24) | ('U' << 16) | ('E' << 8) | 'P';
+    private static final int NTFY = ('N' << 24) | ('T' << 16) | ('F' << 8) | 'Y';
+
+    // Parameter codes with two characters
+    private static final int Z2 = ('Z' << 8) | '2';
+    private static final int I2 = ('I' << 8) | '2';
+    private static final int RC = ('R' << 8) | 'C';
+    private static final int LC = ('L' << 8) | 'C';
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte COLON = ':';
+
     private final LocalConnectionOptionsParser optionsParser;
     
     public MgcpMessageParser() {
         this.optionsParser = new LocalConnectionOptionsParser();
     }
 
+    /**
+     * Parses an MGCP request.
+     * 
+     * @param data The raw data. The request keeps slices of it, so it must not be modified afterwards.
+     * @param offset The offset of the request within the data
+     * @param length The length of the request
+     * @return The parsed request
+     * @throws MgcpParseException If the request is malformed
+     */
     public MgcpRequest parseRequest(byte[] data, int offset, int length) throws MgcpParseException {
-        return parseRequest(new String(data, offset, length));
-    }
-
-    public MgcpRequest parseRequest(String message) throws MgcpParseException {
         try {
             MgcpRequest request = new MgcpRequest();
-            parseMgcpRequest(message, request);
+            parseMgcpRequest(data, offset, offset + length, request);
             return request;
         } catch (Exception e) {
             throw new MgcpParseException("Could not parse MGCP request.", e);
         }
     }
 
-    private void parseMgcpRequest(String message, MgcpRequest request) throws Exception {
-        String[] lines = message.split(System.lineSeparator());
+    public MgcpRequest parseRequest(String message) throws MgcpParseException {
+        final byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        return parseRequest(data, 0, data.length);
+    }
 
+    private void parseMgcpRequest(byte[] data, int offset, int end, MgcpRequest request) throws Exception {
         // Analyze request header
-        String header = lines[0];
-        String[] headerParams = header.split(" ");
+        final int headerEnd = indexOf(data, LF, offset, end);
+        final int headerLimit = trimEnd(data, offset, headerEnd);
 
         // Set Request type
-        String command = headerParams[0];
-        MgcpRequestType requestType = MgcpRequestType.valueOf(command.toUpperCase());
-        request.setRequestType(requestType);
+        int position = skipWhitespace(data, offset, headerLimit);
+        int tokenEnd = tokenEnd(data, position, headerLimit);
+        request.setRequestType(parseRequestType(data, position, tokenEnd));
 
         // Set transaction ID
-        String transactionId = headerParams[1];
-        request.setTransactionId(Integer.parseInt(transactionId));
+        position = skipWhitespace(data, tokenEnd, headerLimit);
+        tokenEnd = tokenEnd(data, position, headerLimit);
+        request.setTransactionId(parseNumber(data, position, tokenEnd, "transaction identifier"));
 
         // Set endpoint ID
-        String endpointId = headerParams[2];
-        request.setEndpointId(endpointId);
+        position = skipWhitespace(data, tokenEnd, headerLimit);
+        tokenEnd = tokenEnd(data, position, headerLimit);
+        if (position == tokenEnd) {
+            throw new MgcpParseException("Missing endpoint identifier");
+        }
+        request.addParameter(MgcpParameterType.ENDPOINT_ID, data, position, tokenEnd - position);
 
         // Set parameters and SDP
-        parseParametersAndSdp(lines, request);
+        parseParametersAndSdp(data, headerEnd + 1, end, request);
         
         // Parse Local Connection Options (if present)
-        String lcOptions = request.getParameter(MgcpParameterType.LOCAL_CONNECTION_OPTIONS);
-        if(lcOptions != null) {
-            this.optionsParser.parse(lcOptions);
+        if (request.hasParameter(MgcpParameterType.LOCAL_CONNECTION_OPTIONS)) {
+            this.optionsParser.parse(request.getParameter(MgcpParameterType.LOCAL_CONNECTION_OPTIONS));
         }
     }
 
+    /**
+     * Parses an MGCP response.
+     * 
+     * @param data The raw data. The response keeps slices of it, so it must not be modified afterwards.
+     * @param offset The offset of the response within the data
+     * @param length The length of the response
+     * @return The parsed response
+     * @throws MgcpParseException If the response is malformed
+     */
     public MgcpResponse parseResponse(byte[] data, int offset, int length) throws MgcpParseException {
-        return parseResponse(new String(data, offset, length));
-    }
-
-    public MgcpResponse parseResponse(String message) throws MgcpParseException {
         MgcpResponse response = new MgcpResponse();
         try {
-            parseResponse(message, response);
+            parseResponse(data, offset, offset + length, response);
         } catch (Exception e) {
             throw new MgcpParseException("Could not parse MGCP response", e);
         }
         return response;
     }
 
-    private void parseResponse(String message, MgcpResponse response) throws Exception {
-        String[] lines = message.split(System.lineSeparator());
+    public MgcpResponse parseResponse(String message) throws MgcpParseException {
+        final byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        return parseResponse(data, 0, data.length);
+    }
 
-        // Analyze request header
-        String header = lines[0];
+    private void parseResponse(byte[] data, int offset, int end, MgcpResponse response) throws Exception {
+        // Analyze response header
+        final int headerEnd = indexOf(data, LF, offset, end);
+        final int headerLimit = trimEnd(data, offset, headerEnd);
 
-        // Set Request type
-        int codeSeparator = header.indexOf(" ");
-        String returnCode = header.substring(0, codeSeparator);
-        response.setCode(Integer.parseInt(returnCode));
+        // Set return code
+        int position = skipWhitespace(data, offset, headerLimit);
+        int tokenEnd = tokenEnd(data, position, headerLimit);
+        response.setCode(parseNumber(data, position, tokenEnd, "return code"));
 
         // Set transaction ID
-        int transactionIdSeparator = header.indexOf(" ", codeSeparator + 1);
-        String transactionId = header.substring(codeSeparator + 1, transactionIdSeparator);
-        response.setTransactionId(Integer.parseInt(transactionId));
+        position = skipWhitespace(data, tokenEnd, headerLimit);
+        tokenEnd = tokenEnd(data, position, headerLimit);
+        response.setTransactionId(parseNumber(data, position, tokenEnd, "transaction identifier"));
 
-        // Set endpoint ID
-        String returnMessage = header.substring(transactionIdSeparator + 1);
-        response.setMessage(returnMessage);
+        // Set return message (optional)
+        position = skipWhitespace(data, tokenEnd, headerLimit);
+        response.setMessage(new String(data, position, headerLimit - position, StandardCharsets.UTF_8));
 
         // Set parameters and SDP
-        parseParametersAndSdp(lines, response);
-    }
-
-    private void parseParametersAndSdp(String[] lines, MgcpMessage message) throws Exception {
-        // Get MGCP parameters and SDP
-        StringBuilder sdpBuilder = new StringBuilder();
-        boolean sdp = false;
-        int nLines = lines.length;
-        for (int i = 1; i < nLines; i++) {
-            String line = lines[i];
-
-            if (sdp) {
-                // Build SDP description
-                sdpBuilder.append(line);
-                if (i < nLines - 1) {
-                    sdpBuilder.append(System.lineSeparator());
+        parseParametersAndSdp(data, headerEnd + 1, end, response);
+    }
+
+    private void parseParametersAndSdp(byte[] data, int offset, int end, MgcpMessage message) throws MgcpParseException {
+        int position = offset;
+        while (position < end) {
+            final int lineEnd = indexOf(data, LF, position, end);
+            final int lineLimit = (lineEnd > position && data[lineEnd - 1] == CR) ? lineEnd - 1 : lineEnd;
+
+            if (lineLimit == position) {
+                // Empty line separates parameters from SDP
+                final int sdpOffset = Math.min(lineEnd + 1, end);
+                int sdpEnd = end;
+                while (sdpEnd > sdpOffset && (data[sdpEnd - 1] == LF || data[sdpEnd - 1] == CR)) {
+                    sdpEnd--;
+                }
+                message.addParameter(MgcpParameterType.SDP, data, sdpOffset, sdpEnd - sdpOffset);
+                return;
+            }
+
+            parseParameter(data, position, lineLimit, message);
+            position = lineEnd + 1;
+        }
+    }
+
+    private void parseParameter(byte[] data, int offset, int end, MgcpMessage message) throws MgcpParseException {
+        final int separator = indexOf(data, COLON, offset, end);
+        if (separator == end) {
+            throw new MgcpParseException("Malformed parameter: " + new String(data, offset, end - offset, StandardCharsets.UTF_8));
+        }
+
+        final int codeOffset = skipWhitespace(data, offset, separator);
+        final MgcpParameterType type = parseParameterType(data, codeOffset, trimEnd(data, codeOffset, separator));
+        if (type != null) {
+            final int valueOffset = skipWhitespace(data, separator + 1, end);
+            final int valueEnd = trimEnd(data, valueOffset, end);
+            message.addParameter(type, data, valueOffset, valueEnd - valueOffset);
+        }
+        // Unknown parameters are ignored
+    }
+
+    private static MgcpRequestType parseRequestType(byte[] data, int offset, int end) throws MgcpParseException {
+        if (end - offset == 4) {
+            final int command = (upperCase(data[offset]) << 24) | (upperCase(data[offset + 1]) << 16)
+                    | (upperCase(data[offset + 2]) << 8) | upperCase(data[offset + 3]);
+            switch (command) {
+                case CRCX:
+                    return MgcpRequestType.CRCX;
+                case MDCX:
+                    return MgcpRequestType.MDCX;
+                case DLCX:
+                    return MgcpRequestType.DLCX;
+                case RQNT:
+                    return MgcpRequestType.RQNT;
+                case AUCX:
+                    return MgcpRequestType.AUCX;
+                case AUEP:
+                    return MgcpRequestType.AUEP;
+                case NTFY:
+                    return MgcpRequestType.NTFY;
+                default:
+                    break;
+            }
+        }
+        throw new MgcpParseException("Unknown MGCP command " + new String(data, offset, end - offset, StandardCharsets.UTF_8));
+    }
+
+    private static MgcpParameterType parseParameterType(byte[] data, int offset, int end) {
+        switch (end - offset) {
+            case 1:
+                switch (upperCase(data[offset])) {
+                    case 'C':
+                        return MgcpParameterType.CALL_ID;
+                    case 'M':
+                        return MgcpParameterType.MODE;
+                    case 'I':
+                        return MgcpParameterType.CONNECTION_ID;
+                    case 'Z':
+                        return MgcpParameterType.ENDPOINT_ID;
+                    case 'X':
+                        return MgcpParameterType.REQUEST_ID;
+                    case 'R':
+                        return MgcpParameterType.REQUESTED_EVENTS;
+                    case 'S':
+                        return MgcpParameterType.REQUESTED_SIGNALS;
+                    case 'N':
+                        return MgcpParameterType.NOTIFIED_ENTITY;
+                    case 'O':
+                        return MgcpParameterType.OBSERVED_EVENT;
+                    case 'P':
+                        return MgcpParameterType.CONNECTION_PARAMETERS;
+                    case 'L':
+                        return MgcpParameterType.LOCAL_CONNECTION_OPTIONS;
+                    case 'E':
+                        return MgcpParameterType.REASON_CODE;
+                    case 'B':
+                        return MgcpParameterType.BARER_INFORMATION;
+                    case 'F':
+                        return MgcpParameterType.REQUESTED_INFO;
+                    default:
+                        break;
                 }
-            } else {
-                if (line.isEmpty()) {
-                    // Set SDP detected
-                    sdp = true;
-                } else {
-                    // Add parameter
-                    int separatorIndex = line.indexOf(":");
-                    MgcpParameterType type = MgcpParameterType.fromCode(line.substring(0, separatorIndex));
-                    message.addParameter(type, line.substring(separatorIndex + 1).trim());
+                break;
+
+            case 2:
+                switch ((upperCase(data[offset]) << 8) | upperCase(data[offset + 1])) {
+                    case Z2:
+                        return MgcpParameterType.SECOND_ENDPOINT;
+                    case I2:
+                        return MgcpParameterType.CONNECTION_ID2;
+                    case RC:
+                        return MgcpParameterType.REMOTE_CONNECTION_DESCRIPTION;
+                    case LC:
+                        return MgcpParameterType.LOCAL_CONNECTION_DESCRIPTION;
+                    default:
+                        break;
                 }
+                break;
+
+            default:
+                break;
+        }
+        // Slow path for codes missing from the tables
+        return MgcpParameterType.fromCode(new String(data, offset, end - offset, StandardCharsets.UTF_8));
+    }
+
+    private static int parseNumber(byte[] data, int offset, int end, String name) throws MgcpParseException {
+        if (offset == end || end - offset > 10) {
+            throw new MgcpParseException("Invalid " + name + ": " + new String(data, offset, end - offset, StandardCharsets.UTF_8));
+        }
+
+        long value = 0;
+        for (int i = offset; i < end; i++) {
+            final int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new MgcpParseException("Invalid " + name + ": " + new String(data, offset, end - offset, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+
+        if (value > Integer.MAX_VALUE) {
+            throw new MgcpParseException("Invalid " + name + ": " + value);
+        }
+        return (int) value;
+    }
+
+    private static int upperCase(byte b) {
+        return (b >= 'a' && b <= 'z') ? b - 32 : b & 0xFF;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static int indexOf(byte[] data, byte b, int offset, int end) {
+        for (int i = offset; i < end; i++) {
+            if (data[i] == b) {
+                return i;
             }
         }
+        return end;
+    }
+
+    private static int skipWhitespace(byte[] data, int offset, int end) {
+        int position = offset;
+        while (position < end && isWhitespace(data[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int tokenEnd(byte[] data, int offset, int end) {
+        int position = offset;
+        while (position < end && !isWhitespace(data[position])) {
+            position++;
+        }
+        return position;
+    }
 
-        // Set SDP (if present)
-        if (sdp) {
-            message.addParameter(MgcpParameterType.SDP, sdpBuilder.toString());
+    private static int trimEnd(byte[] data, int offset, int end) {
+        int position = end;
+        while (position > offset && (data[position - 1] & 0xFF) <= ' ') {
+            position--;
         }
+        return position;
     }
 
 }
@@ -0,0 +1,251 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Encodes MGCP messages into a reusable byte buffer, without building intermediate strings.
+ * <p>
+ * Response codes, commands and parameter names are written from precomputed byte arrays. ASCII parameter values are
+ * copied straight into the buffer, only non-ASCII values are encoded through a temporary array. The output is the same as
+ * {@link MgcpMessage#toString()}.
+ * </p>
+ * <p>
+ * The buffer is overwritten by each call to {@link #write(MgcpMessage)}, so a writer must not be shared among threads.
+ * </p>
+ */
+public class MgcpMessageWriter {
+
+    /** Default capacity of the buffer, enough for most messages with an SDP body */
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    private static final byte[] NEW_LINE = ascii(System.lineSeparator());
+    private static final byte[] VERSION = ascii(" " + MgcpRequest.VERSION);
+    private static final byte SPACE = ' ';
+
+    // Return codes (followed by a space) indexed by value
+    private static final byte[][] CODES = new byte[1000][];
+    // Commands (followed by a space) indexed by ordinal
+    private static final byte[][] COMMANDS = new byte[MgcpRequestType.values().length][];
+    // Parameter names (followed by a colon) indexed by ordinal
+    private static final byte[][] PARAMETERS = new byte[MgcpParameterType.values().length][];
+
+    static {
+        for (int i = 0; i < CODES.length; i++) {
+            CODES[i] = ascii(i + " ");
+        }
+        for (MgcpRequestType type : MgcpRequestType.values()) {
+            COMMANDS[type.ordinal()] = ascii(type.name() + " ");
+        }
+        for (MgcpParameterType type : MgcpParameterType.values()) {
+            PARAMETERS[type.ordinal()] = ascii(type.getCode() + ":");
+        }
+    }
+
+    private byte[] buffer;
+    private int length;
+
+    public MgcpMessageWriter(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 64)];
+        this.length = 0;
+    }
+
+    public MgcpMessageWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Gets the buffer holding the last written message, from index zero up to {@link #length()}.
+     * 
+     * @return The internal buffer of the writer. Only valid until the next message is written.
+     */
+    public byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Gets the length of the last written message.
+     * 
+     * @return The number of bytes written
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Encodes a message into the buffer of the writer, replacing the previous one.
+     * <p>
+     * The message is locked while it is written, as done by its own parameter accessors.
+     * </p>
+     * 
+     * @param message The message to be encoded
+     * @return The length of the encoded message
+     */
+    public int write(MgcpMessage message) {
+        this.length = 0;
+        // Parameters are iterated directly, so they must not change until the message is written
+        synchronized (message) {
+            message.materializeParameters();
+            if (message.isRequest()) {
+                writeRequest((MgcpRequest) message);
+            } else {
+                writeResponse((MgcpResponse) message);
+            }
+        }
+        return this.length;
+    }
+
+    private void writeRequest(MgcpRequest request) {
+        // Header
+        write(COMMANDS[request.getRequestType().ordinal()]);
+        writeNumber(request.getTransactionId());
+        write(SPACE);
+        writeString(request.getEndpointId());
+        write(VERSION);
+        write(NEW_LINE);
+
+        // Parameters
+        final Iterator<MgcpParameterType> keys = request.parameters.keySet().iterator();
+        while (keys.hasNext()) {
+            final MgcpParameterType key = keys.next();
+            if (key != MgcpParameterType.ENDPOINT_ID && key != MgcpParameterType.SDP) {
+                final String value = request.getParameter(key);
+                if (value != null) {
+                    write(PARAMETERS[key.ordinal()]);
+                    writeString(value);
+                    write(NEW_LINE);
+                }
+            }
+        }
+
+        // SDP (if any)
+        final String sdp = request.getParameter(MgcpParameterType.SDP);
+        if (sdp != null) {
+            write(NEW_LINE);
+            writeString(sdp);
+        }
+    }
+
+    private void writeResponse(MgcpResponse response) {
+        // Header
+        final int code = response.getCode();
+        if (code >= 0 && code < CODES.length) {
+            write(CODES[code]);
+        } else {
+            writeNumber(code);
+            write(SPACE);
+        }
+        writeNumber(response.getTransactionId());
+        write(SPACE);
+        writeString(response.getMessage());
+
+        // Parameters
+        final Iterator<MgcpParameterType> keys = response.parameters.keySet().iterator();
+        while (keys.hasNext()) {
+            final MgcpParameterType key = keys.next();
+            if (key != MgcpParameterType.SDP) {
+                final String value = response.getParameter(key);
+                if (value != null) {
+                    write(NEW_LINE);
+                    write(PARAMETERS[key.ordinal()]);
+                    writeString(value);
+                }
+            }
+        }
+
+        // SDP (if any)
+        final String sdp = response.getParameter(MgcpParameterType.SDP);
+        if (sdp != null) {
+            write(NEW_LINE);
+            write(NEW_LINE);
+            writeString(sdp);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        final int required = this.length + extra;
+        if (required > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(required, this.buffer.length * 2));
+        }
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        this.buffer[this.length++] = b;
+    }
+
+    private void write(byte[] data) {
+        ensureCapacity(data.length);
+        System.arraycopy(data, 0, this.buffer, this.length, data.length);
+        this.length += data.length;
+    }
+
+    private void writeNumber(int value) {
+        if (value < 0) {
+            // Unset identifiers are -1
+            writeString(Integer.toString(value));
+            return;
+        }
+
+        int digits = 1;
+        for (int i = value; i >= 10; i /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        int position = this.length + digits;
+        int remaining = value;
+        do {
+            this.buffer[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        this.length += digits;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void writeString(String value) {
+        if (value == null) {
+            return;
+        }
+
+        final int size = value.length();
+        for (int i = 0; i < size; i++) {
+            if (value.charAt(i) >= 0x80) {
+                // Slow path for non-ASCII content
+                write(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+
+        // Content is ASCII, so characters can be copied as bytes
+        ensureCapacity(size);
+        value.getBytes(0, size, this.buffer, this.length);
+        this.length += size;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
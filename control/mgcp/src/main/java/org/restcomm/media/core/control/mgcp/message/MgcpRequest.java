@@ -54,11 +54,11 @@ public class MgcpRequest extends MgcpMessage {
     }
 
     public String getEndpointId() {
-        return this.parameters.getString(MgcpParameterType.ENDPOINT_ID).orNull();
+        return getParameter(MgcpParameterType.ENDPOINT_ID);
     }
 
     public void setEndpointId(String endpointId) {
-        this.parameters.put(MgcpParameterType.ENDPOINT_ID, endpointId);
+        addParameter(MgcpParameterType.ENDPOINT_ID, endpointId);
     }
 
     public LocalConnectionOptions getLocalConnectionOptions() {
@@ -67,7 +67,7 @@ public class MgcpRequest extends MgcpMessage {
 
     public void setLocalConnectionOptions(LocalConnectionOptions lcOptions) {
         this.lcOptions = lcOptions;
-        this.parameters.put(MgcpParameterType.LOCAL_CONNECTION_OPTIONS, lcOptions.toString());
+        addParameter(MgcpParameterType.LOCAL_CONNECTION_OPTIONS, lcOptions.toString());
     }
 
     @Override
@@ -76,9 +76,10 @@ public class MgcpRequest extends MgcpMessage {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         // Reset builder
         this.builder.setLength(0);
+        materializeParameters();
 
         // Build header
         this.builder.append(this.requestType.name()).append(" ").append(this.transactionId).append(" ").append(getEndpointId())
@@ -76,9 +76,10 @@ public class MgcpResponse extends MgcpMessage {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         // Reset builder
         this.builder.setLength(0);
+        materializeParameters();
 
         // Build message
         this.builder.append(this.code).append(" ").append(getTransactionId()).append(" ").append(this.message);
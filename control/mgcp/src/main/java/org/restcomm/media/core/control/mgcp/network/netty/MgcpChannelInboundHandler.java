@@ -34,6 +34,7 @@ import org.restcomm.media.core.control.mgcp.message.MgcpMessageSubject;
 
 import com.google.common.collect.Sets;
 
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
@@ -43,6 +44,7 @@ import io.netty.channel.SimpleChannelInboundHandler;
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
+@Sharable
 public class MgcpChannelInboundHandler extends SimpleChannelInboundHandler<MgcpMessageEnvelope> implements MgcpMessageSubject {
 
     private static final Logger log = LogManager.getLogger(MgcpChannelInboundHandler.class);
@@ -33,6 +33,7 @@ import org.restcomm.media.core.control.mgcp.message.MgcpRequest;
 import org.restcomm.media.core.control.mgcp.message.MgcpResponse;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
 import io.netty.handler.codec.MessageToMessageDecoder;
@@ -41,6 +42,7 @@ import io.netty.handler.codec.MessageToMessageDecoder;
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
+@Sharable
 public class MgcpMessageDecoder extends MessageToMessageDecoder<DatagramPacket> {
 
     private static final Logger log = LogManager.getLogger(MgcpMessageDecoder.class);
@@ -67,9 +69,9 @@ public class MgcpMessageDecoder extends MessageToMessageDecoder<DatagramPacket>
         final InetSocketAddress recipient = msg.recipient();
         final InetSocketAddress sender = msg.sender();
         
-        // Get data from buffer
+        // Get data from buffer. Single copy, since the parsed message keeps slices of the payload after buffer is released.
         byte[] payload = new byte[content.readableBytes()];
-        content.getBytes(0, payload);
+        content.getBytes(content.readerIndex(), payload);
 
         // Check message type based on first byte
         byte b = payload[0];
@@ -28,9 +28,10 @@ import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.control.mgcp.message.MgcpMessage;
+import org.restcomm.media.core.control.mgcp.message.MgcpMessageWriter;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultAddressedEnvelope;
 import io.netty.channel.socket.DatagramPacket;
@@ -38,23 +39,36 @@ import io.netty.handler.codec.MessageToMessageEncoder;
 
 /**
  * Encodes an MGCP message into a {@link DatagramPacket} ready to be sent to remote peer over the network.
+ * <p>
+ * Messages are written into a reusable buffer of the event loop and copied once into a pooled buffer.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
+@Sharable
 public class MgcpMessageEncoder extends MessageToMessageEncoder<DefaultAddressedEnvelope<MgcpMessage, SocketAddress>> {
 
     private static final Logger log = LogManager.getLogger(MgcpMessageEncoder.class);
 
     public static final String PIPELINE_KEY = "mgcp-encoder";
 
+    // Encoder is shared among event loops
+    private static final ThreadLocal<MgcpMessageWriter> WRITER = new ThreadLocal<MgcpMessageWriter>() {
+        @Override
+        protected MgcpMessageWriter initialValue() {
+            return new MgcpMessageWriter();
+        }
+    };
+
     @Override
     protected void encode(ChannelHandlerContext ctx, DefaultAddressedEnvelope<MgcpMessage, SocketAddress> msg, List<Object> out)
             throws Exception {
         final InetSocketAddress sender = (InetSocketAddress) msg.sender();
         final InetSocketAddress recipient = (InetSocketAddress) msg.recipient();
-        final byte[] content = msg.content().toString().getBytes();
-        final ByteBuf buffer = Unpooled.buffer(content.length).writeBytes(content);
+        final MgcpMessageWriter writer = WRITER.get();
+        final int length = writer.write(msg.content());
+        final ByteBuf buffer = ctx.alloc().ioBuffer(length).writeBytes(writer.array(), 0, length);
         final DatagramPacket packet = new DatagramPacket(buffer, recipient, sender);
 
         if (log.isDebugEnabled()) {
@@ -21,19 +21,113 @@
         
 package org.restcomm.media.core.control.mgcp.network.netty;
 
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.network.netty.NettyNetworkManager;
+import org.restcomm.media.core.network.netty.NettyTransport;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 
 /**
+ * Network Manager for the MGCP stack.
+ * <p>
+ * When backed by a transport that supports {@code SO_REUSEPORT}, every channel is bound with that option, whatever bootstrap
+ * the manager was given. Additional listeners can then be bound to the MGCP address so the kernel spreads incoming traffic
+ * across several event loops. Listeners share the same channel pipeline, so received messages
+ * reach the same MGCP observers regardless of the socket they arrived on.
+ * </p>
+ * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
 public class MgcpNetworkManager extends NettyNetworkManager {
 
+    private static final Logger log = LogManager.getLogger(MgcpNetworkManager.class);
+
+    private final List<Channel> listeners;
+    private final boolean reusePort;
+
     public MgcpNetworkManager(Bootstrap bootstrap, MgcpChannelInitializer initializer) {
         super(bootstrap);
         super.bootstrap.handler(initializer);
+        // The main channel must hold SO_REUSEPORT too, or additional listeners cannot bind its address
+        this.reusePort = this.transport.enableReusePort(super.bootstrap);
+        this.listeners = Collections.synchronizedList(new ArrayList<Channel>());
+    }
+
+    public MgcpNetworkManager(NettyTransport transport, int threadCount, MgcpChannelInitializer initializer) {
+        this(NettyTransport.select(transport).newBootstrap(threadCount, true), initializer);
+    }
+
+    /**
+     * Binds additional listeners to the MGCP address.
+     * <p>
+     * Each listener is registered on its own event loop, as assigned by the event group. Listeners are only bound if channels
+     * of this manager are bound with {@code SO_REUSEPORT}. Otherwise the main MGCP channel remains the single receiver.
+     * </p>
+     * 
+     * @param localAddress The address the main MGCP channel is bound to.
+     * @param count The number of additional listeners to bind.
+     * @return The listeners that were bound. Empty if the transport does not support {@code SO_REUSEPORT}.
+     * @throws IOException If a listener could not be bound.
+     * @throws IllegalStateException If manager is already closed.
+     */
+    public List<Channel> bindListeners(SocketAddress localAddress, int count) throws IOException, IllegalStateException {
+        if (!this.reusePort) {
+            if (log.isDebugEnabled()) {
+                log.debug("Transport " + this.transport + " does not support SO_REUSEPORT. Skipping additional MGCP listeners.");
+            }
+            return Collections.emptyList();
+        }
+
+        final List<Channel> bound = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Channel channel = openChannel();
+            try {
+                channel.bind(localAddress).sync();
+            } catch (Exception e) {
+                channel.close();
+                throw new IOException("Could not bind MGCP listener to " + localAddress, e);
+            }
+            bound.add(channel);
+        }
+        this.listeners.addAll(bound);
+
+        if (log.isInfoEnabled()) {
+            log.info("Bound " + count + " additional MGCP listeners to " + localAddress + " using " + this.transport + " transport");
+        }
+        return bound;
+    }
+
+    /**
+     * Gets the number of additional listeners bound to the MGCP address.
+     * 
+     * @return The number of listeners.
+     */
+    public int getListenerCount() {
+        return this.listeners.size();
+    }
+
+    @Override
+    public void close() throws IOException, IllegalStateException {
+        closeListeners();
+        super.close();
+    }
+
+    private void closeListeners() {
+        synchronized (this.listeners) {
+            for (Channel listener : this.listeners) {
+                listener.close();
+            }
+            this.listeners.clear();
+        }
     }
-    
+
 }
@@ -23,6 +23,7 @@ package org.restcomm.media.core.control.mgcp.network.nio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -32,6 +33,7 @@ import org.restcomm.media.core.control.mgcp.message.MessageDirection;
 import org.restcomm.media.core.control.mgcp.message.MgcpMessage;
 import org.restcomm.media.core.control.mgcp.message.MgcpMessageObserver;
 import org.restcomm.media.core.control.mgcp.message.MgcpMessageSubject;
+import org.restcomm.media.core.control.mgcp.message.MgcpMessageWriter;
 import org.restcomm.media.core.network.deprecated.channel.MultiplexedNetworkChannel;
 import org.restcomm.media.core.network.deprecated.channel.NetworkGuard;
 
@@ -49,6 +51,14 @@ public class MgcpChannel extends MultiplexedNetworkChannel implements MgcpMessag
 
     private static final Logger log = LogManager.getLogger(MgcpChannel.class);
 
+    // Messages are sent synchronously, so the buffer can be reused by the sending thread
+    private static final ThreadLocal<MgcpMessageWriter> WRITER = new ThreadLocal<MgcpMessageWriter>() {
+        @Override
+        protected MgcpMessageWriter initialValue() {
+            return new MgcpMessageWriter();
+        }
+    };
+
     // Packet Handlers
     private final MgcpPacketHandler mgcpHandler;
 
@@ -109,8 +119,9 @@ public class MgcpChannel extends MultiplexedNetworkChannel implements MgcpMessag
             log.debug("Outgoing MGCP message to " + to.toString() + ":\n\n" + message.toString() + "\n");
         }
 
-        final byte[] data = message.toString().getBytes();
-        send(data, to);
+        final MgcpMessageWriter writer = WRITER.get();
+        final int length = writer.write(message);
+        send(ByteBuffer.wrap(writer.array(), 0, length), to);
     }
 
 }
@@ -22,6 +22,7 @@
 package org.restcomm.media.core.control.mgcp.network.nio;
 
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -88,15 +89,18 @@ public class MgcpPacketHandler implements PacketHandler, MgcpMessageSubject {
     @Override
     public byte[] handle(byte[] packet, int dataLength, int offset, InetSocketAddress localPeer, InetSocketAddress remotePeer)
             throws PacketHandlerException {
+        // Parsed message keeps slices of the data, so copy it out of the (reused) receive buffer
+        final byte[] data = Arrays.copyOfRange(packet, offset, offset + dataLength);
+
         // Get message type based on first byte
-        byte b = packet[0];
+        byte b = data[0];
 
         // Produce message according to type
         MgcpMessage message;
         if (b >= 48 && b <= 57) {
-            message = handleResponse(packet, dataLength, offset, localPeer, remotePeer);
+            message = handleResponse(data, dataLength, 0, localPeer, remotePeer);
         } else {
-            message = handleRequest(packet, dataLength, offset, localPeer, remotePeer);
+            message = handleRequest(data, dataLength, 0, localPeer, remotePeer);
         }
 
         if (log.isDebugEnabled()) {
@@ -0,0 +1,176 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.restcomm.media.core.control.mgcp.message.MgcpResponse;
+import org.restcomm.media.core.scheduler.Clock;
+import org.restcomm.media.core.scheduler.WallClock;
+
+/**
+ * Keeps the responses sent to recent transactions, so retransmitted commands can be answered without being executed again.
+ * <p>
+ * Responses are kept for T-HIST seconds, as defined by RFC3435 section 3.5.
+ * </p>
+ * <p>
+ * Entries are evicted by a hashed timing wheel, with one bucket per tick. The wheel has no timer: it is advanced to the
+ * current tick whenever the cache is accessed, so evicting an entry only costs a visit to its bucket.
+ * </p>
+ * 
+ * @see <a href="https://tools.ietf.org/html/rfc3435#section-3.5">RFC3435 - Section 3.5</a>
+ */
+public class MgcpResponseCache {
+
+    /** Default time responses are kept, in seconds (T-HIST) */
+    public static final int DEFAULT_HISTORY = 30;
+
+    // Core elements
+    private final Clock clock;
+    private final long startTime;
+    private final long tickDuration;
+    private final int history;
+
+    // Cached responses
+    private final ConcurrentHashMap<Integer, Entry> responses;
+
+    // Timing wheel. Only accessed while holding the lock of the cache.
+    private final List<ArrayList<Entry>> wheel;
+    private final int mask;
+    private volatile long tick;
+
+    /**
+     * Creates a new cache.
+     * 
+     * @param clock The clock used to count ticks
+     * @param history The time responses are kept, in ticks
+     * @param tickDuration The duration of a tick
+     * @param unit The time unit of the tick duration
+     */
+    public MgcpResponseCache(Clock clock, int history, long tickDuration, TimeUnit unit) {
+        if (history <= 0 || tickDuration <= 0) {
+            throw new IllegalArgumentException("History and tick duration must be positive");
+        }
+
+        // Core elements
+        this.clock = clock;
+        this.startTime = clock.getTime();
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.history = history;
+
+        // Cached responses
+        this.responses = new ConcurrentHashMap<>(500);
+
+        // Timing wheel. Larger than history, so entries expire within a single turn.
+        final int size = Integer.highestOneBit(history) << 1;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            this.wheel.add(new ArrayList<Entry>());
+        }
+        this.mask = size - 1;
+        this.tick = 0;
+    }
+
+    public MgcpResponseCache(Clock clock) {
+        this(clock, DEFAULT_HISTORY, 1, TimeUnit.SECONDS);
+    }
+
+    public MgcpResponseCache() {
+        this(new WallClock());
+    }
+
+    /**
+     * Caches the response sent to a transaction.
+     * 
+     * @param transactionId The transaction identifier
+     * @param response The response sent to the call agent
+     */
+    public synchronized void put(int transactionId, MgcpResponse response) {
+        advance();
+        final Entry entry = new Entry(transactionId, response, this.tick + this.history);
+        this.responses.put(transactionId, entry);
+        this.wheel.get((int) (entry.expiry & this.mask)).add(entry);
+    }
+
+    /**
+     * Gets the response sent to a recent transaction.
+     * 
+     * @param transactionId The transaction identifier
+     * @return The cached response, or null if none was sent within history
+     */
+    public MgcpResponse get(int transactionId) {
+        final long now = currentTick();
+        if (now > this.tick) {
+            synchronized (this) {
+                advance();
+            }
+        }
+
+        final Entry entry = this.responses.get(transactionId);
+        return (entry == null || entry.expiry <= now) ? null : entry.response;
+    }
+
+    public int size() {
+        return this.responses.size();
+    }
+
+    private long currentTick() {
+        return (this.clock.getTime() - this.startTime) / this.tickDuration;
+    }
+
+    private void advance() {
+        final long now = currentTick();
+        // Every bucket is emptied within a single turn of the wheel
+        long from = Math.max(this.tick + 1, now - this.mask);
+        for (long t = from; t <= now; t++) {
+            final ArrayList<Entry> bucket = this.wheel.get((int) (t & this.mask));
+            final int count = bucket.size();
+            for (int i = 0; i < count; i++) {
+                final Entry entry = bucket.get(i);
+                // Transaction identifier may have been cached again since
+                this.responses.remove(entry.transactionId, entry);
+            }
+            bucket.clear();
+        }
+        if (now > this.tick) {
+            this.tick = now;
+        }
+    }
+
+    private static final class Entry {
+
+        private final int transactionId;
+        private final MgcpResponse response;
+        private final long expiry;
+
+        private Entry(int transactionId, MgcpResponse response, long expiry) {
+            this.transactionId = transactionId;
+            this.response = response;
+            this.expiry = expiry;
+        }
+
+    }
+
+}
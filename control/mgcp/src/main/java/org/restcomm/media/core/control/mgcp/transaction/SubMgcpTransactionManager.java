@@ -29,6 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.control.mgcp.command.MgcpCommand;
+import org.restcomm.media.core.control.mgcp.command.MgcpCommandExecutor;
 import org.restcomm.media.core.control.mgcp.command.MgcpCommandResult;
 import org.restcomm.media.core.control.mgcp.exception.DuplicateMgcpTransactionException;
 import org.restcomm.media.core.control.mgcp.exception.MgcpTransactionNotFoundException;
@@ -41,7 +42,6 @@ import org.restcomm.media.core.control.mgcp.message.MgcpResponse;
 import org.restcomm.media.core.control.mgcp.message.MgcpResponseCode;
 import org.restcomm.media.core.control.mgcp.util.collections.Parameters;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -59,25 +59,20 @@ public class SubMgcpTransactionManager implements MgcpTransactionManager {
     private static final Logger log = LogManager.getLogger(SubMgcpTransactionManager.class);
 
     // Concurrency Components
-    private final ListeningExecutorService executor;
+    private final MgcpCommandExecutor executor;
 
     // MGCP Components
     private final MgcpTransactionNumberspace numberspace;
 
     // MGCP Transaction Manager (per call agent)
     private final ConcurrentHashMap<Integer, MgcpTransaction> transactions;
-    /*
-     * TODO MGCP entities MUST keep in memory a list of the responses that they sent to recent transactions, i.e., a list of all
-     * the responses they sent over the last T-HIST seconds.
-     * 
-     * The transaction identifiers of incoming commands are compared to the transaction identifiers of the recent responses. If
-     * a match is found, the MGCP entity does not execute the transaction, but simply repeats the response.
-     */
+    // Responses sent to remote transactions over the last T-HIST seconds
+    private final MgcpResponseCache responses;
 
     // Observers
     private final Set<MgcpMessageObserver> observers;
 
-    public SubMgcpTransactionManager(MgcpTransactionNumberspace numberspace, ListeningExecutorService executor) {
+    public SubMgcpTransactionManager(MgcpTransactionNumberspace numberspace, MgcpCommandExecutor executor, MgcpResponseCache responses) {
         // Concurrency Components
         this.executor = executor;
 
@@ -86,11 +81,20 @@ public class SubMgcpTransactionManager implements MgcpTransactionManager {
 
         // MGCP Transaction Manager
         this.transactions = new ConcurrentHashMap<>(500);
+        this.responses = responses;
 
         // Observers
         this.observers = Sets.newConcurrentHashSet();
     }
 
+    public SubMgcpTransactionManager(MgcpTransactionNumberspace numberspace, ListeningExecutorService executor, MgcpResponseCache responses) {
+        this(numberspace, new MgcpCommandExecutor(executor), responses);
+    }
+
+    public SubMgcpTransactionManager(MgcpTransactionNumberspace numberspace, ListeningExecutorService executor) {
+        this(numberspace, executor, new MgcpResponseCache());
+    }
+
     private MgcpTransaction createTransaction(MgcpRequest request) throws DuplicateMgcpTransactionException {
         int transactionId = request.getTransactionId();
         final boolean local = (transactionId == 0);
@@ -118,6 +122,16 @@ public class SubMgcpTransactionManager implements MgcpTransactionManager {
             throw new DuplicateMgcpTransactionException("Transaction " + transactionId + " already exists.");
         }
 
+        if (!local) {
+            // Repeat response if transaction was executed recently
+            // Checked after registering, since responses are cached before their transaction is closed
+            MgcpResponse response = this.responses.get(transactionId);
+            if (response != null) {
+                this.transactions.remove(transactionId, transaction);
+                throw new DuplicateMgcpTransactionException("Transaction " + transactionId + " was already executed.", response);
+            }
+        }
+
         return transaction;
     }
 
@@ -136,7 +150,9 @@ public class SubMgcpTransactionManager implements MgcpTransactionManager {
         }
         
         if (command != null) {
-            ListenableFuture<MgcpCommandResult> future = this.executor.submit(command);
+            // Commands for the same endpoint are executed in order, including those touching a second endpoint
+            String secondEndpointId = request.getParameter(MgcpParameterType.SECOND_ENDPOINT);
+            ListenableFuture<MgcpCommandResult> future = this.executor.submit(request.getEndpointId(), secondEndpointId, command);
             Futures.addCallback(future, new MgcpCommandCallback(from, to, request.getTransactionId()));
         }
     }
@@ -144,6 +160,12 @@ public class SubMgcpTransactionManager implements MgcpTransactionManager {
     @Override
     public void process(InetSocketAddress from, InetSocketAddress to, MgcpResponse response, MessageDirection direction) throws MgcpTransactionNotFoundException {
      // TODO check message direction
+        if (MessageDirection.OUTGOING.equals(direction) && this.transactions.containsKey(response.getTransactionId())) {
+            // Keep response in case call agent retransmits the request
+            // Cached before closing the transaction, so retransmissions always find one of them
+            this.responses.put(response.getTransactionId(), response);
+        }
+
         MgcpTransaction transaction = this.transactions.remove(response.getTransactionId());
         if (transaction == null) {
             throw new MgcpTransactionNotFoundException("Could not find transaction " + response.getTransactionId());
@@ -224,14 +246,7 @@ public class SubMgcpTransactionManager implements MgcpTransactionManager {
             
             Parameters<MgcpParameterType> parameters = result.getParameters();
             if(parameters.size() > 0) {
-                Iterator<MgcpParameterType> iterator = parameters.keySet().iterator();
-                while (iterator.hasNext()) {
-                    MgcpParameterType key = iterator.next();
-                    Optional<String> value = parameters.getString(key);
-                    if(value.isPresent()) {
-                        response.addParameter(key, value.get());
-                    }
-                }
+                response.addParameters(parameters);
             }
             
             return response;
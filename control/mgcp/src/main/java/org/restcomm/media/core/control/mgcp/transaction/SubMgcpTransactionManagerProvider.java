@@ -21,6 +21,8 @@
 
 package org.restcomm.media.core.control.mgcp.transaction;
 
+import org.restcomm.media.core.control.mgcp.command.MgcpCommandExecutor;
+
 import com.google.common.util.concurrent.ListeningExecutorService;
 
 /**
@@ -30,16 +32,21 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 public class SubMgcpTransactionManagerProvider implements MgcpTransactionManagerProvider {
 
     private final MgcpTransactionNumberspace numberspace;
-    private final ListeningExecutorService executor;
+    // Shared among call agents, so commands for an endpoint are serialized regardless of their origin
+    private final MgcpCommandExecutor executor;
 
     public SubMgcpTransactionManagerProvider(MgcpTransactionNumberspace numberspace, ListeningExecutorService executor) {
         this.numberspace = numberspace;
-        this.executor = executor;
+        this.executor = new MgcpCommandExecutor(executor);
+    }
+
+    public MgcpCommandExecutor getCommandExecutor() {
+        return executor;
     }
 
     @Override
     public MgcpTransactionManager provide() {
-        return new SubMgcpTransactionManager(this.numberspace, this.executor);
+        return new SubMgcpTransactionManager(this.numberspace, this.executor, new MgcpResponseCache());
     }
 
 }
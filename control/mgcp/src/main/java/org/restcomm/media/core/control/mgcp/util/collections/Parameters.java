@@ -59,6 +59,19 @@ public class Parameters<K> implements Cloneable {
         this.parameters.put(key, value);
     }
 
+    /**
+     * Copies every parameter of another collection that has a value.
+     * 
+     * @param other The parameters to be copied
+     */
+    public void putAll(Parameters<K> other) {
+        for (Map.Entry<K, String> entry : other.parameters.entrySet()) {
+            if (entry.getValue() != null) {
+                this.parameters.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     public String remove(K key) {
         return this.parameters.remove(key);
     }
@@ -73,6 +73,7 @@ public class DeleteConnectionCommandTest {
         when(endpointManager.getEndpoint("mobicents/bridge/1@127.0.0.1:2427")).thenReturn(bridgeEndpoint);
         when(bridgeEndpoint.deleteConnection(1, 1)).thenReturn(connection);
         when(connection.getIdentifier()).thenReturn(1);
+        when(connection.getConnectionParameters()).thenReturn("PS=10, OS=1600, PR=10, OR=1600, JI=2");
 
         MgcpCommandResult result = dlcx.call();
 
@@ -84,7 +85,7 @@ public class DeleteConnectionCommandTest {
         assertNotNull(result.getParameters().getString(MgcpParameterType.CONNECTION_PARAMETERS).orNull());
         
         Parameters<MgcpParameterType> parameters = result.getParameters();
-        assertTrue(parameters.getString(MgcpParameterType.CONNECTION_PARAMETERS).isPresent());
+        assertEquals("PS=10, OS=1600, PR=10, OR=1600, JI=2", parameters.getString(MgcpParameterType.CONNECTION_PARAMETERS).get());
         assertEquals(1, parameters.size());
     }
 
@@ -0,0 +1,357 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restcomm.media.core.control.mgcp.message.MgcpParameterType;
+import org.restcomm.media.core.control.mgcp.util.collections.Parameters;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class MgcpCommandExecutorTest {
+
+    private static final String ENDPOINT_1 = "mobicents/bridge/1@127.0.0.1:2427";
+    private static final String ENDPOINT_2 = "mobicents/bridge/2@127.0.0.1:2427";
+
+    private ListeningExecutorService threadPool;
+
+    @Before
+    public void before() {
+        this.threadPool = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+    }
+
+    @After
+    public void after() {
+        this.threadPool.shutdownNow();
+    }
+
+    @Test
+    public void testCommandsOfSameEndpointRunInOrder() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        final List<Integer> executed = new ArrayList<>();
+        final AtomicBoolean running = new AtomicBoolean(false);
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final List<ListenableFuture<MgcpCommandResult>> futures = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 200; i++) {
+            final int transactionId = i;
+            futures.add(executor.submit(ENDPOINT_1, new MgcpCommand() {
+
+                @Override
+                public MgcpCommandResult call() {
+                    if (!running.compareAndSet(false, true)) {
+                        overlapped.set(true);
+                    }
+                    executed.add(transactionId);
+                    running.set(false);
+                    return result(transactionId);
+                }
+
+            }));
+        }
+        for (ListenableFuture<MgcpCommandResult> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        // then
+        assertFalse(overlapped.get());
+        assertEquals(200, executed.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(Integer.valueOf(i), executed.get(i));
+        }
+        awaitIdle(executor, ENDPOINT_1);
+    }
+
+    @Test
+    public void testCommandsOfDifferentEndpointsRunInParallel() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        final CountDownLatch secondExecuted = new CountDownLatch(1);
+
+        // when - first command waits for a command of another endpoint
+        final ListenableFuture<MgcpCommandResult> first = executor.submit(ENDPOINT_1, new MgcpCommand() {
+
+            @Override
+            public MgcpCommandResult call() throws Exception {
+                assertTrue(secondExecuted.await(5, TimeUnit.SECONDS));
+                return result(1);
+            }
+
+        });
+        final ListenableFuture<MgcpCommandResult> second = executor.submit(ENDPOINT_2, new MgcpCommand() {
+
+            @Override
+            public MgcpCommandResult call() {
+                secondExecuted.countDown();
+                return result(2);
+            }
+
+        });
+
+        // then
+        assertEquals(2, second.get(5, TimeUnit.SECONDS).getTransactionId());
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getTransactionId());
+    }
+
+    @Test
+    public void testQueueDepth() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // when - first command blocks the mailbox
+        executor.submit(ENDPOINT_1, new MgcpCommand() {
+
+            @Override
+            public MgcpCommandResult call() throws Exception {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return result(1);
+            }
+
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(ENDPOINT_1, new ResultCommand(2));
+        final ListenableFuture<MgcpCommandResult> last = executor.submit(ENDPOINT_1, new ResultCommand(3));
+
+        // then
+        assertEquals(3, executor.getQueueDepth(ENDPOINT_1));
+        assertEquals(Integer.valueOf(3), executor.getQueueDepths().get(ENDPOINT_1));
+        assertEquals(0, executor.getQueueDepth(ENDPOINT_2));
+
+        // when
+        release.countDown();
+        last.get(5, TimeUnit.SECONDS);
+
+        // then
+        awaitIdle(executor, ENDPOINT_1);
+        assertTrue(executor.getQueueDepths().isEmpty());
+        assertEquals(3, executor.getMaxQueueDepth());
+    }
+
+    @Test
+    public void testEndpointNamesAreCaseInsensitive() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // when - command blocks the mailbox of the endpoint
+        executor.submit(ENDPOINT_1, new BlockingCommand(1, started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        final ListenableFuture<MgcpCommandResult> second = executor.submit(ENDPOINT_1.toUpperCase(), new ResultCommand(2));
+
+        // then
+        assertEquals(2, executor.getQueueDepth(ENDPOINT_1));
+        assertEquals(2, executor.getQueueDepth(ENDPOINT_1.toUpperCase()));
+        assertFalse(second.isDone());
+
+        // when
+        release.countDown();
+
+        // then
+        assertEquals(2, second.get(5, TimeUnit.SECONDS).getTransactionId());
+        awaitIdle(executor, ENDPOINT_1);
+    }
+
+    @Test
+    public void testCommandsWithSecondEndpointRunInOrderOfBothEndpoints() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> executed = new CopyOnWriteArrayList<>();
+
+        // when - second endpoint is busy
+        executor.submit(ENDPOINT_2, new BlockingCommand(1, started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        final ListenableFuture<MgcpCommandResult> joint = executor.submit(ENDPOINT_1, ENDPOINT_2, new RecordingCommand(2, executed));
+        final ListenableFuture<MgcpCommandResult> first = executor.submit(ENDPOINT_1, new RecordingCommand(3, executed));
+        final ListenableFuture<MgcpCommandResult> second = executor.submit(ENDPOINT_2, new RecordingCommand(4, executed));
+
+        // then - both endpoints wait for the command
+        assertEquals(2, executor.getQueueDepth(ENDPOINT_1));
+        assertEquals(3, executor.getQueueDepth(ENDPOINT_2));
+        assertFalse(joint.isDone());
+        assertFalse(first.isDone());
+
+        // when
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        // then
+        assertTrue(joint.isDone());
+        assertEquals(Integer.valueOf(2), executed.get(0));
+        assertEquals(3, executed.size());
+        awaitIdle(executor, ENDPOINT_1);
+        awaitIdle(executor, ENDPOINT_2);
+    }
+
+    @Test
+    public void testWildcardAllCommandsRunInOrderOfMatchingEndpoints() throws Exception {
+        // given
+        final String wildcard = "mobicents/bridge/*@127.0.0.1:2427";
+        final String other = "mobicents/ivr/1@127.0.0.1:2427";
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> executed = new CopyOnWriteArrayList<>();
+
+        // when - one matching endpoint is busy
+        executor.submit(ENDPOINT_1, new BlockingCommand(1, started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        final ListenableFuture<MgcpCommandResult> all = executor.submit(wildcard, new RecordingCommand(2, executed));
+        final ListenableFuture<MgcpCommandResult> matching = executor.submit(ENDPOINT_2, new RecordingCommand(3, executed));
+        final ListenableFuture<MgcpCommandResult> unrelated = executor.submit(other, new RecordingCommand(4, executed));
+
+        // then - unrelated endpoint runs, matching endpoint waits for the wildcard command
+        assertEquals(4, unrelated.get(5, TimeUnit.SECONDS).getTransactionId());
+        assertFalse(all.isDone());
+        assertFalse(matching.isDone());
+        assertEquals(2, executor.getQueueDepth(wildcard));
+
+        // when
+        release.countDown();
+        matching.get(5, TimeUnit.SECONDS);
+
+        // then
+        assertTrue(all.isDone());
+        assertEquals(Integer.valueOf(2), executed.get(1));
+        assertEquals(Integer.valueOf(3), executed.get(2));
+        awaitIdle(executor, ENDPOINT_1);
+        awaitIdle(executor, wildcard);
+    }
+
+    @Test
+    public void testWildcardCommandsAreNotSerialized() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+
+        // when
+        final ListenableFuture<MgcpCommandResult> future = executor.submit("mobicents/bridge/$@127.0.0.1:2427", new ResultCommand(1));
+
+        // then
+        assertEquals(1, future.get(5, TimeUnit.SECONDS).getTransactionId());
+        assertEquals(0, executor.getMaxQueueDepth());
+    }
+
+    @Test
+    public void testCommandsCancelledWhenExecutorIsShutdown() throws Exception {
+        // given
+        final MgcpCommandExecutor executor = new MgcpCommandExecutor(threadPool);
+        threadPool.shutdown();
+
+        // when
+        final ListenableFuture<MgcpCommandResult> future = executor.submit(ENDPOINT_1, new ResultCommand(1));
+
+        // then
+        assertTrue(future.isCancelled());
+        assertEquals(0, executor.getQueueDepth(ENDPOINT_1));
+    }
+
+    private static void awaitIdle(MgcpCommandExecutor executor, String endpointId) throws InterruptedException {
+        // Future completes right before the mailbox counts the command as done
+        for (int i = 0; i < 500 && executor.getQueueDepth(endpointId) > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getQueueDepth(endpointId));
+    }
+
+    private static MgcpCommandResult result(int transactionId) {
+        return new MgcpCommandResult(transactionId, 200, "OK", new Parameters<MgcpParameterType>());
+    }
+
+    private static final class BlockingCommand implements MgcpCommand {
+
+        private final int transactionId;
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        private BlockingCommand(int transactionId, CountDownLatch started, CountDownLatch release) {
+            this.transactionId = transactionId;
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public MgcpCommandResult call() throws Exception {
+            this.started.countDown();
+            this.release.await(5, TimeUnit.SECONDS);
+            return result(this.transactionId);
+        }
+
+    }
+
+    private static final class RecordingCommand implements MgcpCommand {
+
+        private final int transactionId;
+        private final List<Integer> executed;
+
+        private RecordingCommand(int transactionId, List<Integer> executed) {
+            this.transactionId = transactionId;
+            this.executed = executed;
+        }
+
+        @Override
+        public MgcpCommandResult call() {
+            this.executed.add(this.transactionId);
+            return result(this.transactionId);
+        }
+
+    }
+
+    private static final class ResultCommand implements MgcpCommand {
+
+        private final int transactionId;
+
+        private ResultCommand(int transactionId) {
+            this.transactionId = transactionId;
+        }
+
+        @Override
+        public MgcpCommandResult call() {
+            return result(this.transactionId);
+        }
+
+    }
+
+}
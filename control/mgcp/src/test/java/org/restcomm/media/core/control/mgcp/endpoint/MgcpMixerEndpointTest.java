@@ -79,4 +79,77 @@ public class MgcpMixerEndpointTest {
         verify(outbandMixer, times(2)).release(any(OOBComponent.class));
     }
 
+    @Test
+    public void testRelayBetweenTwoRemoteConnections() throws MgcpCallNotFoundException, MgcpConnectionNotFoundException {
+        // given
+        final int callId = 1;
+        final MgcpRemoteConnection connection1 = mock(MgcpRemoteConnection.class);
+        final MgcpRemoteConnection connection2 = mock(MgcpRemoteConnection.class);
+        final MgcpRemoteConnection connection3 = mock(MgcpRemoteConnection.class);
+        final AudioMixer inbandMixer = mock(AudioMixer.class);
+        final OOBMixer outbandMixer = mock(OOBMixer.class);
+        final MgcpConnectionProvider connections = mock(MgcpConnectionProvider.class);
+        final MediaGroup mediaGroup = mock(MediaGroupImpl.class);
+        final EndpointIdentifier endpointId = new EndpointIdentifier("mobicents/bridge/1", "127.0.0.1:2427");
+        final MgcpMixerEndpoint endpoint = new MgcpMixerEndpoint(endpointId, inbandMixer, outbandMixer, connections, mediaGroup);
+
+        when(connections.provideRemote(callId)).thenReturn(connection1, connection2, connection3);
+        when(connection1.getIdentifier()).thenReturn(1);
+        when(connection1.getCallIdentifier()).thenReturn(callId);
+        when(connection2.getIdentifier()).thenReturn(2);
+        when(connection2.getCallIdentifier()).thenReturn(callId);
+        when(connection3.getIdentifier()).thenReturn(3);
+        when(connection3.getCallIdentifier()).thenReturn(callId);
+
+        // when - bridge two remote connections
+        endpoint.createConnection(callId, false);
+        endpoint.createConnection(callId, false);
+
+        // then
+        verify(connection1).relay(connection2);
+
+        // when - third connection joins the endpoint
+        endpoint.createConnection(callId, false);
+
+        // then
+        verify(connection1).stopRelay();
+        verify(connection2).stopRelay();
+        verify(connection3, never()).relay(any(MgcpRemoteConnection.class));
+
+        // when - third connection leaves the endpoint
+        endpoint.deleteConnection(callId, 3);
+
+        // then
+        verify(connection1, times(2)).relay(connection2);
+    }
+
+    @Test
+    public void testRelayDisabled() {
+        // given
+        final int callId = 1;
+        final MgcpRemoteConnection connection1 = mock(MgcpRemoteConnection.class);
+        final MgcpRemoteConnection connection2 = mock(MgcpRemoteConnection.class);
+        final AudioMixer inbandMixer = mock(AudioMixer.class);
+        final OOBMixer outbandMixer = mock(OOBMixer.class);
+        final MgcpConnectionProvider connections = mock(MgcpConnectionProvider.class);
+        final MediaGroup mediaGroup = mock(MediaGroupImpl.class);
+        final EndpointIdentifier endpointId = new EndpointIdentifier("mobicents/bridge/1", "127.0.0.1:2427");
+        final MgcpMixerEndpoint endpoint = new MgcpMixerEndpoint(endpointId, inbandMixer, outbandMixer, connections, mediaGroup);
+        endpoint.setRelayEnabled(false);
+
+        when(connections.provideRemote(callId)).thenReturn(connection1, connection2);
+        when(connection1.getIdentifier()).thenReturn(1);
+        when(connection1.getCallIdentifier()).thenReturn(callId);
+        when(connection2.getIdentifier()).thenReturn(2);
+        when(connection2.getCallIdentifier()).thenReturn(callId);
+
+        // when
+        endpoint.createConnection(callId, false);
+        endpoint.createConnection(callId, false);
+
+        // then
+        verify(connection1, never()).relay(any(MgcpRemoteConnection.class));
+        verify(connection2, never()).relay(any(MgcpRemoteConnection.class));
+    }
+
 }
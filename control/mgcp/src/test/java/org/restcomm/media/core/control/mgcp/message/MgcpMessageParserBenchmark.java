@@ -0,0 +1,124 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.message;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the cost of parsing typical MGCP commands:
+ * <ul>
+ * <li><b>parse</b> - message is parsed, parameters are kept as slices of the datagram.</li>
+ * <li><b>read</b> - message is parsed and every parameter is read, as done by the command that handles it.</li>
+ * </ul>
+ * <p>
+ * Not part of the regular test suite. Run with: <code>java MgcpMessageParserBenchmark [messages]</code>
+ * </p>
+ */
+public class MgcpMessageParserBenchmark {
+
+    private static final String CRLF = "\r\n";
+
+    private static final String[] CORPUS = {
+            "CRCX 147483655 mobicents/bridge/$@127.0.0.1:2427 MGCP 1.0" + CRLF
+            + "C:1" + CRLF
+            + "M:sendrecv" + CRLF
+            + "N:restcomm@127.0.0.1:2727" + CRLF
+            + "L:webrtc:false" + CRLF
+            + CRLF
+            + "v=0" + CRLF
+            + "o=hrosa 3616 1899 IN IP4 127.0.0.1" + CRLF
+            + "s=Talk" + CRLF
+            + "c=IN IP4 127.0.0.1" + CRLF
+            + "t=0 0" + CRLF
+            + "m=audio 7070 RTP/AVP 8 0 101" + CRLF
+            + "a=rtpmap:101 telephone-event/8000" + CRLF,
+            "MDCX 147483656 mobicents/bridge/1@127.0.0.1:2427 MGCP 1.0" + CRLF
+            + "C:1" + CRLF
+            + "I:1f" + CRLF
+            + "M:sendrecv" + CRLF,
+            "RQNT 147483657 mobicents/ivr/1@127.0.0.1:2427 MGCP 1.0" + CRLF
+            + "N:restcomm@127.0.0.1:2727" + CRLF
+            + "X:1" + CRLF
+            + "S:AU/pa(an=http://127.0.0.1:8080/restcomm/audio/demo-prompt.wav it=1)" + CRLF
+            + "R:AU/oc(N),AU/of(N)" + CRLF,
+            "NTFY 147483658 mobicents/ivr/1@127.0.0.1:2427 MGCP 1.0" + CRLF
+            + "N:restcomm@127.0.0.1:2727" + CRLF
+            + "X:1" + CRLF
+            + "O:AU/oc(rc=100)" + CRLF };
+
+    private static int sink;
+
+    public static void main(String[] args) throws Exception {
+        final int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+        final byte[][] datagrams = new byte[CORPUS.length][];
+        for (int i = 0; i < CORPUS.length; i++) {
+            datagrams[i] = CORPUS[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        final MgcpMessageParser parser = new MgcpMessageParser();
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + round);
+            run("parse", parser, datagrams, messages, false);
+            run("read", parser, datagrams, messages, true);
+        }
+        System.out.println(sink);
+    }
+
+    private static void run(String name, MgcpMessageParser parser, byte[][] datagrams, int messages, boolean read)
+            throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        final MgcpParameterType[] types = MgcpParameterType.values();
+
+        final long allocatedBefore = allocatedBytes(threads, thread);
+        final long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            final byte[] datagram = datagrams[i % datagrams.length];
+            final MgcpRequest request = parser.parseRequest(datagram, 0, datagram.length);
+            sink += request.getTransactionId();
+            if (read) {
+                for (MgcpParameterType type : types) {
+                    final String value = request.getParameter(type);
+                    if (value != null) {
+                        sink += value.length();
+                    }
+                }
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes(threads, thread) - allocatedBefore;
+
+        System.out.println(String.format("  %-6s %8.1f ns/message %8.1f bytes/message", name, (double) elapsed / messages,
+                allocated < 0 ? Double.NaN : (double) allocated / messages));
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads, long thread) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread);
+        }
+        return -1L;
+    }
+
+}
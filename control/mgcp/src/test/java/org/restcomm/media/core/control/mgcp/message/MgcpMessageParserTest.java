@@ -23,6 +23,9 @@ package org.restcomm.media.core.control.mgcp.message;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Test;
 import org.restcomm.media.core.control.mgcp.exception.MgcpParseException;
 import org.restcomm.media.core.control.mgcp.message.MgcpMessageParser;
@@ -254,4 +257,105 @@ public class MgcpMessageParserTest {
         assertEquals(builderSdp.toString(), response.getParameter(MgcpParameterType.SDP));
     }
 
+    @Test
+    public void testParseRequestWithCrlfLineEndings() throws MgcpParseException {
+        // given
+        StringBuilder builder = new StringBuilder();
+        builder.append("MDCX 147483656 mobicents/bridge/1@127.0.0.1:2427 MGCP 1.0").append("\r\n");
+        builder.append("C:1").append("\r\n");
+        builder.append("I:1f").append("\r\n");
+        builder.append("M:recvonly").append("\r\n");
+        builder.append("\r\n");
+        builder.append("v=0").append("\r\n");
+        builder.append("c=IN IP4 127.0.0.1").append("\r\n");
+        MgcpMessageParser parser = new MgcpMessageParser();
+
+        // when
+        MgcpRequest request = parser.parseRequest(builder.toString());
+
+        // then
+        assertEquals(MgcpRequestType.MDCX, request.getRequestType());
+        assertEquals(147483656, request.getTransactionId());
+        assertEquals("mobicents/bridge/1@127.0.0.1:2427", request.getEndpointId());
+        assertEquals("1", request.getParameter(MgcpParameterType.CALL_ID));
+        assertEquals("1f", request.getParameter(MgcpParameterType.CONNECTION_ID));
+        assertEquals("recvonly", request.getParameter(MgcpParameterType.MODE));
+        assertEquals("v=0\r\nc=IN IP4 127.0.0.1", request.getParameter(MgcpParameterType.SDP));
+    }
+
+    @Test
+    public void testParseRequestFromOffsetIgnoringUnknownParameters() throws MgcpParseException {
+        // given
+        StringBuilder builder = new StringBuilder();
+        builder.append("junk");
+        builder.append("dlcx 147483657 mobicents/bridge/1@127.0.0.1:2427 MGCP 1.0").append("\n");
+        builder.append("c:1").append("\n");
+        builder.append("X-Custom: value").append("\n");
+        builder.append("i:1f");
+        final byte[] data = builder.toString().getBytes();
+        MgcpMessageParser parser = new MgcpMessageParser();
+
+        // when
+        MgcpRequest request = parser.parseRequest(data, 4, data.length - 4);
+
+        // then
+        assertEquals(MgcpRequestType.DLCX, request.getRequestType());
+        assertEquals(147483657, request.getTransactionId());
+        assertEquals("1", request.getParameter(MgcpParameterType.CALL_ID));
+        assertEquals("1f", request.getParameter(MgcpParameterType.CONNECTION_ID));
+        assertEquals(3, request.getParameters().size());
+        assertFalse(request.isSdpDetected());
+    }
+
+    @Test
+    public void testConcurrentReadsOfParsedRequest() throws Exception {
+        // given
+        final MgcpMessageParser parser = new MgcpMessageParser();
+        final MgcpRequest request = parser.parseRequest("MDCX 147483658 mobicents/bridge/1@127.0.0.1:2427 MGCP 1.0\nC:1\nI:1f\nM:recvonly\n\nv=0");
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger(0);
+        final Thread[] threads = new Thread[threadCount];
+
+        // when - every thread materializes the parameters at once
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        if (!"1f".equals(request.getParameter(MgcpParameterType.CONNECTION_ID))
+                                || !"v=0".equals(request.getParameter(MgcpParameterType.SDP))
+                                || request.getParameters().size() != 5) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        // then
+        assertEquals(0, failures.get());
+        assertEquals("recvonly", request.getParameter(MgcpParameterType.MODE));
+        assertTrue(request.toString().contains("I:1f"));
+    }
+
+    @Test(expected = MgcpParseException.class)
+    public void testParseRequestWithInvalidTransactionId() throws MgcpParseException {
+        // given
+        MgcpMessageParser parser = new MgcpMessageParser();
+
+        // when
+        parser.parseRequest("CRCX 12ab mobicents/bridge/$@127.0.0.1:2427 MGCP 1.0\nC:1");
+    }
+
 }
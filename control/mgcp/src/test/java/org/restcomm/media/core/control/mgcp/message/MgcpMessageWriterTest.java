@@ -0,0 +1,142 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.message;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class MgcpMessageWriterTest {
+
+    private static final String SDP = "v=0" + System.lineSeparator() + "o=- 1461941902737 1 IN IP4 127.0.0.1"
+            + System.lineSeparator() + "s=Mobicents Media Server" + System.lineSeparator() + "c=IN IP4 127.0.0.1"
+            + System.lineSeparator() + "t=0 0" + System.lineSeparator() + "m=audio 65534 RTP/AVP 8 0 101";
+
+    private static String written(MgcpMessageWriter writer, MgcpMessage message) {
+        final int length = writer.write(message);
+        return new String(writer.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWriteResponseWithSdp() {
+        // given
+        MgcpResponse response = new MgcpResponse();
+        response.setCode(MgcpResponseCode.TRANSACTION_WAS_EXECUTED.code());
+        response.setMessage(MgcpResponseCode.TRANSACTION_WAS_EXECUTED.message());
+        response.setTransactionId(147483655);
+        response.addParameter(MgcpParameterType.CONNECTION_ID, "1f");
+        response.addParameter(MgcpParameterType.ENDPOINT_ID, "mobicents/bridge/1@127.0.0.1:2427");
+        response.addParameter(MgcpParameterType.SDP, SDP);
+        MgcpMessageWriter writer = new MgcpMessageWriter();
+
+        // when
+        String encoded = written(writer, response);
+
+        // then
+        assertEquals(response.toString(), encoded);
+    }
+
+    @Test
+    public void testWriteNotifyRequest() {
+        // given
+        MgcpRequest request = new MgcpRequest();
+        request.setRequestType(MgcpRequestType.NTFY);
+        request.setTransactionId(7);
+        request.setEndpointId("mobicents/ivr/1@127.0.0.1:2427");
+        request.addParameter(MgcpParameterType.NOTIFIED_ENTITY, "restcomm@127.0.0.1:2727");
+        request.addParameter(MgcpParameterType.REQUEST_ID, "1");
+        request.addParameter(MgcpParameterType.OBSERVED_EVENT, "AU/oc(rc=100)");
+        MgcpMessageWriter writer = new MgcpMessageWriter();
+
+        // when
+        String encoded = written(writer, request);
+
+        // then
+        assertEquals(request.toString(), encoded);
+    }
+
+    @Test
+    public void testWriteParsedMessageAndGrowBuffer() throws Exception {
+        // given - parsed parameters are slices of the datagram
+        StringBuilder builder = new StringBuilder();
+        builder.append("200 147483655 Successful Transaction").append(System.lineSeparator());
+        builder.append("I:20").append(System.lineSeparator());
+        builder.append("Z:mobicents/bridge/1@127.0.0.1:2427").append(System.lineSeparator());
+        builder.append(System.lineSeparator());
+        builder.append(SDP);
+        MgcpResponse response = new MgcpMessageParser().parseResponse(builder.toString());
+        MgcpMessageWriter writer = new MgcpMessageWriter(64);
+
+        // when
+        String encoded = written(writer, response);
+
+        // then
+        assertEquals(response.toString(), encoded);
+
+        // when - buffer is reused by the next message
+        MgcpResponse provisional = new MgcpResponse();
+        provisional.setCode(MgcpResponseCode.TRANSACTION_BEING_EXECUTED.code());
+        provisional.setMessage("Non-ASCII \u00e7");
+        provisional.setTransactionId(1);
+
+        // then
+        assertEquals("100 1 Non-ASCII \u00e7", written(writer, provisional));
+    }
+
+    @Test
+    public void testWriteWhileParametersChange() throws Exception {
+        // given
+        final MgcpRequest request = new MgcpRequest();
+        request.setRequestType(MgcpRequestType.NTFY);
+        request.setTransactionId(7);
+        request.setEndpointId("mobicents/ivr/1@127.0.0.1:2427");
+        request.addParameter(MgcpParameterType.REQUEST_ID, "1");
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread mutator = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (running.get()) {
+                    request.addParameter(MgcpParameterType.OBSERVED_EVENT, "AU/oc(rc=100)");
+                    request.removeParameter(MgcpParameterType.OBSERVED_EVENT);
+                }
+            }
+        });
+        MgcpMessageWriter writer = new MgcpMessageWriter();
+
+        // when
+        mutator.start();
+        try {
+            for (int i = 0; i < 10000; i++) {
+                // then - no ConcurrentModificationException while iterating parameters
+                written(writer, request);
+            }
+        } finally {
+            running.set(false);
+            mutator.join();
+        }
+    }
+
+}
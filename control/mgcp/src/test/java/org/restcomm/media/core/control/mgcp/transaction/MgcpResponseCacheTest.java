@@ -0,0 +1,145 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.control.mgcp.transaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restcomm.media.core.control.mgcp.message.MgcpResponse;
+import org.restcomm.media.core.scheduler.Clock;
+
+public class MgcpResponseCacheTest {
+
+    private ManualClock clock;
+    private MgcpResponseCache cache;
+
+    @Before
+    public void before() {
+        this.clock = new ManualClock();
+        this.cache = new MgcpResponseCache(clock);
+    }
+
+    private static MgcpResponse response(int transactionId) {
+        final MgcpResponse response = new MgcpResponse();
+        response.setTransactionId(transactionId);
+        response.setCode(200);
+        return response;
+    }
+
+    @Test
+    public void testResponseKeptForHistory() {
+        // given
+        final MgcpResponse response = response(1);
+
+        // when
+        cache.put(1, response);
+        clock.advance(29, TimeUnit.SECONDS);
+
+        // then
+        assertSame(response, cache.get(1));
+        assertNull(cache.get(2));
+
+        // when
+        clock.advance(1, TimeUnit.SECONDS);
+
+        // then
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictionAfterLongIdlePeriod() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, response(i));
+            clock.advance(100, TimeUnit.MILLISECONDS);
+        }
+
+        // when - wheel is not accessed for several turns
+        clock.advance(10, TimeUnit.MINUTES);
+        final MgcpResponse response = response(500);
+        cache.put(500, response);
+
+        // then
+        assertEquals(1, cache.size());
+        assertSame(response, cache.get(500));
+    }
+
+    @Test
+    public void testTransactionIdReused() {
+        // given
+        final MgcpResponse first = response(1);
+        final MgcpResponse second = response(1);
+
+        // when - identifier is cached again before first entry expires
+        cache.put(1, first);
+        clock.advance(20, TimeUnit.SECONDS);
+        cache.put(1, second);
+        clock.advance(15, TimeUnit.SECONDS);
+
+        // then - expiry of the first entry does not evict the second
+        assertSame(second, cache.get(1));
+
+        // when
+        clock.advance(15, TimeUnit.SECONDS);
+
+        // then
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+
+    private static final class ManualClock implements Clock {
+
+        private long time = 0;
+
+        void advance(long duration, TimeUnit unit) {
+            this.time += unit.toNanos(duration);
+        }
+
+        @Override
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return TimeUnit.NANOSECONDS.toMillis(time);
+        }
+
+        @Override
+        public long getTime(TimeUnit timeUnit) {
+            return timeUnit.convert(time, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public TimeUnit getTimeUnit() {
+            return TimeUnit.NANOSECONDS;
+        }
+
+    }
+
+}
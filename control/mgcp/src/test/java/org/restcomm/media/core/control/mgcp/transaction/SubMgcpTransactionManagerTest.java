@@ -27,6 +27,9 @@ import static org.mockito.Mockito.*;
 import java.net.InetSocketAddress;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.mockito.internal.util.reflection.Whitebox;
@@ -291,4 +294,105 @@ public class SubMgcpTransactionManagerTest {
         assertTrue(transactions.isEmpty());
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testProcessRetransmissionOfExecutedTransaction() throws DuplicateMgcpTransactionException, MgcpTransactionNotFoundException {
+        // given
+        final int transactionId = 147483653;
+        final InetSocketAddress local = new InetSocketAddress("127.0.0.1", 2427);
+        final InetSocketAddress remote = new InetSocketAddress("127.0.0.1", 2727);
+        final MgcpRequest request = mock(MgcpRequest.class);
+        final MgcpResponse response = mock(MgcpResponse.class);
+        final MgcpCommand command = mock(MgcpCommand.class);
+        final MgcpTransactionNumberspace numberspace = mock(MgcpTransactionNumberspace.class);
+        final ListeningExecutorService executor = mock(ListeningExecutorService.class);
+        final SubMgcpTransactionManager txManager = new SubMgcpTransactionManager(numberspace, executor);
+
+        // when - transaction is executed
+        when(executor.submit(command)).thenReturn(mock(ListenableFuture.class));
+        when(request.getTransactionId()).thenReturn(transactionId);
+        when(response.getTransactionId()).thenReturn(transactionId);
+
+        txManager.process(remote, local, request, command, MessageDirection.INCOMING);
+        txManager.process(local, remote, response, MessageDirection.OUTGOING);
+
+        // when - call agent retransmits request
+        try {
+            txManager.process(remote, local, request, command, MessageDirection.INCOMING);
+            fail("Retransmission should be reported as duplicate");
+        } catch (DuplicateMgcpTransactionException e) {
+            // then - response is repeated and command is not executed again
+            assertSame(response, e.getResponse());
+            assertFalse(txManager.contains(transactionId));
+            verify(executor, times(1)).submit(command);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRetransmissionRacingResponseDoesNotExecuteTwice() throws Exception {
+        // given
+        final int transactionId = 147483654;
+        final InetSocketAddress local = new InetSocketAddress("127.0.0.1", 2427);
+        final InetSocketAddress remote = new InetSocketAddress("127.0.0.1", 2727);
+        final MgcpRequest request = mock(MgcpRequest.class);
+        final MgcpResponse response = mock(MgcpResponse.class);
+        final MgcpCommand command = mock(MgcpCommand.class);
+        final MgcpTransactionNumberspace numberspace = mock(MgcpTransactionNumberspace.class);
+        final ListeningExecutorService executor = mock(ListeningExecutorService.class);
+        final CountDownLatch lookingUp = new CountDownLatch(1);
+        final CountDownLatch responded = new CountDownLatch(1);
+        final MgcpResponseCache responses = new MgcpResponseCache() {
+
+            @Override
+            public MgcpResponse get(int id) {
+                // Suspend the retransmission between the cache lookup and whatever follows it
+                MgcpResponse cached = super.get(id);
+                lookingUp.countDown();
+                try {
+                    responded.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return cached;
+            }
+
+        };
+        final SubMgcpTransactionManager txManager = new SubMgcpTransactionManager(numberspace, executor, responses);
+        final AtomicReference<Throwable> outcome = new AtomicReference<>();
+
+        when(executor.submit(command)).thenReturn(mock(ListenableFuture.class));
+        when(request.getTransactionId()).thenReturn(transactionId);
+        when(response.getTransactionId()).thenReturn(transactionId);
+
+        // when - transaction is executed
+        txManager.process(remote, local, request, command, MessageDirection.INCOMING);
+
+        // when - call agent retransmits request while the response is being sent
+        Thread retransmission = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    txManager.process(remote, local, request, command, MessageDirection.INCOMING);
+                } catch (Throwable e) {
+                    outcome.set(e);
+                }
+            }
+
+        });
+        retransmission.start();
+        retransmission.join(500);
+        lookingUp.await(500, TimeUnit.MILLISECONDS);
+
+        txManager.process(local, remote, response, MessageDirection.OUTGOING);
+        responded.countDown();
+        retransmission.join(5000);
+
+        // then - retransmission is reported as duplicate and command is executed only once
+        assertTrue(outcome.get() instanceof DuplicateMgcpTransactionException);
+        assertFalse(txManager.contains(transactionId));
+        verify(executor, times(1)).submit(command);
+    }
+
 }
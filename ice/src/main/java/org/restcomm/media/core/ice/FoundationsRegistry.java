@@ -24,8 +24,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Registry that keeps records of generated foundations for the lifetime of an
- * ICE agent.
+ * Registry that keeps records of generated foundations for the lifetime of the
+ * ICE agents that share it.
  * 
  * @author Henrique Rosa
  * @see <a href="http://tools.ietf.org/html/rfc5245#section-4">RFC5245</a>
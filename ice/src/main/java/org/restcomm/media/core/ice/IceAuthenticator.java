@@ -35,7 +35,8 @@ public interface IceAuthenticator {
 	 *            the fragment of the local user
 	 * @return The password of the specified user.<br>
 	 *         If the user has no password associated, returns an empty key.<br>
-	 *         If the user does not exist, returns null.
+	 *         If the user does not exist, returns null.<br>
+	 *         The key may be shared with the authenticator and must be treated as read-only.
 	 */
 	public byte[] getLocalKey(String ufrag);
 
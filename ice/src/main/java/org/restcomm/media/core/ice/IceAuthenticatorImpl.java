@@ -21,7 +21,6 @@
 
 package org.restcomm.media.core.ice;
 
-import java.math.BigInteger;
 import java.security.SecureRandom;
 
 /**
@@ -30,23 +29,42 @@ import java.security.SecureRandom;
  */
 public class IceAuthenticatorImpl implements IceAuthenticator {
 
+    /**
+     * Seeding a {@link SecureRandom} is expensive and may block waiting for entropy, so all authenticators share one instance.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * The 64 characters allowed by the ice-char grammar. Each character carries exactly 6 bits of randomness.
+     * 
+     * @see <a href="https://tools.ietf.org/html/rfc5245#section-15.1">RFC 5245</a>
+     */
+    private static final char[] ICE_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // 48 bits of randomness, so ufrags of concurrent sessions are unlikely to collide
+    static final int UFRAG_LENGTH = 8;
+    // 144 bits of randomness
+    static final int PASSWORD_LENGTH = 24;
+
     // Control message integrity
-    private final SecureRandom random;
     protected String ufrag;
     protected String password;
+    private byte[] passwordKey;
     protected String remoteUfrag;
     protected String remotePassword;
 
-    private final StringBuilder builder;
+    private final byte[] randomBytes;
+    private final char[] credential;
 
     public IceAuthenticatorImpl() {
-        this.random = new SecureRandom();
         this.ufrag = "";
         this.password = "";
+        this.passwordKey = null;
         this.remoteUfrag = "";
         this.remotePassword = "";
 
-        this.builder = new StringBuilder();
+        this.randomBytes = new byte[PASSWORD_LENGTH];
+        this.credential = new char[PASSWORD_LENGTH];
     }
 
     public String getUfrag() {
@@ -89,32 +107,32 @@ public class IceAuthenticatorImpl implements IceAuthenticator {
      * @see <a href="https://tools.ietf.org/html/rfc5245#section-15.4">RFC 5245</a>
      */
     public void generateIceCredentials() {
-        this.ufrag = generateIceCredential(24, 4, 256);
-        this.password = generateIceCredential(128, 22, 256);
+        this.ufrag = generateIceCredential(UFRAG_LENGTH);
+        this.password = generateIceCredential(PASSWORD_LENGTH);
+        // Encoded once since every connectivity check is validated against it
+        this.passwordKey = this.password.getBytes();
     }
 
-    private String generateIceCredential(int numBits, int min, int max) {
-        // Clean string builder
-        this.builder.setLength(0);
-
-        // Generate random strings until minimum size is satisfied
-        do {
-            this.builder.append(new BigInteger(numBits, this.random).toString(32));
-        } while (this.builder.length() < min);
-
-        // Trim string if it surpasses maximum size
-        if (builder.length() > max) {
-            builder.setLength(max);
+    private String generateIceCredential(int length) {
+        RANDOM.nextBytes(this.randomBytes);
+        for (int i = 0; i < length; i++) {
+            // The alphabet has 64 characters, so masking a random byte keeps the distribution uniform
+            this.credential[i] = ICE_CHARS[this.randomBytes[i] & 0x3F];
         }
-        return this.builder.toString();
+        return new String(this.credential, 0, length);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns the internal encoding of the password, so it is not copied on every connectivity check. Callers must not
+     * modify it.
+     * </p>
+     */
     @Override
     public byte[] getLocalKey(String ufrag) {
         if (isUserRegistered(ufrag)) {
-            if (this.password != null) {
-                return this.password.getBytes();
-            }
+            return this.passwordKey;
         }
         return null;
     }
@@ -158,6 +176,7 @@ public class IceAuthenticatorImpl implements IceAuthenticator {
     public void reset() {
         this.ufrag = "";
         this.password = "";
+        this.passwordKey = null;
         this.remoteUfrag = "";
         this.remotePassword = "";
     }
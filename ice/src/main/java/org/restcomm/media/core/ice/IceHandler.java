@@ -23,26 +23,23 @@ package org.restcomm.media.core.ice;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.ice.events.IceEventListener;
 import org.restcomm.media.core.ice.events.SelectedCandidatesEvent;
-import org.restcomm.media.core.network.deprecated.TransportAddress;
-import org.restcomm.media.core.network.deprecated.TransportAddress.TransportProtocol;
 import org.restcomm.media.core.network.deprecated.channel.PacketHandler;
 import org.restcomm.media.core.network.deprecated.channel.PacketHandlerException;
 import org.restcomm.media.core.stun.StunException;
+import org.restcomm.media.core.stun.messages.BindingResponseWriter;
 import org.restcomm.media.core.stun.messages.StunMessage;
-import org.restcomm.media.core.stun.messages.StunMessageFactory;
-import org.restcomm.media.core.stun.messages.StunRequest;
+import org.restcomm.media.core.stun.messages.StunMessageReader;
 import org.restcomm.media.core.stun.messages.StunResponse;
 import org.restcomm.media.core.stun.messages.attributes.StunAttribute;
 import org.restcomm.media.core.stun.messages.attributes.StunAttributeFactory;
 import org.restcomm.media.core.stun.messages.attributes.general.ErrorCodeAttribute;
-import org.restcomm.media.core.stun.messages.attributes.general.MessageIntegrityAttribute;
-import org.restcomm.media.core.stun.messages.attributes.general.UsernameAttribute;
 
 /**
  * @author Henrique Rosa (henrique.rosa@telestax.com)
@@ -65,6 +62,11 @@ public class IceHandler implements PacketHandler {
     private final IceEventListener iceListener;
     private final AtomicBoolean candidateSelected;
 
+    // Packets of a component are handled by a single thread, so decoding and encoding buffers are reused
+    private final StunMessageReader reader;
+    private final byte[] usernameBuffer;
+    private final byte[] responseBuffer;
+
     public IceHandler(short componentId, IceEventListener iceListener) {
         // Packet Handler properties
         this.pipelinePriority = 1;
@@ -83,6 +85,11 @@ public class IceHandler implements PacketHandler {
         // Handshake state
         this.iceListener = iceListener;
         this.candidateSelected = new AtomicBoolean(false);
+
+        // STUN encoding
+        this.reader = new StunMessageReader();
+        this.usernameBuffer = new byte[513];
+        this.responseBuffer = new byte[BindingResponseWriter.MAX_LENGTH];
     }
 
     public short getComponentId() {
@@ -150,78 +157,77 @@ public class IceHandler implements PacketHandler {
     @Override
     public byte[] handle(byte[] packet, int dataLength, int offset, InetSocketAddress localPeer, InetSocketAddress remotePeer)
             throws PacketHandlerException {
+        // Index the message in place instead of decoding every attribute
+        if (!this.reader.wrap(packet, offset, dataLength)) {
+            throw new PacketHandlerException("Could not decode STUN packet");
+        }
+
+        // RFC 5389 says that we should ignore bad CRCs rather than reply with an error response.
+        if (!this.reader.validateFingerprint()) {
+            throw new PacketHandlerException("Wrong value in FINGERPRINT");
+        }
+
         try {
-            StunMessage message = StunMessage.decode(packet, (char) offset, (char) dataLength);
-            if (message instanceof StunRequest) {
-                return processRequest((StunRequest) message, localPeer, remotePeer);
-            } else if (message instanceof StunResponse) {
-                return processResponse((StunResponse) message);
+            if (this.reader.isRequest()) {
+                return processRequest(this.reader, remotePeer);
+            } else if (this.reader.isResponse()) {
+                return processResponse(this.reader);
             } else {
                 // TODO STUN Indication is not supported as of yet
                 return null;
             }
         } catch (StunException e) {
-            throw new PacketHandlerException("Could not decode STUN packet", e);
+            throw new PacketHandlerException("Could not process STUN packet", e);
         } catch (IOException e) {
             throw new PacketHandlerException(e.getMessage(), e);
+        } finally {
+            this.reader.reset();
         }
     }
 
-    private byte[] processRequest(StunRequest request, InetSocketAddress localPeer, InetSocketAddress remotePeer)
-            throws IOException, StunException {
-
-        byte[] transactionID = request.getTransactionId();
-
+    private byte[] processRequest(StunMessageReader request, InetSocketAddress remotePeer) throws IOException, StunException {
         // The agent MUST use a short-term credential to authenticate the request and perform a message integrity check.
-        UsernameAttribute remoteUnameAttribute = (UsernameAttribute) request.getAttribute(StunAttribute.USERNAME);
+        String remoteUsername = request.getUsername();
 
         // Send binding error response if username is null
-        if(remoteUnameAttribute == null) {
-            StunResponse errorResponse = new StunResponse();
-            errorResponse.setTransactionID(transactionID);
-            errorResponse.setMessageType(StunMessage.BINDING_ERROR_RESPONSE);
-            errorResponse.addAttribute(StunAttributeFactory.createErrorCodeAttribute(ErrorCodeAttribute.BAD_REQUEST,
-                ErrorCodeAttribute.getDefaultReasonPhrase(ErrorCodeAttribute.BAD_REQUEST)));
-            return errorResponse.encode();
+        if(remoteUsername == null) {
+            return encodeErrorResponse(request, ErrorCodeAttribute.BAD_REQUEST);
         }
 
-        String remoteUsername = new String(remoteUnameAttribute.getUsername());
-
         // The agent MUST consider the username to be valid if it consists of two values separated by a colon, where the first
         // value is equal to the username fragment generated by the agent in an offer or answer for a session in-progress.
         if (!this.authenticator.validateUsername(remoteUsername)) {
-            // TODO return error response
-            throw new IOException("Invalid username " + remoteUsername);
+            logger.warn("Rejected STUN request from " + remotePeer + " with invalid username " + remoteUsername);
+            return encodeErrorResponse(request, ErrorCodeAttribute.UNAUTHORIZED);
         }
 
-        // The username for the credential is formed by concatenating the username fragment provided by the peer with the
-        // username fragment of the agent sending the request, separated by a colon (":").
-        int colon = remoteUsername.indexOf(":");
-        String localUFrag = remoteUsername.substring(0, colon);
-        String remoteUfrag = remoteUsername.substring(colon + 1);
+        // Requests that carry a USERNAME but no MESSAGE-INTEGRITY are malformed (RFC 5389, section 10.1.2)
+        if (!request.hasAttribute(StunAttribute.MESSAGE_INTEGRITY)) {
+            return encodeErrorResponse(request, ErrorCodeAttribute.BAD_REQUEST);
+        }
 
-        // Produce Binding Response
-        TransportAddress transportAddress = new TransportAddress(remotePeer.getAddress(), remotePeer.getPort(), TransportProtocol.UDP);
-        StunResponse response = StunMessageFactory.createBindingResponse(request, transportAddress);
-        try {
-            response.setTransactionID(transactionID);
-        } catch (StunException e) {
-            throw new IOException("Illegal STUN Transaction ID: " + new String(transactionID), e);
+        // The request is signed with the password of the agent. Check it over the received bytes, using a cached HMAC-SHA1.
+        byte[] localKey = this.authenticator.getLocalKey(remoteUsername);
+        if (!request.validateMessageIntegrity(localKey)) {
+            logger.warn("Rejected STUN request from " + remotePeer + " with invalid MESSAGE-INTEGRITY");
+            return encodeErrorResponse(request, ErrorCodeAttribute.UNAUTHORIZED);
         }
 
         // Add USERNAME and MESSAGE-INTEGRITY attribute in the response.
         // The responses utilize the same usernames and passwords as the requests.
-        String localUsername = remoteUfrag.concat(":").concat(localUFrag);
-        StunAttribute unameAttribute = StunAttributeFactory.createUsernameAttribute(localUsername);
-        response.addAttribute(unameAttribute);
+        // The username for the credential is formed by concatenating the username fragment provided by the peer with the
+        // username fragment of the agent sending the request, separated by a colon (":").
+        int usernameLength = swapUsername(request);
 
-        byte[] localKey = this.authenticator.getLocalKey(localUFrag);
-        MessageIntegrityAttribute integrityAttribute = StunAttributeFactory.createMessageIntegrityAttribute(remoteUsername,
-                localKey);
-        response.addAttribute(integrityAttribute);
+        // Produce Binding Response
+        int responseLength = BindingResponseWriter.write(this.responseBuffer, 0, request, remotePeer.getAddress().getAddress(),
+                remotePeer.getPort(), this.usernameBuffer, 0, usernameLength, localKey);
+        if (responseLength < 0) {
+            throw new IOException("Binding response to " + remoteUsername + " does not fit in " + this.responseBuffer.length + " bytes");
+        }
 
         // If the client issues a USE-CANDIDATE, tell ICE Agent to select the candidate
-        if (request.containsAttribute(StunAttribute.USE_CANDIDATE)) {
+        if (request.isUseCandidate()) {
             if (!this.candidateSelected.get()) {
                 this.candidateSelected.set(true);
                 if (logger.isDebugEnabled()) {
@@ -232,10 +238,44 @@ public class IceHandler implements PacketHandler {
         }
 
         // Pass response to the server
-        return response.encode();
+        return Arrays.copyOf(this.responseBuffer, responseLength);
+    }
+
+    /**
+     * Encodes a binding error response. Error responses are not signed, since the request could not be authenticated.
+     */
+    private byte[] encodeErrorResponse(StunMessageReader request, char errorCode) throws StunException {
+        StunResponse errorResponse = new StunResponse();
+        errorResponse.setTransactionID(request.getTransactionId());
+        errorResponse.setMessageType(StunMessage.BINDING_ERROR_RESPONSE);
+        errorResponse.addAttribute(StunAttributeFactory.createErrorCodeAttribute(errorCode,
+                ErrorCodeAttribute.getDefaultReasonPhrase(errorCode)));
+        return errorResponse.encode();
+    }
+
+    /**
+     * Writes the USERNAME of the response, "remote:local", from the USERNAME of the request, "local:remote".
+     * 
+     * @return The length of the username.
+     */
+    private int swapUsername(StunMessageReader request) {
+        byte[] data = request.getData();
+        int start = request.getValueOffset(StunAttribute.USERNAME);
+        int length = Math.min(request.getValueLength(StunAttribute.USERNAME), this.usernameBuffer.length);
+
+        int colon = 0;
+        while (colon < length && data[start + colon] != ':') {
+            colon++;
+        }
+
+        int remoteLength = length - colon - 1;
+        System.arraycopy(data, start + colon + 1, this.usernameBuffer, 0, remoteLength);
+        this.usernameBuffer[remoteLength] = ':';
+        System.arraycopy(data, start, this.usernameBuffer, remoteLength + 1, colon);
+        return length;
     }
 
-    private byte[] processResponse(StunResponse response) {
+    private byte[] processResponse(StunMessageReader response) {
         throw new UnsupportedOperationException("Support to handle STUN responses is not implemented.");
     }
 
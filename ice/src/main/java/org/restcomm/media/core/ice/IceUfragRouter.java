@@ -0,0 +1,80 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.ice;
+
+import java.nio.charset.StandardCharsets;
+
+import org.restcomm.media.core.network.deprecated.channel.PacketRouter;
+import org.restcomm.media.core.network.deprecated.channel.SharedChannel;
+import org.restcomm.media.core.stun.messages.StunMessage;
+import org.restcomm.media.core.stun.messages.StunMessageReader;
+import org.restcomm.media.core.stun.messages.attributes.StunAttribute;
+
+/**
+ * Routes ICE connectivity checks that reach a {@link SharedChannel} to the channel that owns the local username fragment.
+ * <p>
+ * The USERNAME of a Binding request is formed by the local and remote username fragments, separated by a colon. The local
+ * fragment is the routing key. Any other packet from an unknown peer cannot be routed.
+ * </p>
+ */
+public class IceUfragRouter implements PacketRouter {
+
+    // Each shared channel is read by its own selector thread
+    private static final ThreadLocal<StunMessageReader> READER = new ThreadLocal<StunMessageReader>() {
+        @Override
+        protected StunMessageReader initialValue() {
+            return new StunMessageReader();
+        }
+    };
+
+    @Override
+    public String getRoutingKey(byte[] packet, int offset, int length) {
+        // STUN messages start with two zero bits https://tools.ietf.org/html/rfc5764#section-5.1.2
+        if (length < StunMessage.HEADER_LENGTH || (packet[offset] & 0xff) > 1) {
+            return null;
+        }
+
+        final StunMessageReader reader = READER.get();
+        try {
+            if (!reader.wrap(packet, offset, length) || reader.getMessageType() != StunMessage.BINDING_REQUEST) {
+                return null;
+            }
+
+            final int start = reader.getValueOffset(StunAttribute.USERNAME);
+            if (start < 0) {
+                return null;
+            }
+
+            // The local fragment is the part before the colon
+            final int end = start + reader.getValueLength(StunAttribute.USERNAME);
+            for (int i = start; i < end; i++) {
+                if (packet[i] == ':') {
+                    return new String(packet, start, i - start, StandardCharsets.UTF_8);
+                }
+            }
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+}
@@ -33,18 +33,29 @@ import org.restcomm.media.core.network.deprecated.RtpPortManager;
 
 /**
  * Manages the candidate harvesting process
+ * <p>
+ * Host addresses are not enumerated per ICE agent: they are cached for the
+ * whole server by {@link HostAddressCache}, which refreshes them every 30
+ * seconds or as soon as a harvest finds a cached address is gone.
+ * </p>
  * 
  * @author Henrique Rosa
  * 
  */
 public class HarvestManager {
 
+	/*
+	 * Foundations only depend on the candidate address, so they are shared by
+	 * the ICE agents of all connections.
+	 */
+	private static final FoundationsRegistry FOUNDATIONS = new LiteFoundationsRegistry();
+
 	private final FoundationsRegistry foundations;
 	private final Map<CandidateType, CandidateHarvester> harvesters;
 	private InetAddress externalAddress;
 
 	public HarvestManager() {
-		this.foundations = new LiteFoundationsRegistry();
+		this.foundations = FOUNDATIONS;
 		this.harvesters = new HashMap<CandidateType, CandidateHarvester>(
 				CandidateType.count());
 		this.harvesters.put(CandidateType.HOST, new HostCandidateHarvester(
@@ -80,8 +91,8 @@ public class HarvestManager {
 	}
 
 	/**
-	 * Gets the foundations registry managed during the lifetime of the ICE
-	 * agent.
+	 * Gets the foundations registry, shared by the ICE agents of all
+	 * connections.
 	 * 
 	 * @return The foundations registry
 	 */
@@ -0,0 +1,227 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.restcomm.media.core.ice.harvest;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the local addresses that can be used to gather host candidates.
+ * <p>
+ * Enumerating network interfaces is a slow native call, particularly on hosts
+ * with many interfaces. The addresses are looked up on first use and then
+ * reused by every connection until the refresh interval elapses or a change is
+ * signaled with {@link #invalidate()}. If a refresh fails, the previous
+ * addresses remain in use.
+ * </p>
+ */
+public class HostAddressCache {
+
+	private static final Logger logger = LogManager.getLogger(HostAddressCache.class);
+
+	public static final long DEFAULT_REFRESH_INTERVAL = 30000L;
+
+	private static final HostAddressCache INSTANCE = new HostAddressCache(DEFAULT_REFRESH_INTERVAL);
+
+	private final long refreshInterval;
+
+	private volatile List<InetAddress> addresses;
+	private volatile long nextRefresh;
+	private volatile int version;
+
+	public HostAddressCache(long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+		this.addresses = null;
+		this.nextRefresh = 0L;
+		this.version = 0;
+	}
+
+	/**
+	 * Gets the cache shared by all ICE agents of the server.
+	 * 
+	 * @return The shared address cache
+	 */
+	public static HostAddressCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the addresses available to gather host candidates, looking them up
+	 * if the cache is empty or stale.
+	 * 
+	 * @return An unmodifiable list of addresses.
+	 * @throws HarvestException
+	 *             When the addresses were never looked up and the network
+	 *             interfaces cannot be retrieved.
+	 */
+	public List<InetAddress> getAddresses() throws HarvestException {
+		List<InetAddress> current = this.addresses;
+		if (current != null && System.currentTimeMillis() < this.nextRefresh) {
+			return current;
+		}
+
+		synchronized (this) {
+			// Another thread may have refreshed the cache meanwhile
+			current = this.addresses;
+			if (current != null && System.currentTimeMillis() < this.nextRefresh) {
+				return current;
+			}
+			return refresh();
+		}
+	}
+
+	/**
+	 * Signals that the network interfaces may have changed. The addresses will
+	 * be looked up again on next access.
+	 * <p>
+	 * {@link HostCandidateHarvester} calls it when a cached address can no
+	 * longer be bound because no local interface holds it anymore.
+	 * </p>
+	 */
+	public void invalidate() {
+		this.nextRefresh = 0L;
+	}
+
+	/**
+	 * Looks up the addresses immediately.
+	 * 
+	 * @return An unmodifiable list of addresses.
+	 * @throws HarvestException
+	 *             When the addresses were never looked up and the network
+	 *             interfaces cannot be retrieved.
+	 */
+	public synchronized List<InetAddress> refresh() throws HarvestException {
+		List<InetAddress> previous = this.addresses;
+		try {
+			List<InetAddress> found = Collections.unmodifiableList(lookupAddresses());
+			if (!found.equals(previous)) {
+				this.addresses = found;
+				this.version++;
+				if (previous != null) {
+					logger.info("Network interfaces changed. Host candidate addresses: " + found);
+				}
+			}
+		} catch (HarvestException e) {
+			if (previous == null) {
+				throw e;
+			}
+			logger.warn("Could not refresh host candidate addresses. Keeping " + previous, e);
+		} finally {
+			this.nextRefresh = System.currentTimeMillis() + this.refreshInterval;
+		}
+		return this.addresses;
+	}
+
+	/**
+	 * Gets the number of times the cached addresses changed, including the
+	 * first lookup.
+	 * 
+	 * @return The version of the cached addresses.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Finds available addresses that will be used to gather candidates from.
+	 * 
+	 * @return A list of collected addresses.
+	 * @throws HarvestException
+	 *             If an error occurs while searching for available addresses
+	 */
+	protected List<InetAddress> lookupAddresses() throws HarvestException {
+		// Stores found addresses
+		List<InetAddress> found = new ArrayList<InetAddress>(3);
+
+		// Retrieve list of available network interfaces
+		Enumeration<NetworkInterface> interfaces = getNetworkInterfaces();
+		while (interfaces.hasMoreElements()) {
+			NetworkInterface iface = interfaces.nextElement();
+
+			// Evaluate network interface
+			if (!useNetworkInterface(iface)) {
+				continue;
+			}
+
+			// Retrieve list of available addresses from the network interface
+			Enumeration<InetAddress> addresses = iface.getInetAddresses();
+
+			while (addresses.hasMoreElements()) {
+				InetAddress address = addresses.nextElement();
+
+				// loopback addresses are discarded
+				if (address.isLoopbackAddress()) {
+					continue;
+				}
+
+				// Ignore IPv6 addresses for now
+				if (address instanceof Inet4Address) {
+					found.add(address);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds all Network interfaces available on this server.
+	 * 
+	 * @return The list of available network interfaces.
+	 * @throws HarvestException
+	 *             When an error occurs while retrieving the network interfaces
+	 */
+	private Enumeration<NetworkInterface> getNetworkInterfaces() throws HarvestException {
+		try {
+			return NetworkInterface.getNetworkInterfaces();
+		} catch (SocketException e) {
+			throw new HarvestException("Could not retrieve list of available Network Interfaces.", e);
+		}
+	}
+
+	/**
+	 * Decides whether a certain network interface can be used as a host
+	 * candidate.
+	 * 
+	 * @param networkInterface
+	 *            The network interface to evaluate
+	 * @return <code>true</code> if the interface can be used. Returns
+	 *         <code>false</code>, otherwise.
+	 * @throws HarvestException
+	 *             When an error occurs while inspecting the interface.
+	 */
+	private boolean useNetworkInterface(NetworkInterface networkInterface) throws HarvestException {
+		try {
+			return !networkInterface.isLoopback() && networkInterface.isUp();
+		} catch (SocketException e) {
+			throw new HarvestException("Could not evaluate whether network interface is loopback.", e);
+		}
+	}
+
+}
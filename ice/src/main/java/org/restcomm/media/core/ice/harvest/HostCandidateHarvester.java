@@ -21,7 +21,6 @@
 package org.restcomm.media.core.ice.harvest;
 
 import java.io.IOException;
-import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
@@ -29,8 +28,6 @@ import java.net.SocketException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -55,85 +52,20 @@ public class HostCandidateHarvester implements CandidateHarvester {
 	Logger logger = LogManager.getLogger(HostCandidateHarvester.class);
 
 	private final FoundationsRegistry foundations;
+	private final HostAddressCache addressCache;
 
-	public HostCandidateHarvester(FoundationsRegistry foundationsRegistry) {
+	public HostCandidateHarvester(FoundationsRegistry foundationsRegistry, HostAddressCache addressCache) {
 		super();
 		this.foundations = foundationsRegistry;
+		this.addressCache = addressCache;
 	}
 
-	/**
-	 * Finds all Network interfaces available on this server.
-	 * 
-	 * @return The list of available network interfaces.
-	 * @throws HarvestException
-	 *             When an error occurs while retrieving the network interfaces
-	 */
-	private Enumeration<NetworkInterface> getNetworkInterfaces() throws HarvestException {
-		try {
-			return NetworkInterface.getNetworkInterfaces();
-		} catch (SocketException e) {
-			throw new HarvestException("Could not retrieve list of available Network Interfaces.", e);
-		}
-	}
-
-	/**
-	 * Decides whether a certain network interface can be used as a host
-	 * candidate.
-	 * 
-	 * @param networkInterface
-	 *            The network interface to evaluate
-	 * @return <code>true</code> if the interface can be used. Returns
-	 *         <code>false</code>, otherwise.
-	 * @throws HarvestException
-	 *             When an error occurs while inspecting the interface.
-	 */
-	private boolean useNetworkInterface(NetworkInterface networkInterface) throws HarvestException {
-		try {
-			return !networkInterface.isLoopback() && networkInterface.isUp();
-		} catch (SocketException e) {
-			throw new HarvestException("Could not evaluate whether network interface is loopback.", e);
-		}
+	public HostCandidateHarvester(FoundationsRegistry foundationsRegistry) {
+		this(foundationsRegistry, HostAddressCache.getInstance());
 	}
 
-	/**
-	 * Finds available addresses that will be used to gather candidates from.
-	 * 
-	 * @return A list of collected addresses.
-	 * @throws HarvestException
-	 *             If an error occurs while searching for available addresses
-	 */
-	private List<InetAddress> findAddresses() throws HarvestException {
-		// Stores found addresses
-		List<InetAddress> found = new ArrayList<InetAddress>(3);
-
-		// Retrieve list of available network interfaces
-		Enumeration<NetworkInterface> interfaces = getNetworkInterfaces();
-		while (interfaces.hasMoreElements()) {
-			NetworkInterface iface = interfaces.nextElement();
-
-			// Evaluate network interface
-			if (!useNetworkInterface(iface)) {
-				continue;
-			}
-
-			// Retrieve list of available addresses from the network interface
-			Enumeration<InetAddress> addresses = iface.getInetAddresses();
-
-			while (addresses.hasMoreElements()) {
-				InetAddress address = addresses.nextElement();
-
-				// loopback addresses are discarded
-				if (address.isLoopbackAddress()) {
-					continue;
-				}
-
-				// Ignore IPv6 addresses for now
-				if (address instanceof Inet4Address) {
-					found.add(address);
-				}
-			}
-		}
-		return found;
+	public HostAddressCache getAddressCache() {
+		return addressCache;
 	}
 
 	/**
@@ -149,16 +81,38 @@ public class HostCandidateHarvester implements CandidateHarvester {
 	 */
 	private DatagramChannel openUdpChannel(InetAddress localAddress, int port, Selector selector) throws IOException {
 		DatagramChannel channel = DatagramChannel.open();
-		channel.configureBlocking(false);
-		// Register selector for reading operations
-		channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-		channel.bind(new InetSocketAddress(localAddress, port));
-		return channel;
+		try {
+			channel.configureBlocking(false);
+			// Register selector for reading operations
+			channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			channel.bind(new InetSocketAddress(localAddress, port));
+			return channel;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks whether an address is still assigned to a local interface.
+	 * 
+	 * @param address
+	 *            The address to check
+	 * @return <code>false</code> if no interface holds the address anymore.
+	 *         Returns <code>true</code> if it does or if the interfaces cannot
+	 *         be inspected.
+	 */
+	private boolean isAssigned(InetAddress address) {
+		try {
+			return NetworkInterface.getByInetAddress(address) != null;
+		} catch (SocketException e) {
+			return true;
+		}
 	}
 	
 	public void harvest(RtpPortManager portManager, IceMediaStream mediaStream, Selector selector) throws HarvestException {
-		// Find available addresses
-		List<InetAddress> addresses = findAddresses();
+		// Find available addresses. Network interfaces are only enumerated when the cache is stale.
+		List<InetAddress> addresses = this.addressCache.getAddresses();
 
 		// Gather a candidate for each available address
 		for (InetAddress address : addresses) {
@@ -225,6 +179,12 @@ public class HostCandidateHarvester implements CandidateHarvester {
 			component.addLocalCandidate(new LocalCandidateWrapper(candidate, channel));
 			return true;
 		} catch (IOException e) {
+			if (!isAssigned(address)) {
+				// The interface changed since the addresses were cached. No port will bind.
+				this.logger.warn("Address " + address + " is no longer assigned to a local interface. Refreshing host addresses.");
+				this.addressCache.invalidate();
+				return false;
+			}
 			// The port is occupied. Try again with next logical port.
 			portManager.next();
 			return gatherCandidate(component, address, startingPort, portManager, selector);
@@ -24,8 +24,8 @@ import org.restcomm.media.core.ice.FoundationsRegistry;
 import org.restcomm.media.core.ice.IceCandidate;
 
 /**
- * Registry that keeps records of generated foundations for the lifetime of an
- * ICE agent.
+ * Registry that keeps records of generated foundations for the lifetime of the
+ * ICE agents that share it.
  * 
  * <p>
  * Each candidate is assigned a foundation. The foundation MUST be different for
@@ -0,0 +1,135 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.restcomm.media.core.ice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.restcomm.media.core.ice.harvest.HarvestException;
+import org.restcomm.media.core.ice.harvest.HostAddressCache;
+
+public class HostAddressCacheTest {
+
+	/**
+	 * Cache that counts lookups and serves a configurable list of addresses.
+	 */
+	private static class CountingAddressCache extends HostAddressCache {
+
+		private final List<InetAddress> addresses = new ArrayList<InetAddress>();
+		private int lookups = 0;
+		private boolean fail = false;
+
+		public CountingAddressCache(long refreshInterval) {
+			super(refreshInterval);
+		}
+
+		@Override
+		protected List<InetAddress> lookupAddresses() throws HarvestException {
+			this.lookups++;
+			if (this.fail) {
+				throw new HarvestException("Interfaces unavailable");
+			}
+			return new ArrayList<InetAddress>(this.addresses);
+		}
+
+	}
+
+	@Test
+	public void testAddressesAreCached() throws Exception {
+		// given
+		CountingAddressCache cache = new CountingAddressCache(60000L);
+		cache.addresses.add(InetAddress.getByName("10.0.0.1"));
+
+		// when
+		List<InetAddress> first = cache.getAddresses();
+		List<InetAddress> second = cache.getAddresses();
+
+		// then
+		assertEquals(1, cache.lookups);
+		assertSame(first, second);
+		assertEquals(1, cache.getVersion());
+	}
+
+	@Test
+	public void testInterfaceChangeSignal() throws Exception {
+		// given
+		CountingAddressCache cache = new CountingAddressCache(60000L);
+		cache.addresses.add(InetAddress.getByName("10.0.0.1"));
+		List<InetAddress> first = cache.getAddresses();
+
+		// when
+		cache.invalidate();
+		List<InetAddress> unchanged = cache.getAddresses();
+		cache.addresses.add(InetAddress.getByName("10.0.0.2"));
+		cache.invalidate();
+		List<InetAddress> changed = cache.getAddresses();
+
+		// then
+		assertEquals(3, cache.lookups);
+		assertSame(first, unchanged);
+		assertEquals(2, changed.size());
+		assertEquals(2, cache.getVersion());
+	}
+
+	@Test
+	public void testFailedRefreshKeepsAddresses() throws Exception {
+		// given
+		CountingAddressCache cache = new CountingAddressCache(0L);
+		cache.addresses.add(InetAddress.getByName("10.0.0.1"));
+		List<InetAddress> first = cache.getAddresses();
+
+		// when
+		cache.fail = true;
+		List<InetAddress> second = cache.getAddresses();
+
+		// then
+		assertEquals(2, cache.lookups);
+		assertSame(first, second);
+	}
+
+	@Test(expected = HarvestException.class)
+	public void testFirstLookupFailure() throws Exception {
+		// given
+		CountingAddressCache cache = new CountingAddressCache(60000L);
+		cache.fail = true;
+
+		// when
+		cache.getAddresses();
+	}
+
+	@Test
+	public void testSharedCacheFindsNoLoopback() throws Exception {
+		// when
+		List<InetAddress> addresses = HostAddressCache.getInstance().getAddresses();
+
+		// then
+		for (InetAddress address : addresses) {
+			assertTrue(!address.isLoopbackAddress());
+		}
+	}
+
+}
@@ -27,9 +27,11 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.Selector;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.After;
@@ -41,6 +43,7 @@ import org.restcomm.media.core.ice.IceComponent;
 import org.restcomm.media.core.ice.IceMediaStream;
 import org.restcomm.media.core.ice.LocalCandidateWrapper;
 import org.restcomm.media.core.ice.harvest.HarvestException;
+import org.restcomm.media.core.ice.harvest.HostAddressCache;
 import org.restcomm.media.core.ice.harvest.HostCandidateHarvester;
 import org.restcomm.media.core.ice.harvest.NoCandidatesGatheredException;
 import org.restcomm.media.core.ice.lite.LiteFoundationsRegistry;
@@ -138,6 +141,38 @@ public class HostCandidateHarvesterTest {
 		}
 	}
 
+	@Test
+	public void testVanishedAddressInvalidatesCache() throws Exception {
+		// given
+		// 192.0.2.1 is reserved for documentation and assigned to no interface
+		final InetAddress vanished = InetAddress.getByName("192.0.2.1");
+		final int[] lookups = new int[1];
+		HostAddressCache addressCache = new HostAddressCache(60000L) {
+			@Override
+			protected List<InetAddress> lookupAddresses() throws HarvestException {
+				lookups[0]++;
+				List<InetAddress> addresses = new ArrayList<InetAddress>(1);
+				addresses.add(vanished);
+				return addresses;
+			}
+		};
+		HostCandidateHarvester harvester = new HostCandidateHarvester(new LiteFoundationsRegistry(), addressCache);
+		this.mediaStream = new IceMediaStream("audio", true);
+		Selector selector = Selector.open();
+
+		// when
+		try {
+			harvester.harvest(new RtpPortManager(61000, 61010), this.mediaStream, selector);
+			addressCache.getAddresses();
+		} finally {
+			selector.close();
+		}
+
+		// then
+		assertTrue(this.mediaStream.getRtpComponent().getLocalCandidates().isEmpty());
+		assertEquals(2, lookups[0]);
+	}
+
 	// TODO test port lookup for host candidate harvester
 	public void testPortLookup() {
 		// TODO Bind a socket to an address:port
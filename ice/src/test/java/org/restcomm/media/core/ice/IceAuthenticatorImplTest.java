@@ -50,4 +50,24 @@ public class IceAuthenticatorImplTest {
         }
     }
 
+    @Test
+    public void testIceCredentialsGrammar() {
+        // Given
+        IceAuthenticatorImpl auth = new IceAuthenticatorImpl();
+
+        // when
+        auth.generateIceCredentials();
+        String ufrag = auth.getUfrag();
+        String password = auth.getPassword();
+        auth.generateIceCredentials();
+
+        // then
+        Assert.assertEquals(IceAuthenticatorImpl.UFRAG_LENGTH, ufrag.length());
+        Assert.assertEquals(IceAuthenticatorImpl.PASSWORD_LENGTH, password.length());
+        Assert.assertTrue(ufrag.matches("[A-Za-z0-9+/]+"));
+        Assert.assertTrue(password.matches("[A-Za-z0-9+/]+"));
+        Assert.assertNotEquals(ufrag, auth.getUfrag());
+        Assert.assertNotEquals(password, auth.getPassword());
+    }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.ice;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Measures the ICE cost of setting up a media channel:
+ * <ul>
+ * <li><b>legacy</b> - every channel seeds its own {@link SecureRandom} and builds credentials with
+ * {@link BigInteger#toString(int)}, as media channels used to do eagerly.</li>
+ * <li><b>webrtc</b> - a channel that enables ICE creates an {@link IceAuthenticatorImpl} and generates its credentials.</li>
+ * <li><b>sip</b> - a channel that never enables ICE, which no longer creates an authenticator at all.</li>
+ * </ul>
+ * <p>
+ * Not part of the regular test suite. Run with: <code>java IceCredentialsBenchmark [channels]</code>
+ * </p>
+ */
+public class IceCredentialsBenchmark {
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        final int channels = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + round);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < channels; i++) {
+                final SecureRandom random = new SecureRandom();
+                sink = legacyCredential(random, 24, 4) + legacyCredential(random, 128, 22);
+            }
+            print("legacy", System.nanoTime() - start, channels);
+
+            start = System.nanoTime();
+            for (int i = 0; i < channels; i++) {
+                final IceAuthenticatorImpl authenticator = new IceAuthenticatorImpl();
+                authenticator.generateIceCredentials();
+                sink = authenticator;
+            }
+            print("webrtc", System.nanoTime() - start, channels);
+
+            start = System.nanoTime();
+            for (int i = 0; i < channels; i++) {
+                sink = null;
+            }
+            print("sip", System.nanoTime() - start, channels);
+        }
+    }
+
+    private static String legacyCredential(SecureRandom random, int numBits, int min) {
+        final StringBuilder builder = new StringBuilder();
+        do {
+            builder.append(new BigInteger(numBits, random).toString(32));
+        } while (builder.length() < min);
+        return builder.toString();
+    }
+
+    private static void print(String name, long elapsed, int channels) {
+        System.out.println(String.format("  %-8s %10.1f ns/channel", name, (double) elapsed / channels));
+    }
+
+}
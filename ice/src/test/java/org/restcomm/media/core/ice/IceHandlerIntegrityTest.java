@@ -0,0 +1,197 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.ice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+import org.restcomm.media.core.stun.messages.StunMessage;
+import org.restcomm.media.core.stun.messages.StunMessageReader;
+import org.restcomm.media.core.stun.messages.StunRequest;
+import org.restcomm.media.core.stun.messages.StunResponse;
+import org.restcomm.media.core.stun.messages.attributes.StunAttribute;
+import org.restcomm.media.core.stun.messages.attributes.StunAttributeFactory;
+import org.restcomm.media.core.stun.messages.attributes.general.ErrorCodeAttribute;
+import org.restcomm.media.core.stun.messages.attributes.general.FingerprintAttribute;
+import org.restcomm.media.core.stun.messages.attributes.general.MessageIntegrityAttribute;
+
+public class IceHandlerIntegrityTest {
+
+    private static final byte[] TRANSACTION_ID = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0a, 0x0b, 0x0c };
+
+    private static byte[] buildRequest(String username, byte[] key) throws Exception {
+        StunRequest request = new StunRequest();
+        request.setMessageType(StunMessage.BINDING_REQUEST);
+        request.setTransactionID(TRANSACTION_ID);
+        request.addAttribute(StunAttributeFactory.createUsernameAttribute(username));
+        request.addAttribute(StunAttributeFactory.createMessageIntegrityAttribute(username, key));
+        return request.encode();
+    }
+
+    @Test
+    public void testValidRequest() throws Exception {
+        // given
+        final IceAuthenticatorImpl authenticator = new IceAuthenticatorImpl();
+        authenticator.generateIceCredentials();
+        final IceHandler handler = new IceHandler(IceComponent.RTP_ID, null);
+        handler.setAuthenticator(authenticator);
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 6000);
+        final String username = authenticator.getUfrag() + ":remote";
+        final byte[] request = buildRequest(username, authenticator.getPassword().getBytes());
+
+        // when
+        final byte[] response = handler.handle(request, request.length, 0, address, address);
+
+        // then
+        assertNotNull(response);
+        final StunMessageReader reader = new StunMessageReader();
+        assertTrue(reader.wrap(response, 0, response.length));
+        final int integrityOffset = reader.getAttributeOffset(StunAttribute.MESSAGE_INTEGRITY);
+        final int fingerprintOffset = reader.getAttributeOffset(StunAttribute.FINGERPRINT);
+        assertTrue(integrityOffset > 0);
+        assertTrue(fingerprintOffset > integrityOffset);
+        assertTrue(MessageIntegrityAttribute.validateHmacSha1(response, 0, integrityOffset, authenticator.getPassword().getBytes()));
+        assertTrue(FingerprintAttribute.validateXorCRC32(response, 0, fingerprintOffset));
+        assertEquals(StunMessage.BINDING_SUCCESS_RESPONSE, (char) (((response[0] & 0xff) << 8) | (response[1] & 0xff)));
+    }
+
+    @Test
+    public void testResponseReadInPlace() throws Exception {
+        // given
+        final IceAuthenticatorImpl authenticator = new IceAuthenticatorImpl();
+        authenticator.generateIceCredentials();
+        final IceHandler handler = new IceHandler(IceComponent.RTP_ID, null);
+        handler.setAuthenticator(authenticator);
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 6000);
+        final byte[] request = buildRequest(authenticator.getUfrag() + ":remote", authenticator.getPassword().getBytes());
+        final byte[] packet = new byte[request.length + 10];
+        System.arraycopy(request, 0, packet, 10, request.length);
+        final StunMessageReader reader = new StunMessageReader();
+
+        // when
+        final byte[] response = handler.handle(packet, request.length, 10, address, address);
+
+        // then
+        assertTrue(reader.wrap(response, 0, response.length));
+        assertTrue(reader.isResponse());
+        assertEquals("remote:" + authenticator.getUfrag(), reader.getUsername());
+        assertTrue(reader.hasAttribute(StunAttribute.XOR_MAPPED_ADDRESS));
+        assertTrue(reader.validateFingerprint());
+        assertTrue(reader.validateMessageIntegrity(authenticator.getPassword().getBytes()));
+        assertEquals(-1, reader.getPriority());
+        for (int i = 0; i < StunMessage.TRANSACTION_ID_LENGTH; i++) {
+            assertEquals(TRANSACTION_ID[i], reader.getTransactionId()[i]);
+        }
+    }
+
+    @Test
+    public void testRequestSignedWithWrongKey() throws Exception {
+        // given
+        final IceAuthenticatorImpl authenticator = new IceAuthenticatorImpl();
+        authenticator.generateIceCredentials();
+        final IceHandler handler = new IceHandler(IceComponent.RTP_ID, null);
+        handler.setAuthenticator(authenticator);
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 6000);
+        final byte[] request = buildRequest(authenticator.getUfrag() + ":remote", "wrong-password".getBytes());
+
+        // when
+        final byte[] response = handler.handle(request, request.length, 0, address, address);
+
+        // then
+        assertErrorResponse(response, ErrorCodeAttribute.UNAUTHORIZED);
+    }
+
+    @Test
+    public void testRequestWithInvalidUsername() throws Exception {
+        // given
+        final IceAuthenticatorImpl authenticator = new IceAuthenticatorImpl();
+        authenticator.generateIceCredentials();
+        final IceHandler handler = new IceHandler(IceComponent.RTP_ID, null);
+        handler.setAuthenticator(authenticator);
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 6000);
+        final byte[] request = buildRequest("unknown:remote", authenticator.getPassword().getBytes());
+
+        // when
+        final byte[] response = handler.handle(request, request.length, 0, address, address);
+
+        // then
+        assertErrorResponse(response, ErrorCodeAttribute.UNAUTHORIZED);
+    }
+
+    @Test
+    public void testRequestWithoutIntegrity() throws Exception {
+        // given
+        final IceAuthenticatorImpl authenticator = new IceAuthenticatorImpl();
+        authenticator.generateIceCredentials();
+        final IceHandler handler = new IceHandler(IceComponent.RTP_ID, null);
+        handler.setAuthenticator(authenticator);
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 6000);
+        final StunRequest unsigned = new StunRequest();
+        unsigned.setMessageType(StunMessage.BINDING_REQUEST);
+        unsigned.setTransactionID(TRANSACTION_ID);
+        unsigned.addAttribute(StunAttributeFactory.createUsernameAttribute(authenticator.getUfrag() + ":remote"));
+        final byte[] request = unsigned.encode();
+
+        // when
+        final byte[] response = handler.handle(request, request.length, 0, address, address);
+
+        // then
+        assertErrorResponse(response, ErrorCodeAttribute.BAD_REQUEST);
+    }
+
+    private static void assertErrorResponse(byte[] response, char errorCode) throws Exception {
+        assertNotNull(response);
+        final StunResponse errorResponse = (StunResponse) StunResponse.decode(response, (char) 0, (char) response.length);
+        final ErrorCodeAttribute errorCodeAttribute = (ErrorCodeAttribute) errorResponse.getAttribute(StunAttribute.ERROR_CODE);
+        assertEquals(StunMessage.BINDING_ERROR_RESPONSE, errorResponse.getMessageType());
+        assertEquals(errorCode, errorCodeAttribute.getErrorCode());
+        assertFalse(errorResponse.containsAttribute(StunAttribute.MESSAGE_INTEGRITY));
+    }
+
+    @Test
+    public void testIntegrityValidationAtOffset() throws Exception {
+        // given
+        final byte[] key = "password".getBytes();
+        final byte[] request = buildRequest("local:remote", key);
+        final byte[] packet = new byte[request.length + 10];
+        System.arraycopy(request, 0, packet, 10, request.length);
+
+        final StunMessageReader reader = new StunMessageReader();
+
+        // when
+        assertTrue(reader.wrap(packet, 10, request.length));
+        final int integrityOffset = reader.getAttributeOffset(StunAttribute.MESSAGE_INTEGRITY);
+        final int fingerprintOffset = reader.getAttributeOffset(StunAttribute.FINGERPRINT);
+
+        // then
+        assertTrue(MessageIntegrityAttribute.validateHmacSha1(packet, 10, integrityOffset, key));
+        assertFalse(MessageIntegrityAttribute.validateHmacSha1(packet, 10, integrityOffset, "other".getBytes()));
+        assertTrue(FingerprintAttribute.validateXorCRC32(packet, 10, fingerprintOffset));
+        assertEquals(-1, reader.getAttributeOffset(StunAttribute.USE_CANDIDATE));
+    }
+
+}
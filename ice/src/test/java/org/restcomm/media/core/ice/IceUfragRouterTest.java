@@ -0,0 +1,75 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.ice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.restcomm.media.core.stun.messages.StunMessage;
+import org.restcomm.media.core.stun.messages.StunRequest;
+import org.restcomm.media.core.stun.messages.attributes.StunAttributeFactory;
+
+public class IceUfragRouterTest {
+
+    private static final byte[] TRANSACTION_ID = { 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0a, 0x0b, 0x0c };
+
+    private static byte[] buildRequest(String username) throws Exception {
+        StunRequest request = new StunRequest();
+        request.setMessageType(StunMessage.BINDING_REQUEST);
+        request.setTransactionID(TRANSACTION_ID);
+        request.addAttribute(StunAttributeFactory.createUsernameAttribute(username));
+        return request.encode();
+    }
+
+    @Test
+    public void testRouteByLocalUfrag() throws Exception {
+        // given
+        final IceUfragRouter router = new IceUfragRouter();
+        final byte[] request = buildRequest("local1:remote1");
+        final byte[] packet = new byte[request.length + 4];
+        System.arraycopy(request, 0, packet, 4, request.length);
+
+        // when
+        final String key = router.getRoutingKey(packet, 4, request.length);
+
+        // then
+        assertEquals("local1", key);
+    }
+
+    @Test
+    public void testUnroutablePackets() throws Exception {
+        // given
+        final IceUfragRouter router = new IceUfragRouter();
+        final byte[] rtp = new byte[] { (byte) 0x80, 0x00, 0x00, 0x01, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+        final byte[] noColon = buildRequest("local1");
+
+        // when
+        final String rtpKey = router.getRoutingKey(rtp, 0, rtp.length);
+        final String noColonKey = router.getRoutingKey(noColon, 0, noColon.length);
+
+        // then
+        assertNull(rtpKey);
+        assertNull(noColonKey);
+    }
+
+}
@@ -0,0 +1,400 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.network.deprecated;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.restcomm.media.core.scheduler.PriorityQueueScheduler;
+import org.restcomm.media.core.scheduler.Task;
+
+/**
+ * Bounded ring of outgoing datagrams that are sent in a single burst.
+ * <p>
+ * Senders copy their packets into preallocated slots with {@link #offer(DatagramChannel, ByteBuffer, SocketAddress)}
+ * instead of writing to the socket. The ring is registered as a flush task of the {@link PriorityQueueScheduler}, so it is
+ * drained once all tasks of the output queue completed, sending every queued packet in a row.
+ * </p>
+ * <p>
+ * Any number of threads can offer packets, but only one thread drains the ring at a time. Packets of the same channel are
+ * sent in the order they were offered.
+ * </p>
+ */
+public class OutboundRing extends Task {
+
+    private static final Logger logger = LogManager.getLogger(OutboundRing.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int MAX_PACKET_SIZE = 1500;
+
+    private final int capacity;
+    private final int mask;
+
+    // Slots. A slot is ready to be written when its sequence equals the tail and ready to be sent when it equals head + 1.
+    private final AtomicLongArray sequences;
+    private final ByteBuffer[] buffers;
+    private final DatagramChannel[] channels;
+    private final SocketAddress[] destinations;
+    private final AtomicLong tail;
+    private long head;
+    private final AtomicBoolean flushing;
+
+    // Schedulers that flush the ring
+    private final CopyOnWriteArrayList<PriorityQueueScheduler> schedulers;
+
+    // Metrics
+    private final AtomicLong batches;
+    private final AtomicLong packets;
+    private final AtomicLong overflows;
+    private final AtomicLong drops;
+    private final AtomicLong failures;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile long lastFlushLatency;
+    private volatile long maxFlushLatency;
+    private final AtomicLong totalFlushLatency;
+
+    /**
+     * Creates a new ring.
+     *
+     * @param capacity The number of packets the ring can hold between flushes. Rounded up to a power of two.
+     */
+    public OutboundRing(int capacity) {
+        super();
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = this.capacity - 1;
+
+        this.sequences = new AtomicLongArray(this.capacity);
+        this.buffers = new ByteBuffer[this.capacity];
+        this.channels = new DatagramChannel[this.capacity];
+        this.destinations = new SocketAddress[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            this.sequences.set(i, i);
+            this.buffers[i] = ByteBuffer.allocateDirect(MAX_PACKET_SIZE);
+        }
+        this.tail = new AtomicLong(0);
+        this.head = 0;
+        this.flushing = new AtomicBoolean(false);
+        this.schedulers = new CopyOnWriteArrayList<>();
+
+        this.batches = new AtomicLong(0);
+        this.packets = new AtomicLong(0);
+        this.overflows = new AtomicLong(0);
+        this.drops = new AtomicLong(0);
+        this.failures = new AtomicLong(0);
+        this.lastBatchSize = 0;
+        this.maxBatchSize = 0;
+        this.lastFlushLatency = 0;
+        this.maxFlushLatency = 0;
+        this.totalFlushLatency = new AtomicLong(0);
+    }
+
+    public OutboundRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public int getQueueNumber() {
+        return PriorityQueueScheduler.OUTPUT_QUEUE;
+    }
+
+    @Override
+    public long perform() {
+        flush();
+        return 0;
+    }
+
+    /**
+     * Registers the ring as a flush task of a scheduler, so it is drained at the end of every cycle of that scheduler.
+     *
+     * @param scheduler The scheduler that produces the packets queued in the ring.
+     */
+    public void attach(PriorityQueueScheduler scheduler) {
+        if (this.schedulers.addIfAbsent(scheduler)) {
+            scheduler.addFlushTask(this);
+        }
+    }
+
+    /**
+     * Unregisters the ring from every scheduler it was attached to.
+     */
+    public void detach() {
+        for (PriorityQueueScheduler scheduler : this.schedulers) {
+            scheduler.removeFlushTask(this);
+        }
+        this.schedulers.clear();
+    }
+
+    /**
+     * Queues a packet to be sent on the next flush. The remaining bytes of the buffer are copied, so the caller can reuse it
+     * as soon as the method returns.
+     *
+     * @param channel The channel the packet is sent through.
+     * @param buffer The packet.
+     * @param destination The address of the remote peer.
+     * @return Returns true if the packet was queued. Returns false if the ring is full or the packet is too large.
+     * @see #enqueue(DatagramChannel, ByteBuffer, SocketAddress)
+     */
+    public boolean offer(DatagramChannel channel, ByteBuffer buffer, SocketAddress destination) {
+        if (buffer.remaining() > MAX_PACKET_SIZE) {
+            this.overflows.incrementAndGet();
+            return false;
+        }
+
+        long position = this.tail.get();
+        while (true) {
+            final int index = (int) position & this.mask;
+            final long sequence = this.sequences.get(index);
+            if (sequence == position) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    final ByteBuffer slot = this.buffers[index];
+                    slot.clear();
+                    slot.put(buffer);
+                    slot.flip();
+                    this.channels[index] = channel;
+                    this.destinations[index] = destination;
+                    // Publish the slot to the flusher
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+                position = this.tail.get();
+            } else if (sequence < position) {
+                // Slot still holds a packet of the previous lap
+                this.overflows.incrementAndGet();
+                return false;
+            } else {
+                // Another thread claimed the slot. Retry with the new tail.
+                position = this.tail.get();
+            }
+        }
+    }
+
+    /**
+     * Queues a packet to be sent on the next flush. If the ring is full, it is drained first, so the packet never overtakes
+     * the packets queued before it.
+     *
+     * @param channel The channel the packet is sent through.
+     * @param buffer The packet.
+     * @param destination The address of the remote peer.
+     * @return Returns true if the packet was queued. Returns false if the packet was dropped, because it is too large or the
+     *         ring could not be drained.
+     */
+    public boolean enqueue(DatagramChannel channel, ByteBuffer buffer, SocketAddress destination) {
+        if (offer(channel, buffer, destination)) {
+            return true;
+        }
+        flush();
+        if (offer(channel, buffer, destination)) {
+            return true;
+        }
+        this.drops.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Sends every packet queued so far.
+     *
+     * @return The number of packets that were taken from the ring.
+     */
+    public int flush() {
+        if (!this.flushing.compareAndSet(false, true)) {
+            return 0;
+        }
+
+        try {
+            final long start = System.nanoTime();
+            int count = 0;
+            while (true) {
+                final int index = (int) this.head & this.mask;
+                if (this.sequences.get(index) != this.head + 1) {
+                    break;
+                }
+
+                final DatagramChannel channel = this.channels[index];
+                try {
+                    channel.send(this.buffers[index], this.destinations[index]);
+                } catch (PortUnreachableException e) {
+                    // ICMP unreachable received. Disconnect and wait for new packet.
+                    this.failures.incrementAndGet();
+                    disconnect(channel);
+                } catch (ClosedChannelException e) {
+                    // Channel was closed after the packet was queued
+                    this.failures.incrementAndGet();
+                } catch (IOException e) {
+                    this.failures.incrementAndGet();
+                    logger.warn("Could not send queued packet to " + this.destinations[index] + ": " + e.getMessage());
+                }
+
+                this.channels[index] = null;
+                this.destinations[index] = null;
+                this.sequences.set(index, this.head + this.capacity);
+                this.head++;
+                count++;
+            }
+
+            if (count > 0) {
+                final long latency = System.nanoTime() - start;
+                this.batches.incrementAndGet();
+                this.packets.addAndGet(count);
+                this.totalFlushLatency.addAndGet(latency);
+                this.lastBatchSize = count;
+                this.lastFlushLatency = latency;
+                if (count > this.maxBatchSize) {
+                    this.maxBatchSize = count;
+                }
+                if (latency > this.maxFlushLatency) {
+                    this.maxFlushLatency = latency;
+                }
+            }
+            return count;
+        } finally {
+            this.flushing.set(false);
+        }
+    }
+
+    private void disconnect(DatagramChannel channel) {
+        try {
+            if (channel.isConnected()) {
+                channel.disconnect();
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of packets waiting for the next flush.
+     *
+     * @return The number of queued packets.
+     */
+    public int size() {
+        return (int) Math.max(0, this.tail.get() - this.head);
+    }
+
+    /**
+     * Gets the number of flushes that sent at least one packet.
+     *
+     * @return The number of batches.
+     */
+    public long getBatches() {
+        return this.batches.get();
+    }
+
+    /**
+     * Gets the total number of packets sent by the ring.
+     *
+     * @return The number of flushed packets.
+     */
+    public long getPackets() {
+        return this.packets.get();
+    }
+
+    /**
+     * Gets the number of packets refused because the ring was full or the packet was too large.
+     *
+     * @return The number of refused packets.
+     */
+    public long getOverflows() {
+        return this.overflows.get();
+    }
+
+    /**
+     * Gets the number of packets dropped by {@link #enqueue(DatagramChannel, ByteBuffer, SocketAddress)}.
+     *
+     * @return The number of dropped packets.
+     */
+    public long getDrops() {
+        return this.drops.get();
+    }
+
+    /**
+     * Gets the number of queued packets that could not be sent.
+     *
+     * @return The number of failed sends.
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public double getAverageBatchSize() {
+        final long count = this.batches.get();
+        return count == 0 ? 0.0 : (double) this.packets.get() / count;
+    }
+
+    /**
+     * Gets the time taken by the last flush.
+     *
+     * @return The flush latency, in nanoseconds.
+     */
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    /**
+     * Gets the longest time taken by a flush.
+     *
+     * @return The flush latency, in nanoseconds.
+     */
+    public long getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    /**
+     * Gets the average time taken by a flush.
+     *
+     * @return The flush latency, in nanoseconds.
+     */
+    public long getAverageFlushLatency() {
+        final long count = this.batches.get();
+        return count == 0 ? 0 : this.totalFlushLatency.get() / count;
+    }
+
+}
@@ -0,0 +1,382 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.network.deprecated;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link PortManager} that keeps track of which even ports are in use, so RTP channels are only given ports that no other
+ * channel holds. The odd port next to each even port is left for RTCP.
+ * <p>
+ * Ports are kept in a bitmap of 64-bit words updated with compare-and-set, so acquiring and releasing a port takes constant
+ * time and no locks. Searches start at a different word on every acquisition to spread channels over the range.
+ * </p>
+ * <p>
+ * A released port is quarantined for a configurable period before it can be handed out again, so late packets sent to the
+ * previous call do not leak into the next one.
+ * </p>
+ */
+public class RtpPortAllocator implements PortManager {
+
+    public static final long DEFAULT_QUARANTINE = 5000L;
+
+    private final int minimum;
+    private final int maximum;
+    private final int capacity;
+    private final long quarantine;
+
+    // Bit set means the port is not available: either in use or quarantined
+    private final AtomicLongArray taken;
+    // Bit set means the port is in use
+    private final AtomicLongArray used;
+    private final AtomicInteger hint;
+    private final AtomicInteger current;
+
+    // Released ports, in order of release. Entries expire in the same order because the quarantine period is fixed.
+    private final Queue<QuarantinedPort> quarantined;
+    private final AtomicBoolean draining;
+
+    // Metrics
+    private final AtomicInteger inUse;
+    private final AtomicInteger inQuarantine;
+    private final AtomicLong acquisitions;
+    private final AtomicLong failures;
+
+    /**
+     * Creates a new Port Allocator.
+     *
+     * @param minimum The lowest available port.
+     * @param maximum The highest available port.
+     * @param quarantine The time, in milliseconds, a released port waits before it can be acquired again.
+     */
+    public RtpPortAllocator(int minimum, int maximum, long quarantine) {
+        this.minimum = (minimum % 2 == 0) ? minimum : minimum + 1;
+        this.maximum = (maximum % 2 == 0) ? maximum : maximum - 1;
+        if (this.maximum < this.minimum) {
+            throw new IllegalArgumentException("Port range " + minimum + "-" + maximum + " has no even ports.");
+        }
+        if (quarantine < 0) {
+            throw new IllegalArgumentException("Quarantine period cannot be negative.");
+        }
+        this.capacity = (this.maximum - this.minimum) / 2 + 1;
+        this.quarantine = TimeUnit.MILLISECONDS.toNanos(quarantine);
+
+        final int words = (this.capacity + 63) / 64;
+        this.taken = new AtomicLongArray(words);
+        this.used = new AtomicLongArray(words);
+        this.hint = new AtomicInteger(0);
+        this.current = new AtomicInteger(-1);
+
+        // Bits of the last word beyond the range are never available
+        final int tail = this.capacity % 64;
+        if (tail != 0) {
+            this.taken.set(words - 1, -1L << tail);
+        }
+
+        this.quarantined = new ConcurrentLinkedQueue<QuarantinedPort>();
+        this.draining = new AtomicBoolean(false);
+
+        this.inUse = new AtomicInteger(0);
+        this.inQuarantine = new AtomicInteger(0);
+        this.acquisitions = new AtomicLong(0);
+        this.failures = new AtomicLong(0);
+    }
+
+    /**
+     * Creates a new Port Allocator with the {@link #DEFAULT_QUARANTINE} period.
+     *
+     * @param minimum The lowest available port.
+     * @param maximum The highest available port.
+     */
+    public RtpPortAllocator(int minimum, int maximum) {
+        this(minimum, maximum, DEFAULT_QUARANTINE);
+    }
+
+    /**
+     * Creates a new Port Allocator with port range between {@link RtpPortManager#MIN_PORT} and
+     * {@link RtpPortManager#MAX_PORT}.
+     */
+    public RtpPortAllocator() {
+        this(RtpPortManager.MIN_PORT, RtpPortManager.MAX_PORT);
+    }
+
+    @Override
+    public int getLowest() {
+        return this.minimum;
+    }
+
+    @Override
+    public int getHighest() {
+        return this.maximum;
+    }
+
+    /**
+     * Gets the last port that was acquired.
+     *
+     * @return The last acquired port. Returns -1 if no port was acquired yet.
+     */
+    @Override
+    public int current() {
+        return this.current.get();
+    }
+
+    /**
+     * Looks for the port the next acquisition is likely to return, without acquiring it.
+     *
+     * @return An available port. Returns -1 if all ports are taken.
+     */
+    @Override
+    public int peek() {
+        final int words = this.taken.length();
+        final int start = (this.hint.get() & Integer.MAX_VALUE) % words;
+        for (int i = 0; i < words; i++) {
+            final int word = (start + i) % words;
+            final long free = ~this.taken.get(word);
+            if (free != 0) {
+                return toPort(word, Long.numberOfTrailingZeros(free));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Acquires an even port. The port must be given back with {@link #release(int)} once the channel is closed.
+     *
+     * @return The acquired port. Returns -1 if all ports are in use or quarantined.
+     */
+    @Override
+    public int next() {
+        return acquire();
+    }
+
+    /**
+     * Acquires an even port. The port must be given back with {@link #release(int)} once the channel is closed.
+     *
+     * @return The acquired port. Returns -1 if all ports are in use or quarantined.
+     */
+    public int acquire() {
+        drainQuarantine();
+
+        final int words = this.taken.length();
+        final int start = (this.hint.getAndIncrement() & Integer.MAX_VALUE) % words;
+        for (int i = 0; i < words; i++) {
+            final int word = (start + i) % words;
+            long bits = this.taken.get(word);
+            while (bits != -1L) {
+                final long bit = Long.lowestOneBit(~bits);
+                if (this.taken.compareAndSet(word, bits, bits | bit)) {
+                    setBit(this.used, word, bit);
+                    this.inUse.incrementAndGet();
+                    this.acquisitions.incrementAndGet();
+
+                    final int port = toPort(word, Long.numberOfTrailingZeros(bit));
+                    this.current.set(port);
+                    return port;
+                }
+                // Another thread changed the word. Retry with its new value.
+                bits = this.taken.get(word);
+            }
+        }
+        this.failures.incrementAndGet();
+        return -1;
+    }
+
+    /**
+     * Releases a port acquired with {@link #acquire()}. The port is quarantined before it can be acquired again.
+     *
+     * @param port The port to release.
+     * @return Returns true if the port was released. Returns false if the port was not in use.
+     */
+    public boolean release(int port) {
+        if (port < this.minimum || port > this.maximum || (port - this.minimum) % 2 != 0) {
+            return false;
+        }
+
+        final int index = (port - this.minimum) / 2;
+        final int word = index / 64;
+        final long bit = 1L << (index % 64);
+        if (!clearBit(this.used, word, bit)) {
+            return false;
+        }
+        this.inUse.decrementAndGet();
+
+        if (this.quarantine == 0) {
+            clearBit(this.taken, word, bit);
+        } else {
+            this.inQuarantine.incrementAndGet();
+            this.quarantined.offer(new QuarantinedPort(word, bit, System.nanoTime() + this.quarantine));
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a port is currently in use.
+     *
+     * @param port The port to check.
+     * @return Returns true if the port was acquired and not yet released.
+     */
+    public boolean isInUse(int port) {
+        if (port < this.minimum || port > this.maximum || (port - this.minimum) % 2 != 0) {
+            return false;
+        }
+        final int index = (port - this.minimum) / 2;
+        return (this.used.get(index / 64) & (1L << (index % 64))) != 0;
+    }
+
+    /**
+     * Makes quarantined ports whose period expired available again.
+     */
+    private void drainQuarantine() {
+        // A single thread drains at a time, so the entry it peeks is the same it polls
+        if (this.quarantined.isEmpty() || !this.draining.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            final long now = System.nanoTime();
+            QuarantinedPort entry = this.quarantined.peek();
+            while (entry != null && now - entry.expiry >= 0) {
+                this.quarantined.poll();
+                clearBit(this.taken, entry.word, entry.bit);
+                this.inQuarantine.decrementAndGet();
+                entry = this.quarantined.peek();
+            }
+        } finally {
+            this.draining.set(false);
+        }
+    }
+
+    private int toPort(int word, int offset) {
+        return this.minimum + (word * 64 + offset) * 2;
+    }
+
+    private static void setBit(AtomicLongArray bitmap, int word, long bit) {
+        long bits;
+        do {
+            bits = bitmap.get(word);
+        } while (!bitmap.compareAndSet(word, bits, bits | bit));
+    }
+
+    private static boolean clearBit(AtomicLongArray bitmap, int word, long bit) {
+        long bits;
+        do {
+            bits = bitmap.get(word);
+            if ((bits & bit) == 0) {
+                return false;
+            }
+        } while (!bitmap.compareAndSet(word, bits, bits & ~bit));
+        return true;
+    }
+
+    /**
+     * Gets the total number of even ports managed by the allocator.
+     *
+     * @return The number of ports in the range.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the time a released port waits before it can be acquired again.
+     *
+     * @return The quarantine period, in milliseconds.
+     */
+    public long getQuarantine() {
+        return TimeUnit.NANOSECONDS.toMillis(this.quarantine);
+    }
+
+    /**
+     * Gets the number of ports currently in use.
+     *
+     * @return The number of acquired ports not yet released.
+     */
+    public int getInUse() {
+        return this.inUse.get();
+    }
+
+    /**
+     * Gets the number of released ports still waiting for their quarantine to expire.
+     *
+     * @return The number of quarantined ports.
+     */
+    public int getQuarantined() {
+        return this.inQuarantine.get();
+    }
+
+    /**
+     * Gets the number of ports that can be acquired right now.
+     *
+     * @return The number of ports neither in use nor quarantined.
+     */
+    public int getAvailable() {
+        return this.capacity - this.inUse.get() - this.inQuarantine.get();
+    }
+
+    /**
+     * Gets the fraction of the range currently in use.
+     *
+     * @return A value between 0 and 1.
+     */
+    public double getUtilization() {
+        return (double) this.inUse.get() / this.capacity;
+    }
+
+    /**
+     * Gets the total number of ports acquired since the allocator was created.
+     *
+     * @return The number of successful acquisitions.
+     */
+    public long getAcquisitions() {
+        return this.acquisitions.get();
+    }
+
+    /**
+     * Gets the number of acquisitions that failed because no port was available.
+     *
+     * @return The number of failed acquisitions.
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    private static final class QuarantinedPort {
+
+        private final int word;
+        private final long bit;
+        private final long expiry;
+
+        QuarantinedPort(int word, long bit, long expiry) {
+            this.word = word;
+            this.bit = bit;
+            this.expiry = expiry;
+        }
+
+    }
+
+}
@@ -24,6 +24,7 @@ package org.restcomm.media.core.network.deprecated;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -31,20 +32,47 @@ import java.nio.channels.spi.SelectorProvider;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.network.deprecated.channel.Channel;
 import org.restcomm.media.core.network.deprecated.channel.NetworkChannel;
+import org.restcomm.media.core.network.deprecated.channel.PacketRouter;
+import org.restcomm.media.core.network.deprecated.channel.SharedChannel;
 import org.restcomm.media.core.scheduler.Scheduler;
 import org.restcomm.media.core.scheduler.ServiceScheduler;
 
 /**
  * Manager responsible for scheduling I/O operations over UDP.
+ * <p>
+ * By default, each selector is polled every 2ms by a task running on the {@link Scheduler}. When selector threads are enabled
+ * (see {@link #setUseSelectorThreads(boolean)}), each selector is owned by a dedicated thread that blocks on
+ * {@link Selector#select()} until a channel is ready or a new registration wakes it up.
+ * </p>
+ * <p>
+ * Channels are always registered on the selector that currently holds less channels.
+ * </p>
+ * <p>
+ * When the global port manager is a {@link RtpPortAllocator}, ports are acquired from it instead of being picked round-robin,
+ * and channels must give them back with {@link #release(DatagramChannel)} when closed.
+ * </p>
+ * <p>
+ * When a shared port is configured (see {@link #setSharedPort(int, PacketRouter)}), each selector also owns a
+ * {@link SharedChannel} bound to a consecutive port starting at the shared port. Channels of ICE-enabled legs can be moved
+ * onto those sockets, so a single socket per selector serves all of them.
+ * </p>
  * 
  * Important! Any CPU-bound action here are illegal!
  * 
@@ -59,6 +87,9 @@ public class UdpManager {
     private final Scheduler scheduler;
     private final PortManager portManager;
     private final PortManager localPortManager;
+    private final RtpPortAllocator portAllocator;
+    // Ports acquired from the allocator, by the channel bound to them
+    private final ConcurrentMap<DatagramChannel, Integer> allocatedPorts;
 
     // UDP Manager properties
     private static final int PORT_ANY = -1;
@@ -85,12 +116,39 @@ public class UdpManager {
     private final List<Selector> selectors;
     private List<PollTask> pollTasks;
     private List<Future<?>> pollTaskFutures;
-    private AtomicInteger currSelectorIndex;
+    private List<Thread> selectorThreads;
+    private boolean useSelectorThreads;
+
+    // Sockets shared by ICE-enabled channels. One per selector.
+    private int sharedPort;
+    private PacketRouter sharedRouter;
+    private final List<SharedChannel> sharedChannels;
+
+    // Whether outgoing packets wait for the end of the scheduler cycle, in a ring owned by each selector
+    private boolean batchTransmission;
+
+    // Maximum time a registration waits for a selector thread
+    private static final long REGISTRATION_TIMEOUT = 5000L;
+
+    /**
+     * Creates a UDP manager that acquires global ports from a {@link RtpPortAllocator}.
+     * 
+     * @param scheduler The scheduler that polls the selectors
+     * @param lowestPort The lowest global port
+     * @param highestPort The highest global port
+     * @param portQuarantine The time, in milliseconds, a released global port waits before it can be acquired again
+     * @param localPortManager The manager of local ports
+     */
+    public UdpManager(Scheduler scheduler, int lowestPort, int highestPort, long portQuarantine, PortManager localPortManager) {
+        this(scheduler, new RtpPortAllocator(lowestPort, highestPort, portQuarantine), localPortManager);
+    }
 
     public UdpManager(Scheduler scheduler, PortManager portManager, PortManager localPortManager) {
         // Core elements
         this.portManager = portManager;
         this.localPortManager = localPortManager;
+        this.portAllocator = (portManager instanceof RtpPortAllocator) ? (RtpPortAllocator) portManager : null;
+        this.allocatedPorts = new ConcurrentHashMap<DatagramChannel, Integer>();
 
         // UDP Manager properties
         this.inet = INET_UNKNOWN;
@@ -109,7 +167,12 @@ public class UdpManager {
         this.selectors = new ArrayList<Selector>(ServiceScheduler.POOL_SIZE);
         this.pollTasks = new ArrayList<PollTask>(ServiceScheduler.POOL_SIZE);
         this.pollTaskFutures = new ArrayList<Future<?>>(ServiceScheduler.POOL_SIZE);
-        this.currSelectorIndex = new AtomicInteger(0);
+        this.selectorThreads = new ArrayList<Thread>(ServiceScheduler.POOL_SIZE);
+        this.useSelectorThreads = false;
+        this.sharedPort = 0;
+        this.sharedRouter = null;
+        this.sharedChannels = new ArrayList<SharedChannel>(ServiceScheduler.POOL_SIZE);
+        this.batchTransmission = false;
     }
 
     public Scheduler getScheduler() {
@@ -233,6 +296,220 @@ public class UdpManager {
         return portManager;
     }
 
+    /**
+     * Sets whether selectors are served by dedicated threads blocking on select, instead of being polled by the scheduler.
+     * <p>
+     * Takes effect the next time the manager is started.
+     * </p>
+     * 
+     * @param useSelectorThreads whether to use dedicated selector threads
+     */
+    public void setUseSelectorThreads(boolean useSelectorThreads) {
+        this.useSelectorThreads = useSelectorThreads;
+    }
+
+    public boolean isUseSelectorThreads() {
+        return useSelectorThreads;
+    }
+
+    /**
+     * Sets the first port of the sockets shared by ICE-enabled channels. Each selector binds a socket to the next port.
+     * <p>
+     * Takes effect the next time the manager is started.
+     * </p>
+     * 
+     * @param port the first shared port. Zero disables shared sockets.
+     * @param router resolves which channel a packet from an unknown peer belongs to
+     */
+    public void setSharedPort(int port, PacketRouter router) {
+        this.sharedPort = port;
+        this.sharedRouter = router;
+    }
+
+    public int getSharedPort() {
+        return sharedPort;
+    }
+
+    /**
+     * Gets the shared socket that currently serves less channels.
+     * 
+     * @return the least loaded shared channel. Returns null if shared sockets are disabled.
+     */
+    public SharedChannel getSharedChannel() {
+        synchronized (LOCK) {
+            SharedChannel selected = null;
+            int min = Integer.MAX_VALUE;
+            for (SharedChannel candidate : this.sharedChannels) {
+                int count = candidate.getChannelCount();
+                if (candidate.isOpen() && count < min) {
+                    selected = candidate;
+                    min = count;
+                }
+            }
+            return selected;
+        }
+    }
+
+    /**
+     * Gets the number of sockets shared by ICE-enabled channels.
+     * 
+     * @return the number of shared channels
+     */
+    public int getSharedChannelCount() {
+        synchronized (LOCK) {
+            return this.sharedChannels.size();
+        }
+    }
+
+    /**
+     * Gets a socket shared by ICE-enabled channels, to inspect its metrics.
+     * 
+     * @param index the index of the shared channel
+     * @return the shared channel
+     */
+    public SharedChannel getSharedChannel(int index) {
+        synchronized (LOCK) {
+            return this.sharedChannels.get(index);
+        }
+    }
+
+    /**
+     * Sets whether outgoing media packets are queued and sent in bursts at the end of each scheduler cycle, instead of being
+     * sent one by one as soon as they are produced.
+     * <p>
+     * Each selector owns one {@link OutboundRing}. Senders must attach the ring they use to the scheduler that produces their
+     * packets. Rings are detached from every scheduler when the manager stops.
+     * </p>
+     * <p>
+     * Takes effect the next time the manager is started.
+     * </p>
+     *
+     * @param batchTransmission whether to batch outgoing packets
+     */
+    public void setBatchTransmission(boolean batchTransmission) {
+        this.batchTransmission = batchTransmission;
+    }
+
+    public boolean isBatchTransmission() {
+        return batchTransmission;
+    }
+
+    /**
+     * Gets the ring where a channel queues its outgoing packets, which is owned by the selector the channel is registered in.
+     * A channel is always given the same ring, so its packets are sent in order.
+     *
+     * @param channel the channel sending packets
+     * @return the outbound ring. Returns null if batch transmission is disabled or the channel is not registered.
+     */
+    public OutboundRing getOutboundRing(DatagramChannel channel) {
+        synchronized (LOCK) {
+            for (PollTask pollTask : this.pollTasks) {
+                if (channel.keyFor(pollTask.localSelector) != null) {
+                    return pollTask.outboundRing;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Gets the number of outbound rings, to inspect their metrics.
+     *
+     * @return the number of rings. Returns 0 if batch transmission is disabled.
+     */
+    public int getOutboundRingCount() {
+        synchronized (LOCK) {
+            int count = 0;
+            for (PollTask pollTask : this.pollTasks) {
+                if (pollTask.outboundRing != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    public OutboundRing getOutboundRing(int index) {
+        return getPollTask(index).outboundRing;
+    }
+
+    /**
+     * Gets the number of selectors handling network channels.
+     * 
+     * @return the number of selectors
+     */
+    public int getSelectorCount() {
+        synchronized (LOCK) {
+            return this.pollTasks.size();
+        }
+    }
+
+    /**
+     * Gets the number of channels registered in a selector.
+     * <p>
+     * The count is kept by the thread polling the selector, so channels closed since its last select are still counted.
+     * </p>
+     * 
+     * @param index the index of the selector
+     * @return the number of registered channels
+     */
+    public int getChannelCount(int index) {
+        return getPollTask(index).getChannelCount();
+    }
+
+    /**
+     * Gets the number of select operations performed by a selector.
+     * 
+     * @param index the index of the selector
+     * @return the number of select operations
+     */
+    public long getSelectCount(int index) {
+        return getPollTask(index).selectCount;
+    }
+
+    /**
+     * Gets the number of ready channels processed by a selector.
+     * 
+     * @param index the index of the selector
+     * @return the number of ready channels processed
+     */
+    public long getReadyCount(int index) {
+        return getPollTask(index).readyCount;
+    }
+
+    private PollTask getPollTask(int index) {
+        synchronized (LOCK) {
+            return this.pollTasks.get(index);
+        }
+    }
+
+    /**
+     * Gets the polling task of the selector that currently holds less channels, and counts the channel about to be registered
+     * in it. The caller must register the channel right away.
+     * 
+     * @return the least loaded polling task
+     */
+    private PollTask leastLoaded() throws IOException {
+        synchronized (LOCK) {
+            if (this.pollTasks.isEmpty()) {
+                throw new IOException("UDP Manager has no selectors available.");
+            }
+
+            PollTask selected = this.pollTasks.get(0);
+            int min = selected.getChannelCount();
+            for (int i = 1; i < this.pollTasks.size() && min > 0; i++) {
+                PollTask candidate = this.pollTasks.get(i);
+                int count = candidate.getChannelCount();
+                if (count < min) {
+                    selected = candidate;
+                    min = count;
+                }
+            }
+            selected.reserve();
+            return selected;
+        }
+    }
+
     /**
      * Gets the low boundary of available range.
      * 
@@ -248,21 +525,41 @@ public class UdpManager {
      * @retun min port number
      */
     public int getHighestPort() {
-        return portManager.getLowest();
+        return portManager.getHighest();
+    }
+
+    /**
+     * Gets the allocator that tracks which global ports are in use.
+     * 
+     * @return the port allocator. Returns null if ports are picked round-robin.
+     */
+    public RtpPortAllocator getPortAllocator() {
+        return portAllocator;
     }
 
     public void addSelector(Selector selector) {
         synchronized (LOCK) {
             if (!this.selectors.contains(selector)) {
                 this.selectors.add(selector);
-                PollTask pollTask = new PollTask(selector);
-                this.pollTasks.add(pollTask);
-                ScheduledFuture<?> future = this.scheduler.scheduleWithFixedDelay(pollTask, 0L, 2L, TimeUnit.MILLISECONDS);
-                this.pollTaskFutures.add(future);
+                startPolling(new PollTask(selector));
             }
         }
     }
 
+    private void startPolling(PollTask pollTask) {
+        this.pollTasks.add(pollTask);
+        if (this.useSelectorThreads) {
+            Thread thread = new Thread(new SelectorLoop(pollTask), "udp-selector-" + (this.pollTasks.size() - 1));
+            thread.setDaemon(true);
+            pollTask.owner = thread;
+            this.selectorThreads.add(thread);
+            thread.start();
+        } else {
+            ScheduledFuture<?> future = this.scheduler.scheduleWithFixedDelay(pollTask, 0L, 2L, TimeUnit.MILLISECONDS);
+            this.pollTaskFutures.add(future);
+        }
+    }
+
     public boolean connectImmediately(InetSocketAddress address) {
         if (!useSbc) {
             return true;
@@ -295,9 +592,7 @@ public class UdpManager {
     public DatagramChannel open(ProtocolHandler handler) throws IOException {
         DatagramChannel channel = DatagramChannel.open();
         channel.configureBlocking(false);
-        int index = currSelectorIndex.getAndIncrement();
-        SelectionKey key = channel.register(selectors.get(index % selectors.size()), SelectionKey.OP_READ);
-        key.attach(handler);
+        SelectionKey key = register(channel, handler);
         handler.setKey(key);
         return channel;
     }
@@ -305,41 +600,47 @@ public class UdpManager {
     public SelectionKey open(Channel channel) throws IOException {
         DatagramChannel dataChannel = DatagramChannel.open();
         dataChannel.configureBlocking(false);
-        int index = currSelectorIndex.getAndIncrement();
-        SelectionKey key = dataChannel.register(selectors.get(index % selectors.size()), SelectionKey.OP_READ);
-        key.attach(channel);
-        return key;
+        return register(dataChannel, channel);
     }
     
-    public void register(NetworkChannel channel) throws IOException {
-        int index = this.currSelectorIndex.getAndIncrement();
-        channel.register(this.selectors.get(index % this.selectors.size()), SelectionKey.OP_READ);
+    public void register(final NetworkChannel channel) throws IOException {
+        final PollTask pollTask = leastLoaded();
+        pollTask.register(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                channel.register(pollTask.localSelector, SelectionKey.OP_READ);
+                return null;
+            }
+
+        });
     }
 
     @Deprecated
     public SelectionKey open(DatagramChannel dataChannel, Channel channel) throws IOException {
-        // Get a selector
-        int index = currSelectorIndex.getAndIncrement();
-        Selector selector = selectors.get(index % selectors.size());
-        // Register the channel under the chosen selector
-        SelectionKey key = dataChannel.register(selector, SelectionKey.OP_READ);
-        // Attach the multiplexer to the key
-        key.attach(channel);
-        return key;
+        // Register the channel under the least loaded selector and attach the multiplexer to the key
+        return register(dataChannel, channel);
     }
 
     @Deprecated
     public void open(DatagramChannel channel, ProtocolHandler handler) throws IOException {
-        // Get a selector
-        int index = currSelectorIndex.getAndIncrement();
-        Selector selector = selectors.get(index % selectors.size());
-        // Register the channel under the chosen selector
-        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
-        // Attach the protocol handler to the key
-        key.attach(handler);
+        // Register the channel under the least loaded selector and attach the protocol handler to the key
+        SelectionKey key = register(channel, handler);
         handler.setKey(key);
     }
 
+    private SelectionKey register(final DatagramChannel dataChannel, final Object attachment) throws IOException {
+        final PollTask pollTask = leastLoaded();
+        return pollTask.register(new Callable<SelectionKey>() {
+
+            @Override
+            public SelectionKey call() throws Exception {
+                return dataChannel.register(pollTask.localSelector, SelectionKey.OP_READ, attachment);
+            }
+
+        });
+    }
+
     public void bind(DatagramChannel channel, int port, boolean local) throws IOException {
         if (local) {
             bindLocal(channel, port);
@@ -356,6 +657,11 @@ public class UdpManager {
      * @throws IOException
      */
     public void bind(DatagramChannel channel, int port) throws IOException {
+        if (port == PORT_ANY && this.portAllocator != null) {
+            bindAllocated(channel);
+            return;
+        }
+
         // select port if wildcarded
         if (port == PORT_ANY) {
             port = portManager.next();
@@ -371,6 +677,11 @@ public class UdpManager {
             } catch (IOException e) {
                 ex = e;
                 logger.info("Failed trying to bind " + bindAddress + ":" + port);
+                if (this.portAllocator != null) {
+                    // Fall back on a port the channel gives back when closed
+                    bindAllocated(channel);
+                    return;
+                }
                 port = portManager.next();
             }
         }
@@ -380,6 +691,55 @@ public class UdpManager {
         }
     }
 
+    /**
+     * Binds socket to global bind address and a port acquired from the port allocator.
+     * <p>
+     * A port the allocator hands out is only busy if another process holds it. It is released straight away, so it stays
+     * quarantined and the next attempts do not hit it again.
+     * </p>
+     * 
+     * @param channel the channel
+     * @throws IOException if no port is available or binding failed
+     */
+    private void bindAllocated(DatagramChannel channel) throws IOException {
+        IOException ex = null;
+        for (int q = 0; q < 100; q++) {
+            final int port = this.portAllocator.acquire();
+            if (port < 0) {
+                throw new IOException("No RTP port available between " + this.portAllocator.getLowest() + " and " + this.portAllocator.getHighest());
+            }
+
+            try {
+                channel.bind(new InetSocketAddress(bindAddress, port));
+                this.allocatedPorts.put(channel, port);
+                return;
+            } catch (IOException e) {
+                ex = e;
+                logger.info("Failed trying to bind " + bindAddress + ":" + port);
+                this.portAllocator.release(port);
+            }
+        }
+        throw ex;
+    }
+
+    /**
+     * Gives back the global port a channel was bound to, once the channel is closed.
+     * <p>
+     * Does nothing if the port was not acquired from the port allocator.
+     * </p>
+     * 
+     * @param channel the channel that was bound
+     */
+    public void release(DatagramChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        Integer port = this.allocatedPorts.remove(channel);
+        if (port != null) {
+            this.portAllocator.release(port);
+        }
+    }
+
     /**
      * Binds socket to global bind address and specified port.
      * 
@@ -415,18 +775,76 @@ public class UdpManager {
     private void generateTasks() throws IOException {
         for (int i = 0; i < ServiceScheduler.POOL_SIZE; i++) {
             this.selectors.add(SelectorProvider.provider().openSelector());
-            PollTask pollTask = new PollTask(this.selectors.get(i));
-            this.pollTasks.add(pollTask);
-            ScheduledFuture<?> future = this.scheduler.scheduleWithFixedDelay(pollTask, 0L, 2L, TimeUnit.MILLISECONDS);
-            this.pollTaskFutures.add(future);
+            startPolling(new PollTask(this.selectors.get(i)));
+        }
+
+        if (this.sharedPort > 0 && this.sharedRouter != null) {
+            for (int i = 0; i < this.pollTasks.size(); i++) {
+                openSharedChannel(this.pollTasks.get(i), this.sharedPort + i);
+            }
+        }
+    }
+
+    private void openSharedChannel(final PollTask pollTask, int port) {
+        final SharedChannel sharedChannel = new SharedChannel(this.sharedRouter);
+        try {
+            sharedChannel.open();
+            sharedChannel.bind(new InetSocketAddress(this.bindAddress, port));
+            final DatagramChannel dataChannel = sharedChannel.getDataChannel();
+            SelectionKey key = pollTask.register(new Callable<SelectionKey>() {
+
+                @Override
+                public SelectionKey call() throws Exception {
+                    return dataChannel.register(pollTask.localSelector, SelectionKey.OP_READ, sharedChannel);
+                }
+
+            });
+            sharedChannel.setSelectionKey(key);
+            this.sharedChannels.add(sharedChannel);
+            logger.info("Opened shared channel on " + this.bindAddress + ":" + port);
+        } catch (IOException e) {
+            // ICE-enabled channels will keep using dedicated ports
+            logger.error("Could not open shared channel on " + this.bindAddress + ":" + port, e);
+            sharedChannel.close();
         }
     }
 
+    private void closeSharedChannels() {
+        for (SharedChannel sharedChannel : this.sharedChannels) {
+            sharedChannel.close();
+        }
+        this.sharedChannels.clear();
+    }
+
     private void stopTasks() {
         for (Future<?> future : this.pollTaskFutures) {
             future.cancel(false);
         }
         this.pollTaskFutures.clear();
+
+        // Wake up selector threads so they can notice the manager is no longer active
+        for (Selector selector : this.selectors) {
+            selector.wakeup();
+        }
+        for (Thread thread : this.selectorThreads) {
+            try {
+                thread.join(1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for selector thread " + thread.getName() + " to stop");
+            }
+        }
+        this.selectorThreads.clear();
+    }
+
+    private void closeOutboundRings() {
+        for (PollTask pollTask : this.pollTasks) {
+            if (pollTask.outboundRing != null) {
+                // Send packets of the last cycle before schedulers stop flushing the ring
+                pollTask.outboundRing.flush();
+                pollTask.outboundRing.detach();
+            }
+        }
     }
 
     private void closeSelectors() {
@@ -475,6 +893,8 @@ public class UdpManager {
                 this.active = false;
                 logger.info("Stopping UDP Manager");
                 stopTasks();
+                closeOutboundRings();
+                closeSharedChannels();
                 closeSelectors();
                 cleanResources();
                 logger.info("UDP Manager has stopped");
@@ -488,9 +908,131 @@ public class UdpManager {
     private class PollTask implements Runnable {
 
         private final Selector localSelector;
+        private final OutboundRing outboundRing;
+
+        // Registrations waiting to be performed by the selector thread (selector threads only)
+        private final Queue<FutureTask<?>> registrations;
+        private volatile Thread owner;
+
+        // Load metrics. Only updated by the thread polling the selector.
+        private volatile long selectCount;
+        private volatile long readyCount;
+
+        // Registered channels plus pending registrations. Corrected after every select, once cancelled keys are dropped.
+        private final AtomicInteger channelCount;
+        private final Object countLock;
+        private int pendingCount;
 
         public PollTask(Selector selector) {
             this.localSelector = selector;
+            this.outboundRing = batchTransmission ? new OutboundRing() : null;
+            this.registrations = new ConcurrentLinkedQueue<>();
+            this.channelCount = new AtomicInteger(0);
+            this.countLock = new Object();
+            this.pendingCount = 0;
+        }
+
+        int getChannelCount() {
+            return this.channelCount.get();
+        }
+
+        /**
+         * Counts a channel about to be registered, so concurrent registrations spread over the selectors.
+         */
+        void reserve() {
+            synchronized (this.countLock) {
+                this.pendingCount++;
+                this.channelCount.incrementAndGet();
+            }
+        }
+
+        private void unreserve(boolean registered) {
+            synchronized (this.countLock) {
+                this.pendingCount--;
+                if (!registered) {
+                    this.channelCount.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Recounts registered channels. Must be called by the thread polling the selector, right after a select.
+         */
+        private void recount() {
+            synchronized (this.countLock) {
+                try {
+                    this.channelCount.set(this.localSelector.keys().size() + this.pendingCount);
+                } catch (ClosedSelectorException e) {
+                    this.channelCount.set(0);
+                }
+            }
+        }
+
+        /**
+         * Registers a channel in the selector.
+         * <p>
+         * When the selector is owned by a thread, the registration is handed over to that thread, which is woken up to
+         * perform it. Otherwise the registration takes place in the calling thread.
+         * </p>
+         */
+        <T> T register(final Callable<T> task) throws IOException {
+            // Registration completes the reservation made when the selector was picked
+            final Callable<T> registration = new Callable<T>() {
+
+                @Override
+                public T call() throws Exception {
+                    synchronized (countLock) {
+                        boolean registered = false;
+                        try {
+                            T result = task.call();
+                            registered = true;
+                            return result;
+                        } finally {
+                            unreserve(registered);
+                        }
+                    }
+                }
+
+            };
+
+            Thread thread = this.owner;
+            if (thread == null || thread == Thread.currentThread()) {
+                try {
+                    return registration.call();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+
+            FutureTask<T> future = new FutureTask<>(registration);
+            this.registrations.offer(future);
+            this.localSelector.wakeup();
+            try {
+                return future.get(REGISTRATION_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while registering channel on " + thread.getName());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            } catch (TimeoutException e) {
+                if (future.cancel(false)) {
+                    unreserve(false);
+                }
+                throw new IOException("Timed out registering channel on " + thread.getName());
+            }
+        }
+
+        private void runRegistrations() {
+            FutureTask<?> registration;
+            while ((registration = this.registrations.poll()) != null) {
+                registration.run();
+            }
         }
 
         @Override
@@ -499,78 +1041,129 @@ public class UdpManager {
                 try {
                     // Select channels enabled for reading operation (without blocking!)
                     int selected = localSelector.selectNow();
+                    selectCount++;
+                    recount();
                     if (selected == 0) {
                         return;
                     }
                 } catch (IOException e) {
                     logger.error("Could not select channels from Selector!");
                 }
+                processSelectedKeys();
+            }
+        }
 
-                // Iterate over selected channels
-                Iterator<SelectionKey> it = localSelector.selectedKeys().iterator();
-                while (it.hasNext() && active) {
-                    SelectionKey key = it.next();
-                    it.remove();
+        /**
+         * Blocks until at least one channel is ready or the selector is woken up, then processes ready channels.
+         */
+        void select() {
+            runRegistrations();
+            try {
+                int selected = localSelector.select();
+                selectCount++;
+                recount();
+                if (selected == 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                logger.error("Could not select channels from Selector!");
+                return;
+            }
+            processSelectedKeys();
+        }
 
-                    // Get references to channel and associated RTP socket
-                    DatagramChannel udpChannel = (DatagramChannel) key.channel();
-                    Object attachment = key.attachment();
+        private void processSelectedKeys() {
+            // Iterate over selected channels
+            Iterator<SelectionKey> it = localSelector.selectedKeys().iterator();
+            while (it.hasNext() && active) {
+                SelectionKey key = it.next();
+                it.remove();
+                readyCount++;
 
-                    if (attachment == null) {
-                        continue;
-                    }
+                // Get references to channel and associated RTP socket
+                DatagramChannel udpChannel = (DatagramChannel) key.channel();
+                Object attachment = key.attachment();
 
-                    try {
-                        if (attachment instanceof ProtocolHandler) {
-                            // Legacy - MGCP channel
-                            ProtocolHandler handler = (ProtocolHandler) key.attachment();
+                if (attachment == null) {
+                    continue;
+                }
 
-                            if (!udpChannel.isOpen()) {
-                                handler.onClosed();
-                                continue;
-                            }
+                try {
+                    if (attachment instanceof ProtocolHandler) {
+                        // Legacy - MGCP channel
+                        ProtocolHandler handler = (ProtocolHandler) key.attachment();
 
-                            // do read
-                            if (key.isReadable()) {
-                                handler.receive(udpChannel);
-                            }
+                        if (!udpChannel.isOpen()) {
+                            handler.onClosed();
+                            continue;
+                        }
+
+                        // do read
+                        if (key.isReadable()) {
+                            handler.receive(udpChannel);
+                        }
 
-                        } else if (attachment instanceof Channel) {
-                            Channel channel = (Channel) attachment;
+                    } else if (attachment instanceof Channel) {
+                        Channel channel = (Channel) attachment;
 
-                            // Perform an operation only if channel is open and key is valid
-                            if (udpChannel.isOpen()) {
-                                if (key.isValid()) {
-                                    channel.receive();
+                        // Perform an operation only if channel is open and key is valid
+                        if (udpChannel.isOpen()) {
+                            if (key.isValid()) {
+                                channel.receive();
 
-                                    if (channel.hasPendingData()) {
-                                        channel.send();
-                                    }
+                                if (channel.hasPendingData()) {
+                                    channel.send();
                                 }
-                            } else {
-                                // Close data channel if datagram channel is closed
-                                channel.close();
                             }
-                        } else if (attachment instanceof NetworkChannel) {
-                            NetworkChannel channel = (NetworkChannel) attachment;
-                         
-                            // Perform an operation only if channel is open and key is valid
-                            if (udpChannel.isOpen()) {
-                                if (key.isValid()) {
-                                    channel.receive();
-                                }
-                            } else {
-                                // Close data channel if datagram channel is closed
-                                channel.close();
+                        } else {
+                            // Close data channel if datagram channel is closed
+                            channel.close();
+                        }
+                    } else if (attachment instanceof NetworkChannel) {
+                        NetworkChannel channel = (NetworkChannel) attachment;
+                     
+                        // Perform an operation only if channel is open and key is valid
+                        if (udpChannel.isOpen()) {
+                            if (key.isValid()) {
+                                channel.receive();
                             }
+                        } else {
+                            // Close data channel if datagram channel is closed
+                            channel.close();
                         }
-                    } catch (Exception e) {
-                        logger.error("An unexpected problem occurred while reading from channel.", e);
                     }
+                } catch (Exception e) {
+                    logger.error("An unexpected problem occurred while reading from channel.", e);
+                }
+            }
+            localSelector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * Loop run by a dedicated selector thread. Blocks on the selector until the manager stops.
+     */
+    private class SelectorLoop implements Runnable {
+
+        private final PollTask pollTask;
+
+        public SelectorLoop(PollTask pollTask) {
+            this.pollTask = pollTask;
+        }
+
+        @Override
+        public void run() {
+            while (active) {
+                try {
+                    this.pollTask.select();
+                } catch (ClosedSelectorException e) {
+                    break;
+                } catch (Exception e) {
+                    logger.error("An unexpected problem occurred while selecting channels.", e);
                 }
-                localSelector.selectedKeys().clear();
             }
         }
+
     }
 
-}
\ No newline at end of file
+}
@@ -50,17 +50,25 @@ public class MultiplexedChannel implements Channel {
 	// Registered protocol handlers. Used for multiplexing.
 	protected final PacketHandlerPipeline handlers;
 
-	// The buffer into which we will read data when it's available
+	// The buffer into which we will read data when it's available.
+	// Backed by an array so handlers can process packets in place, without copies.
 	private static final int BUFFER_SIZE = 8192;
 	private final ByteBuffer receiveBuffer;
+	private final byte[] receiveData;
 	
 	// Data that is pending for writing
 	private final Queue<byte[]> pendingData;
 
+	// Socket shared with other channels, if any
+	protected SharedChannel sharedChannel;
+	private String routingKey;
+	private volatile SocketAddress sharedPeer;
+
 	public MultiplexedChannel() {
 		this.handlers = new PacketHandlerPipeline();
 		this.pendingData = new ConcurrentLinkedQueue<>();
-		this.receiveBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.receiveData = new byte[BUFFER_SIZE];
+		this.receiveBuffer = ByteBuffer.wrap(this.receiveData);
 	}
 	
 	@Override
@@ -96,6 +104,10 @@ public class MultiplexedChannel implements Channel {
 	}
 	
 	public String getRemoteHost() {
+		if (this.sharedChannel != null) {
+			SocketAddress peer = this.sharedPeer;
+			return (peer == null) ? "" : ((InetSocketAddress) peer).getHostString();
+		}
 		if(this.dataChannel != null && this.dataChannel.isConnected()) {
 			try {
 				return ((InetSocketAddress) this.dataChannel.getRemoteAddress()).getHostString();
@@ -107,6 +119,10 @@ public class MultiplexedChannel implements Channel {
 	}
 	
 	public int getRemotePort() {
+		if (this.sharedChannel != null) {
+			SocketAddress peer = this.sharedPeer;
+			return (peer == null) ? 0 : ((InetSocketAddress) peer).getPort();
+		}
 		if(this.dataChannel != null && this.dataChannel.isConnected()) {
 			try {
 				return ((InetSocketAddress) this.dataChannel.getRemoteAddress()).getPort();
@@ -117,6 +133,68 @@ public class MultiplexedChannel implements Channel {
 		return 0;
 	}
 	
+	/**
+	 * Moves the channel onto a socket shared with other channels.<br>
+	 * The dedicated socket of the channel, if any, is closed. From then on, the shared channel delivers the packets of the
+	 * connected peer, or the packets the {@link PacketRouter} resolves to the routing key, through
+	 * {@link #process(byte[], int, int, InetSocketAddress, InetSocketAddress)}.
+	 * 
+	 * @param channel The shared channel
+	 * @param routingKey The key that routes packets from unknown peers to this channel
+	 * @throws IOException If the channel is already shared or the shared channel is closed.
+	 */
+	public void share(SharedChannel channel, String routingKey) throws IOException {
+		if (this.sharedChannel != null) {
+			throw new IOException("The channel is already shared.");
+		}
+		if (!channel.isOpen()) {
+			throw new IOException("The shared channel is closed.");
+		}
+
+		// Release the dedicated socket
+		closeDataChannel();
+
+		this.selectionKey = null;
+		this.dataChannel = channel.getDataChannel();
+		this.sharedChannel = channel;
+		this.routingKey = routingKey;
+		this.sharedPeer = null;
+		channel.register(routingKey, this);
+	}
+
+	/**
+	 * Stops routing packets from unknown peers to this channel. Packets from the connected peer are still delivered.
+	 */
+	public void unroute() {
+		if (this.sharedChannel != null && this.routingKey != null) {
+			this.sharedChannel.unregister(this.routingKey, this);
+			this.routingKey = null;
+		}
+	}
+
+	public boolean isShared() {
+		return this.sharedChannel != null;
+	}
+
+	/**
+	 * Gets the address of the remote peer the channel is connected to.
+	 * 
+	 * @return The address of the remote peer. Returns null if the channel is not connected.
+	 */
+	public SocketAddress getRemoteAddress() {
+		if (this.sharedChannel != null) {
+			return this.sharedPeer;
+		}
+		if (this.dataChannel != null && this.dataChannel.isConnected()) {
+			try {
+				return this.dataChannel.getRemoteAddress();
+			} catch (IOException e) {
+				logger.error("Could not lookup the remote peer address", e);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * 
 	 * @param channel
@@ -139,6 +217,10 @@ public class MultiplexedChannel implements Channel {
 	}
 	
     protected void flush() {
+        if (this.sharedChannel != null) {
+            // Draining the shared socket would discard data of other channels
+            return;
+        }
         try {
             this.receiveBuffer.clear();
             // lets clear the receiver
@@ -178,44 +260,63 @@ public class MultiplexedChannel implements Channel {
 			close();
 			return;
 		} else if (dataLength > 0) {
-			// Copy data from buffer so we don't mess with original
-			byte[] dataCopy = new byte[dataLength];
-			this.receiveBuffer.rewind();
-			this.receiveBuffer.get(dataCopy, 0, dataLength);
-			
-			// Delegate work to the proper handler
-			PacketHandler handler = this.handlers.getHandler(dataCopy);
-			if (handler != null) {
-				try {
-					// Let the handler process the incoming packet.
-					// A response MAY be provided as result.
-					byte[] response = handler.handle(dataCopy, dataLength, 0, (InetSocketAddress) dataChannel.getLocalAddress(), (InetSocketAddress) dataChannel.getRemoteAddress());
-					
-					/*
-					 * If handler intends to send a response to the remote peer,
-					 * queue the data to send it on writing cycle. Only allowed if
-					 * Selection Key is writable!
-					 */
-					if (response != null && response.length > 0) {
-						queueData(response);
-					}
-				} catch (PacketHandlerException e) {
-					logger.error("Could not handle incoming packet: " + e.getMessage());
-				}
-			} else {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("No protocol handler was found to process an incoming packet. Packet will be dropped.");
-                }
+			byte[] response = process(this.receiveData, dataLength, 0, (InetSocketAddress) dataChannel.getLocalAddress(), (InetSocketAddress) dataChannel.getRemoteAddress());
+
+			/*
+			 * If handler intends to send a response to the remote peer,
+			 * queue the data to send it on writing cycle. Only allowed if
+			 * Selection Key is writable!
+			 */
+			if (response != null && response.length > 0) {
+				queueData(response);
 			}
 		}
 	}
 
+	/**
+	 * Lets the capable packet handler process an incoming packet.
+	 * <p>
+	 * Handlers work directly over the receive buffer, which is only valid until the next read. Handlers that need to keep
+	 * the data around must copy it.
+	 * </p>
+	 * 
+	 * @param packet The buffer containing the packet
+	 * @param dataLength The length of the packet
+	 * @param offset The position of the packet inside the buffer
+	 * @param localPeer The local address that received the packet
+	 * @param remotePeer The remote peer who sent the packet
+	 * @return The response to be sent to the remote peer. Returns null if there is no response.
+	 */
+	public byte[] process(byte[] packet, int dataLength, int offset, InetSocketAddress localPeer, InetSocketAddress remotePeer) {
+		PacketHandler handler = this.handlers.getHandler(packet, dataLength, offset);
+		if (handler != null) {
+			try {
+				// Let the handler process the incoming packet.
+				// A response MAY be provided as result.
+				return handler.handle(packet, dataLength, offset, localPeer, remotePeer);
+			} catch (PacketHandlerException e) {
+				logger.error("Could not handle incoming packet: " + e.getMessage());
+			}
+		} else {
+			if (logger.isDebugEnabled()) {
+				logger.debug("No protocol handler was found to process an incoming packet. Packet will be dropped.");
+			}
+		}
+		return null;
+	}
+
     @Override
     public void send() throws IOException {
         byte[] data = this.pendingData.poll();
         if (data != null) {
+            SocketAddress remotePeer = getRemoteAddress();
+            if (remotePeer == null) {
+                // Not connected. Drop the data.
+                send();
+                return;
+            }
             ByteBuffer buffer = ByteBuffer.wrap(data);
-            this.dataChannel.send(buffer, this.dataChannel.getRemoteAddress());
+            this.dataChannel.send(buffer, remotePeer);
 
             // Keep sending queued data, recursive style
             send();
@@ -232,6 +333,9 @@ public class MultiplexedChannel implements Channel {
 	
 	@Override
 	public boolean isConnected() {
+		if (this.sharedChannel != null) {
+			return this.sharedPeer != null;
+		}
 		return this.dataChannel != null && this.dataChannel.isConnected();
 	}
 	
@@ -245,6 +349,16 @@ public class MultiplexedChannel implements Channel {
 	
 	@Override
 	public void connect(SocketAddress address) throws IOException {
+		if (this.sharedChannel != null) {
+			// The shared socket stays unconnected. Only the routing of the peer changes.
+			SocketAddress previous = this.sharedPeer;
+			if (previous != null) {
+				this.sharedChannel.unlatch(previous, this);
+			}
+			this.sharedPeer = address;
+			this.sharedChannel.latch(address, this);
+			return;
+		}
 		if(this.dataChannel == null) {
 			throw new IOException("No channel available to connect.");
 		}
@@ -253,6 +367,14 @@ public class MultiplexedChannel implements Channel {
 	
 	@Override
 	public void disconnect() throws IOException {
+		if (this.sharedChannel != null) {
+			SocketAddress previous = this.sharedPeer;
+			if (previous != null) {
+				this.sharedChannel.unlatch(previous, this);
+				this.sharedPeer = null;
+			}
+			return;
+		}
 		if(isConnected()) {
 			this.dataChannel.disconnect();
 		}
@@ -282,6 +404,19 @@ public class MultiplexedChannel implements Channel {
 	
 	@Override
 	public void close() {
+		if (this.sharedChannel != null) {
+			// Never close the shared socket. Just stop routing packets to this channel.
+			this.sharedChannel.release(this);
+			this.sharedChannel = null;
+			this.routingKey = null;
+			this.sharedPeer = null;
+			this.dataChannel = null;
+			return;
+		}
+		closeDataChannel();
+	}
+
+	private void closeDataChannel() {
 		if (isOpen()) {
 			if (isConnected()) {
 				try {
@@ -298,7 +433,9 @@ public class MultiplexedChannel implements Channel {
 				 * 
 				 * https://telestax.atlassian.net/browse/MEDIA-53
 				 */
-				this.selectionKey.cancel();
+				if (this.selectionKey != null) {
+					this.selectionKey.cancel();
+				}
 				this.dataChannel.socket().close();
 				this.dataChannel.close();
 			} catch (IOException e) {
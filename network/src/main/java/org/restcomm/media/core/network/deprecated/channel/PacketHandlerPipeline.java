@@ -115,10 +115,24 @@ public class PacketHandlerPipeline {
      *         Returns null in case no capable handler exists.
      */
     public PacketHandler getHandler(byte[] packet) {
+        return getHandler(packet, packet.length, 0);
+    }
+
+    /**
+     * Gets the protocol handler capable of processing a packet that occupies a region of a larger buffer.
+     * 
+     * @param packet The buffer containing the packet to be processed
+     * @param dataLength The length of the packet
+     * @param offset The position of the packet inside the buffer
+     * @return The protocol handler capable of processing the packet.<br>
+     *         Returns null in case no capable handler exists.
+     */
+    public PacketHandler getHandler(byte[] packet, int dataLength, int offset) {
         synchronized (this.handlers) {
             // Search for the first handler capable of processing the packet
-            for (PacketHandler protocolHandler : this.handlers) {
-                if (protocolHandler.canHandle(packet)) {
+            for (int i = 0; i < this.handlers.size(); i++) {
+                PacketHandler protocolHandler = this.handlers.get(i);
+                if (protocolHandler.canHandle(packet, dataLength, offset)) {
                     return protocolHandler;
                 }
             }
@@ -0,0 +1,44 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.restcomm.media.core.network.deprecated.channel;
+
+/**
+ * Resolves which channel should process a packet that arrives at a {@link SharedChannel} from an unknown source.
+ */
+public interface PacketRouter {
+
+	/**
+	 * Gets the key of the channel that should process a packet.
+	 * <p>
+	 * Only invoked by the thread that reads the shared channel. The packet is only valid during the call.
+	 * </p>
+	 * 
+	 * @param packet
+	 *            The buffer containing the packet.
+	 * @param offset
+	 *            The position of the packet inside the buffer.
+	 * @param length
+	 *            The length of the packet.
+	 * @return The routing key. Returns null if the packet cannot be routed.
+	 */
+	String getRoutingKey(byte[] packet, int offset, int length);
+
+}
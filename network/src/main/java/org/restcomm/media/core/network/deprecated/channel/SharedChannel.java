@@ -0,0 +1,339 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.restcomm.media.core.network.deprecated.channel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * UDP socket shared by many {@link MultiplexedChannel}s.
+ * <p>
+ * Instead of binding one socket per media leg, channels can be moved onto a shared socket with
+ * {@link MultiplexedChannel#share(SharedChannel, String)}. Incoming packets are routed to a channel by the address of the
+ * remote peer the channel is connected to. Packets from unknown peers, like ICE connectivity checks, are routed by the key
+ * resolved by a {@link PacketRouter}. Routed packets never connect a peer to a channel, since anyone can forge a routing
+ * key: the channel is connected only once its owner has authenticated the peer, for example when ICE selects a candidate
+ * pair after a connectivity check that passed the message integrity check.
+ * </p>
+ * <p>
+ * Every time the selector reports the socket as readable, up to {@link #MAX_BATCH} datagrams are read and dispatched in
+ * place. Responses provided by the packet handlers are sent straight back to the peer that originated the request.
+ * </p>
+ */
+public class SharedChannel implements Channel {
+
+	private static final Logger logger = LogManager.getLogger(SharedChannel.class);
+
+	public static final int MAX_BATCH = 32;
+	private static final int BUFFER_SIZE = 8192;
+
+	private final PacketRouter router;
+
+	// Data channel where data will be received and transmitted
+	private DatagramChannel dataChannel;
+	private SelectionKey selectionKey;
+	private InetSocketAddress localAddress;
+
+	// Routing tables
+	private final Map<SocketAddress, MultiplexedChannel> peers;
+	private final Map<String, MultiplexedChannel> routes;
+
+	// Buffer into which datagrams are read. Handlers process packets in place.
+	private final byte[] receiveData;
+	private final ByteBuffer receiveBuffer;
+
+	// Metrics. Only updated by the thread that reads the channel.
+	private volatile long receivedPackets;
+	private volatile long droppedPackets;
+	private volatile long batches;
+
+	public SharedChannel(PacketRouter router) {
+		this.router = router;
+		this.peers = new ConcurrentHashMap<>();
+		this.routes = new ConcurrentHashMap<>();
+		this.receiveData = new byte[BUFFER_SIZE];
+		this.receiveBuffer = ByteBuffer.wrap(this.receiveData);
+		this.receivedPackets = 0L;
+		this.droppedPackets = 0L;
+		this.batches = 0L;
+	}
+
+	public DatagramChannel getDataChannel() {
+		return dataChannel;
+	}
+
+	public void setSelectionKey(SelectionKey selectionKey) {
+		this.selectionKey = selectionKey;
+	}
+
+	/**
+	 * Routes packets carrying a certain key to a channel.
+	 * 
+	 * @param key
+	 *            The routing key, as resolved by the {@link PacketRouter}.
+	 * @param channel
+	 *            The channel that processes the packets.
+	 */
+	public void register(String key, MultiplexedChannel channel) {
+		this.routes.put(key, channel);
+	}
+
+	/**
+	 * Stops routing packets carrying a certain key.
+	 * 
+	 * @param key
+	 *            The routing key.
+	 * @param channel
+	 *            The channel the key is currently routed to.
+	 */
+	public void unregister(String key, MultiplexedChannel channel) {
+		this.routes.remove(key, channel);
+	}
+
+	/**
+	 * Removes all routes and peers pointing to a channel.
+	 * 
+	 * @param channel
+	 *            The channel to be released.
+	 */
+	public void release(MultiplexedChannel channel) {
+		removeValue(this.routes, channel);
+		removeValue(this.peers, channel);
+	}
+
+	private static <K> void removeValue(Map<K, MultiplexedChannel> map, MultiplexedChannel channel) {
+		Iterator<Entry<K, MultiplexedChannel>> iterator = map.entrySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getValue() == channel) {
+				iterator.remove();
+			}
+		}
+	}
+
+	void latch(SocketAddress peer, MultiplexedChannel channel) {
+		this.peers.put(peer, channel);
+	}
+
+	void unlatch(SocketAddress peer, MultiplexedChannel channel) {
+		this.peers.remove(peer, channel);
+	}
+
+	/**
+	 * Gets the number of channels that can be reached through routing keys.
+	 * 
+	 * @return The number of registered channels.
+	 */
+	public int getChannelCount() {
+		return this.routes.size();
+	}
+
+	/**
+	 * Gets the number of remote peers connected to channels.
+	 * 
+	 * @return The number of connected peers.
+	 */
+	public int getPeerCount() {
+		return this.peers.size();
+	}
+
+	public long getReceivedPackets() {
+		return receivedPackets;
+	}
+
+	public long getDroppedPackets() {
+		return droppedPackets;
+	}
+
+	/**
+	 * Gets the number of times the socket was read.
+	 * 
+	 * @return The number of read batches. Divide {@link #getReceivedPackets()} by this value to get the average batch size.
+	 */
+	public long getBatchCount() {
+		return batches;
+	}
+
+	@Override
+	public void receive() throws IOException {
+		int received = 0;
+		while (received < MAX_BATCH) {
+			// Get buffer ready to read new data
+			this.receiveBuffer.clear();
+
+			SocketAddress remotePeer;
+			try {
+				remotePeer = this.dataChannel.receive(this.receiveBuffer);
+			} catch (IOException e) {
+				logger.warn("Could not read from shared channel " + this.localAddress + ": " + e.getMessage());
+				break;
+			}
+
+			// No more datagrams waiting to be read
+			if (remotePeer == null) {
+				break;
+			}
+			received++;
+
+			int dataLength = this.receiveBuffer.position();
+			if (dataLength > 0) {
+				dispatch((InetSocketAddress) remotePeer, dataLength);
+			}
+		}
+
+		if (received > 0) {
+			this.receivedPackets += received;
+			this.batches++;
+		}
+	}
+
+	private void dispatch(InetSocketAddress remotePeer, int dataLength) {
+		MultiplexedChannel channel = this.peers.get(remotePeer);
+		if (channel == null) {
+			// Unknown peer. Ask the router which channel the packet belongs to.
+			String key = this.router.getRoutingKey(this.receiveData, 0, dataLength);
+			channel = (key == null) ? null : this.routes.get(key);
+			if (channel == null) {
+				this.droppedPackets++;
+				if (logger.isDebugEnabled()) {
+					logger.debug("Shared channel " + this.localAddress + " dropped packet from unknown peer " + remotePeer);
+				}
+				return;
+			}
+		}
+
+		byte[] response = channel.process(this.receiveData, dataLength, 0, this.localAddress, remotePeer);
+		if (response != null && response.length > 0) {
+			try {
+				this.dataChannel.send(ByteBuffer.wrap(response), remotePeer);
+			} catch (IOException e) {
+				logger.warn("Could not send response to " + remotePeer + ": " + e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public void send() throws IOException {
+		// Responses are sent while reading, so nothing is ever pending
+	}
+
+	@Override
+	public boolean hasPendingData() {
+		return false;
+	}
+
+	@Override
+	public String getLocalHost() {
+		return (this.localAddress == null) ? "" : this.localAddress.getHostString();
+	}
+
+	@Override
+	public int getLocalPort() {
+		return (this.localAddress == null) ? 0 : this.localAddress.getPort();
+	}
+
+	@Override
+	public SocketAddress getLocalAddress() {
+		return this.localAddress;
+	}
+
+	@Override
+	public boolean isConnected() {
+		// A shared socket is never connected to a single peer
+		return false;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.dataChannel != null && this.dataChannel.isOpen();
+	}
+
+	@Override
+	public void bind(SocketAddress address) throws IOException {
+		if (!isOpen()) {
+			throw new IOException("The channel is closed.");
+		}
+		this.dataChannel.bind(address);
+		this.localAddress = (InetSocketAddress) this.dataChannel.getLocalAddress();
+	}
+
+	@Override
+	public void connect(SocketAddress address) throws IOException {
+		throw new IOException("A shared channel cannot be connected to a single peer.");
+	}
+
+	@Override
+	public void disconnect() throws IOException {
+		// A shared socket is never connected
+	}
+
+	@Override
+	public void open() throws IOException {
+		if (isOpen()) {
+			throw new IOException("Channel is already open.");
+		}
+		DatagramChannel channel = DatagramChannel.open();
+		channel.configureBlocking(false);
+		this.dataChannel = channel;
+	}
+
+	@Override
+	public void open(DatagramChannel dataChannel) throws IOException {
+		if (dataChannel == null) {
+			throw new IOException("The data channel cannot be null.");
+		}
+
+		if (!dataChannel.isOpen()) {
+			throw new IOException("The data channel is closed.");
+		}
+
+		this.dataChannel = dataChannel;
+		this.localAddress = (InetSocketAddress) dataChannel.getLocalAddress();
+	}
+
+	@Override
+	public void close() {
+		this.routes.clear();
+		this.peers.clear();
+		if (isOpen()) {
+			try {
+				if (this.selectionKey != null) {
+					this.selectionKey.cancel();
+				}
+				this.dataChannel.socket().close();
+				this.dataChannel.close();
+			} catch (IOException e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+	}
+
+}
@@ -34,13 +34,15 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 
 /**
  * Netty-based Network Manager that features both synchronous and asynchronous API.
+ * <p>
+ * The underlying transport is pluggable. By default the native epoll transport is used when available, falling back to NIO
+ * otherwise.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  * 
@@ -55,6 +57,7 @@ public class NettyNetworkManager implements SynchronousNetworkManager<Channel>,
 
     protected final EventLoopGroup eventGroup;
     protected final Bootstrap bootstrap;
+    protected final NettyTransport transport;
     private final AtomicBoolean open;
 
     public NettyNetworkManager() {
@@ -62,15 +65,40 @@ public class NettyNetworkManager implements SynchronousNetworkManager<Channel>,
     }
 
     public NettyNetworkManager(int threadCount) {
-        this(new Bootstrap().channel(NioDatagramChannel.class).group(new NioEventLoopGroup(threadCount)));
+        this(NettyTransport.select(), threadCount);
+    }
+
+    public NettyNetworkManager(NettyTransport transport, int threadCount) {
+        this(transport, threadCount, false);
+    }
+
+    /**
+     * Creates a Network Manager backed by the requested transport.
+     * 
+     * @param transport The preferred transport. Falls back to NIO if not available.
+     * @param threadCount The number of event loops serving the channels.
+     * @param reusePort Whether channels should be bound with {@code SO_REUSEPORT}. Only honored by transports that support it.
+     */
+    public NettyNetworkManager(NettyTransport transport, int threadCount, boolean reusePort) {
+        this(NettyTransport.select(transport).newBootstrap(threadCount, reusePort));
     }
 
     public NettyNetworkManager(Bootstrap bootstrap) {
         this.bootstrap = bootstrap;
         this.eventGroup = bootstrap.group();
+        this.transport = NettyTransport.of(this.eventGroup);
         this.open = new AtomicBoolean(true);
     }
 
+    /**
+     * Gets the transport backing the channels created by this manager.
+     * 
+     * @return The network transport.
+     */
+    public NettyTransport getTransport() {
+        return transport;
+    }
+
     /**
      * {@inheritDoc}
      * 
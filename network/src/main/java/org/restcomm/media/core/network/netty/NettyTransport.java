@@ -0,0 +1,193 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag. 
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.restcomm.media.core.network.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+/**
+ * Netty transports that can back a {@link NettyNetworkManager}.
+ * <p>
+ * The native {@link #EPOLL} transport is only available on Linux when the netty native library can be loaded. Use
+ * {@link #select()} to pick the best transport available at runtime, which falls back to {@link #NIO} otherwise.
+ * </p>
+ */
+public enum NettyTransport {
+
+    /**
+     * Portable transport based on Java NIO selectors.
+     */
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return false;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threadCount) {
+            return new NioEventLoopGroup(threadCount);
+        }
+
+        @Override
+        public Class<? extends DatagramChannel> getDatagramChannelClass() {
+            return NioDatagramChannel.class;
+        }
+    },
+
+    /**
+     * Native Linux transport based on epoll.
+     * <p>
+     * Supports {@code SO_REUSEPORT}, letting several channels bind the same address so the kernel spreads incoming datagrams
+     * across event loops.
+     * </p>
+     */
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public boolean isReusePortSupported() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup newEventLoopGroup(int threadCount) {
+            return new EpollEventLoopGroup(threadCount);
+        }
+
+        @Override
+        public Class<? extends DatagramChannel> getDatagramChannelClass() {
+            return EpollDatagramChannel.class;
+        }
+    };
+
+    /**
+     * Checks whether the transport can be used in the current runtime.
+     * 
+     * @return <code>true</code> if the transport is available; <code>false</code> otherwise.
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * Checks whether the transport allows several channels to bind the same address with {@code SO_REUSEPORT}.
+     * 
+     * @return <code>true</code> if {@code SO_REUSEPORT} is supported; <code>false</code> otherwise.
+     */
+    public abstract boolean isReusePortSupported();
+
+    /**
+     * Creates a new event loop group for this transport.
+     * 
+     * @param threadCount The number of event loops in the group.
+     * @return The new event loop group.
+     */
+    public abstract EventLoopGroup newEventLoopGroup(int threadCount);
+
+    /**
+     * Gets the datagram channel implementation of this transport.
+     * 
+     * @return The class of the datagram channel.
+     */
+    public abstract Class<? extends DatagramChannel> getDatagramChannelClass();
+
+    /**
+     * Builds a bootstrap for datagram channels of this transport.
+     * 
+     * @param threadCount The number of event loops serving the channels.
+     * @param reusePort Whether channels should be bound with {@code SO_REUSEPORT}. Ignored if the transport does not support it.
+     * @return The new bootstrap.
+     */
+    public Bootstrap newBootstrap(int threadCount, boolean reusePort) {
+        final Bootstrap bootstrap = new Bootstrap().channel(getDatagramChannelClass()).group(newEventLoopGroup(threadCount));
+        if (reusePort) {
+            enableReusePort(bootstrap);
+        }
+        return bootstrap;
+    }
+
+    /**
+     * Makes channels created by a bootstrap of this transport bind with {@code SO_REUSEPORT}.
+     * 
+     * @param bootstrap The bootstrap to configure.
+     * @return <code>true</code> if the option was set; <code>false</code> if the transport does not support it.
+     */
+    public boolean enableReusePort(Bootstrap bootstrap) {
+        if (!isReusePortSupported()) {
+            return false;
+        }
+        bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        bootstrap.option(ChannelOption.SO_REUSEADDR, true);
+        return true;
+    }
+
+    /**
+     * Selects the best transport available in the current runtime.
+     * <p>
+     * Native epoll is preferred when available. Otherwise the manager falls back to NIO.
+     * </p>
+     * 
+     * @return The selected transport.
+     */
+    public static NettyTransport select() {
+        return EPOLL.isAvailable() ? EPOLL : NIO;
+    }
+
+    /**
+     * Selects the requested transport, falling back to NIO if it is not available in the current runtime.
+     * 
+     * @param preferred The preferred transport.
+     * @return The preferred transport, if available, or {@link #NIO} otherwise.
+     */
+    public static NettyTransport select(NettyTransport preferred) {
+        return (preferred != null && preferred.isAvailable()) ? preferred : NIO;
+    }
+
+    /**
+     * Identifies the transport backing an event loop group.
+     * 
+     * @param group The event loop group.
+     * @return The transport that created the group.
+     */
+    public static NettyTransport of(EventLoopGroup group) {
+        if (EPOLL.isAvailable() && group instanceof EpollEventLoopGroup) {
+            return EPOLL;
+        }
+        return NIO;
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.network.deprecated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OutboundRingTest {
+
+    private DatagramChannel sender;
+    private DatagramChannel receiver;
+    private InetSocketAddress destination;
+
+    @Before
+    public void before() throws Exception {
+        sender = DatagramChannel.open();
+        sender.bind(new InetSocketAddress("127.0.0.1", 0));
+        receiver = DatagramChannel.open();
+        receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+        destination = (InetSocketAddress) receiver.getLocalAddress();
+    }
+
+    @After
+    public void after() throws Exception {
+        sender.close();
+        receiver.close();
+    }
+
+    private static ByteBuffer packet(int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(value);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testPacketsSentOnFlush() throws Exception {
+        // given
+        final OutboundRing ring = new OutboundRing(16);
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ring.offer(sender, packet(i), destination));
+        }
+        receiver.configureBlocking(false);
+        final Object beforeFlush = receiver.receive(buffer);
+        final int flushed = ring.flush();
+
+        // then
+        assertNull(beforeFlush);
+        assertEquals(5, flushed);
+        assertEquals(0, ring.size());
+        receiver.configureBlocking(true);
+        for (int i = 0; i < 5; i++) {
+            buffer.clear();
+            receiver.receive(buffer);
+            buffer.flip();
+            assertEquals(i, buffer.getInt());
+        }
+        assertEquals(1, ring.getBatches());
+        assertEquals(5, ring.getPackets());
+        assertEquals(5, ring.getMaxBatchSize());
+        assertEquals(5.0, ring.getAverageBatchSize(), 0.0);
+        assertTrue(ring.getLastFlushLatency() > 0);
+    }
+
+    @Test
+    public void testOfferCopiesBuffer() throws Exception {
+        // given
+        final OutboundRing ring = new OutboundRing(4);
+        final ByteBuffer reused = packet(1);
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        // when
+        ring.offer(sender, reused, destination);
+        reused.clear();
+        reused.putInt(2);
+        ring.flush();
+        receiver.receive(buffer);
+        buffer.flip();
+
+        // then
+        assertEquals(1, buffer.getInt());
+    }
+
+    @Test
+    public void testRingFull() {
+        // given
+        final OutboundRing ring = new OutboundRing(3);
+
+        // when
+        for (int i = 0; i < ring.getCapacity(); i++) {
+            assertTrue(ring.offer(sender, packet(i), destination));
+        }
+        final boolean overflow = ring.offer(sender, packet(10), destination);
+        ring.flush();
+        final boolean afterFlush = ring.offer(sender, packet(11), destination);
+
+        // then
+        assertEquals(4, ring.getCapacity());
+        assertFalse(overflow);
+        assertTrue(afterFlush);
+        assertEquals(1, ring.getOverflows());
+        assertEquals(1, ring.size());
+    }
+
+    @Test
+    public void testEnqueueDrainsFullRingInOrder() throws Exception {
+        // given
+        final OutboundRing ring = new OutboundRing(4);
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        for (int i = 0; i < ring.getCapacity(); i++) {
+            assertTrue(ring.offer(sender, packet(i), destination));
+        }
+
+        // when
+        final boolean enqueued = ring.enqueue(sender, packet(4), destination);
+        ring.flush();
+
+        // then
+        assertTrue(enqueued);
+        assertEquals(0, ring.getDrops());
+        for (int i = 0; i <= 4; i++) {
+            buffer.clear();
+            receiver.receive(buffer);
+            buffer.flip();
+            assertEquals(i, buffer.getInt());
+        }
+    }
+
+    @Test
+    public void testEnqueueDropsPacketTooLarge() {
+        // given
+        final OutboundRing ring = new OutboundRing(4);
+        final ByteBuffer large = ByteBuffer.allocate(OutboundRing.MAX_PACKET_SIZE + 1);
+
+        // when
+        final boolean enqueued = ring.enqueue(sender, large, destination);
+
+        // then
+        assertFalse(enqueued);
+        assertEquals(1, ring.getDrops());
+    }
+
+    @Test
+    public void testPacketTooLarge() {
+        // given
+        final OutboundRing ring = new OutboundRing(4);
+        final ByteBuffer large = ByteBuffer.allocate(OutboundRing.MAX_PACKET_SIZE + 1);
+
+        // when
+        final boolean offered = ring.offer(sender, large, destination);
+
+        // then
+        assertFalse(offered);
+        assertEquals(0, ring.size());
+        assertEquals(1, ring.getOverflows());
+    }
+
+    @Test
+    public void testConcurrentOffers() throws Exception {
+        // given
+        final OutboundRing ring = new OutboundRing(4096);
+        final int threads = 4;
+        final int perThread = 500;
+        final Thread[] workers = new Thread[threads];
+
+        // when
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        ring.offer(sender, packet(j), destination);
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // then
+        assertEquals(threads * perThread, ring.size());
+        assertEquals(threads * perThread, ring.flush());
+        assertEquals(0, ring.getFailures());
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.network.deprecated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RtpPortAllocatorTest {
+
+    @Test
+    public void testAcquireAllEvenPorts() {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(1001, 1200, 0);
+        final Set<Integer> ports = new HashSet<Integer>();
+
+        // when
+        for (int i = 0; i < allocator.getCapacity(); i++) {
+            ports.add(allocator.acquire());
+        }
+        final int exhausted = allocator.acquire();
+
+        // then
+        assertEquals(100, allocator.getCapacity());
+        assertEquals(100, ports.size());
+        for (Integer port : ports) {
+            assertTrue(port % 2 == 0);
+            assertTrue(port >= 1002 && port <= 1200);
+        }
+        assertEquals(-1, exhausted);
+        assertEquals(1, allocator.getFailures());
+        assertEquals(100, allocator.getInUse());
+        assertEquals(0, allocator.getAvailable());
+        assertEquals(1.0, allocator.getUtilization(), 0.0);
+    }
+
+    @Test
+    public void testReleaseWithoutQuarantine() {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(2000, 2000, 0);
+        final int port = allocator.acquire();
+
+        // when
+        final boolean released = allocator.release(port);
+        final boolean releasedTwice = allocator.release(port);
+
+        // then
+        assertTrue(released);
+        assertFalse(releasedTwice);
+        assertFalse(allocator.isInUse(port));
+        assertEquals(port, allocator.acquire());
+        assertTrue(allocator.isInUse(port));
+    }
+
+    @Test
+    public void testReleasedPortIsQuarantined() throws Exception {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(2000, 2002, 200);
+        final int first = allocator.acquire();
+        final int second = allocator.acquire();
+
+        // when
+        allocator.release(first);
+        final int duringQuarantine = allocator.acquire();
+        Thread.sleep(300);
+        final int afterQuarantine = allocator.acquire();
+
+        // then
+        assertTrue(first != second);
+        assertEquals(-1, duringQuarantine);
+        assertEquals(first, afterQuarantine);
+        assertEquals(0, allocator.getQuarantined());
+        assertEquals(2, allocator.getInUse());
+    }
+
+    @Test
+    public void testMetrics() {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(4000, 4006, 60000);
+
+        // when
+        final int port = allocator.acquire();
+        allocator.acquire();
+        allocator.release(port);
+
+        // then
+        assertEquals(4, allocator.getCapacity());
+        assertEquals(1, allocator.getInUse());
+        assertEquals(1, allocator.getQuarantined());
+        assertEquals(2, allocator.getAvailable());
+        assertEquals(0.25, allocator.getUtilization(), 0.0);
+        assertEquals(2, allocator.getAcquisitions());
+    }
+
+    @Test
+    public void testReleaseUnknownPort() {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(4000, 4010, 0);
+
+        // when
+        final boolean odd = allocator.release(4001);
+        final boolean outOfRange = allocator.release(5000);
+        final boolean notAcquired = allocator.release(4002);
+
+        // then
+        assertFalse(odd);
+        assertFalse(outOfRange);
+        assertFalse(notAcquired);
+        assertEquals(0, allocator.getInUse());
+    }
+
+    @Test
+    public void testConcurrentAcquisitions() throws Exception {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(10000, 20000, 0);
+        final int threads = 8;
+        final int perThread = 500;
+        final int[][] acquired = new int[threads][perThread];
+        final Thread[] workers = new Thread[threads];
+
+        // when
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            workers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        acquired[index][j] = allocator.acquire();
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // then
+        final Set<Integer> ports = new HashSet<Integer>();
+        for (int[] row : acquired) {
+            for (int port : row) {
+                assertTrue(port > 0);
+                ports.add(port);
+            }
+        }
+        assertEquals(threads * perThread, ports.size());
+        assertEquals(threads * perThread, allocator.getInUse());
+    }
+
+}
@@ -27,12 +27,18 @@
 
 package org.restcomm.media.core.network.deprecated;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -43,6 +49,8 @@ import org.junit.Test;
 import org.restcomm.media.core.network.deprecated.ProtocolHandler;
 import org.restcomm.media.core.network.deprecated.RtpPortManager;
 import org.restcomm.media.core.network.deprecated.UdpManager;
+import org.restcomm.media.core.network.deprecated.channel.PacketRouter;
+import org.restcomm.media.core.network.deprecated.channel.SharedChannel;
 import org.restcomm.media.core.scheduler.Scheduler;
 import org.restcomm.media.core.scheduler.ServiceScheduler;
 
@@ -54,6 +62,8 @@ public class UdpPeripheryTest {
     
     private static final Logger LOGGER = LogManager.getLogger(UdpPeripheryTest.class);
 
+    private static final int PORT_ANY = -1;
+
     private UdpManager udpPeriphery;
     private Scheduler scheduler = new ServiceScheduler(); 
 
@@ -85,6 +95,107 @@ public class UdpPeripheryTest {
         assertTrue("Excepted bound socket", channel.socket().isBound());    	
     }
 
+    @Test
+    public void testBindWithPortAllocator() throws Exception {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(46000, 46002, 60000);
+        final UdpManager manager = new UdpManager(scheduler, allocator, new RtpPortManager());
+        final DatagramChannel busy = DatagramChannel.open();
+        busy.bind(new InetSocketAddress("127.0.0.1", 46000));
+        final DatagramChannel channel = DatagramChannel.open();
+
+        try {
+            // when
+            manager.bind(channel, PORT_ANY);
+            final int port = channel.socket().getLocalPort();
+            channel.close();
+            manager.release(channel);
+
+            // then
+            assertEquals(46002, port);
+            assertEquals(0, allocator.getInUse());
+            assertEquals(2, allocator.getQuarantined());
+            assertEquals(-1, allocator.acquire());
+        } finally {
+            busy.close();
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testReleasePortAfterBusyExplicitPort() throws Exception {
+        // given
+        final RtpPortAllocator allocator = new RtpPortAllocator(46010, 46014, 0);
+        final UdpManager manager = new UdpManager(scheduler, allocator, new RtpPortManager());
+        final DatagramChannel busy = DatagramChannel.open();
+        busy.bind(new InetSocketAddress("127.0.0.1", 46011));
+        final DatagramChannel channel = DatagramChannel.open();
+        final DatagramChannel explicit = DatagramChannel.open();
+
+        try {
+            // when
+            manager.bind(channel, 46011);
+            final int port = channel.socket().getLocalPort();
+            final int inUse = allocator.getInUse();
+            channel.close();
+            manager.release(channel);
+
+            manager.bind(explicit, 46013);
+            explicit.close();
+            manager.release(explicit);
+
+            // then
+            assertEquals(0, port % 2);
+            assertEquals(1, inUse);
+            assertEquals(0, allocator.getInUse());
+            assertEquals(allocator.getCapacity(), allocator.getAvailable());
+        } finally {
+            busy.close();
+            channel.close();
+            explicit.close();
+        }
+    }
+
+    @Test
+    public void testConfigurePortAllocator() throws Exception {
+        // when
+        final UdpManager manager = new UdpManager(scheduler, 46000, 46010, 1500, new RtpPortManager());
+
+        // then
+        final RtpPortAllocator allocator = manager.getPortAllocator();
+        assertNotNull(allocator);
+        assertEquals(46000, manager.getLowestPort());
+        assertEquals(46010, manager.getHighestPort());
+        assertEquals(1500, allocator.getQuarantine());
+    }
+
+    @Test
+    public void testOutboundRingsOwnedBySelectors() throws Exception {
+        // given
+        final UdpManager manager = new UdpManager(scheduler, new RtpPortManager(), new RtpPortManager());
+        manager.setBatchTransmission(true);
+        manager.start();
+        final DatagramChannel unregistered = DatagramChannel.open();
+
+        try {
+            // when
+            final DatagramChannel channel = manager.open(new TestHandler());
+            final OutboundRing ring = manager.getOutboundRing(channel);
+
+            // then
+            assertEquals(manager.getSelectorCount(), manager.getOutboundRingCount());
+            assertNotNull(ring);
+            assertSame(ring, manager.getOutboundRing(channel));
+            assertNull(manager.getOutboundRing(unregistered));
+        } finally {
+            manager.stop();
+            unregistered.close();
+        }
+
+        // then
+        assertEquals(0, manager.getOutboundRingCount());
+    }
+
     /**
      * Test of poll method, of class UdpPeriphery.
      */
@@ -100,9 +211,138 @@ public class UdpPeripheryTest {
         channel.socket().close();
     }
 
+    @Test
+    public void testSelectorThreads() throws Exception {
+        // given
+        final UdpManager manager = new UdpManager(scheduler, new RtpPortManager(), new RtpPortManager());
+        manager.setUseSelectorThreads(true);
+        final int channelCount = ServiceScheduler.POOL_SIZE * 2;
+        final TestHandler[] handlers = new TestHandler[channelCount];
+        final DatagramChannel[] channels = new DatagramChannel[channelCount];
+
+        try {
+            manager.start();
+
+            // when
+            for (int i = 0; i < channelCount; i++) {
+                handlers[i] = new TestHandler();
+                channels[i] = manager.open(handlers[i]);
+                manager.bind(channels[i], PORT_ANY);
+            }
+
+            // then - channels are evenly balanced across selectors
+            assertEquals(ServiceScheduler.POOL_SIZE, manager.getSelectorCount());
+            for (int i = 0; i < manager.getSelectorCount(); i++) {
+                assertEquals(2, manager.getChannelCount(i));
+            }
+
+            // when - send data to the last channel
+            DatagramChannel sender = DatagramChannel.open();
+            sender.send(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), new InetSocketAddress("127.0.0.1", channels[channelCount - 1].socket().getLocalPort()));
+            sender.close();
+
+            // then - selector thread wakes up and delivers data
+            assertTrue(handlers[channelCount - 1].latch.await(1, TimeUnit.SECONDS));
+            long ready = 0;
+            for (int i = 0; i < manager.getSelectorCount(); i++) {
+                ready += manager.getReadyCount(i);
+            }
+            assertTrue(ready > 0);
+        } finally {
+            for (DatagramChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testClosedChannelsLeaveChannelCount() throws Exception {
+        // given
+        final DatagramChannel channel = udpPeriphery.open(new TestHandler());
+        final int registered = totalChannelCount(udpPeriphery);
+
+        // when
+        channel.close();
+        int remaining = totalChannelCount(udpPeriphery);
+        for (int i = 0; i < 100 && remaining > 0; i++) {
+            Thread.sleep(10);
+            remaining = totalChannelCount(udpPeriphery);
+        }
+
+        // then - cancelled key is dropped by the next select
+        assertEquals(1, registered);
+        assertEquals(0, remaining);
+    }
+
+    private static int totalChannelCount(UdpManager manager) {
+        int count = 0;
+        for (int i = 0; i < manager.getSelectorCount(); i++) {
+            count += manager.getChannelCount(i);
+        }
+        return count;
+    }
+
+    @Test
+    public void testSharedChannels() throws Exception {
+        // given
+        final UdpManager manager = new UdpManager(scheduler, new RtpPortManager(), new RtpPortManager());
+        manager.setUseSelectorThreads(true);
+        manager.setSharedPort(45000, new PacketRouter() {
+
+            @Override
+            public String getRoutingKey(byte[] packet, int offset, int length) {
+                return null;
+            }
+
+        });
+
+        try {
+            // when
+            manager.start();
+
+            // then - one shared socket per selector, on consecutive ports
+            assertEquals(manager.getSelectorCount(), manager.getSharedChannelCount());
+            for (int i = 0; i < manager.getSharedChannelCount(); i++) {
+                SharedChannel sharedChannel = manager.getSharedChannel(i);
+                assertTrue(sharedChannel.isOpen());
+                assertEquals(45000 + i, sharedChannel.getLocalPort());
+            }
+            assertNotNull(manager.getSharedChannel());
+
+            // when - data from an unknown peer cannot be routed
+            DatagramChannel sender = DatagramChannel.open();
+            sender.send(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), new InetSocketAddress("127.0.0.1", 45000));
+            sender.close();
+            Thread.sleep(100);
+
+            // then
+            assertEquals(1, manager.getSharedChannel(0).getDroppedPackets());
+        } finally {
+            manager.stop();
+        }
+
+        // then - shared sockets are closed with the manager
+        assertEquals(0, manager.getSharedChannelCount());
+        DatagramChannel rebound = DatagramChannel.open();
+        rebound.bind(new InetSocketAddress("127.0.0.1", 45000));
+        assertTrue(rebound.socket().isBound());
+        rebound.close();
+    }
+
     private class TestHandler implements ProtocolHandler {
 
+        private final CountDownLatch latch = new CountDownLatch(1);
+
         public void receive(DatagramChannel channel) {
+            try {
+                channel.receive(ByteBuffer.allocate(16));
+            } catch (IOException e) {
+                LOGGER.warn("Could not read from channel", e);
+            }
+            latch.countDown();
         }
 
         public void send(DatagramChannel channel) {
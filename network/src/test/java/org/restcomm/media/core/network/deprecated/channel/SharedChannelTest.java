@@ -0,0 +1,160 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.restcomm.media.core.network.deprecated.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SharedChannel}
+ */
+public class SharedChannelTest {
+
+	private static final PacketRouter PAYLOAD_ROUTER = new PacketRouter() {
+
+		@Override
+		public String getRoutingKey(byte[] packet, int offset, int length) {
+			return new String(packet, offset, length);
+		}
+
+	};
+
+	private SharedChannel sharedChannel;
+	private DatagramChannel remoteChannel;
+
+	@Before
+	public void before() throws IOException {
+		this.sharedChannel = new SharedChannel(PAYLOAD_ROUTER);
+		this.sharedChannel.open();
+		this.sharedChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+
+		this.remoteChannel = DatagramChannel.open();
+		this.remoteChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+		this.remoteChannel.configureBlocking(false);
+	}
+
+	@After
+	public void after() throws IOException {
+		this.sharedChannel.close();
+		this.remoteChannel.close();
+	}
+
+	private void sendToShared(String data) throws Exception {
+		this.remoteChannel.send(ByteBuffer.wrap(data.getBytes()), this.sharedChannel.getLocalAddress());
+		Thread.sleep(50);
+		this.sharedChannel.receive();
+	}
+
+	private String receiveFromShared() throws Exception {
+		Thread.sleep(50);
+		ByteBuffer buffer = ByteBuffer.allocate(100);
+		if (this.remoteChannel.receive(buffer) == null) {
+			return null;
+		}
+		return new String(buffer.array(), 0, buffer.position());
+	}
+
+	@Test
+	public void testRouting() throws Exception {
+		// given
+		MultiplexedChannel high = new MultiplexedChannel();
+		high.handlers.addHandler(new HighPriorityPacketHandlerMock());
+		high.share(this.sharedChannel, "high");
+		MultiplexedChannel low = new MultiplexedChannel();
+		low.handlers.addHandler(new LowPriorityPacketHandlerMock());
+		low.share(this.sharedChannel, "low");
+
+		// when
+		sendToShared("high");
+		String response = receiveFromShared();
+
+		// then - routed packets do not connect the unauthenticated peer
+		assertEquals("received high", response);
+		assertFalse(high.isConnected());
+		assertFalse(low.isConnected());
+		assertEquals(2, this.sharedChannel.getChannelCount());
+		assertEquals(0, this.sharedChannel.getPeerCount());
+
+		// when - owner of the channel authenticates the peer
+		high.connect(this.remoteChannel.getLocalAddress());
+
+		// then
+		assertTrue(high.isConnected());
+		assertEquals(this.remoteChannel.getLocalAddress(), high.getRemoteAddress());
+		assertEquals(1, this.sharedChannel.getPeerCount());
+
+		// when - traffic of a connected peer only reaches its channel
+		sendToShared("low");
+
+		// then
+		assertNull(receiveFromShared());
+		assertFalse(low.isConnected());
+		assertEquals(2, this.sharedChannel.getReceivedPackets());
+		assertEquals(0, this.sharedChannel.getDroppedPackets());
+	}
+
+	@Test
+	public void testUnknownPeerIsDropped() throws Exception {
+		// given
+		MultiplexedChannel high = new MultiplexedChannel();
+		high.handlers.addHandler(new HighPriorityPacketHandlerMock());
+		high.share(this.sharedChannel, "high");
+
+		// when
+		sendToShared("unknown");
+
+		// then
+		assertNull(receiveFromShared());
+		assertFalse(high.isConnected());
+		assertEquals(1, this.sharedChannel.getDroppedPackets());
+	}
+
+	@Test
+	public void testCloseReleasesRoutes() throws Exception {
+		// given
+		MultiplexedChannel high = new MultiplexedChannel();
+		high.handlers.addHandler(new HighPriorityPacketHandlerMock());
+		high.share(this.sharedChannel, "high");
+		sendToShared("high");
+		high.connect(this.remoteChannel.getLocalAddress());
+
+		// when
+		high.close();
+
+		// then
+		assertFalse(high.isShared());
+		assertEquals(0, this.sharedChannel.getChannelCount());
+		assertEquals(0, this.sharedChannel.getPeerCount());
+		assertTrue(this.sharedChannel.isOpen());
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag. 
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.restcomm.media.core.network.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+public class NettyTransportTest {
+
+    private EventLoopGroup eventLoopGroup;
+
+    @After
+    public void cleanup() {
+        if (this.eventLoopGroup != null) {
+            if (!this.eventLoopGroup.isShutdown()) {
+                this.eventLoopGroup.shutdownGracefully(0L, 0L, TimeUnit.MILLISECONDS);
+            }
+            this.eventLoopGroup = null;
+        }
+    }
+
+    @Test
+    public void testSelectBestTransport() {
+        // when
+        final NettyTransport transport = NettyTransport.select();
+
+        // then
+        assertTrue(transport.isAvailable());
+        assertEquals(Epoll.isAvailable() ? NettyTransport.EPOLL : NettyTransport.NIO, transport);
+    }
+
+    @Test
+    public void testFallbackToNio() {
+        // then
+        assertEquals(NettyTransport.NIO, NettyTransport.select(NettyTransport.NIO));
+        assertEquals(NettyTransport.NIO, NettyTransport.select(null));
+        if (!Epoll.isAvailable()) {
+            assertEquals(NettyTransport.NIO, NettyTransport.select(NettyTransport.EPOLL));
+        }
+    }
+
+    @Test
+    public void testNioBootstrap() {
+        // given
+        final Bootstrap bootstrap = NettyTransport.NIO.newBootstrap(1, true);
+        this.eventLoopGroup = bootstrap.group();
+
+        // when
+        final NettyNetworkManager networkManager = new NettyNetworkManager(bootstrap);
+
+        // then
+        assertTrue(this.eventLoopGroup instanceof NioEventLoopGroup);
+        assertEquals(NettyTransport.NIO, networkManager.getTransport());
+    }
+
+    @Test
+    public void testEnableReusePort() {
+        // given
+        final NettyTransport transport = NettyTransport.select();
+        final Bootstrap bootstrap = transport.newBootstrap(1, false);
+        this.eventLoopGroup = bootstrap.group();
+
+        // when
+        final boolean enabled = transport.enableReusePort(bootstrap);
+
+        // then
+        assertEquals(transport.isReusePortSupported(), enabled);
+        assertFalse(NettyTransport.NIO.enableReusePort(new Bootstrap()));
+    }
+
+}
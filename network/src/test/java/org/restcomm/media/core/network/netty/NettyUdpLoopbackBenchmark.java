@@ -0,0 +1,158 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag. 
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+
+package org.restcomm.media.core.network.netty;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * Measures UDP loopback receive throughput of each available {@link NettyTransport}.
+ * <p>
+ * Several sender threads blast RTP-sized datagrams over loopback to a receiver managed by a {@link NettyNetworkManager}. When
+ * the transport supports {@code SO_REUSEPORT}, one listener is bound per event loop on the same port.
+ * </p>
+ * <p>
+ * Not part of the regular test suite. Run with:
+ * <code>java NettyUdpLoopbackBenchmark [senders] [packetsPerSender] [eventLoops]</code>
+ * </p>
+ */
+public class NettyUdpLoopbackBenchmark {
+
+    // 12 bytes of RTP header plus 20ms of G.711 audio
+    private static final int PACKET_SIZE = 172;
+
+    public static void main(String[] args) throws Exception {
+        final int senders = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int packets = args.length > 1 ? Integer.parseInt(args[1]) : 250000;
+        final int eventLoops = args.length > 2 ? Integer.parseInt(args[2]) : NettyNetworkManager.N_THREADS;
+
+        for (NettyTransport transport : NettyTransport.values()) {
+            if (transport.isAvailable()) {
+                run(transport, senders, packets, eventLoops);
+            } else {
+                System.out.println(transport + ": not available");
+            }
+        }
+    }
+
+    private static void run(NettyTransport transport, int senders, int packets, int eventLoops) throws Exception {
+        final CountingHandler counter = new CountingHandler();
+        final NettyNetworkManager networkManager = new NettyNetworkManager(transport.newBootstrap(eventLoops, true).handler(counter));
+        try {
+            // Bind receivers
+            final int listeners = transport.isReusePortSupported() ? eventLoops : 1;
+            final Channel first = networkManager.openChannel();
+            first.bind(new InetSocketAddress("127.0.0.1", 0)).sync();
+            final InetSocketAddress address = (InetSocketAddress) first.localAddress();
+            for (int i = 1; i < listeners; i++) {
+                networkManager.openChannel().bind(address).sync();
+            }
+
+            // Blast traffic
+            final CountDownLatch done = new CountDownLatch(senders);
+            final AtomicLong sent = new AtomicLong(0);
+            final long start = System.nanoTime();
+            for (int i = 0; i < senders; i++) {
+                new Thread(new Sender(address, packets, sent, done), "udp-sender-" + i).start();
+            }
+            done.await();
+
+            // Let receivers drain their socket buffers
+            long received = counter.get();
+            long previous;
+            do {
+                previous = received;
+                Thread.sleep(100);
+                received = counter.get();
+            } while (received != previous);
+            final long elapsed = System.nanoTime() - start;
+
+            final double seconds = elapsed / 1e9;
+            System.out.println(String.format("%s: listeners=%d sent=%d received=%d (%.1f%%) throughput=%.0f pps", transport,
+                    listeners, sent.get(), received, 100.0 * received / sent.get(), received / seconds));
+        } finally {
+            networkManager.close();
+        }
+    }
+
+    @Sharable
+    private static final class CountingHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+
+        private final AtomicLong count = new AtomicLong(0);
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
+            count.incrementAndGet();
+        }
+
+        long get() {
+            return count.get();
+        }
+
+    }
+
+    private static final class Sender implements Runnable {
+
+        private final InetSocketAddress target;
+        private final int packets;
+        private final AtomicLong sent;
+        private final CountDownLatch done;
+
+        Sender(InetSocketAddress target, int packets, AtomicLong sent, CountDownLatch done) {
+            this.target = target;
+            this.packets = packets;
+            this.sent = sent;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            // Distinct source ports let SO_REUSEPORT hash senders to different listeners
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.connect(this.target);
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(PACKET_SIZE);
+                for (int i = 0; i < this.packets; i++) {
+                    buffer.clear();
+                    channel.write(buffer);
+                }
+                this.sent.addAndGet(this.packets);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                this.done.countDown();
+            }
+        }
+
+    }
+
+}
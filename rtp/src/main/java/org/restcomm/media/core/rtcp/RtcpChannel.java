@@ -296,6 +296,7 @@ public class RtcpChannel extends MultiplexedChannel implements DtlsListener, Ice
 		 */
 		this.rtcpHandler.leaveRtpSession();
 		this.bound = false;
+		this.udpManager.release(this.dataChannel);
 		super.close();
 		reset();
 	}
@@ -22,8 +22,10 @@ package org.restcomm.media.core.rtcp;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -51,18 +53,23 @@ public class RtcpHandler implements PacketHandler {
 
     /* Core elements */
     private DatagramChannel channel;
+    private volatile SocketAddress remotePeer;
     private ByteBuffer byteBuffer;
+    private final byte[] txData;
     private int pipelinePriority;
     
     /* Scheduler */
     private final Scheduler scheduler;
     private TxTask scheduledTask;
+    private final TxTask reportTask;
+    private final TxTask byeTask;
     private Future<?> reportTaskFuture;
     private final SsrcTask ssrcTask;
     private Future<?> ssrcTaskFuture;
 
     /* RTCP elements */
     private final RtpStatistics statistics;
+    private final RtcpVoipMetrics voipMetrics;
 
     /** The elapsed time (milliseconds) since an RTCP packet was transmitted */
     private long tp;
@@ -86,13 +93,17 @@ public class RtcpHandler implements PacketHandler {
         // Scheduler
         this.scheduler = scheduler;
         this.ssrcTask = new SsrcTask();
+        this.reportTask = new TxTask(RtcpPacketType.RTCP_REPORT);
+        this.byeTask = new TxTask(RtcpPacketType.RTCP_BYE);
 
         // core stuff
         this.pipelinePriority = 0;
         this.byteBuffer = ByteBuffer.allocateDirect(RtpPacket.RTP_PACKET_MAX_SIZE);
+        this.txData = new byte[RtcpReportWriter.MAX_LENGTH];
 
         // rtcp stuff
         this.statistics = statistics;
+        this.voipMetrics = new RtcpVoipMetrics();
         this.scheduledTask = null;
         this.tp = 0;
         this.tn = -1;
@@ -128,6 +139,19 @@ public class RtcpHandler implements PacketHandler {
         this.channel = channel;
     }
 
+    /**
+     * Sets the peer reports are sent to when the channel is shared by many legs, and thus never connected.
+     * 
+     * @param remotePeer The address of the remote peer. Null to send to the peer the channel is connected to.
+     */
+    public void setRemotePeer(SocketAddress remotePeer) {
+        this.remotePeer = remotePeer;
+    }
+
+    private boolean isConnected() {
+        return this.channel != null && this.channel.isOpen() && (this.remotePeer != null || this.channel.isConnected());
+    }
+
     /**
      * Gets whether the handler is in initial stage.<br>
      * The handler is in initial stage until it has sent at least one RTCP packet during the current RTP session.
@@ -200,7 +224,7 @@ public class RtcpHandler implements PacketHandler {
             // Send BYE
             // Do not run in separate thread so channel can be properly closed by the owner of this handler
             this.statistics.setRtcpPacketType(RtcpPacketType.RTCP_BYE);
-            this.scheduledTask = new TxTask(RtcpPacketType.RTCP_BYE);
+            this.scheduledTask = this.byeTask;
             this.scheduledTask.run();
         }
     }
@@ -225,7 +249,7 @@ public class RtcpHandler implements PacketHandler {
     private void scheduleRtcp(long timestamp, RtcpPacketType packetType) {
         // Create the task and schedule it
         long interval = resolveInterval(timestamp);
-        this.scheduledTask = new TxTask(packetType);
+        this.scheduledTask = getTask(packetType);
 
         try {
             this.reportTaskFuture = this.scheduler.schedule(this.scheduledTask, interval, TimeUnit.MILLISECONDS);
@@ -237,7 +261,7 @@ public class RtcpHandler implements PacketHandler {
     }
 
     private void scheduleNow(RtcpPacketType packetType) {
-        this.scheduledTask = new TxTask(packetType);
+        this.scheduledTask = getTask(packetType);
         try {
             this.reportTaskFuture = this.scheduler.submit(this.scheduledTask);
             // Let the RTP handler know what is the type of scheduled packet
@@ -247,6 +271,16 @@ public class RtcpHandler implements PacketHandler {
         }
     }
 
+    /**
+     * Gets the task that sends packets of a given type. Tasks are reused across transmissions.
+     * 
+     * @param packetType The type of RTCP packet
+     * @return The transmission task
+     */
+    private TxTask getTask(RtcpPacketType packetType) {
+        return RtcpPacketType.RTCP_BYE.equals(packetType) ? this.byeTask : this.reportTask;
+    }
+
     /**
      * Re-schedules a previously scheduled event.
      * 
@@ -391,7 +425,17 @@ public class RtcpHandler implements PacketHandler {
         return null;
     }
 
-    private void sendRtcpPacket(RtcpPacket packet) throws IOException {
+    /**
+     * Encodes an RTCP compound packet from the current statistics into the transmission buffer.
+     * 
+     * @param type The type of packet to encode
+     * @return The length of the encoded packet
+     */
+    private int encodeRtcpPacket(RtcpPacketType type) {
+        return RtcpReportWriter.write(this.txData, 0, this.statistics, RtcpPacketType.RTCP_BYE.equals(type), this.voipMetrics);
+    }
+
+    private void sendRtcpPacket(RtcpPacketType type, int dataLength) throws IOException {
         // Do NOT attempt to send packet if have not joined RTP session
         if(this.joined.get()) {
             return;
@@ -402,36 +446,31 @@ public class RtcpHandler implements PacketHandler {
             return;
         }
 
-        RtcpPacketType type = packet.hasBye() ? RtcpPacketType.RTCP_BYE : RtcpPacketType.RTCP_REPORT;
-        if (this.channel != null && channel.isOpen() && channel.isConnected()) {
-            // decode packet
-            byte[] data = new byte[RtpPacket.RTP_PACKET_MAX_SIZE];
-            packet.encode(data, 0);
-            int dataLength = packet.getSize();
-
-            // If channel is secure, convert RTCP packet to SRTCP. WebRTC calls only.
-            if (this.secure) {
-                data = this.dtlsHandler.encodeRTCP(data, 0, dataLength);
-                dataLength = data.length;
-            }
-
+        if (isConnected()) {
             // prepare buffer
             byteBuffer.clear();
-            byteBuffer.rewind();
-            byteBuffer.put(data, 0, dataLength);
+            byteBuffer.put(this.txData, 0, dataLength);
             byteBuffer.flip();
-            byteBuffer.rewind();
+
+            // If channel is secure, convert RTCP packet to SRTCP in place. WebRTC calls only.
+            if (this.secure && !this.dtlsHandler.encodeRTCP(this.byteBuffer)) {
+                logger.warn("Could not secure RTCP packet! Packet dropped.");
+                return;
+            }
 
             // trace outgoing RTCP report
             if (logger.isDebugEnabled()) {
-                logger.debug("\nSENDING " + packet.toString());
+                RtcpPacket traced = new RtcpPacket();
+                traced.decode(Arrays.copyOf(this.txData, dataLength), 0);
+                logger.debug("\nSENDING " + traced.toString());
             }
 
             // Make double sure channel is still open and connected before sending
-            if (channel.isOpen() && channel.isConnected()) {
+            if (isConnected()) {
                 // send packet
                 // XXX Should register on RTP statistics IF sending fails!
-                this.channel.send(this.byteBuffer, this.channel.getRemoteAddress());
+                SocketAddress destination = this.remotePeer;
+                this.channel.send(this.byteBuffer, (destination != null) ? destination : this.channel.getRemoteAddress());
             } else {
                 // cancel packet transmission
                 if (logger.isDebugEnabled()) {
@@ -443,7 +482,7 @@ public class RtcpHandler implements PacketHandler {
             this.initial.set(false);
 
             // update RTCP statistics
-            this.statistics.onRtcpSent(packet);
+            this.statistics.onRtcpSent(dataLength);
         } else {
             if (logger.isDebugEnabled()) {
                 logger.debug("Could not send " + type + " packet because channel is closed or disconnected.");
@@ -471,6 +510,7 @@ public class RtcpHandler implements PacketHandler {
         this.tn = -1;
         this.initial.set(true);
         this.joined.set(false);
+        this.remotePeer = null;
 
         if (this.secure) {
             disableSRTCP();
@@ -554,8 +594,8 @@ public class RtcpHandler implements PacketHandler {
 
                         if (tn <= tc) {
                             // Send currently scheduled packet and update statistics
-                            RtcpPacket report = RtcpPacketFactory.buildReport(statistics);
-                            sendRtcpPacket(report);
+                            int length = encodeRtcpPacket(RtcpPacketType.RTCP_REPORT);
+                            sendRtcpPacket(RtcpPacketType.RTCP_REPORT, length);
 
                             tp = tc;
 
@@ -585,13 +625,13 @@ public class RtcpHandler implements PacketHandler {
                     tn = tp + t;
 
                     // Send BYE and stop scheduling further packets
-                    RtcpPacket bye = RtcpPacketFactory.buildBye(statistics);
+                    int length = encodeRtcpPacket(RtcpPacketType.RTCP_BYE);
 
                     // Set the avg_packet_size to the size of the compound BYE packet
-                    statistics.setRtcpAvgSize(bye.getSize());
+                    statistics.setRtcpAvgSize(length);
 
                     // Send the BYE and close channel
-                    sendRtcpPacket(bye);
+                    sendRtcpPacket(RtcpPacketType.RTCP_BYE, length);
                     break;
 
                 default:
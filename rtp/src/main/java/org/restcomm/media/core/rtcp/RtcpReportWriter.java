@@ -0,0 +1,247 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtcp;
+
+import org.restcomm.media.core.rtp.RtpPacket;
+import org.restcomm.media.core.rtp.statistics.RtpMember;
+import org.restcomm.media.core.rtp.statistics.RtpStatistics;
+
+/**
+ * Encodes RTCP compound packets straight from the statistics of an RTP session into a caller-provided array, without
+ * building report, SDES or BYE objects.
+ * <p>
+ * The compound packet holds a Sender Report (if the session sent data recently) or a Receiver Report with one report block
+ * per remote member, followed by an SDES packet with the CNAME and, optionally, a BYE packet. This is the same content
+ * produced by {@link RtcpPacketFactory}.
+ * </p>
+ * <p>
+ * If VoIP metrics reports are enabled in the statistics, an Extended Report with one VoIP Metrics Report Block per remote
+ * member is written after the SDES packet.
+ * </p>
+ */
+public class RtcpReportWriter {
+
+    private static final int HEADER_LENGTH = 4;
+    private static final int SENDER_INFO_LENGTH = 24;
+    private static final int REPORT_BLOCK_LENGTH = 24;
+    private static final int MAX_CNAME_LENGTH = 255;
+
+    /**
+     * Maximum number of VoIP Metrics Report Blocks in an Extended Report
+     */
+    public static final int MAX_VOIP_METRICS = 4;
+
+    /**
+     * Largest compound packet the writer can produce: SR with 31 report blocks, SDES with a 255-byte CNAME, XR with VoIP
+     * metrics and BYE.
+     */
+    public static final int MAX_LENGTH = HEADER_LENGTH + 4 + SENDER_INFO_LENGTH + RtcpPacket.MAX_SOURCES * REPORT_BLOCK_LENGTH
+            + HEADER_LENGTH + 4 + 2 + MAX_CNAME_LENGTH + 4 + HEADER_LENGTH + 4 + MAX_VOIP_METRICS * RtcpVoipMetrics.LENGTH
+            + HEADER_LENGTH + 4;
+
+    // Offset between NTP time (since 1900) and Java time (since 1970), in milliseconds
+    private static final long MSB1_BASE_TIME = -2208988800000L;
+    // Start of NTP era 1, when the most significant bit of the seconds wraps (2036)
+    private static final long MSB0_BASE_TIME = 2085978496000L;
+
+    private RtcpReportWriter() {
+        super();
+    }
+
+    /**
+     * Encodes an RTCP compound packet.
+     *
+     * @param out The array where the packet is written. Must hold at least {@link #MAX_LENGTH} bytes from
+     *        <code>offset</code>.
+     * @param offset The index where the packet starts in <code>out</code>.
+     * @param statistics The statistics of the RTP session.
+     * @param bye Whether the compound packet ends with a BYE.
+     * @return The length of the compound packet.
+     */
+    public static int write(byte[] out, int offset, RtpStatistics statistics, boolean bye) {
+        return write(out, offset, statistics, bye, null);
+    }
+
+    /**
+     * Encodes an RTCP compound packet.
+     *
+     * @param out The array where the packet is written. Must hold at least {@link #MAX_LENGTH} bytes from
+     *        <code>offset</code>.
+     * @param offset The index where the packet starts in <code>out</code>.
+     * @param statistics The statistics of the RTP session.
+     * @param bye Whether the compound packet ends with a BYE.
+     * @param voipMetrics Block reused to gather the VoIP metrics of each remote member. If null, no Extended Report is
+     *        written.
+     * @return The length of the compound packet.
+     */
+    public static int write(byte[] out, int offset, RtpStatistics statistics, boolean bye, RtcpVoipMetrics voipMetrics) {
+        int index = writeReport(out, offset, statistics);
+        index = writeSdes(out, index, statistics);
+        if (voipMetrics != null && statistics.isVoipMetricsReports()) {
+            index = writeExtendedReport(out, index, statistics, voipMetrics);
+        }
+        if (bye) {
+            index = writeBye(out, index, statistics);
+        }
+        return index - offset;
+    }
+
+    private static int writeReport(byte[] out, int offset, RtpStatistics statistics) {
+        final long ssrc = statistics.getSsrc();
+        final boolean sender = statistics.hasSent();
+
+        // Header is completed once the number of report blocks is known
+        int index = offset + HEADER_LENGTH;
+        index = writeInt(out, index, ssrc);
+
+        if (sender) {
+            final long currentTime = statistics.getCurrentTime();
+            final long elapsedTime = currentTime - statistics.getRtpSentOn();
+            index = writeNtpTime(out, index, currentTime);
+            index = writeInt(out, index, statistics.getRtpTimestamp() + statistics.getRtpTime(elapsedTime));
+            index = writeInt(out, index, statistics.getRtpPacketsSent());
+            index = writeInt(out, index, statistics.getRtpOctetsSent());
+        }
+
+        // One report block per remote member
+        final RtpMember[] members = statistics.getMembersSnapshot();
+        int count = 0;
+        for (int i = 0; i < members.length && count < RtcpPacket.MAX_SOURCES; i++) {
+            final RtpMember member = members[i];
+            if (member.getSsrc() != ssrc) {
+                index = writeReportBlock(out, index, member);
+                count++;
+            }
+        }
+
+        writeHeader(out, offset, count, sender ? RtcpHeader.RTCP_SR : RtcpHeader.RTCP_RR, index - offset);
+        return index;
+    }
+
+    private static int writeReportBlock(byte[] out, int index, RtpMember member) {
+        final long lost = member.getPacketsLost();
+        final int cycle = member.getSequenceCycle();
+        final long lastSeq = member.getExtHighSequence();
+
+        index = writeInt(out, index, member.getSsrc());
+        out[index++] = (byte) member.getFractionLost();
+        out[index++] = (byte) (lost >> 16);
+        out[index++] = (byte) (lost >> 8);
+        out[index++] = (byte) lost;
+        out[index++] = (byte) (cycle >> 8);
+        out[index++] = (byte) cycle;
+        out[index++] = (byte) (lastSeq >> 8);
+        out[index++] = (byte) lastSeq;
+        index = writeInt(out, index, member.getJitter());
+        index = writeInt(out, index, member.getLastSR());
+        index = writeInt(out, index, member.getLastSRdelay());
+        return index;
+    }
+
+    private static int writeSdes(byte[] out, int offset, RtpStatistics statistics) {
+        final byte[] cname = statistics.getCnameBytes();
+        final int cnameLength = Math.min(cname.length, MAX_CNAME_LENGTH);
+
+        // Single chunk with CNAME item
+        int index = offset + HEADER_LENGTH;
+        final int chunkStart = index;
+        index = writeInt(out, index, statistics.getSsrc());
+        out[index++] = (byte) RtcpSdesItem.RTCP_SDES_CNAME;
+        out[index++] = (byte) cnameLength;
+        System.arraycopy(cname, 0, out, index, cnameLength);
+        index += cnameLength;
+
+        // End of item list, padded to 32-bit boundary
+        out[index++] = 0;
+        while (((index - chunkStart) & 0x03) != 0) {
+            out[index++] = 0;
+        }
+
+        writeHeader(out, offset, 1, RtcpHeader.RTCP_SDES, index - offset);
+        return index;
+    }
+
+    private static int writeExtendedReport(byte[] out, int offset, RtpStatistics statistics, RtcpVoipMetrics voipMetrics) {
+        final long ssrc = statistics.getSsrc();
+        int index = writeInt(out, offset + HEADER_LENGTH, ssrc);
+
+        // One VoIP Metrics block per remote member
+        final RtpMember[] members = statistics.getMembersSnapshot();
+        int count = 0;
+        for (int i = 0; i < members.length && count < MAX_VOIP_METRICS; i++) {
+            final RtpMember member = members[i];
+            if (member.getSsrc() != ssrc) {
+                statistics.reportVoipMetrics(member, voipMetrics);
+                index = voipMetrics.encode(out, index);
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            // Nothing to report
+            return offset;
+        }
+
+        // XR header has no count field
+        writeHeader(out, offset, 0, RtcpHeader.RTCP_XR, index - offset);
+        return index;
+    }
+
+    private static int writeBye(byte[] out, int offset, RtpStatistics statistics) {
+        int index = writeInt(out, offset + HEADER_LENGTH, statistics.getSsrc());
+        writeHeader(out, offset, 1, RtcpHeader.RTCP_BYE, index - offset);
+        return index;
+    }
+
+    private static void writeHeader(byte[] out, int offset, int count, int packetType, int length) {
+        // Length is in 32-bit words minus one
+        final int words = (length - HEADER_LENGTH) / 4;
+        out[offset] = (byte) ((RtpPacket.VERSION << 6) | (count & 0x1F));
+        out[offset + 1] = (byte) packetType;
+        out[offset + 2] = (byte) (words >> 8);
+        out[offset + 3] = (byte) words;
+    }
+
+    /**
+     * Writes a Java time as a 64-bit NTP timestamp, with the same rounding as Apache Commons Net.
+     */
+    private static int writeNtpTime(byte[] out, int index, long time) {
+        final boolean useBase1 = time < MSB0_BASE_TIME;
+        final long baseTime = useBase1 ? time - MSB1_BASE_TIME : time - MSB0_BASE_TIME;
+        long seconds = baseTime / 1000;
+        final long fraction = ((baseTime % 1000) * 0x100000000L) / 1000;
+        if (useBase1) {
+            seconds |= 0x80000000L;
+        }
+        index = writeInt(out, index, seconds);
+        return writeInt(out, index, fraction);
+    }
+
+    private static int writeInt(byte[] out, int index, long value) {
+        out[index] = (byte) (value >> 24);
+        out[index + 1] = (byte) (value >> 16);
+        out[index + 2] = (byte) (value >> 8);
+        out[index + 3] = (byte) value;
+        return index + 4;
+    }
+
+}
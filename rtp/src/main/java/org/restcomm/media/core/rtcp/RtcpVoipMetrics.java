@@ -0,0 +1,453 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtcp;
+
+/**
+ * VoIP Metrics Report Block of an RTCP Extended Report, as defined in RFC3611 section 4.7.
+ *
+ * <pre>
+ *  0                   1                   2                   3
+ *  0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |     BT=7      |   reserved    |       block length = 8        |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                        SSRC of source                         |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |   loss rate   | discard rate  | burst density |  gap density  |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |       burst duration          |         gap duration          |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |     round trip delay          |       end system delay        |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * | signal level  |  noise level  |     RERL      |     Gmin      |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |   R factor    | ext. R factor |    MOS-LQ     |    MOS-CQ     |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |   RX config   |   reserved    |          JB nominal           |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |          JB maximum           |          JB abs max           |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * </pre>
+ */
+public class RtcpVoipMetrics {
+
+	public static final int BLOCK_TYPE = 7;
+
+	/**
+	 * Length of the block in bytes, including its header
+	 */
+	public static final int LENGTH = 36;
+
+	/**
+	 * Value of the signal, noise, RERL, R factor and MOS fields when the metric is not available
+	 */
+	public static final int UNAVAILABLE = 127;
+
+	/**
+	 * Jitter buffer adaptive field of RX config: non-adaptive jitter buffer
+	 */
+	public static final int JBA_NON_ADAPTIVE = 0x20;
+
+	/**
+	 * Jitter buffer adaptive field of RX config: adaptive jitter buffer
+	 */
+	public static final int JBA_ADAPTIVE = 0x30;
+
+	/* data source being reported */
+	private long ssrc;
+
+	/* packet loss and discard rates, as fixed point number with binary point at the left edge */
+	private int lossRate;
+	private int discardRate;
+
+	/* burst and gap metrics */
+	private int burstDensity;
+	private int gapDensity;
+	private int burstDuration;
+	private int gapDuration;
+
+	/* delay metrics, in milliseconds */
+	private int roundTripDelay;
+	private int endSystemDelay;
+
+	/* signal related metrics */
+	private int signalLevel;
+	private int noiseLevel;
+	private int residualEchoReturnLoss;
+	private int gmin;
+
+	/* call quality metrics */
+	private int rFactor;
+	private int extRFactor;
+	private int mosLq;
+	private int mosCq;
+
+	/* jitter buffer configuration and delays, in milliseconds */
+	private int rxConfig;
+	private int jbNominal;
+	private int jbMaximum;
+	private int jbAbsMaximum;
+
+	public RtcpVoipMetrics(long ssrc) {
+		this.ssrc = ssrc;
+		this.signalLevel = UNAVAILABLE;
+		this.noiseLevel = UNAVAILABLE;
+		this.residualEchoReturnLoss = UNAVAILABLE;
+		this.rFactor = UNAVAILABLE;
+		this.extRFactor = UNAVAILABLE;
+		this.mosLq = UNAVAILABLE;
+		this.mosCq = UNAVAILABLE;
+	}
+
+	public RtcpVoipMetrics() {
+		this(0);
+	}
+
+	/**
+	 * Gets the SSRC of the source the metrics pertain to.
+	 *
+	 * @return The SSRC of the reported source
+	 */
+	public long getSsrc() {
+		return ssrc;
+	}
+
+	public void setSsrc(long ssrc) {
+		this.ssrc = ssrc;
+	}
+
+	/**
+	 * Gets the fraction of packets lost in the network since the beginning of reception.
+	 *
+	 * @return The loss rate, as a fraction of 256
+	 */
+	public int getLossRate() {
+		return lossRate;
+	}
+
+	/**
+	 * Gets the fraction of packets discarded by the jitter buffer since the beginning of reception.
+	 *
+	 * @return The discard rate, as a fraction of 256
+	 */
+	public int getDiscardRate() {
+		return discardRate;
+	}
+
+	public void setLoss(int lossRate, int discardRate) {
+		this.lossRate = clamp(lossRate, 0xFF);
+		this.discardRate = clamp(discardRate, 0xFF);
+	}
+
+	/**
+	 * Gets the fraction of packets lost or discarded within burst periods.
+	 *
+	 * @return The burst density, as a fraction of 256
+	 */
+	public int getBurstDensity() {
+		return burstDensity;
+	}
+
+	/**
+	 * Gets the fraction of packets lost or discarded within gap periods.
+	 *
+	 * @return The gap density, as a fraction of 256
+	 */
+	public int getGapDensity() {
+		return gapDensity;
+	}
+
+	/**
+	 * Gets the mean duration of the burst periods.
+	 *
+	 * @return The burst duration, in milliseconds
+	 */
+	public int getBurstDuration() {
+		return burstDuration;
+	}
+
+	/**
+	 * Gets the mean duration of the gap periods.
+	 *
+	 * @return The gap duration, in milliseconds
+	 */
+	public int getGapDuration() {
+		return gapDuration;
+	}
+
+	public void setBurst(int burstDensity, int gapDensity, int burstDuration, int gapDuration) {
+		this.burstDensity = clamp(burstDensity, 0xFF);
+		this.gapDensity = clamp(gapDensity, 0xFF);
+		this.burstDuration = clamp(burstDuration, 0xFFFF);
+		this.gapDuration = clamp(gapDuration, 0xFFFF);
+	}
+
+	/**
+	 * Gets the most recent round trip time between RTP interfaces.
+	 *
+	 * @return The round trip delay, in milliseconds
+	 */
+	public int getRoundTripDelay() {
+		return roundTripDelay;
+	}
+
+	/**
+	 * Gets the delay introduced by the receiving end, including jitter buffer and packetization.
+	 *
+	 * @return The end system delay, in milliseconds
+	 */
+	public int getEndSystemDelay() {
+		return endSystemDelay;
+	}
+
+	public void setDelay(int roundTripDelay, int endSystemDelay) {
+		this.roundTripDelay = clamp(roundTripDelay, 0xFFFF);
+		this.endSystemDelay = clamp(endSystemDelay, 0xFFFF);
+	}
+
+	public int getSignalLevel() {
+		return signalLevel;
+	}
+
+	public int getNoiseLevel() {
+		return noiseLevel;
+	}
+
+	public int getResidualEchoReturnLoss() {
+		return residualEchoReturnLoss;
+	}
+
+	/**
+	 * Gets the gap threshold, which is the minimum number of consecutive received packets that ends a burst.
+	 *
+	 * @return The Gmin threshold
+	 */
+	public int getGmin() {
+		return gmin;
+	}
+
+	public void setGmin(int gmin) {
+		this.gmin = clamp(gmin, 0xFF);
+	}
+
+	/**
+	 * Gets the R factor of the call, as defined by the ITU-T G.107 E-model.
+	 *
+	 * @return The R factor, from 0 to 100, or {@link #UNAVAILABLE}
+	 */
+	public int getRFactor() {
+		return rFactor;
+	}
+
+	public int getExtRFactor() {
+		return extRFactor;
+	}
+
+	/**
+	 * Gets the estimated listening quality, which does not account for delay.
+	 *
+	 * @return The MOS-LQ multiplied by 10, from 10 to 50, or {@link #UNAVAILABLE}
+	 */
+	public int getMosLq() {
+		return mosLq;
+	}
+
+	/**
+	 * Gets the estimated conversational quality, which accounts for delay.
+	 *
+	 * @return The MOS-CQ multiplied by 10, from 10 to 50, or {@link #UNAVAILABLE}
+	 */
+	public int getMosCq() {
+		return mosCq;
+	}
+
+	public void setQuality(int rFactor, int mosLq, int mosCq) {
+		this.rFactor = clamp(rFactor, 0xFF);
+		this.mosLq = clamp(mosLq, 0xFF);
+		this.mosCq = clamp(mosCq, 0xFF);
+	}
+
+	/**
+	 * Gets the receiver configuration byte, which describes packet loss concealment and jitter buffer adaptiveness.
+	 *
+	 * @return The RX config
+	 */
+	public int getRxConfig() {
+		return rxConfig;
+	}
+
+	/**
+	 * Gets the nominal delay of the jitter buffer.
+	 *
+	 * @return The nominal delay, in milliseconds
+	 */
+	public int getJbNominal() {
+		return jbNominal;
+	}
+
+	/**
+	 * Gets the current maximum delay of the jitter buffer.
+	 *
+	 * @return The maximum delay, in milliseconds
+	 */
+	public int getJbMaximum() {
+		return jbMaximum;
+	}
+
+	/**
+	 * Gets the absolute maximum delay the jitter buffer can reach.
+	 *
+	 * @return The absolute maximum delay, in milliseconds
+	 */
+	public int getJbAbsMaximum() {
+		return jbAbsMaximum;
+	}
+
+	public void setJitterBuffer(int rxConfig, int jbNominal, int jbMaximum, int jbAbsMaximum) {
+		this.rxConfig = clamp(rxConfig, 0xFF);
+		this.jbNominal = clamp(jbNominal, 0xFFFF);
+		this.jbMaximum = clamp(jbMaximum, 0xFFFF);
+		this.jbAbsMaximum = clamp(jbAbsMaximum, 0xFFFF);
+	}
+
+	private static int clamp(int value, int max) {
+		if (value < 0) {
+			return 0;
+		}
+		return value > max ? max : value;
+	}
+
+	protected int decode(byte[] rawData, int offSet) {
+		// skip block type, reserved and block length
+		offSet += 4;
+
+		this.ssrc = 0;
+		this.ssrc |= rawData[offSet++] & 0xFF;
+		this.ssrc <<= 8;
+		this.ssrc |= rawData[offSet++] & 0xFF;
+		this.ssrc <<= 8;
+		this.ssrc |= rawData[offSet++] & 0xFF;
+		this.ssrc <<= 8;
+		this.ssrc |= rawData[offSet++] & 0xFF;
+
+		this.lossRate = rawData[offSet++] & 0xFF;
+		this.discardRate = rawData[offSet++] & 0xFF;
+		this.burstDensity = rawData[offSet++] & 0xFF;
+		this.gapDensity = rawData[offSet++] & 0xFF;
+
+		this.burstDuration = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+		this.gapDuration = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+		this.roundTripDelay = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+		this.endSystemDelay = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+
+		this.signalLevel = rawData[offSet++] & 0xFF;
+		this.noiseLevel = rawData[offSet++] & 0xFF;
+		this.residualEchoReturnLoss = rawData[offSet++] & 0xFF;
+		this.gmin = rawData[offSet++] & 0xFF;
+
+		this.rFactor = rawData[offSet++] & 0xFF;
+		this.extRFactor = rawData[offSet++] & 0xFF;
+		this.mosLq = rawData[offSet++] & 0xFF;
+		this.mosCq = rawData[offSet++] & 0xFF;
+
+		this.rxConfig = rawData[offSet++] & 0xFF;
+		// reserved
+		offSet++;
+		this.jbNominal = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+		this.jbMaximum = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+		this.jbAbsMaximum = ((rawData[offSet++] & 0xFF) << 8) | (rawData[offSet++] & 0xFF);
+
+		return offSet;
+	}
+
+	protected int encode(byte[] rawData, int offSet) {
+		rawData[offSet++] = (byte) BLOCK_TYPE;
+		rawData[offSet++] = 0;
+		// block length in 32-bit words, minus one
+		rawData[offSet++] = 0;
+		rawData[offSet++] = (byte) ((LENGTH / 4) - 1);
+
+		rawData[offSet++] = (byte) ((this.ssrc & 0xFF000000) >> 24);
+		rawData[offSet++] = (byte) ((this.ssrc & 0x00FF0000) >> 16);
+		rawData[offSet++] = (byte) ((this.ssrc & 0x0000FF00) >> 8);
+		rawData[offSet++] = (byte) ((this.ssrc & 0x000000FF));
+
+		rawData[offSet++] = (byte) this.lossRate;
+		rawData[offSet++] = (byte) this.discardRate;
+		rawData[offSet++] = (byte) this.burstDensity;
+		rawData[offSet++] = (byte) this.gapDensity;
+
+		offSet = encodeShort(rawData, offSet, this.burstDuration);
+		offSet = encodeShort(rawData, offSet, this.gapDuration);
+		offSet = encodeShort(rawData, offSet, this.roundTripDelay);
+		offSet = encodeShort(rawData, offSet, this.endSystemDelay);
+
+		rawData[offSet++] = (byte) this.signalLevel;
+		rawData[offSet++] = (byte) this.noiseLevel;
+		rawData[offSet++] = (byte) this.residualEchoReturnLoss;
+		rawData[offSet++] = (byte) this.gmin;
+
+		rawData[offSet++] = (byte) this.rFactor;
+		rawData[offSet++] = (byte) this.extRFactor;
+		rawData[offSet++] = (byte) this.mosLq;
+		rawData[offSet++] = (byte) this.mosCq;
+
+		rawData[offSet++] = (byte) this.rxConfig;
+		rawData[offSet++] = 0;
+		offSet = encodeShort(rawData, offSet, this.jbNominal);
+		offSet = encodeShort(rawData, offSet, this.jbMaximum);
+		offSet = encodeShort(rawData, offSet, this.jbAbsMaximum);
+
+		return offSet;
+	}
+
+	private static int encodeShort(byte[] rawData, int offSet, int value) {
+		rawData[offSet++] = (byte) ((value & 0xFF00) >> 8);
+		rawData[offSet++] = (byte) (value & 0x00FF);
+		return offSet;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("VOIP METRICS:\n");
+		builder.append("ssrc= ").append(this.ssrc).append(", ");
+		builder.append("loss rate= ").append(this.lossRate).append(", ");
+		builder.append("discard rate= ").append(this.discardRate).append(", ");
+		builder.append("burst density= ").append(this.burstDensity).append(", ");
+		builder.append("gap density= ").append(this.gapDensity).append(", ");
+		builder.append("burst duration= ").append(this.burstDuration).append(", ");
+		builder.append("gap duration= ").append(this.gapDuration).append(", ");
+		builder.append("rtd= ").append(this.roundTripDelay).append(", ");
+		builder.append("esd= ").append(this.endSystemDelay).append(", ");
+		builder.append("gmin= ").append(this.gmin).append(", ");
+		builder.append("R= ").append(this.rFactor).append(", ");
+		builder.append("MOS-LQ= ").append(this.mosLq).append(", ");
+		builder.append("MOS-CQ= ").append(this.mosCq).append(", ");
+		builder.append("rx config= ").append(this.rxConfig).append(", ");
+		builder.append("jb nominal= ").append(this.jbNominal).append(", ");
+		builder.append("jb max= ").append(this.jbMaximum).append(", ");
+		builder.append("jb abs max= ").append(this.jbAbsMaximum);
+		builder.append("\n");
+		return builder.toString();
+	}
+
+}
@@ -60,6 +60,9 @@ public class ChannelsManager {
     private final RTPFormats codecs;
     private DtlsSrtpServerProvider dtlsServerProvider;
     
+    // RTP inactivity detection, shared by all channels
+    private final RtpInactivityMonitor inactivityMonitor;
+    
     /**
      * Creates a new channels manager with a subset of supported codecs.
      * 
@@ -71,6 +74,7 @@ public class ChannelsManager {
         this.udpManager = udpManager;
         this.codecs = codecs;
         this.dtlsServerProvider = dtlsServerProvider;
+        this.inactivityMonitor = new RtpInactivityMonitor(udpManager.getScheduler(), this.clock);
     }
 
     /**
@@ -136,13 +140,17 @@ public class ChannelsManager {
     	return this.udpManager;
     }    
     
+    public RtpInactivityMonitor getInactivityMonitor() {
+        return this.inactivityMonitor;
+    }
+    
     @Deprecated
     public RTPDataChannel getChannel() {
         return new RTPDataChannel(this,channelIndex.incrementAndGet(), this.dtlsServerProvider);
     }
     
     public RtpChannel getRtpChannel(RtpStatistics statistics, RtpClock clock, RtpClock oobClock) {
-    	return new RtpChannel(channelIndex.incrementAndGet(), jitterBufferSize, statistics, clock, oobClock, scheduler, udpManager, dtlsServerProvider);
+    	return new RtpChannel(channelIndex.incrementAndGet(), jitterBufferSize, statistics, clock, oobClock, scheduler, udpManager, dtlsServerProvider, inactivityMonitor);
     }
 
     public RtcpChannel getRtcpChannel(RtpStatistics statistics) {
@@ -157,4 +165,15 @@ public class ChannelsManager {
     	return new AudioChannel(this.scheduler.getClock(), this);
     }
     
+    /**
+     * Releases the resources shared by all channels. Must be invoked when the media server stops, along with
+     * {@link UdpManager#stop()}.
+     */
+    public void stop() {
+        this.inactivityMonitor.stop();
+        if (this.dtlsServerProvider != null) {
+            this.dtlsServerProvider.shutdown();
+        }
+    }
+    
 }
@@ -412,6 +412,10 @@ public class RTPDataChannel {
 			rtcpChannel.socket().close();
 		}
 
+		// Give back the global ports, if acquired from the port allocator
+		udpManager.release(rtpChannel);
+		udpManager.release(rtcpChannel);
+
 		// System.out.println("RX COUNT:" + rxCount + ",TX COUNT:" + txCount);
 		rxCount = 0;
 		txCount = 0;
@@ -25,6 +25,8 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -35,15 +37,17 @@ import org.restcomm.media.core.ice.IceComponent;
 import org.restcomm.media.core.ice.IceHandler;
 import org.restcomm.media.core.ice.events.IceEventListener;
 import org.restcomm.media.core.ice.events.SelectedCandidatesEvent;
+import org.restcomm.media.core.network.deprecated.OutboundRing;
 import org.restcomm.media.core.network.deprecated.UdpManager;
 import org.restcomm.media.core.network.deprecated.channel.MultiplexedChannel;
+import org.restcomm.media.core.network.deprecated.channel.SharedChannel;
 import org.restcomm.media.core.rtcp.RtcpHandler;
 import org.restcomm.media.core.rtp.crypto.DtlsSrtpServerProvider;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
 import org.restcomm.media.core.rtp.secure.DtlsHandler;
 import org.restcomm.media.core.rtp.secure.DtlsListener;
 import org.restcomm.media.core.rtp.statistics.RtpStatistics;
 import org.restcomm.media.core.scheduler.PriorityQueueScheduler;
-import org.restcomm.media.core.scheduler.Task;
 import org.restcomm.media.core.sdp.format.RTPFormats;
 import org.restcomm.media.core.spi.ConnectionMode;
 import org.restcomm.media.core.spi.FormatNotSupportedException;
@@ -59,7 +63,7 @@ import org.restcomm.media.core.spi.utils.Text;
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
-public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceEventListener {
+public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceEventListener, RtpInactivityListener {
 
     private static final Logger logger = LogManager.getLogger(RtpChannel.class);
 
@@ -69,6 +73,9 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     // Channel attributes
     private final int channelId;
     private boolean bound;
+    private boolean local;
+    // Dedicated socket bound by the UDP manager, whose global port is given back on close
+    private DatagramChannel boundChannel;
     private RtpStatistics statistics;
 
     // Core elements
@@ -78,8 +85,10 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     private final RtpClock oobClock;
     private final int jitterBufferSize;
 
-    // Heart beat
-    private final HeartBeat heartBeat;
+    // Inactivity detection
+    private final RtpInactivityMonitor.Watch inactivityWatch;
+    private volatile RtpInactivityListener inactivityListener;
+    private volatile int inactivityTimeout;
 
     // Remote peer
     private SocketAddress remotePeer;
@@ -87,6 +96,12 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     // Transmitter
     private RtpTransmitter transmitter;
 
+    // Media relay. Guarded by the relay locks of both channels, always taken in relay order to avoid deadlocks.
+    private static final AtomicLong RELAY_SEQUENCE = new AtomicLong(0);
+    private final long relayOrder;
+    private final Object relayLock;
+    private volatile RtpChannel relayPeer;
+
     // Protocol handlers pipeline
     private static final int RTP_PRIORITY = 4; // a packet each 20ms
     private static final int STUN_PRIORITY = 3; // a packet each 400ms
@@ -118,7 +133,8 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     private RtpListener rtpListener;
 
     public RtpChannel(int channelId, int jitterBufferSize, RtpStatistics statistics, RtpClock clock, RtpClock oobClock,
-            PriorityQueueScheduler scheduler, UdpManager udpManager, DtlsSrtpServerProvider dtlsServerProvider) {
+            PriorityQueueScheduler scheduler, UdpManager udpManager, DtlsSrtpServerProvider dtlsServerProvider,
+            RtpInactivityMonitor inactivityMonitor) {
         // Initialize MultiplexedChannel elements
         super();
 
@@ -130,13 +146,17 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
 
         // Channel attributes
         this.channelId = channelId;
+        this.relayOrder = RELAY_SEQUENCE.incrementAndGet();
+        this.relayLock = new Object();
         this.jitterBufferSize = jitterBufferSize;
         this.statistics = statistics;
         this.bound = false;
+        this.boundChannel = null;
 
         // Protocol Handlers
         this.transmitter = new RtpTransmitter(scheduler, clock, statistics);
         this.rtpHandler = new RtpHandler(scheduler, clock, oobClock, jitterBufferSize, statistics);
+        this.statistics.setJitterBufferStatistics(this.rtpHandler.getJitterBufferStatistics());
         this.rtpHandler.setPipelinePriority(RTP_PRIORITY);
         this.rtcpHandler = new RtcpHandler(this.udpManager.getScheduler(), statistics);
         this.rtpHandler.setPipelinePriority(RTCP_PRIORITY);
@@ -157,8 +177,11 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
         this.secure = false;
         this.rtcpMux = false;
 
-        // Heartbeat
-        this.heartBeat = new HeartBeat();
+        // Inactivity detection
+        this.inactivityWatch = inactivityMonitor.watch(this);
+        this.inactivityListener = null;
+        this.inactivityTimeout = 0;
+        this.rtpHandler.setInactivityWatch(this.inactivityWatch);
     }
 
     public RtpTransmitter getTransmitter() {
@@ -205,6 +228,10 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
         return this.statistics.getRtpPacketsSent();
     }
 
+    public JitterBufferStatistics getJitterBufferStatistics() {
+        return this.rtpHandler.getJitterBufferStatistics();
+    }
+
     /**
      * Modifies the map between format and RTP payload number
      * 
@@ -214,6 +241,7 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
         flush();
         this.rtpHandler.setFormatMap(rtpFormats);
         this.transmitter.setFormatMap(rtpFormats);
+        refreshRelay();
     }
 
     public RTPFormats getFormatMap() {
@@ -278,13 +306,10 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
             connectImmediately = udpManager.connectImmediately((InetSocketAddress) this.remotePeer);
         }
 
-        if (udpManager.getRtpTimeout() > 0 && this.remotePeer != null && !connectImmediately) {
-            if (this.rtpHandler.isReceivable()) {
-                this.statistics.setLastHeartbeat(scheduler.getClock().getTime());
-                scheduler.submitHeatbeat(heartBeat);
-            } else {
-                heartBeat.cancel();
-            }
+        refreshRelay();
+
+        if (this.remotePeer != null) {
+            updateInactivityWatch(connectImmediately);
         }
     }
 
@@ -300,6 +325,7 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
 //
 //        // Configure protocol handlers
         this.transmitter.setChannel(this.dataChannel);
+        attachOutboundRing();
         this.rtpHandler.useJitterBuffer(useJitterBuffer);
         this.handlers.addHandler(this.rtpHandler);
 
@@ -329,6 +355,8 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
 
         this.rtcpMux = rtcpMux;
         this.bound = true;
+        this.local = isLocal;
+        this.boundChannel = isLocal ? null : this.dataChannel;
 
         // activate media elements
         onBinding(!isLocal);
@@ -350,6 +378,7 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
         // Only bind channel if necessary
         if (!channel.socket().isBound()) {
             this.udpManager.bind(channel, PORT_ANY);
+            this.boundChannel = channel;
         }
         this.bound = true;
     }
@@ -359,12 +388,23 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     }
     
     public boolean isConnected() {
-        return this.dataChannel != null && this.dataChannel.isConnected();
+        return super.isConnected();
+    }
+
+    @Override
+    public void connect(SocketAddress address) throws IOException {
+        super.connect(address);
+        if (isShared()) {
+            // The shared socket is never connected, so senders must be told where the peer is
+            this.transmitter.setRemotePeer(address);
+            this.rtcpHandler.setRemotePeer(address);
+            this.dtlsHandler.setRemotePeer(address);
+        }
     }
 
     public boolean isAvailable() {
         // The channel is available is is connected
-        boolean available = this.dataChannel != null && this.dataChannel.isConnected();
+        boolean available = isConnected();
         // In case of WebRTC calls the DTLS handshake must be completed
         if (this.secure) {
             available = available && this.dtlsHandler.isHandshakeComplete();
@@ -375,7 +415,8 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     public void setRemotePeer(SocketAddress address) {
         this.remotePeer = address;
         boolean connectImmediately = false;
-        if (this.dataChannel != null) {
+        if (this.dataChannel != null && !isShared()) {
+            // Shared sockets are never connected. The peer is learned through ICE.
             if (this.dataChannel.isConnected()) {
                 try {
                     disconnect();
@@ -395,12 +436,40 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
             }
         }
 
+        updateInactivityWatch(connectImmediately);
+    }
+
+    /**
+     * Watches the channel for RTP inactivity, overriding the RTP timeout of the UDP manager.
+     * <p>
+     * The listener is warned only once. The watch must be requested again to detect further inactivity.
+     * </p>
+     * 
+     * @param timeout The maximum time without receiving RTP packets, in seconds. Zero restores the UDP manager timeout.
+     * @param immediately Whether the timeout starts now or only after the first packet is received
+     * @param listener The listener to be warned when timeout expires
+     */
+    public void watchInactivity(int timeout, boolean immediately, RtpInactivityListener listener) {
+        this.inactivityListener = listener;
+        this.inactivityTimeout = timeout;
+        if (timeout > 0) {
+            this.inactivityWatch.arm(timeout, TimeUnit.SECONDS, immediately);
+        } else {
+            this.inactivityWatch.disarm();
+        }
+    }
+
+    private void updateInactivityWatch(boolean connectImmediately) {
+        if (this.inactivityTimeout > 0) {
+            // Timeout requested explicitly takes precedence
+            return;
+        }
+
         if (udpManager.getRtpTimeout() > 0 && !connectImmediately) {
             if (this.rtpHandler.isReceivable()) {
-                this.statistics.setLastHeartbeat(scheduler.getClock().getTime());
-                scheduler.submitHeatbeat(heartBeat);
+                this.inactivityWatch.arm(udpManager.getRtpTimeout(), TimeUnit.SECONDS, true);
             } else {
-                heartBeat.cancel();
+                this.inactivityWatch.disarm();
             }
         }
     }
@@ -418,10 +487,55 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     }
     
     public void enableIce(IceAuthenticator authenticator) {
+        enableIce(authenticator, null);
+    }
+
+    /**
+     * Enables ICE on the channel.
+     * <p>
+     * If the UDP manager has shared sockets, an RTCP-MUX channel bound to the global bind address gives up its dedicated
+     * port and moves onto a shared socket. Connectivity checks reach the channel through its local username fragment.
+     * </p>
+     * 
+     * @param authenticator The authenticator of the ICE session
+     * @param ufrag The local username fragment. Null to keep the dedicated port.
+     */
+    public void enableIce(IceAuthenticator authenticator, String ufrag) {
         if(!this.ice) {
             this.ice = true;
             this.stunHandler.setAuthenticator(authenticator);
             this.handlers.addHandler(this.stunHandler);
+
+            if (ufrag != null && this.bound && this.rtcpMux && !this.local && !isShared()) {
+                shareSocket(ufrag);
+            }
+        }
+    }
+
+    private void shareSocket(String ufrag) {
+        SharedChannel sharedChannel = this.udpManager.getSharedChannel();
+        if (sharedChannel == null) {
+            return;
+        }
+
+        try {
+            share(sharedChannel, ufrag);
+        } catch (IOException e) {
+            logger.warn("Channel " + this.channelId + " could not use shared socket. Keeping dedicated port.", e);
+            return;
+        }
+        releasePort();
+
+        // Senders now write to the shared socket
+        this.transmitter.setChannel(this.dataChannel);
+        attachOutboundRing();
+        this.rtcpHandler.setChannel(this.dataChannel);
+        if (this.secure) {
+            this.dtlsHandler.setChannel(this.dataChannel);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Channel " + this.channelId + " is using shared socket " + sharedChannel.getLocalHost() + ":" + sharedChannel.getLocalPort());
         }
     }
     
@@ -429,6 +543,9 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
         if(this.ice) {
             this.ice = false;
             this.handlers.removeHandler(this.stunHandler);
+
+            // Keep receiving from the connected peer, if any, but stop accepting connectivity checks
+            unroute();
         }
     }
 
@@ -505,18 +622,170 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
     }
 
     public void close() {
+        stopRelay();
         if (rtcpMux) {
             this.rtcpHandler.leaveRtpSession();
         }
 
         super.close();
+        releasePort();
         reset();
         this.bound = false;
+        this.local = false;
+    }
+
+    /**
+     * Relays RTP packets received by this channel straight to another channel, bypassing the jitter buffer and the media
+     * scheduler.
+     * <p>
+     * Packets are only relayed while this channel can receive, the peer can send and every format negotiated by this channel
+     * was also negotiated by the peer. Otherwise, or when {@link #stopRelay()} is called, packets go through full media
+     * processing. Conditions are checked again whenever formats or connection modes change.
+     * </p>
+     * 
+     * @param peer The channel packets are relayed to.
+     */
+    public void relayTo(RtpChannel peer) {
+        // Stop relaying to the previous peer, which is not locked below
+        RtpChannel previous = this.relayPeer;
+        while (previous != null && previous != peer) {
+            synchronized (firstRelayLock(previous)) {
+                synchronized (secondRelayLock(previous)) {
+                    if (this.relayPeer == previous) {
+                        this.relayPeer = null;
+                        updateRelay();
+                    }
+                }
+            }
+            previous = this.relayPeer;
+        }
+
+        synchronized (firstRelayLock(peer)) {
+            synchronized (secondRelayLock(peer)) {
+                this.relayPeer = peer;
+                updateRelay();
+            }
+        }
+    }
+
+    /**
+     * Stops relaying packets to another channel, in both directions.
+     */
+    public void stopRelay() {
+        while (true) {
+            final RtpChannel peer = this.relayPeer;
+            synchronized (firstRelayLock(peer)) {
+                synchronized (secondRelayLock(peer)) {
+                    if (this.relayPeer != peer) {
+                        // Peer changed before the locks were taken
+                        continue;
+                    }
+                    this.relayPeer = null;
+                    updateRelay();
+                    if (peer != null && peer.relayPeer == this) {
+                        peer.relayPeer = null;
+                        peer.updateRelay();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    public boolean isRelaying() {
+        return this.rtpHandler.getRelay() != null;
+    }
+
+    private void refreshRelay() {
+        while (true) {
+            final RtpChannel peer = this.relayPeer;
+            synchronized (firstRelayLock(peer)) {
+                synchronized (secondRelayLock(peer)) {
+                    if (this.relayPeer != peer) {
+                        // Peer changed before the locks were taken
+                        continue;
+                    }
+                    updateRelay();
+                    // Changes to this channel also affect packets relayed by the peer
+                    if (peer != null && peer.relayPeer == this) {
+                        peer.updateRelay();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the relay lock to take first when changing the relay between this channel and a peer.
+     * 
+     * @param peer The other channel involved. May be null.
+     * @return The lock of the channel that comes first in relay order.
+     */
+    private Object firstRelayLock(RtpChannel peer) {
+        return (peer == null || this.relayOrder < peer.relayOrder) ? this.relayLock : peer.relayLock;
+    }
+
+    /**
+     * Gets the relay lock to take second when changing the relay between this channel and a peer.
+     * 
+     * @param peer The other channel involved. May be null.
+     * @return The lock of the channel that comes last in relay order.
+     */
+    private Object secondRelayLock(RtpChannel peer) {
+        return (peer == null || this.relayOrder > peer.relayOrder) ? this.relayLock : peer.relayLock;
+    }
+
+    private void updateRelay() {
+        final RtpChannel peer = this.relayPeer;
+        final boolean relay = peer != null && this.rtpHandler.isReceivable() && peer.transmitter.isActive()
+                && peer.transmitter.supportsFormats(this.rtpHandler.getFormatMap());
+        final RtpTransmitter current = this.rtpHandler.getRelay();
+
+        if (relay) {
+            if (current != peer.transmitter) {
+                if (current != null) {
+                    current.stopRelay();
+                }
+                peer.transmitter.startRelay();
+                this.rtpHandler.relayTo(peer.transmitter);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Channel " + this.channelId + " is relaying RTP packets to channel " + peer.channelId);
+                }
+            }
+        } else if (current != null) {
+            this.rtpHandler.stopRelay();
+            current.stopRelay();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Channel " + this.channelId + " stopped relaying RTP packets");
+            }
+        }
+    }
+
+    /**
+     * Makes the transmitter queue its packets in the outbound ring of the data channel, if the UDP manager batches outgoing
+     * packets. The ring is flushed by the scheduler at the end of every cycle.
+     */
+    private void attachOutboundRing() {
+        OutboundRing ring = this.udpManager.getOutboundRing(this.dataChannel);
+        if (ring != null) {
+            ring.attach(this.scheduler);
+        }
+        this.transmitter.setOutboundRing(ring);
+    }
+
+    private void releasePort() {
+        if (this.boundChannel != null) {
+            this.udpManager.release(this.boundChannel);
+            this.boundChannel = null;
+        }
     }
 
     private void reset() {
-        // Heartbeat reset
-        heartBeat.cancel();
+        // Inactivity detection reset
+        this.inactivityWatch.disarm();
+        this.inactivityListener = null;
+        this.inactivityTimeout = 0;
 
         // RTP reset
         this.handlers.removeHandler(this.rtpHandler);
@@ -555,23 +824,13 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
         }
     }
 
-    private class HeartBeat extends Task {
-
-        public int getQueueNumber() {
-            return PriorityQueueScheduler.HEARTBEAT_QUEUE;
-        }
-
-        @Override
-        public long perform() {
-            long elapsedTime = scheduler.getClock().getTime() - statistics.getLastHeartbeat();
-            if (elapsedTime > udpManager.getRtpTimeout() * 1000000000L) {
-                if (rtpListener != null) {
-                    rtpListener.onRtpFailure("RTP timeout! Elapsed time since last heartbeat: " + elapsedTime);
-                }
-            } else {
-                scheduler.submitHeatbeat(this);
-            }
-            return 0;
+    @Override
+    public void onRtpInactivity(long idleTime) {
+        final RtpInactivityListener listener = this.inactivityListener;
+        if (listener != null) {
+            listener.onRtpInactivity(idleTime);
+        } else if (this.rtpListener != null) {
+            this.rtpListener.onRtpFailure("RTP timeout! Elapsed time since last heartbeat: " + idleTime + "ms");
         }
     }
     
@@ -580,6 +839,16 @@ public class RtpChannel extends MultiplexedChannel implements DtlsListener, IceE
             // Connect channel to start receiving traffic from remote peer
 //            this.connect(event.getRemotePeer());
 
+            // Shared sockets route traffic of the selected candidate to this channel
+            SocketAddress selected = event.getRemotePeer();
+            if (isShared() && selected != null && !selected.equals(getRemoteAddress())) {
+                try {
+                    connect(selected);
+                } catch (IOException e) {
+                    logger.warn("Channel " + this.channelId + " could not route selected candidate " + selected, e);
+                }
+            }
+
             if (this.secure) {
                 // Start DTLS handshake
                 this.dtlsHandler.handshake();
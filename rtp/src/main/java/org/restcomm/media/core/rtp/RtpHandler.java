@@ -21,7 +21,7 @@
 package org.restcomm.media.core.rtp;
 
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -30,6 +30,7 @@ import org.restcomm.media.core.network.deprecated.channel.PacketHandlerException
 import org.restcomm.media.core.rtcp.RtcpHeader;
 import org.restcomm.media.core.rtp.jitter.FixedJitterBuffer;
 import org.restcomm.media.core.rtp.jitter.JitterBuffer;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
 import org.restcomm.media.core.rtp.rfc2833.DtmfInput;
 import org.restcomm.media.core.rtp.secure.DtlsHandler;
 import org.restcomm.media.core.rtp.statistics.RtpStatistics;
@@ -64,11 +65,16 @@ public class RtpHandler implements PacketHandler {
 	
 	private final RtpStatistics statistics;
 	private final RtpPacket rtpPacket;
+	private RtpInactivityMonitor.Watch inactivityWatch;
 	
 	// SRTP
 	private boolean secure;
 	private DtlsHandler dtlsHandler;
 	
+	// Media relay
+	private volatile RtpTransmitter relay;
+	private volatile boolean resync;
+	
 	public RtpHandler(PriorityQueueScheduler scheduler, RtpClock clock, RtpClock oobClock, int jitterBufferSize, RtpStatistics statistics) {
 		this.pipelinePriority = 0;
 		
@@ -84,11 +90,15 @@ public class RtpHandler implements PacketHandler {
 		
 		this.rtpFormats = new RTPFormats();
 		this.statistics = statistics;
-		this.rtpPacket = new RtpPacket(RtpPacket.RTP_PACKET_MAX_SIZE, true);
+		// Packet is a view over received data, so it needs no storage of its own
+		this.rtpPacket = new RtpPacket(0, false);
+		this.inactivityWatch = null;
 		this.receivable = false;
 		this.loopable = false;
 		
 		this.secure = false;
+		this.relay = null;
+		this.resync = false;
 	}
 	
 	public int getPipelinePriority() {
@@ -123,10 +133,23 @@ public class RtpHandler implements PacketHandler {
 		this.receivable = receivable;
 	}
 	
+	/**
+	 * Sets the watch that is notified of every incoming packet, for inactivity detection purposes.
+	 * 
+	 * @param watch The watch of the RTP channel
+	 */
+	public void setInactivityWatch(RtpInactivityMonitor.Watch watch) {
+		this.inactivityWatch = watch;
+	}
+	
 	public void useJitterBuffer(boolean useBuffer) {
 		this.jitterBuffer.setInUse(useBuffer);
 	}
 	
+	public JitterBufferStatistics getJitterBufferStatistics() {
+		return this.jitterBuffer.getStatistics();
+	}
+	
 	/**
 	 * Modifies the map between format and RTP payload number
 	 * 
@@ -151,6 +174,31 @@ public class RtpHandler implements PacketHandler {
 		this.dtlsHandler = null;
 	}
 	
+	/**
+	 * Forwards received packets straight to the transmitter of another channel, from the thread that reads them. Packets
+	 * skip the jitter buffer and the media scheduler until {@link #stopRelay()} is called.
+	 * 
+	 * @param transmitter The transmitter of the channel packets are relayed to.
+	 */
+	public void relayTo(final RtpTransmitter transmitter) {
+		this.relay = transmitter;
+	}
+	
+	/**
+	 * Stops relaying packets, which go through the jitter buffer again.
+	 */
+	public void stopRelay() {
+		if (this.relay != null) {
+			this.relay = null;
+			// Jitter buffer holds packets from before the relay started
+			this.resync = true;
+		}
+	}
+	
+	public RtpTransmitter getRelay() {
+		return relay;
+	}
+	
 	public void activate() {
 		this.rtpInput.activate();
 		this.dtmfInput.activate();
@@ -162,6 +210,8 @@ public class RtpHandler implements PacketHandler {
 	}
 	
 	public void reset() {
+		this.relay = null;
+		this.resync = false;
 		this.deactivate();
 		this.dtmfInput.reset();
 		this.jitterBuffer.restart();
@@ -252,29 +302,27 @@ public class RtpHandler implements PacketHandler {
 			return null;
 		}
 		
+		// Parse incoming data in place. Payload is only copied when written into the jitter buffer.
+		this.rtpPacket.wrapView(packet, offset, dataLength);
+
+		byte[] looped = null;
 		if(this.secure) {
-			// Decode SRTP packet into RTP. WebRTC calls only.
-			byte[] decoded = this.dtlsHandler.decodeRTP(packet, offset, dataLength);
-			if(decoded == null || decoded.length == 0) {
+			// Looped packets are sent back as received, so keep them before decoding
+			if (loopable) {
+				looped = Arrays.copyOfRange(packet, offset, offset + dataLength);
+			}
+
+			// Decode SRTP packet into RTP in place. WebRTC calls only.
+			if(!this.dtlsHandler.decodeRTP(this.rtpPacket.getBuffer())) {
 				logger.warn("SRTP packet is not valid! Dropping packet.");
 				return null;
-			} else {
-				// Transform incoming data directly into an RTP Packet
-				ByteBuffer buffer = this.rtpPacket.getBuffer();
-				buffer.clear();
-				buffer.put(decoded);
-				buffer.flip();
 			}
-		} else {
-			// Transform incoming data directly into an RTP Packet
-			ByteBuffer buffer = this.rtpPacket.getBuffer();
-			buffer.clear();
-			buffer.put(packet, offset, dataLength);
-			buffer.flip();
 		}
 		
 		// For RTP keep-alive purposes
-		this.statistics.setLastHeartbeat(this.rtpClock.getWallClock().getTime());
+		if (this.inactivityWatch != null) {
+			this.inactivityWatch.touch();
+		}
 		
 		// RTP v0 packets are used in some applications. Discarded since we do not handle them.
 		if (rtpPacket.getVersion() != 0 && (receivable || loopable)) {
@@ -284,15 +332,24 @@ public class RtpHandler implements PacketHandler {
 					// Update statistics for RTCP
 					this.statistics.onRtpReceive(rtpPacket);
 					this.statistics.onRtpSent(rtpPacket);
-					// Return same packet (looping) so it can be transmitted
-					return packet;
+					// Return same packet (looping) so it can be transmitted.
+					// Must be copied since incoming data is only valid while handling.
+					return looped != null ? looped : Arrays.copyOfRange(packet, offset, offset + dataLength);
 				} else {
 					// Update statistics for RTCP
 					this.statistics.onRtpReceive(rtpPacket);
 					// Write packet
 					int payloadType = rtpPacket.getPayloadType();
 					RTPFormat format = rtpFormats.find(payloadType);
-					if(format != null) {
+					final RtpTransmitter relay = this.relay;
+					if (format != null && relay != null) {
+						// Forward packet to the peer channel without decoding it
+						relay.relay(rtpPacket, format);
+					} else if(format != null) {
+						if (this.resync) {
+							this.resync = false;
+							this.jitterBuffer.restart();
+						}
 						if(RtpChannel.DTMF_FORMAT.matches(format.getFormat())) {
 							dtmfInput.write(rtpPacket);
 						} else {
@@ -0,0 +1,321 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.restcomm.media.core.scheduler.Clock;
+import org.restcomm.media.core.scheduler.Scheduler;
+
+/**
+ * Detects RTP streams that stopped receiving media, for any number of channels, with a single periodic task.
+ * <p>
+ * Time is divided in coarse ticks. Receiving a packet only stores the current tick in the {@link Watch} of the channel,
+ * without reading the clock. Armed watches are kept in a hashed timing wheel, in the bucket of the tick they may expire.
+ * Each tick the monitor visits a single bucket: watches that saw no activity expire, the others are moved to the bucket of
+ * their new deadline. So an active stream is only visited once per timeout, no matter how many packets it receives.
+ * </p>
+ * <p>
+ * Expiration is precise to the tick, which means listeners are warned up to one tick after the timeout elapsed.
+ * </p>
+ */
+public class RtpInactivityMonitor implements Runnable {
+
+    private static final Logger logger = LogManager.getLogger(RtpInactivityMonitor.class);
+
+    /** Default duration of a tick, in milliseconds */
+    public static final long DEFAULT_TICK_DURATION = 1000L;
+
+    /** Default number of buckets of the wheel */
+    public static final int DEFAULT_WHEEL_SIZE = 64;
+
+    /** Activity of watches that only expire after the first packet is received */
+    private static final long NEVER = -1L;
+
+    // Core elements
+    private final Scheduler scheduler;
+    private final Clock clock;
+    private final long startTime;
+    private final long tickDuration;
+
+    // Timing wheel. Only accessed by the sweep, watches armed by other threads are queued until the next tick.
+    private final List<ArrayList<Watch>> wheel;
+    private final int mask;
+    private ArrayList<Watch> spare;
+    private final Queue<Watch> pending;
+    private volatile long tick;
+
+    // Sweep
+    private final AtomicBoolean started;
+    private ScheduledFuture<?> sweepFuture;
+
+    /**
+     * Creates a new monitor.
+     *
+     * @param scheduler The scheduler that runs the periodic sweep
+     * @param clock The clock used to count ticks
+     * @param tickDuration The duration of a tick
+     * @param unit The time unit of the tick duration
+     * @param wheelSize The number of buckets of the wheel. Rounded up to a power of two.
+     */
+    public RtpInactivityMonitor(Scheduler scheduler, Clock clock, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+        }
+
+        // Core elements
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.startTime = clock.getTime();
+        this.tickDuration = unit.toNanos(tickDuration);
+
+        // Timing wheel
+        final int size = Integer.highestOneBit(Math.max(wheelSize, 2) * 2 - 1);
+        this.wheel = new ArrayList<ArrayList<Watch>>(size);
+        for (int i = 0; i < size; i++) {
+            this.wheel.add(new ArrayList<Watch>());
+        }
+        this.mask = size - 1;
+        this.spare = new ArrayList<Watch>();
+        this.pending = new ConcurrentLinkedQueue<Watch>();
+        this.tick = 0;
+
+        // Sweep
+        this.started = new AtomicBoolean(false);
+        this.sweepFuture = null;
+    }
+
+    public RtpInactivityMonitor(Scheduler scheduler, Clock clock) {
+        this(scheduler, clock, DEFAULT_TICK_DURATION, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Gets the current tick of the monitor.
+     *
+     * @return The number of ticks elapsed since the monitor was created
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Gets the duration of a tick.
+     *
+     * @param unit The time unit of the returned duration
+     * @return The duration of a tick
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(this.tickDuration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new watch for an RTP stream. The watch is disarmed until {@link Watch#arm(long, TimeUnit, boolean)} is
+     * called.
+     *
+     * @param listener The listener warned when the stream stops receiving packets
+     * @return The new watch
+     */
+    public Watch watch(RtpInactivityListener listener) {
+        return new Watch(listener);
+    }
+
+    /**
+     * Starts the periodic sweep, if not running already.
+     */
+    public void start() {
+        if (this.started.compareAndSet(false, true)) {
+            final long period = getTickDuration(TimeUnit.MILLISECONDS);
+            try {
+                this.sweepFuture = this.scheduler.scheduleWithFixedDelay(this, period, period, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                this.started.set(false);
+                logger.warn("Could not start RTP inactivity monitor. Will try again when a watch is armed.", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the periodic sweep. Armed watches do not expire until the monitor is started again.
+     */
+    public void stop() {
+        if (this.started.compareAndSet(true, false)) {
+            if (this.sweepFuture != null) {
+                this.sweepFuture.cancel(false);
+                this.sweepFuture = null;
+            }
+        }
+    }
+
+    public boolean isStarted() {
+        return this.started.get();
+    }
+
+    /**
+     * Advances the wheel up to the current time, expiring watches that saw no activity within their timeout.
+     * <p>
+     * Runs periodically once the monitor is started. Must not be called concurrently.
+     * </p>
+     */
+    @Override
+    public void run() {
+        // Watches armed since last sweep
+        Watch watch;
+        while ((watch = this.pending.poll()) != null) {
+            if (watch.armed) {
+                schedule(watch, this.tick);
+            }
+        }
+
+        // Visit every bucket up to the current tick, even if the sweep was delayed
+        final long current = (this.clock.getTime() - this.startTime) / this.tickDuration;
+        while (this.tick < current) {
+            final long now = this.tick + 1;
+            this.tick = now;
+            expire(now);
+        }
+    }
+
+    private void expire(long now) {
+        final int index = (int) (now & this.mask);
+        final ArrayList<Watch> bucket = this.wheel.get(index);
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        // Swap buckets, since watches may be scheduled again in the same bucket
+        this.wheel.set(index, this.spare);
+        this.spare = bucket;
+
+        final int size = bucket.size();
+        for (int i = 0; i < size; i++) {
+            final Watch watch = bucket.get(i);
+            if (watch.slot != now) {
+                if (watch.slot > now && (watch.slot & this.mask) == index) {
+                    // Deadline is in a later turn of the wheel
+                    this.wheel.get(index).add(watch);
+                }
+                // Otherwise entry is stale, since watch was armed again and moved to another bucket
+                continue;
+            }
+
+            if (!watch.armed) {
+                watch.slot = NEVER;
+                continue;
+            }
+
+            final long lastActivity = watch.lastActivity;
+            if (lastActivity != NEVER && now - lastActivity >= watch.timeout) {
+                watch.armed = false;
+                watch.slot = NEVER;
+                final long idleTime = TimeUnit.NANOSECONDS.toMillis((now - lastActivity) * this.tickDuration);
+                try {
+                    watch.listener.onRtpInactivity(idleTime);
+                } catch (RuntimeException e) {
+                    logger.error("RTP inactivity listener failed", e);
+                }
+            } else {
+                schedule(watch, now);
+            }
+        }
+        bucket.clear();
+    }
+
+    private void schedule(Watch watch, long now) {
+        final long lastActivity = watch.lastActivity;
+        // Watches waiting for the first packet are checked again after a full timeout
+        final long deadline = (lastActivity == NEVER ? now : lastActivity) + watch.timeout;
+        final long slot = Math.max(deadline, now + 1);
+        watch.slot = slot;
+        this.wheel.get((int) (slot & this.mask)).add(watch);
+    }
+
+    /**
+     * Tracks the activity of an RTP stream.
+     */
+    public final class Watch {
+
+        private final RtpInactivityListener listener;
+
+        private volatile boolean armed;
+        private volatile long timeout;
+        private volatile long lastActivity;
+
+        // Tick of the bucket holding the watch. Only accessed by the sweep.
+        private long slot;
+
+        private Watch(RtpInactivityListener listener) {
+            this.listener = listener;
+            this.armed = false;
+            this.timeout = 0;
+            this.lastActivity = NEVER;
+            this.slot = NEVER;
+        }
+
+        /**
+         * Registers activity on the stream. Cheap enough to be called for every received packet.
+         */
+        public void touch() {
+            this.lastActivity = tick;
+        }
+
+        /**
+         * Arms the watch, replacing any previous timeout.
+         * <p>
+         * The watch expires only once. It must be armed again to detect further inactivity.
+         * </p>
+         *
+         * @param timeout The maximum time without activity
+         * @param unit The time unit of the timeout
+         * @param immediately Whether the timeout starts now or only after the first packet is received
+         */
+        public void arm(long timeout, TimeUnit unit, boolean immediately) {
+            final long ticks = (unit.toNanos(timeout) + tickDuration - 1) / tickDuration;
+            this.timeout = Math.max(ticks, 1);
+            this.lastActivity = immediately ? tick : NEVER;
+            this.armed = true;
+            pending.offer(this);
+            start();
+        }
+
+        /**
+         * Disarms the watch, so it will not expire.
+         */
+        public void disarm() {
+            this.armed = false;
+        }
+
+        public boolean isArmed() {
+            return this.armed;
+        }
+
+    }
+
+}
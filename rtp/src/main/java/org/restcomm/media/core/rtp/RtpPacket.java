@@ -316,6 +316,26 @@ public class RtpPacket implements Serializable {
         this.buffer.flip();
     }
 
+    /**
+     * Turns the packet into a view over a region of an existing array. No data is copied.
+     * <p>
+     * The view is reused as long as the same array and offset are provided, so wrapping packets received into a long-lived
+     * buffer does not allocate. Any change done to the array is visible to the packet.
+     * </p>
+     *
+     * @param data the array that holds the raw packet
+     * @param offset the position of the packet inside the array
+     * @param length the length of the packet
+     */
+    public void wrapView(byte[] data, int offset, int length) {
+        if (!this.buffer.hasArray() || this.buffer.array() != data || this.buffer.arrayOffset() != offset) {
+            ByteBuffer region = ByteBuffer.wrap(data, offset, data.length - offset);
+            this.buffer = region.slice();
+        }
+        this.buffer.clear();
+        this.buffer.limit(length);
+    }
+
     /**
      * Encapsulates data into the packet for transmission via RTP.
      *
@@ -22,11 +22,14 @@ package org.restcomm.media.core.rtp;
 
 import java.io.IOException;
 import java.net.PortUnreachableException;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.restcomm.media.core.network.deprecated.OutboundRing;
 import org.restcomm.media.core.rtp.rfc2833.DtmfOutput;
 import org.restcomm.media.core.rtp.secure.DtlsHandler;
 import org.restcomm.media.core.rtp.statistics.RtpStatistics;
@@ -34,6 +37,7 @@ import org.restcomm.media.core.scheduler.PriorityQueueScheduler;
 import org.restcomm.media.core.sdp.format.AVProfile;
 import org.restcomm.media.core.sdp.format.RTPFormat;
 import org.restcomm.media.core.sdp.format.RTPFormats;
+import org.restcomm.media.core.spi.format.Format;
 import org.restcomm.media.core.spi.memory.Frame;
 
 /**
@@ -49,6 +53,8 @@ public class RtpTransmitter {
 	
 	// Channel properties
 	private DatagramChannel channel;
+	private volatile SocketAddress remotePeer;
+	private volatile OutboundRing outboundRing;
 	private final RtpClock rtpClock;
 	private final RtpStatistics statistics;
 	private boolean dtmfSupported;
@@ -58,6 +64,7 @@ public class RtpTransmitter {
 	// Packet representations with internal buffers
 	private final RtpPacket rtpPacket = new RtpPacket(RtpPacket.RTP_PACKET_MAX_SIZE, true);
 	private final RtpPacket oobPacket = new RtpPacket(RtpPacket.RTP_PACKET_MAX_SIZE, true);
+	private final RtpPacket relayPacket = new RtpPacket(RtpPacket.RTP_PACKET_MAX_SIZE, true);
 	
 	// WebRTC
 	private DtlsHandler dtlsHandler;
@@ -66,11 +73,23 @@ public class RtpTransmitter {
 	// Details of a transmitted packet
 	private RTPFormats formats;
 	private RTPFormat currentFormat;
+	private Format currentFrameFormat;
 	private long timestamp;
 	private long dtmfTimestamp;
 	private long dtmfDuration;
+	private volatile boolean active;
+
+	// Packets are produced by the scheduler and, while relaying, by the network thread of the source leg.
+	// The lock hands the transmitter over between both paths and guards the sequence number and the SRTP context.
+	private final Object sendLock = new Object();
 	private int sequenceNumber;
 
+	// Media relay. Flags are written by the control thread, offset is owned by the thread relaying packets.
+	private volatile boolean relaying;
+	private volatile int relaySession;
+	private int relaySynchronized;
+	private long relayTimestampOffset;
+
 	public RtpTransmitter(final PriorityQueueScheduler scheduler, final RtpClock clock, final RtpStatistics statistics) {
 		this.rtpClock = clock;
 		this.statistics = statistics;
@@ -83,11 +102,37 @@ public class RtpTransmitter {
 		this.timestamp = -1;
 		this.formats = null;
 		this.secure = false;
+		this.active = false;
+		this.relaying = false;
+		this.relaySession = 0;
+		this.relaySynchronized = -1;
 	}
 	
 	public void setFormatMap(final RTPFormats rtpFormats) {
 		this.dtmfSupported = rtpFormats.contains(AVProfile.telephoneEventsID);
 		this.formats = rtpFormats;
+		// Resolve format of next frame against the new map
+		this.currentFrameFormat = null;
+	}
+	
+	/**
+	 * Checks whether every format a peer may receive can be sent as is by this transmitter.
+	 * 
+	 * @param rtpFormats The formats negotiated by the peer.
+	 * @return Returns true if all formats were also negotiated by this transmitter.
+	 */
+	public boolean supportsFormats(final RTPFormats rtpFormats) {
+		final RTPFormats supported = this.formats;
+		if (supported == null || rtpFormats == null || rtpFormats.isEmpty()) {
+			return false;
+		}
+		final RTPFormat[] formats = rtpFormats.toArray();
+		for (RTPFormat format : formats) {
+			if (supported.find(format.getFormat()) == null) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	public RTPOutput getRtpOutput() {
@@ -111,20 +156,72 @@ public class RtpTransmitter {
 	public void activate() {
 		this.rtpOutput.activate();
 		this.dtmfOutput.activate();
+		this.active = true;
 	}
 	
 	public void deactivate() {
+		this.active = false;
 		this.rtpOutput.deactivate();
 		this.dtmfOutput.deactivate();
 		this.dtmfSupported = false;
 	}
 	
+	public boolean isActive() {
+		return active;
+	}
+	
+	/**
+	 * Starts sending packets relayed from another channel. Frames produced by the media pipeline are dropped meanwhile.
+	 */
+	public void startRelay() {
+		synchronized (this.sendLock) {
+			this.relaySession++;
+			this.relaying = true;
+		}
+	}
+	
+	/**
+	 * Stops relaying packets and resumes sending frames produced by the media pipeline.
+	 */
+	public void stopRelay() {
+		synchronized (this.sendLock) {
+			this.relaying = false;
+		}
+	}
+	
+	public boolean isRelaying() {
+		return relaying;
+	}
+	
 	public void setChannel(final DatagramChannel channel) {
 		this.channel = channel;
 	}
 	
+	/**
+	 * Sets the ring where packets produced by the media pipeline are queued, to be sent in a burst at the end of the scheduler
+	 * cycle. Relayed packets are always sent immediately.
+	 * 
+	 * @param outboundRing The outbound ring. Null to send every packet immediately.
+	 */
+	public void setOutboundRing(final OutboundRing outboundRing) {
+		this.outboundRing = outboundRing;
+	}
+	
+	public OutboundRing getOutboundRing() {
+		return outboundRing;
+	}
+	
+	/**
+	 * Sets the peer packets are sent to when the channel is shared by many legs, and thus never connected.
+	 * 
+	 * @param remotePeer The address of the remote peer. Null to send to the peer the channel is connected to.
+	 */
+	public void setRemotePeer(final SocketAddress remotePeer) {
+		this.remotePeer = remotePeer;
+	}
+	
 	private boolean isConnected() {
-		return this.channel != null && this.channel.isConnected();
+		return this.channel != null && (this.remotePeer != null || this.channel.isConnected());
 	}
 	
 	private void disconnect() throws IOException {
@@ -135,7 +232,10 @@ public class RtpTransmitter {
 	
 	public void reset() {
 		deactivate();
+		stopRelay();
 		clear();
+		this.remotePeer = null;
+		this.outboundRing = null;
 	}
 	
 	public void clear() {
@@ -145,136 +245,213 @@ public class RtpTransmitter {
 		// Reset format in case connection is reused.
 		// Otherwise it would point to incorrect codec.
 		this.currentFormat = null;
+		this.currentFrameFormat = null;
 	}
 	
-	private void send(RtpPacket packet) throws IOException {
+	private void send(RtpPacket packet, boolean batched) throws IOException {
 		// Do not send data while DTLS handshake is ongoing. WebRTC calls only.
 		if(this.secure && !this.dtlsHandler.isHandshakeComplete()) {
 			return;
 		}
 		
-		// Secure RTP packet. WebRTC calls only. 
-		// SRTP handler returns null if an error occurs
+		// Secure RTP packet in place. WebRTC calls only. 
 		ByteBuffer buffer = packet.getBuffer();
 		if (this.secure) {
-			byte[] rtpData = new byte[buffer.limit()];
-			buffer.get(rtpData, 0, rtpData.length);
-			byte[] srtpData = this.dtlsHandler.encodeRTP(rtpData, 0, rtpData.length);
-			if(srtpData == null || srtpData.length == 0) {
+			if(!this.dtlsHandler.encodeRTP(buffer)) {
 				LOGGER.warn("Could not secure RTP packet! Packet dropped.");
 				return;
-			} else {
-				buffer.clear();
-				buffer.put(srtpData);
-				buffer.flip();
 			}
 		}
 		
 		if(packet != null) {
-			channel.send(buffer, channel.socket().getRemoteSocketAddress());
+			SocketAddress destination = this.remotePeer;
+			if (destination == null) {
+				destination = channel.socket().getRemoteSocketAddress();
+			}
+			
+			// Queue packet until the end of the scheduler cycle. Never send it around the ring, or it would overtake queued packets.
+			OutboundRing ring = batched ? this.outboundRing : null;
+			if (ring == null) {
+				channel.send(buffer, destination);
+			} else if (!ring.enqueue(channel, buffer, destination)) {
+				LOGGER.warn("Outbound ring is full. RTP packet dropped.");
+				return;
+			}
 			// send RTP packet to the network and update statistics for RTCP
 			statistics.onRtpSent(packet);
 			
 		}
 	}
 	
-	public void sendDtmf(Frame frame) {
-		if (!this.dtmfSupported) {
-			frame.recycle();
-			return;
-		}
-		
-		// ignore frames with duplicate timestamp
-		if (frame.getTimestamp() / 1000000L == dtmfTimestamp) {
-			frame.recycle();
+	/**
+	 * Forwards a packet received by another channel, without decoding it.
+	 * <p>
+	 * The packet is sent with the SSRC and sequence number of this transmitter. Timestamps are shifted to the clock of this
+	 * transmitter when the relay starts, and the marker bit flags the discontinuity. The payload type is mapped to the one
+	 * negotiated by this channel for the same format. If the channel is secure, the packet is encrypted as any other.
+	 * </p>
+	 * 
+	 * @param packet The packet to relay, already decrypted. Only valid for the duration of the call.
+	 * @param format The format of the packet, as negotiated by the channel that received it.
+	 */
+	public void relay(final RtpPacket packet, final RTPFormat format) {
+		if (!this.relaying) {
 			return;
 		}
-
-        // // convert to milliseconds first
-        // dtmfTimestamp = frame.getTimestamp() / 1000000L;
-        // // convert to rtp time units
-        // dtmfTimestamp = rtpClock.convertToRtpTime(dtmfTimestamp);
-        // oobPacket.wrap(false, AVProfile.telephoneEventsID, this.sequenceNumber++, dtmfTimestamp, this.statistics.getSsrc(),
-        // frame.getData(), frame.getOffset(), frame.getLength());
-
-		// hrosa - Hack to workaround MEDIA-61: https://telestax.atlassian.net/browse/MEDIA-61
-		long duration = (frame.getData()[2]<<8) | (frame.getData()[3] & 0xFF); 
-		boolean toneChanged = false;
-		
-		if(this.dtmfDuration == -1 || this.dtmfDuration > duration) {
-		    this.dtmfTimestamp = this.timestamp;
-		    toneChanged = true;
-		}
-		this.dtmfDuration = duration;
 		
-		oobPacket.wrap(toneChanged, AVProfile.telephoneEventsID, this.sequenceNumber++, this.dtmfTimestamp, this.statistics.getSsrc(), frame.getData(), frame.getOffset(), frame.getLength());
-		// end of hack - hrosa
+		// Runs on the network thread of the source leg, so it must not interleave with the media pipeline
+		synchronized (this.sendLock) {
+			if (!this.relaying) {
+				return;
+			}
+			
+			final RTPFormats formats = this.formats;
+			final RTPFormat outputFormat = (formats == null) ? null : formats.find(format.getFormat());
+			if (outputFormat == null) {
+				return;
+			}
 		
-		frame.recycle();
+			boolean marker = packet.getMarker();
+			final long timestamp = packet.getTimestamp();
+			final int session = this.relaySession;
+			if (this.relaySynchronized != session) {
+				// First packet of the relay. Align timestamps with the local clock.
+				final long now = this.rtpClock.getWallClock().getTime(TimeUnit.MILLISECONDS);
+				this.relayTimestampOffset = now * outputFormat.getClockRate() / 1000 - timestamp;
+				this.relaySynchronized = session;
+				marker = true;
+			}
 		
-		try {
-			if(isConnected()) {
-				send(oobPacket);
+			final ByteBuffer buffer = packet.getBuffer();
+			final int headerLength = packet.getHeaderLength();
+			final int payloadLength = packet.getPayloadLength() - packet.getPaddingSize();
+			if (payloadLength < 0) {
+				return;
 			}
-		} catch (PortUnreachableException e) {
+			this.relayPacket.wrap(marker, outputFormat.getID(), this.sequenceNumber++, (timestamp + this.relayTimestampOffset) & 0xFFFFFFFFL,
+					this.statistics.getSsrc(), buffer.array(), buffer.arrayOffset() + headerLength, payloadLength);
+		
 			try {
+				if (isConnected()) {
+					send(this.relayPacket, false);
+				}
+			} catch (PortUnreachableException e) {
 				// icmp unreachable received
 				// disconnect and wait for new packet
-				disconnect();
-			} catch (IOException ex) {
-				LOGGER.error(ex.getMessage(), ex);
+				try {
+					disconnect();
+				} catch (IOException ex) {
+					LOGGER.error(ex.getMessage(), ex);
+				}
+			} catch (Exception e) {
+				LOGGER.error(e.getMessage(), e);
 			}
-		} catch (Exception e) {
-			LOGGER.error(e.getMessage(), e);
 		}
 	}
+	
+	public void sendDtmf(Frame frame) {
+		synchronized (this.sendLock) {
+			if (!this.dtmfSupported || this.relaying) {
+				frame.recycle();
+				return;
+			}
+		
+			// ignore frames with duplicate timestamp
+			if (frame.getTimestamp() / 1000000L == dtmfTimestamp) {
+				frame.recycle();
+				return;
+			}
 
-	public void send(Frame frame) {
-		// discard frame if format is unknown
-		if (frame.getFormat() == null) {
+	        // // convert to milliseconds first
+	        // dtmfTimestamp = frame.getTimestamp() / 1000000L;
+	        // // convert to rtp time units
+	        // dtmfTimestamp = rtpClock.convertToRtpTime(dtmfTimestamp);
+	        // oobPacket.wrap(false, AVProfile.telephoneEventsID, this.sequenceNumber++, dtmfTimestamp, this.statistics.getSsrc(),
+	        // frame.getData(), frame.getOffset(), frame.getLength());
+
+			// hrosa - Hack to workaround MEDIA-61: https://telestax.atlassian.net/browse/MEDIA-61
+			long duration = (frame.getData()[2]<<8) | (frame.getData()[3] & 0xFF); 
+			boolean toneChanged = false;
+		
+			if(this.dtmfDuration == -1 || this.dtmfDuration > duration) {
+			    this.dtmfTimestamp = this.timestamp;
+			    toneChanged = true;
+			}
+			this.dtmfDuration = duration;
+		
+			oobPacket.wrap(toneChanged, AVProfile.telephoneEventsID, this.sequenceNumber++, this.dtmfTimestamp, this.statistics.getSsrc(), frame.getData(), frame.getOffset(), frame.getLength());
+			// end of hack - hrosa
+		
 			frame.recycle();
-			return;
+		
+			try {
+				if(isConnected()) {
+					send(oobPacket, true);
+				}
+			} catch (PortUnreachableException e) {
+				try {
+					// icmp unreachable received
+					// disconnect and wait for new packet
+					disconnect();
+				} catch (IOException ex) {
+					LOGGER.error(ex.getMessage(), ex);
+				}
+			} catch (Exception e) {
+				LOGGER.error(e.getMessage(), e);
+			}
 		}
+	}
 
-		// determine current RTP format if it is unknown
-		if (currentFormat == null || !currentFormat.getFormat().matches(frame.getFormat())) {
-			currentFormat = formats.getRTPFormat(frame.getFormat());
-			// discard packet if format is still unknown
-			if (currentFormat == null) {
+	public void send(Frame frame) {
+		synchronized (this.sendLock) {
+			// discard frame if format is unknown or packets are being relayed from another channel
+			if (frame.getFormat() == null || this.relaying) {
 				frame.recycle();
 				return;
 			}
-			// update clock rate
-			rtpClock.setClockRate(currentFormat.getClockRate());
-		}
 
-		// ignore frames with duplicate timestamp
-		if (frame.getTimestamp() / 1000000L == timestamp) {
-			frame.recycle();
-			return;
-		}
-
-		// convert to milliseconds first
-		timestamp = frame.getTimestamp() / 1000000L;
-		// convert to rtp time units
-		timestamp = rtpClock.convertToRtpTime(timestamp);
-		rtpPacket.wrap(false, currentFormat.getID(), this.sequenceNumber++, timestamp, this.statistics.getSsrc(), frame.getData(), frame.getOffset(), frame.getLength());
+			// determine current RTP format if it is unknown
+			// codecs reuse the same format instance for all frames, so identity is enough to detect a change
+			if (currentFormat == null || currentFrameFormat != frame.getFormat()) {
+				currentFrameFormat = frame.getFormat();
+				currentFormat = formats.getRTPFormat(currentFrameFormat);
+				// discard packet if format is still unknown
+				if (currentFormat == null) {
+					frame.recycle();
+					return;
+				}
+				// update clock rate
+				rtpClock.setClockRate(currentFormat.getClockRate());
+			}
 
-		frame.recycle();
-		try {
-			if (isConnected()) {
-				send(rtpPacket);
+			// ignore frames with duplicate timestamp
+			if (frame.getTimestamp() / 1000000L == timestamp) {
+				frame.recycle();
+				return;
 			}
-		} catch (PortUnreachableException e) {
-			// icmp unreachable received
-			// disconnect and wait for new packet
+
+			// convert to milliseconds first
+			timestamp = frame.getTimestamp() / 1000000L;
+			// convert to rtp time units
+			timestamp = rtpClock.convertToRtpTime(timestamp);
+			rtpPacket.wrap(false, currentFormat.getID(), this.sequenceNumber++, timestamp, this.statistics.getSsrc(), frame.getData(), frame.getOffset(), frame.getLength());
+
+			frame.recycle();
 			try {
-				disconnect();
-			} catch (IOException ex) {
-				LOGGER.error(ex.getMessage(), ex);
+				if (isConnected()) {
+					send(rtpPacket, true);
+				}
+			} catch (PortUnreachableException e) {
+				// icmp unreachable received
+				// disconnect and wait for new packet
+				try {
+					disconnect();
+				} catch (IOException ex) {
+					LOGGER.error(ex.getMessage(), ex);
+				}
+			} catch (Exception e) {
+				LOGGER.error(e.getMessage(), e);
 			}
-		} catch (Exception e) {
-			LOGGER.error(e.getMessage(), e);
 		}
 	}
 
@@ -24,10 +24,14 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.ice.IceAuthenticatorImpl;
 import org.restcomm.media.core.rtcp.RtcpChannel;
+import org.restcomm.media.core.rtcp.RtcpVoipMetrics;
 import org.restcomm.media.core.rtp.ChannelsManager;
 import org.restcomm.media.core.rtp.RtpChannel;
 import org.restcomm.media.core.rtp.RtpClock;
+import org.restcomm.media.core.rtp.RtpInactivityListener;
+import org.restcomm.media.core.rtp.RtpListener;
 import org.restcomm.media.core.rtp.SsrcGenerator;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
 import org.restcomm.media.core.rtp.statistics.RtpStatistics;
 import org.restcomm.media.core.scheduler.Clock;
 import org.restcomm.media.core.sdp.attributes.RtpMapAttribute;
@@ -83,7 +87,7 @@ public abstract class MediaChannel {
 	protected boolean negotiated;
 	
 	// ICE components
-	private final IceAuthenticatorImpl iceAuthenticator;
+	private IceAuthenticatorImpl iceAuthenticator;
 
 	/**
 	 * Constructs a new media channel containing both RTP and RTCP components.
@@ -124,8 +128,8 @@ public abstract class MediaChannel {
 
 		setFormats(this.supportedFormats);
 
-		// ICE Components
-		this.iceAuthenticator = new IceAuthenticatorImpl();
+		// ICE Components are only created if the channel enables ICE
+		this.iceAuthenticator = null;
 	}
 	
 	/**
@@ -393,6 +397,65 @@ public abstract class MediaChannel {
 		this.rtpChannel.updateMode(mode);
 	}
 
+	/**
+	 * Sets the listener that is warned about failures on the RTP flow,
+	 * including RTP timeouts configured in the UDP manager.
+	 * 
+	 * @param listener
+	 *            The RTP listener
+	 */
+	public void setRtpListener(RtpListener listener) {
+		this.rtpChannel.setRtpListener(listener);
+	}
+
+	/**
+	 * Warns a listener when no RTP packet is received for a certain amount
+	 * of time. Overrides the RTP timeout configured in the UDP manager until
+	 * the channel is closed.
+	 * 
+	 * @param timeout
+	 *            The maximum time without receiving RTP, in seconds
+	 * @param immediately
+	 *            Whether the timeout starts now or only after the first packet
+	 *            is received
+	 * @param listener
+	 *            The listener to be warned when the timeout expires
+	 */
+	public void watchInactivity(int timeout, boolean immediately, RtpInactivityListener listener) {
+		this.rtpChannel.watchInactivity(timeout, immediately, listener);
+	}
+
+	/**
+	 * Relays RTP packets between this channel and another one, in both directions, without decoding them.
+	 * <p>
+	 * Each direction is only relayed while the receiving side is allowed to receive, the sending side is allowed to send and
+	 * both negotiated the same codecs. Otherwise packets go through full media processing.
+	 * </p>
+	 * 
+	 * @param peer
+	 *            The channel to relay packets to and from
+	 */
+	public void relay(MediaChannel peer) {
+		this.rtpChannel.relayTo(peer.rtpChannel);
+		peer.rtpChannel.relayTo(this.rtpChannel);
+	}
+
+	/**
+	 * Stops relaying RTP packets to another channel, resuming full media processing.
+	 */
+	public void stopRelay() {
+		this.rtpChannel.stopRelay();
+	}
+
+	/**
+	 * Gets whether RTP packets received by this channel are relayed to another channel.
+	 * 
+	 * @return <code>true</code> if packets bypass media processing; otherwise returns <code>false</code>
+	 */
+	public boolean isRelaying() {
+		return this.rtpChannel.isRelaying();
+	}
+
 	/**
 	 * Sets the supported codecs of the RTP components.
 	 * 
@@ -721,10 +784,13 @@ public abstract class MediaChannel {
         if (!this.ice) {
             this.ice = true;
             this.rtcpMux = rtcpMux;
+            if (this.iceAuthenticator == null) {
+                this.iceAuthenticator = new IceAuthenticatorImpl();
+            }
             this.iceAuthenticator.generateIceCredentials();
             
             // Enable ICE on RTP channels
-            this.rtpChannel.enableIce(this.iceAuthenticator);
+            this.rtpChannel.enableIce(this.iceAuthenticator, this.iceAuthenticator.getUfrag());
             if(!rtcpMux) {
                 this.rtcpChannel.enableIce(this.iceAuthenticator);
             }
@@ -961,4 +1027,56 @@ public abstract class MediaChannel {
 		return 0;
 	}
 
+	/**
+	 * Gets the quality statistics of the jitter buffer that receives the RTP
+	 * flow of the call.
+	 * 
+	 * @return The jitter buffer statistics.
+	 */
+	public JitterBufferStatistics getJitterBufferStatistics() {
+		return this.rtpChannel.getJitterBufferStatistics();
+	}
+
+	/**
+	 * Gets the quality of the RTP flow received from the remote peer, as
+	 * defined by the VoIP Metrics Report Block of RFC3611.
+	 * 
+	 * @return The VoIP metrics, including the estimated R factor and MOS, or
+	 *         null if the channel is closed or no RTP was received yet.
+	 */
+	public RtcpVoipMetrics getVoipMetrics() {
+		if(this.open) {
+			return this.statistics.getVoipMetrics();
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the quality of the RTP flow sent to the remote peer, as reported by
+	 * the peer in an RTCP Extended Report.
+	 * 
+	 * @return The VoIP metrics reported by the remote peer or null if none
+	 *         was received.
+	 */
+	public RtcpVoipMetrics getRemoteVoipMetrics() {
+		if(this.open) {
+			return this.statistics.getRemoteVoipMetrics();
+		}
+		return null;
+	}
+
+	/**
+	 * Enables or disables sending RTCP Extended Reports with VoIP metrics
+	 * about the received RTP flow.
+	 * <p>
+	 * Reports are disabled by default, since RFC3611 requires peers to agree
+	 * on their use.
+	 * </p>
+	 * 
+	 * @param enabled Whether VoIP metrics reports are sent
+	 */
+	public void setVoipMetricsReports(boolean enabled) {
+		this.statistics.setVoipMetricsReports(enabled);
+	}
+
 }
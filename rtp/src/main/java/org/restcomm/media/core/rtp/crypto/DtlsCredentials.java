@@ -0,0 +1,97 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import java.io.IOException;
+
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.tls.Certificate;
+
+/**
+ * Immutable snapshot of the certificate chain and private key of the DTLS server, parsed once and shared by every
+ * {@link DtlsSrtpServer}.
+ * <p>
+ * Fingerprints of the local certificate are computed upfront for every hash function supported by {@link TlsUtils}.
+ * </p>
+ */
+public class DtlsCredentials {
+
+    private final Certificate certificateChain;
+    private final AsymmetricKeyParameter privateKey;
+
+    private final String sha1Fingerprint;
+    private final String sha256Fingerprint;
+    private final String sha512Fingerprint;
+
+    public DtlsCredentials(Certificate certificateChain, AsymmetricKeyParameter privateKey) throws IOException {
+        if (certificateChain.isEmpty()) {
+            throw new IllegalArgumentException("Certificate chain cannot be empty");
+        }
+
+        this.certificateChain = certificateChain;
+        this.privateKey = privateKey;
+
+        final org.bouncycastle.asn1.x509.Certificate certificate = certificateChain.getCertificateAt(0);
+        this.sha1Fingerprint = TlsUtils.fingerprint(TlsUtils.SHA_1, certificate);
+        this.sha256Fingerprint = TlsUtils.fingerprint(TlsUtils.SHA_256, certificate);
+        this.sha512Fingerprint = TlsUtils.fingerprint(TlsUtils.SHA_512, certificate);
+    }
+
+    /**
+     * Parses the certificate chain and private key from PEM files.
+     *
+     * @param certificatePaths The paths to the certificates of the chain, starting with the local certificate.
+     * @param keyPath The path to the private key of the local certificate.
+     * @return The parsed credentials.
+     * @throws IOException When a file cannot be read.
+     */
+    public static DtlsCredentials load(String[] certificatePaths, String keyPath) throws IOException {
+        return new DtlsCredentials(TlsUtils.loadCertificateChain(certificatePaths), TlsUtils.loadPrivateKeyResource(keyPath));
+    }
+
+    public Certificate getCertificateChain() {
+        return certificateChain;
+    }
+
+    public AsymmetricKeyParameter getPrivateKey() {
+        return privateKey;
+    }
+
+    /**
+     * Gets the fingerprint of the local certificate.
+     *
+     * @param hashFunction The hash function, as advertised in SDP. Unknown functions default to SHA-256, like
+     *        {@link TlsUtils#fingerprint(String, org.bouncycastle.asn1.x509.Certificate)}.
+     * @return The fingerprint, prefixed by the name of the hash function.
+     */
+    public String getFingerprint(String hashFunction) {
+        switch (hashFunction) {
+            case TlsUtils.SHA_1:
+                return sha1Fingerprint;
+            case TlsUtils.SHA_512:
+                return sha512Fingerprint;
+            default:
+                return sha256Fingerprint;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the {@link DtlsCredentials} of the DTLS server in memory so certificates and keys are not read from disk and parsed
+ * on every call setup.
+ * <p>
+ * Credentials are loaded on first use. Afterwards, the modification time of the files is checked at most once per check
+ * interval and the credentials are reloaded when any file changed. If a reload fails, the previous credentials remain in
+ * use.
+ * </p>
+ */
+public class DtlsCredentialsCache {
+
+    private static final Logger logger = LogManager.getLogger(DtlsCredentialsCache.class);
+
+    public static final long DEFAULT_CHECK_INTERVAL = 5000L;
+
+    private final String[] certificatePaths;
+    private final String keyPath;
+    private final long checkInterval;
+
+    private volatile DtlsCredentials credentials;
+    private volatile long nextCheck;
+    private long[] lastModified;
+
+    public DtlsCredentialsCache(String[] certificatePaths, String keyPath, long checkInterval) {
+        this.certificatePaths = certificatePaths;
+        this.keyPath = keyPath;
+        this.checkInterval = checkInterval;
+        this.credentials = null;
+        this.nextCheck = 0L;
+        this.lastModified = new long[0];
+    }
+
+    public DtlsCredentialsCache(String[] certificatePaths, String keyPath) {
+        this(certificatePaths, keyPath, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Gets the current credentials, loading them if this is the first access or if the files changed since last load.
+     *
+     * @return The credentials of the DTLS server.
+     * @throws IOException When the credentials were never loaded and the files cannot be read.
+     */
+    public DtlsCredentials get() throws IOException {
+        DtlsCredentials current = this.credentials;
+        if (current != null && System.currentTimeMillis() < this.nextCheck) {
+            return current;
+        }
+        return refresh(false);
+    }
+
+    /**
+     * Reloads the credentials from disk, regardless of modification times.
+     *
+     * @return The reloaded credentials.
+     * @throws IOException When the files cannot be read.
+     */
+    public DtlsCredentials reload() throws IOException {
+        return refresh(true);
+    }
+
+    private synchronized DtlsCredentials refresh(boolean force) throws IOException {
+        final long now = System.currentTimeMillis();
+        if (!force && this.credentials != null && now < this.nextCheck) {
+            // Another thread refreshed the credentials meanwhile
+            return this.credentials;
+        }
+        this.nextCheck = now + this.checkInterval;
+
+        final long[] modified = readModificationTimes();
+        if (!force && this.credentials != null && Arrays.equals(modified, this.lastModified)) {
+            return this.credentials;
+        }
+
+        try {
+            this.credentials = DtlsCredentials.load(this.certificatePaths, this.keyPath);
+            this.lastModified = modified;
+            if (logger.isInfoEnabled()) {
+                logger.info("Loaded DTLS credentials from " + this.keyPath);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (this.credentials == null) {
+                throw e;
+            }
+            logger.error("Could not reload DTLS credentials. Keeping the previous ones. Reason: " + e.getMessage());
+        }
+        return this.credentials;
+    }
+
+    private long[] readModificationTimes() {
+        final long[] modified = new long[this.certificatePaths.length + 1];
+        for (int i = 0; i < this.certificatePaths.length; i++) {
+            modified[i] = new File(this.certificatePaths[i]).lastModified();
+        }
+        modified[this.certificatePaths.length] = new File(this.keyPath).lastModified();
+        return modified;
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the DTLS handshakes of all WebRTC connections on a bounded pool of worker threads.
+ * <p>
+ * Workers spend most of a handshake blocked waiting for the next flight of the remote peer, so the pool is sized for
+ * blocking I/O rather than for the number of processors. Handshakes beyond the pool size wait in a queue until a worker
+ * is free. The number of handshakes admitted at any time,
+ * running or queued, is capped by the admission limit so a burst of connections cannot pile up work that would only time
+ * out. Handshakes refused by the limit fail immediately.
+ * </p>
+ */
+public class DtlsHandshakeService {
+
+    private static final Logger logger = LogManager.getLogger(DtlsHandshakeService.class);
+
+    public static final int DEFAULT_POOL_SIZE = Math.max(32, 8 * Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_ADMISSION_LIMIT = 500;
+
+    private final int poolSize;
+    private final int admissionLimit;
+    private final ThreadPoolExecutor executor;
+
+    // Metrics
+    private final AtomicInteger admitted;
+    private final AtomicInteger active;
+    private final AtomicLong completed;
+    private final AtomicLong failed;
+    private final AtomicLong rejected;
+    private final AtomicLong totalLatency;
+    private final AtomicLong maxLatency;
+
+    public DtlsHandshakeService(int poolSize, int admissionLimit) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + poolSize);
+        }
+        if (admissionLimit < poolSize) {
+            throw new IllegalArgumentException("Admission limit (" + admissionLimit + ") cannot be lower than pool size (" + poolSize + ")");
+        }
+
+        this.poolSize = poolSize;
+        this.admissionLimit = admissionLimit;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    private final AtomicInteger index = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "dtls-handshake-" + index.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.admitted = new AtomicInteger(0);
+        this.active = new AtomicInteger(0);
+        this.completed = new AtomicLong(0);
+        this.failed = new AtomicLong(0);
+        this.rejected = new AtomicLong(0);
+        this.totalLatency = new AtomicLong(0);
+        this.maxLatency = new AtomicLong(0);
+    }
+
+    public DtlsHandshakeService() {
+        this(DEFAULT_POOL_SIZE, DEFAULT_ADMISSION_LIMIT);
+    }
+
+    /**
+     * Submits a handshake for execution.
+     *
+     * @param handshake The handshake to run. Returns whether the handshake succeeded.
+     * @return Whether the handshake was admitted. Returns false if the admission limit was reached.
+     */
+    public boolean submit(final Callable<Boolean> handshake) {
+        if (this.admitted.incrementAndGet() > this.admissionLimit) {
+            this.admitted.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+
+        final long submittedAt = System.nanoTime();
+        try {
+            this.executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    active.incrementAndGet();
+                    boolean success = false;
+                    try {
+                        success = handshake.call();
+                    } catch (Exception e) {
+                        logger.error("DTLS handshake aborted unexpectedly.", e);
+                    } finally {
+                        active.decrementAndGet();
+                        admitted.decrementAndGet();
+                        onHandshakeFinished(success, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedAt));
+                    }
+                }
+
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            this.admitted.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void onHandshakeFinished(boolean success, long latency) {
+        if (success) {
+            this.completed.incrementAndGet();
+        } else {
+            this.failed.incrementAndGet();
+        }
+
+        this.totalLatency.addAndGet(latency);
+        long max = this.maxLatency.get();
+        while (latency > max && !this.maxLatency.compareAndSet(max, latency)) {
+            max = this.maxLatency.get();
+        }
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getAdmissionLimit() {
+        return admissionLimit;
+    }
+
+    /**
+     * Gets the number of handshakes being executed by a worker.
+     *
+     * @return The number of running handshakes.
+     */
+    public int getActiveHandshakes() {
+        return this.active.get();
+    }
+
+    /**
+     * Gets the number of admitted handshakes waiting for a free worker.
+     *
+     * @return The depth of the handshake queue.
+     */
+    public int getQueueDepth() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of handshakes that completed successfully.
+     *
+     * @return The number of completed handshakes.
+     */
+    public long getCompletedHandshakes() {
+        return this.completed.get();
+    }
+
+    /**
+     * Gets the number of handshakes that failed or timed out.
+     *
+     * @return The number of failed handshakes.
+     */
+    public long getFailedHandshakes() {
+        return this.failed.get();
+    }
+
+    /**
+     * Gets the number of handshakes refused because the admission limit was reached.
+     *
+     * @return The number of rejected handshakes.
+     */
+    public long getRejectedHandshakes() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Gets the average latency of finished handshakes, from submission until completion or failure.
+     *
+     * @return The average handshake latency, in milliseconds.
+     */
+    public long getAverageLatency() {
+        long finished = this.completed.get() + this.failed.get();
+        return finished == 0 ? 0 : this.totalLatency.get() / finished;
+    }
+
+    /**
+     * Gets the highest latency of a finished handshake, from submission until completion or failure.
+     *
+     * @return The maximum handshake latency, in milliseconds.
+     */
+    public long getMaxLatency() {
+        return this.maxLatency.get();
+    }
+
+    /**
+     * Stops accepting handshakes. Handshakes already admitted are allowed to finish.
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + getActiveHandshakes() + ", queued=" + getQueueDepth() + ", completed=" + getCompletedHandshakes()
+                + ", failed=" + getFailedHandshakes() + ", rejected=" + getRejectedHandshakes() + ", avgLatency="
+                + getAverageLatency() + "ms, maxLatency=" + getMaxLatency() + "ms";
+    }
+
+}
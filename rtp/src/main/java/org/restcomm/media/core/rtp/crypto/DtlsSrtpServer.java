@@ -31,7 +31,9 @@ import org.bouncycastle.asn1.x509.Certificate;
 import org.bouncycastle.crypto.tls.AlertDescription;
 import org.bouncycastle.crypto.tls.AlertLevel;
 import org.bouncycastle.crypto.tls.CertificateRequest;
+import org.bouncycastle.crypto.tls.DefaultTlsEncryptionCredentials;
 import org.bouncycastle.crypto.tls.DefaultTlsServer;
+import org.bouncycastle.crypto.tls.DefaultTlsSignerCredentials;
 import org.bouncycastle.crypto.tls.ExporterLabel;
 import org.bouncycastle.crypto.tls.HashAlgorithm;
 import org.bouncycastle.crypto.tls.ProtocolVersion;
@@ -63,8 +65,7 @@ public class DtlsSrtpServer extends DefaultTlsServer {
     private static final Logger LOGGER = LogManager.getLogger(DtlsSrtpServer.class);
 
     // Certificate resources
-    private final String[] certificateResources;
-    private final String keyResource;
+    private final DtlsCredentialsCache credentialsCache;
     private final AlgorithmCertificate algorithmCertificate;
 
 	private String hashFunction = "";
@@ -89,11 +90,15 @@ public class DtlsSrtpServer extends DefaultTlsServer {
 
     public DtlsSrtpServer(ProtocolVersion minVersion, ProtocolVersion maxVersion, CipherSuite[] cipherSuites,
             String[] certificatesPath, String keyPath, AlgorithmCertificate algorithmCertificate) {
+        this(minVersion, maxVersion, cipherSuites, new DtlsCredentialsCache(certificatesPath, keyPath), algorithmCertificate);
+    }
+
+    public DtlsSrtpServer(ProtocolVersion minVersion, ProtocolVersion maxVersion, CipherSuite[] cipherSuites,
+            DtlsCredentialsCache credentialsCache, AlgorithmCertificate algorithmCertificate) {
         this.minVersion = minVersion;
         this.maxVersion = maxVersion;
         this.cipherSuites = cipherSuites;
-        this.certificateResources = certificatesPath;
-        this.keyResource = keyPath;
+        this.credentialsCache = credentialsCache;
         this.algorithmCertificate = algorithmCertificate;
     }
 
@@ -172,12 +177,14 @@ public class DtlsSrtpServer extends DefaultTlsServer {
     
     @Override
     protected TlsSignerCredentials getECDSASignerCredentials() throws IOException {
-        return TlsUtils.loadSignerCredentials(context, certificateResources, keyResource, new SignatureAndHashAlgorithm(HashAlgorithm.sha256, SignatureAlgorithm.ecdsa));
+        DtlsCredentials credentials = credentialsCache.get();
+        return new DefaultTlsSignerCredentials(context, credentials.getCertificateChain(), credentials.getPrivateKey(), new SignatureAndHashAlgorithm(HashAlgorithm.sha256, SignatureAlgorithm.ecdsa));
     }
     
     @Override
     protected TlsEncryptionCredentials getRSAEncryptionCredentials() throws IOException {
-        return TlsUtils.loadEncryptionCredentials(context, certificateResources, keyResource);
+        DtlsCredentials credentials = credentialsCache.get();
+        return new DefaultTlsEncryptionCredentials(context, credentials.getCertificateChain(), credentials.getPrivateKey());
     }
 
     @SuppressWarnings("unchecked")
@@ -201,7 +208,8 @@ public class DtlsSrtpServer extends DefaultTlsServer {
                 return null;
             }
         }
-        return TlsUtils.loadSignerCredentials(context, certificateResources, keyResource, signatureAndHashAlgorithm);
+        DtlsCredentials credentials = credentialsCache.get();
+        return new DefaultTlsSignerCredentials(context, credentials.getCertificateChain(), credentials.getPrivateKey(), signatureAndHashAlgorithm);
     }
     
     @SuppressWarnings("unchecked")
@@ -226,14 +234,18 @@ public class DtlsSrtpServer extends DefaultTlsServer {
     	int chosenProfile = SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_80;
     	UseSRTPData clientSrtpData = TlsSRTPUtils.getUseSRTPExtension(newClientExtensions);
     	
+    	// client lists its profiles in order of preference, so pick the first supported one
+    	profiles:
     	for (int profile : clientSrtpData.getProtectionProfiles()) {
     		switch (profile) {
+    			case SRTPParameters.AEAD_AES_256_GCM:
+    			case SRTPParameters.AEAD_AES_128_GCM:
     			case SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_32:
     			case SRTPProtectionProfile.SRTP_AES128_CM_HMAC_SHA1_80:
     			case SRTPProtectionProfile.SRTP_NULL_HMAC_SHA1_32:
     			case SRTPProtectionProfile.SRTP_NULL_HMAC_SHA1_80:
     				chosenProfile  = profile;
-    				break;
+    				break profiles;
     			default:
     		}
     	}
@@ -337,9 +349,7 @@ public class DtlsSrtpServer extends DefaultTlsServer {
 	public String generateFingerprint(String hashFunction) {
 		try {
 			this.hashFunction = hashFunction;
-			org.bouncycastle.crypto.tls.Certificate chain = TlsUtils.loadCertificateChain(certificateResources);
-			Certificate certificate = chain.getCertificateAt(0);
-			return TlsUtils.fingerprint(this.hashFunction, certificate);
+			return credentialsCache.get().getFingerprint(this.hashFunction);
 		} catch (IOException e) {
 			LOGGER.error("Could not get local fingerprint: "+ e.getMessage());
 			return "";
@@ -31,22 +31,64 @@ public class DtlsSrtpServerProvider {
     private ProtocolVersion minVersion;
     private ProtocolVersion maxVersion;
     private CipherSuite[] cipherSuites;
-    private String[] certificatePaths;
-    private String keyPath;
+    private DtlsCredentialsCache credentialsCache;
     private AlgorithmCertificate algorithmCertificate;
+    private boolean jceCrypto;
+    private final DtlsHandshakeService handshakeService;
 
     public DtlsSrtpServerProvider(ProtocolVersion minVersion, ProtocolVersion maxVersion, CipherSuite[] cipherSuites,
             String certificatePath, String keyPath, AlgorithmCertificate algorithmCertificate) {
+        this(minVersion, maxVersion, cipherSuites, certificatePath, keyPath, algorithmCertificate, false);
+    }
+
+    /**
+     * @param jceCrypto Whether SRTP packets are protected by the JCE ciphers, which use the AES and SHA instructions of the
+     *        CPU when available, instead of the BouncyCastle engines.
+     */
+    public DtlsSrtpServerProvider(ProtocolVersion minVersion, ProtocolVersion maxVersion, CipherSuite[] cipherSuites,
+            String certificatePath, String keyPath, AlgorithmCertificate algorithmCertificate, boolean jceCrypto) {
+        this(minVersion, maxVersion, cipherSuites, certificatePath, keyPath, algorithmCertificate, jceCrypto,
+                new DtlsHandshakeService());
+    }
+
+    /**
+     * @param handshakeService The service that runs the DTLS handshakes of every connection served by this provider.
+     */
+    public DtlsSrtpServerProvider(ProtocolVersion minVersion, ProtocolVersion maxVersion, CipherSuite[] cipherSuites,
+            String certificatePath, String keyPath, AlgorithmCertificate algorithmCertificate, boolean jceCrypto,
+            DtlsHandshakeService handshakeService) {
         this.minVersion = minVersion;
         this.maxVersion = maxVersion;
         this.cipherSuites = cipherSuites;
-        this.certificatePaths = new String[] { certificatePath };
-        this.keyPath = keyPath;
+        this.credentialsCache = new DtlsCredentialsCache(new String[] { certificatePath }, keyPath);
         this.algorithmCertificate = algorithmCertificate;
+        this.jceCrypto = jceCrypto;
+        this.handshakeService = handshakeService;
+    }
+
+    public boolean isJceCrypto() {
+        return jceCrypto;
+    }
+
+    public DtlsHandshakeService getHandshakeService() {
+        return handshakeService;
+    }
+
+    /**
+     * Stops the handshake service. Handshakes already admitted are allowed to finish, new ones are refused.
+     */
+    public void shutdown() {
+        if (this.handshakeService != null) {
+            this.handshakeService.shutdown();
+        }
+    }
+
+    public DtlsCredentialsCache getCredentialsCache() {
+        return credentialsCache;
     }
 
     public DtlsSrtpServer provide() {
-        DtlsSrtpServer server = new DtlsSrtpServer(minVersion, maxVersion, cipherSuites, certificatePaths, keyPath,
+        DtlsSrtpServer server = new DtlsSrtpServer(minVersion, maxVersion, cipherSuites, credentialsCache,
                 algorithmCertificate);
         return server;
     }
@@ -7,6 +7,7 @@
  */
 package org.restcomm.media.core.rtp.crypto;
 
+import java.nio.ByteBuffer;
 
 /**
  * Encapsulate the concept of packet transformation. Given a packet,
@@ -65,6 +66,37 @@ public interface PacketTransformer {
 	 */
 	public byte[] reverseTransform(byte[] pkt, int offset, int length);
 
+	/**
+	 * Transforms a non-secure packet in place.
+	 * 
+	 * The packet is held by the buffer from index zero to its limit. The
+	 * buffer must have room after its limit for the data added by the
+	 * transformation, such as the authentication tag. On success the limit is
+	 * updated to the length of the transformed packet. The position is always
+	 * reset to zero.
+	 * 
+	 * @param pkt
+	 *            the buffer holding the packet to be secured
+	 * @return Whether the packet was transformed. Returns false if the packet
+	 *         cannot be transformed or the buffer has no room for the
+	 *         transformed packet.
+	 */
+	public boolean transform(ByteBuffer pkt);
+
+	/**
+	 * Reverse-transforms a specific packet in place.
+	 * 
+	 * The packet is held by the buffer from index zero to its limit. On
+	 * success the limit is updated to the length of the restored packet. The
+	 * position is always reset to zero.
+	 * 
+	 * @param pkt
+	 *            the buffer holding the packet to be restored
+	 * @return Whether the packet was restored. Returns false if the packet is
+	 *         not valid.
+	 */
+	public boolean reverseTransform(ByteBuffer pkt);
+
 	/**
 	 * Close the transformer and underlying transform engine.
 	 * 
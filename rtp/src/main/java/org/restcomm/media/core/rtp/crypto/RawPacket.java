@@ -67,7 +67,27 @@ public class RawPacket {
     	this.buffer = ByteBuffer.allocateDirect(RtpPacket.RTP_PACKET_MAX_SIZE);
         wrap(data, offset, length);
     }
+
+    /**
+     * Initializes a new <tt>RawPacket</tt> instance over an existing buffer.
+     * No data is copied, so the packet is transformed in place.
+     *
+     * @param buffer the buffer holding the packet, from index zero to its limit
+     */
+    public RawPacket(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
     
+    /**
+     * Points this packet to an existing buffer. No data is copied, so the
+     * packet is transformed in place.
+     *
+     * @param buffer the buffer holding the packet, from index zero to its limit
+     */
+    public void wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
     public void wrap(byte[] data, int offset, int length) {
     	this.buffer.clear();
     	this.buffer.rewind();
@@ -94,6 +94,9 @@ public class SRTCPCryptoContext {
     // implements the counter cipher mode for RTP according to RFC 3711
     private final SRTPCipherCTR cipherCtr = new SRTPCipherCTR();
 
+    // JCE ciphers, used instead of the BouncyCastle engines when set
+    private final SRTPCipherJCE cipherJce;
+
     // Here some fields that a allocated here or in constructor. The methods
     // use these fields to avoid too many new operations
     
@@ -121,6 +124,7 @@ public class SRTCPCryptoContext {
         saltKey = null;
         policy = null;
         tagStore = null;
+        cipherJce = null;
     }
 
     /**
@@ -141,14 +145,35 @@ public class SRTCPCryptoContext {
      *            SRTP policy for this SRTP cryptographic context, defined the
      *            encryption algorithm, the authentication algorithm, etc
      */
-    @SuppressWarnings("fallthrough")
     public SRTCPCryptoContext(long ssrcIn, byte[] masterK, byte[] masterS, SRTPPolicy policyIn) {
+        this(ssrcIn, masterK, masterS, policyIn, false);
+    }
+
+    /**
+     * Construct a normal SRTPCryptoContext based on the given parameters,
+     * choosing the cipher implementation.
+     * 
+     * @param ssrc
+     *            the RTP SSRC that this SRTP cryptographic context protects.
+     * @param masterKey
+     *            byte array holding the master key
+     * @param masterSalt
+     *            byte array holding the master salt
+     * @param policy
+     *            SRTP policy for this SRTP cryptographic context
+     * @param useJce
+     *            whether packets are processed by the JCE ciphers instead of
+     *            the BouncyCastle engines. AEAD GCM policies always use JCE.
+     */
+    @SuppressWarnings("fallthrough")
+    public SRTCPCryptoContext(long ssrcIn, byte[] masterK, byte[] masterS, SRTPPolicy policyIn, boolean useJce) {
         ssrcCtx = ssrcIn;
         mki = null;
         policy = policyIn;
         masterKey = new byte[policy.getEncKeyLength()];
         System.arraycopy(masterK, 0, masterKey, 0, masterK.length);
-        masterSalt = new byte[policy.getSaltKeyLength()];
+        // GCM salts are padded with zeros for the key derivation function
+        masterSalt = new byte[Math.max(policy.getSaltKeyLength(), 14)];
         System.arraycopy(masterS, 0, masterSalt, 0, masterS.length);
 
         switch (policy.getEncType()) {
@@ -174,6 +199,19 @@ public class SRTCPCryptoContext {
             encKey = new byte[this.policy.getEncKeyLength()];
             saltKey = new byte[this.policy.getSaltKeyLength()];
             break;
+
+        case SRTPPolicy.AESGCM_ENCRYPTION:
+            // AES engine is only used by the key derivation function
+            cipher = new AESFastEngine();
+            encKey = new byte[this.policy.getEncKeyLength()];
+            saltKey = new byte[this.policy.getSaltKeyLength()];
+            break;
+        }
+
+        if (useJce || policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION) {
+            cipherJce = new SRTPCipherJCE();
+        } else {
+            cipherJce = null;
         }
         
         switch (policy.getAuthType()) {
@@ -260,8 +298,18 @@ public class SRTCPCryptoContext {
      * method (RTPManager managed transportation) instead.  
      * 
      * @param pkt the RTP packet that is going to be sent out
+     * @return true if the packet was transformed, false if encryption failed
      */
-    public void transformPacket(RawPacket pkt) {
+    public boolean transformPacket(RawPacket pkt) {
+        if (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION) {
+            if (!processPacketAESGCM(pkt)) {
+                return false;
+            }
+            sentIndex++;
+            sentIndex &= ~0x80000000;
+            return true;
+        }
+
         boolean encrypt = false;
         // Encrypt the packet using Counter Mode encryption
         if (policy.getEncType() == SRTPPolicy.AESCM_ENCRYPTION || policy.getEncType() == SRTPPolicy.TWOFISH_ENCRYPTION) {
@@ -280,8 +328,10 @@ public class SRTCPCryptoContext {
             index = sentIndex | 0x80000000;
         }
         
-        // Grow packet storage in one step
+        // Grow packet storage in one step. The length is restored right away,
+        // so the index and tag are appended right after the payload.
         pkt.grow(4 + policy.getAuthTagLength());
+        pkt.shrink(4 + policy.getAuthTagLength());
 
         // Authenticate the packet
         // The authenticate method gets the index via parameter and stores
@@ -293,6 +343,7 @@ public class SRTCPCryptoContext {
         }
         sentIndex++;
         sentIndex &= ~0x80000000;       // clear possible overflow
+        return true;
     }
 
     /**
@@ -314,6 +365,10 @@ public class SRTCPCryptoContext {
      *         false if authentication or replay check failed 
      */
     public boolean reverseTransformPacket(RawPacket pkt) {
+        if (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION) {
+            return reverseProcessPacketAESGCM(pkt);
+        }
+
         boolean decrypt = false;
         int tagLength = policy.getAuthTagLength();
         int indexEflag = pkt.getSRTCPIndex(tagLength);
@@ -405,7 +460,99 @@ public class SRTCPCryptoContext {
         // Encrypted part excludes fixed header (8 bytes)  
         final int payloadOffset = 8;
         final int payloadLength = pkt.getLength() - payloadOffset;
-        cipherCtr.process(cipher, pkt.getBuffer(), payloadOffset, payloadLength, ivStore);
+        if (cipherJce != null) {
+            cipherJce.processCTR(pkt.getBuffer(), payloadOffset, payloadLength, ivStore);
+        } else {
+            cipherCtr.process(cipher, pkt.getBuffer(), payloadOffset, payloadLength, ivStore);
+        }
+    }
+
+    /**
+     * Perform AEAD AES GCM encryption of an outgoing packet (RFC 7714, section 9).
+     * 
+     * The packet becomes the fixed header, the ciphertext, the authentication
+     * tag and the E flag with the SRTCP index.
+     * 
+     * @param pkt the RTCP packet to be encrypted
+     * @return true on success, false if the packet could not be encrypted
+     */
+    private boolean processPacketAESGCM(RawPacket pkt) {
+        int indexEflag = sentIndex | 0x80000000;
+        computeGcmIv(pkt.getRTCPSSRC(), sentIndex, indexEflag);
+
+        final int length = pkt.getLength();
+        pkt.grow(SRTPCipherJCE.GCM_TAG_LENGTH);
+        if (cipherJce.sealGCM(pkt.getBuffer(), 8, length, ivStore, rbStore, 4) < 0) {
+            return false;
+        }
+        pkt.append(rbStore, 4);
+        return true;
+    }
+
+    /**
+     * Perform AEAD AES GCM decryption of a received packet (RFC 7714, section 9).
+     * 
+     * Packets carrying an unset E flag (authentication only) are not supported
+     * and are rejected.
+     * 
+     * @param pkt the received SRTCP packet
+     * @return true if the packet can be accepted
+     *         false if authentication or replay check failed 
+     */
+    private boolean reverseProcessPacketAESGCM(RawPacket pkt) {
+        final int length = pkt.getLength();
+        if (length < 8 + SRTPCipherJCE.GCM_TAG_LENGTH + 4) {
+            return false;
+        }
+
+        int indexEflag = pkt.readInt(length - 4);
+        if ((indexEflag & 0x80000000) == 0) {
+            return false;
+        }
+
+        int index = indexEflag & ~0x80000000;
+        if (!checkReplay(index)) {
+            return false;
+        }
+
+        computeGcmIv(pkt.getRTCPSSRC(), index, indexEflag);
+        pkt.shrink(4);
+        int decrypted = cipherJce.openGCM(pkt.getBuffer(), 8, length - 4, ivStore, rbStore, 4);
+        if (decrypted < 0) {
+            return false;
+        }
+        pkt.shrink(length - 4 - decrypted);
+        update(index);
+        return true;
+    }
+
+    /**
+     * Computes the GCM IV into ivStore and the E flag with the SRTCP index
+     * into rbStore, which is part of the additional authenticated data.
+     */
+    private void computeGcmIv(long ssrc, int index, int indexEflag) {
+        /* Compute the GCM IV (refer to chapter 9.1 in RFC 7714):
+        *
+        * 00 00 SSRC SSRC SSRC SSRC 00 00 IDX IDX IDX IDX
+        * XOR the 12 byte session salt
+        */
+        ivStore[0] = saltKey[0];
+        ivStore[1] = saltKey[1];
+        ivStore[2] = (byte) (((ssrc >> 24) & 0xff) ^ saltKey[2]);
+        ivStore[3] = (byte) (((ssrc >> 16) & 0xff) ^ saltKey[3]);
+        ivStore[4] = (byte) (((ssrc >> 8) & 0xff) ^ saltKey[4]);
+        ivStore[5] = (byte) ((ssrc & 0xff) ^ saltKey[5]);
+        ivStore[6] = saltKey[6];
+        ivStore[7] = saltKey[7];
+        ivStore[8] = (byte) (((index >> 24) & 0x7f) ^ saltKey[8]);
+        ivStore[9] = (byte) (((index >> 16) & 0xff) ^ saltKey[9]);
+        ivStore[10] = (byte) (((index >> 8) & 0xff) ^ saltKey[10]);
+        ivStore[11] = (byte) ((index & 0xff) ^ saltKey[11]);
+
+        rbStore[0] = (byte) (indexEflag >> 24);
+        rbStore[1] = (byte) (indexEflag >> 16);
+        rbStore[2] = (byte) (indexEflag >> 8);
+        rbStore[3] = (byte) indexEflag;
     }
 
     /**
@@ -457,12 +604,16 @@ public class SRTCPCryptoContext {
     	ByteBuffer buf = pkt.getBuffer();
     	buf.rewind();
     	int len = buf.remaining();
-    	buf.get(tempBuffer, 0, len);
-        mac.update(tempBuffer, 0, len);
         rbStore[0] = (byte) (index >> 24);
         rbStore[1] = (byte) (index >> 16);
         rbStore[2] = (byte) (index >> 8);
         rbStore[3] = (byte) index;
+        if (cipherJce != null) {
+            cipherJce.authenticate(buf, len, rbStore, tagStore);
+            return;
+        }
+    	buf.get(tempBuffer, 0, len);
+        mac.update(tempBuffer, 0, len);
         mac.update(rbStore, 0, rbStore.length);
         mac.doFinal(tagStore, 0);
     }
@@ -540,15 +691,19 @@ public class SRTCPCryptoContext {
 
             switch ((policy.getAuthType())) {
 	            case SRTPPolicy.HMACSHA1_AUTHENTICATION:
-	                KeyParameter key =  new KeyParameter(authKey);
-	                mac.init(key);
+	                if (cipherJce != null) {
+	                    cipherJce.initMac(authKey);
+	                } else {
+	                    KeyParameter key =  new KeyParameter(authKey);
+	                    mac.init(key);
+	                }
 	                break;
 	
 	            default:
 	                break;
             }
+            Arrays.fill(authKey, (byte)0);
         }
-        Arrays.fill(authKey, (byte)0);
 
         // compute the session salt
         label = 5;
@@ -562,6 +717,9 @@ public class SRTCPCryptoContext {
         }
         encryptionKey = new KeyParameter(encKey);
         cipher.init(true, encryptionKey);
+        if (cipherJce != null) {
+            cipherJce.init(encKey);
+        }
         Arrays.fill(encKey, (byte)0);
     }
 
@@ -611,7 +769,7 @@ public class SRTCPCryptoContext {
     {
         SRTCPCryptoContext pcc = null;
         pcc = new SRTCPCryptoContext(ssrc, masterKey,
-                masterSalt, policy);
+                masterSalt, policy, cipherJce != null);
         return pcc;
     }
 }
@@ -7,6 +7,7 @@
  */
 package org.restcomm.media.core.rtp.crypto;
 
+import java.nio.ByteBuffer;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
@@ -21,6 +22,7 @@ import java.util.Map;
 public class SRTCPTransformer implements PacketTransformer {
 	
 	private final RawPacket packet;
+	private final RawPacket bufferPacket;
 	
     private SRTPTransformEngine forwardEngine;
     private SRTPTransformEngine reverseEngine;
@@ -28,6 +30,10 @@ public class SRTCPTransformer implements PacketTransformer {
     /** All the known SSRC's corresponding SRTCPCryptoContexts */
     private Hashtable<Long,SRTCPCryptoContext> contexts;
 
+    /** Crypto context of the last SSRC, to skip the lookup while the stream keeps its SSRC */
+    private long cachedSsrc;
+    private SRTCPCryptoContext cachedContext;
+
     /**
      * Constructs a SRTCPTransformer object.
      * 
@@ -49,6 +55,7 @@ public class SRTCPTransformer implements PacketTransformer {
      */
     public SRTCPTransformer(SRTPTransformEngine forwardEngine, SRTPTransformEngine reverseEngine) {
     	this.packet = new RawPacket();
+    	this.bufferPacket = new RawPacket(ByteBuffer.allocate(0));
         this.forwardEngine = forwardEngine;
         this.reverseEngine = reverseEngine;
         this.contexts = new Hashtable<Long,SRTCPCryptoContext>();
@@ -69,18 +76,13 @@ public class SRTCPTransformer implements PacketTransformer {
     	this.packet.wrap(pkt, offset, length);
     	
     	// Associate the packet with its encryption context
-        long ssrc = this.packet.getRTCPSSRC();
-        SRTCPCryptoContext context = contexts.get(ssrc);
-
-        if (context == null) {
-            context = forwardEngine.getDefaultContextControl().deriveContext(ssrc);
-            context.deriveSrtcpKeys();
-            contexts.put(ssrc, context);
-        }
+        SRTCPCryptoContext context = getContext(this.packet.getRTCPSSRC(), this.forwardEngine);
         
         // Secure packet into SRTCP format
-        context.transformPacket(packet);
-        return packet.getData();
+        if (context.transformPacket(packet)) {
+            return packet.getData();
+        }
+        return null;
     }
 
     public byte[] reverseTransform(byte[] pkt) {
@@ -92,14 +94,7 @@ public class SRTCPTransformer implements PacketTransformer {
     	this.packet.wrap(pkt, offset, length);
     	
     	// Associate the packet with its encryption context
-        long ssrc = this.packet.getRTCPSSRC();
-        SRTCPCryptoContext context = this.contexts.get(ssrc);
-
-        if (context == null) {
-            context = reverseEngine.getDefaultContextControl().deriveContext(ssrc);
-            context.deriveSrtcpKeys();
-            contexts.put(new Long(ssrc), context);
-        }
+        SRTCPCryptoContext context = getContext(this.packet.getRTCPSSRC(), this.reverseEngine);
         
         // Decode packet to RTCP format
         boolean reversed = context.reverseTransformPacket(packet);
@@ -109,6 +104,52 @@ public class SRTCPTransformer implements PacketTransformer {
         return null;
     }
 
+    public boolean transform(ByteBuffer pkt) {
+        this.bufferPacket.wrap(pkt);
+        SRTCPCryptoContext context = getContext(this.bufferPacket.getRTCPSSRC(), this.forwardEngine);
+
+        // Packet is secured in place, so the index and authentication tag must fit in the buffer
+        boolean transformed = false;
+        if (pkt.capacity() - pkt.limit() >= 4 + context.getAuthTagLength() + context.getMKILength()) {
+            transformed = context.transformPacket(this.bufferPacket);
+        }
+        pkt.rewind();
+        return transformed;
+    }
+
+    public boolean reverseTransform(ByteBuffer pkt) {
+        this.bufferPacket.wrap(pkt);
+        SRTCPCryptoContext context = getContext(this.bufferPacket.getRTCPSSRC(), this.reverseEngine);
+
+        boolean reversed = context.reverseTransformPacket(this.bufferPacket);
+        pkt.rewind();
+        return reversed;
+    }
+
+    /**
+     * Gets the crypto context of a stream, deriving it from the default
+     * context of the engine if the stream is new.
+     * 
+     * @param ssrc the SSRC of the stream
+     * @param engine the engine holding the default context
+     * @return the crypto context of the stream
+     */
+    private SRTCPCryptoContext getContext(long ssrc, SRTPTransformEngine engine) {
+        if (this.cachedContext != null && this.cachedSsrc == ssrc) {
+            return this.cachedContext;
+        }
+
+        SRTCPCryptoContext context = this.contexts.get(ssrc);
+        if (context == null) {
+            context = engine.getDefaultContextControl().deriveContext(ssrc);
+            context.deriveSrtcpKeys();
+            this.contexts.put(ssrc, context);
+        }
+        this.cachedSsrc = ssrc;
+        this.cachedContext = context;
+        return context;
+    }
+
     /**
      * Close the transformer and underlying transform engine.
      * 
@@ -117,6 +158,7 @@ public class SRTCPTransformer implements PacketTransformer {
      */
     public void close() 
     {
+        cachedContext = null;
         forwardEngine.close();
         if (forwardEngine != reverseEngine)
             reverseEngine.close();
@@ -0,0 +1,251 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.restcomm.media.core.rtp.RtpPacket;
+
+/**
+ * SRTPCipherJCE implements the SRTP packet ciphers on top of the Java
+ * Cryptography Extension.
+ * <p>
+ * Counter Mode AES (RFC3711, section 4.1.1) generates its key stream with
+ * <tt>AES/ECB/NoPadding</tt>, which is keyed once per session instead of once
+ * per packet, HMAC SHA1 authentication (RFC3711, section 4.2.1) maps to <tt>HmacSHA1</tt>
+ * and the AEAD GCM modes (RFC7714) map to <tt>AES/GCM/NoPadding</tt>. These
+ * transformations are backed by the AES and SHA intrinsics of the JVM on
+ * platforms that provide them.
+ * </p>
+ * <p>
+ * Packet data is processed through working buffers owned by this object, so
+ * an instance must not be shared between threads.
+ * </p>
+ */
+public class SRTPCipherJCE {
+
+    /**
+     * Length of the GCM authentication tag, in bytes (RFC7714, section 14.1).
+     */
+    public static final int GCM_TAG_LENGTH = 16;
+
+    private static final int BUFFER_LENGTH = RtpPacket.RTP_PACKET_MAX_SIZE + GCM_TAG_LENGTH;
+    private static final int BLOCK_LENGTH = 16;
+
+    private Cipher ecb;
+    private Cipher gcm;
+    private Mac hmac;
+    private SecretKeySpec key;
+
+    // Working stores, to avoid new operations while processing packets
+    private final byte[] inStore = new byte[BUFFER_LENGTH];
+    private final byte[] outStore = new byte[BUFFER_LENGTH];
+    private final byte[] counterStore = new byte[(BUFFER_LENGTH + BLOCK_LENGTH - 1) / BLOCK_LENGTH * BLOCK_LENGTH];
+    private final byte[] streamStore = new byte[counterStore.length];
+
+    /**
+     * Sets the session encryption key. The key is copied, so the caller may
+     * clear it afterwards.
+     * 
+     * @param encKey
+     *            the session encryption key
+     */
+    public void init(byte[] encKey) {
+        this.key = new SecretKeySpec(encKey, "AES");
+        try {
+            if (this.ecb == null) {
+                this.ecb = Cipher.getInstance("AES/ECB/NoPadding");
+            }
+            this.ecb.init(Cipher.ENCRYPT_MODE, this.key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES is not available", e);
+        }
+    }
+
+    /**
+     * Sets the session authentication key for HMAC SHA1. The key is copied, so
+     * the caller may clear it afterwards.
+     * 
+     * @param authKey
+     *            the session authentication key
+     */
+    public void initMac(byte[] authKey) {
+        try {
+            if (this.hmac == null) {
+                this.hmac = Mac.getInstance("HmacSHA1");
+            }
+            this.hmac.init(new SecretKeySpec(authKey, "HmacSHA1"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 is not available", e);
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a region of data in place using Counter Mode AES.
+     * 
+     * @param data
+     *            the buffer holding the data
+     * @param off
+     *            the offset of the region
+     * @param len
+     *            the length of the region
+     * @param iv
+     *            the 16 byte initialization vector, with the block counter set
+     *            to zero
+     */
+    public void processCTR(ByteBuffer data, int off, int len, byte[] iv) {
+        // Lay out the counter blocks of the whole packet and encrypt them in one call
+        final int streamLength = (len + BLOCK_LENGTH - 1) / BLOCK_LENGTH * BLOCK_LENGTH;
+        for (int block = 0, index = 0; index < streamLength; block++, index += BLOCK_LENGTH) {
+            System.arraycopy(iv, 0, this.counterStore, index, 14);
+            this.counterStore[index + 14] = (byte) (block >> 8);
+            this.counterStore[index + 15] = (byte) block;
+        }
+
+        try {
+            this.ecb.doFinal(this.counterStore, 0, streamLength, this.streamStore, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not process AES-CM packet", e);
+        }
+
+        read(data, off, len);
+        for (int i = 0; i < len; i++) {
+            this.inStore[i] ^= this.streamStore[i];
+        }
+        write(data, off, this.inStore, len);
+    }
+
+    /**
+     * Computes the HMAC SHA1 tag of a packet.
+     * 
+     * @param data
+     *            the buffer holding the packet, from index zero
+     * @param len
+     *            the length of the authenticated portion of the packet
+     * @param trailer
+     *            the 4 bytes appended to the authenticated portion (ROC or SRTCP
+     *            index)
+     * @param tag
+     *            the store for the computed tag
+     */
+    public void authenticate(ByteBuffer data, int len, byte[] trailer, byte[] tag) {
+        try {
+            read(data, 0, len);
+            this.hmac.update(this.inStore, 0, len);
+            this.hmac.update(trailer, 0, 4);
+            this.hmac.doFinal(tag, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not authenticate packet", e);
+        }
+    }
+
+    /**
+     * Encrypts a packet in place using AEAD AES GCM.
+     * <p>
+     * The bytes preceding <tt>off</tt> are authenticated but not encrypted.
+     * The ciphertext and the authentication tag replace the plaintext, so the
+     * buffer limit must leave room for {@link #GCM_TAG_LENGTH} more bytes.
+     * </p>
+     * 
+     * @param data
+     *            the buffer holding the packet, from index zero
+     * @param off
+     *            the offset of the plaintext
+     * @param len
+     *            the length of the packet
+     * @param iv
+     *            the 12 byte initialization vector
+     * @param aad
+     *            additional authenticated data following the packet header, or
+     *            null
+     * @param aadLen
+     *            the length of the additional authenticated data
+     * @return the length of the encrypted packet, or -1 if it could not be
+     *         encrypted
+     */
+    public int sealGCM(ByteBuffer data, int off, int len, byte[] iv, byte[] aad, int aadLen) {
+        return processGCM(Cipher.ENCRYPT_MODE, data, off, len, iv, aad, aadLen);
+    }
+
+    /**
+     * Decrypts and verifies a packet in place using AEAD AES GCM.
+     * 
+     * @param data
+     *            the buffer holding the packet, from index zero
+     * @param off
+     *            the offset of the ciphertext
+     * @param len
+     *            the length of the packet, including the authentication tag
+     * @param iv
+     *            the 12 byte initialization vector
+     * @param aad
+     *            additional authenticated data following the packet header, or
+     *            null
+     * @param aadLen
+     *            the length of the additional authenticated data
+     * @return the length of the decrypted packet, or -1 if authentication
+     *         failed
+     */
+    public int openGCM(ByteBuffer data, int off, int len, byte[] iv, byte[] aad, int aadLen) {
+        return processGCM(Cipher.DECRYPT_MODE, data, off, len, iv, aad, aadLen);
+    }
+
+    private int processGCM(int mode, ByteBuffer data, int off, int len, byte[] iv, byte[] aad, int aadLen) {
+        try {
+            if (this.gcm == null) {
+                this.gcm = Cipher.getInstance("AES/GCM/NoPadding");
+            }
+            this.gcm.init(mode, this.key, new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv, 0, 12));
+
+            read(data, 0, len);
+            this.gcm.updateAAD(this.inStore, 0, off);
+            if (aad != null && aadLen > 0) {
+                this.gcm.updateAAD(aad, 0, aadLen);
+            }
+            int processed = this.gcm.doFinal(this.inStore, off, len - off, this.outStore, 0);
+            write(data, off, this.outStore, processed);
+            return off + processed;
+        } catch (GeneralSecurityException e) {
+            // Authentication failed or IV was reused
+            return -1;
+        }
+    }
+
+    private void read(ByteBuffer data, int off, int len) {
+        data.position(off);
+        data.get(this.inStore, 0, len);
+        data.rewind();
+    }
+
+    private void write(ByteBuffer data, int off, byte[] src, int len) {
+        data.position(off);
+        data.put(src, 0, len);
+        data.rewind();
+    }
+
+}
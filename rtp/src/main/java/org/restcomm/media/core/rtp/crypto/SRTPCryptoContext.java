@@ -139,6 +139,11 @@ public class SRTPCryptoContext {
 	 */
 	private final SRTPCipherCTR cipherCtr = new SRTPCipherCTR();
 
+	/**
+	 * JCE ciphers, used instead of the BouncyCastle engines when set
+	 */
+	private final SRTPCipherJCE cipherJce;
+
 	/**
 	 * Temp store.
 	 */
@@ -182,6 +187,7 @@ public class SRTPCryptoContext {
 		seqNumSet = false;
 		policy = null;
 		tagStore = null;
+		cipherJce = null;
 	}
 
 	/**
@@ -209,9 +215,34 @@ public class SRTPCryptoContext {
 	 *            SRTP policy for this SRTP cryptographic context, defined the
 	 *            encryption algorithm, the authentication algorithm, etc
 	 */
-	@SuppressWarnings("fallthrough")
 	public SRTPCryptoContext(long ssrcIn, int rocIn, long kdr, byte[] masterK,
 			byte[] masterS, SRTPPolicy policyIn) {
+		this(ssrcIn, rocIn, kdr, masterK, masterS, policyIn, false);
+	}
+
+	/**
+	 * Construct a normal SRTPCryptoContext based on the given parameters,
+	 * choosing the cipher implementation.
+	 * 
+	 * @param ssrcIn
+	 *            the RTP SSRC that this SRTP cryptographic context protects.
+	 * @param rocIn
+	 *            the initial Roll-Over-Counter according to RFC 3711.
+	 * @param kdr
+	 *            the key derivation rate, refer to chapter 4.3.1 in the RFC.
+	 * @param masterK
+	 *            byte array holding the master key
+	 * @param masterS
+	 *            byte array holding the master salt
+	 * @param policyIn
+	 *            SRTP policy for this SRTP cryptographic context
+	 * @param useJce
+	 *            whether packets are processed by the JCE ciphers instead of
+	 *            the BouncyCastle engines. AEAD GCM policies always use JCE.
+	 */
+	@SuppressWarnings("fallthrough")
+	public SRTPCryptoContext(long ssrcIn, int rocIn, long kdr, byte[] masterK,
+			byte[] masterS, SRTPPolicy policyIn, boolean useJce) {
 		ssrcCtx = ssrcIn;
 		mki = null;
 		roc = rocIn;
@@ -225,7 +256,9 @@ public class SRTPCryptoContext {
 		masterKey = new byte[policy.getEncKeyLength()];
 		System.arraycopy(masterK, 0, masterKey, 0, masterK.length);
 
-		masterSalt = new byte[policy.getSaltKeyLength()];
+		// GCM salts are shorter than the 112 bit input of the key derivation
+		// function, so they are padded with zeros (RFC 7714, section 11)
+		masterSalt = new byte[Math.max(policy.getSaltKeyLength(), 14)];
 		System.arraycopy(masterS, 0, masterSalt, 0, masterS.length);
 
 		mac = new HMac(new SHA1Digest());
@@ -254,6 +287,19 @@ public class SRTPCryptoContext {
 			encKey = new byte[this.policy.getEncKeyLength()];
 			saltKey = new byte[this.policy.getSaltKeyLength()];
 			break;
+
+		case SRTPPolicy.AESGCM_ENCRYPTION:
+			// AES engine is only used by the key derivation function
+			cipher = new AESFastEngine();
+			encKey = new byte[policy.getEncKeyLength()];
+			saltKey = new byte[policy.getSaltKeyLength()];
+			break;
+		}
+
+		if (useJce || policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION) {
+			cipherJce = new SRTPCipherJCE();
+		} else {
+			cipherJce = null;
 		}
 
 		switch (policy.getAuthType()) {
@@ -352,10 +398,15 @@ public class SRTPCryptoContext {
 	 * 
 	 * @param pkt
 	 *            the RTP packet that is going to be sent out
+	 * @return true if the packet was transformed, false if encryption failed
 	 */
-	public void transformPacket(RawPacket pkt) {
-		/* Encrypt the packet using Counter Mode encryption */
-		if (policy.getEncType() == SRTPPolicy.AESCM_ENCRYPTION || policy.getEncType() == SRTPPolicy.TWOFISH_ENCRYPTION) {
+	public boolean transformPacket(RawPacket pkt) {
+		if (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION) {
+			/* Encrypt and authenticate the packet using GCM */
+			if (!processPacketAESGCM(pkt, roc, true)) {
+				return false;
+			}
+		} else if (policy.getEncType() == SRTPPolicy.AESCM_ENCRYPTION || policy.getEncType() == SRTPPolicy.TWOFISH_ENCRYPTION) {
 			processPacketAESCM(pkt);
 		} else if (policy.getEncType() == SRTPPolicy.AESF8_ENCRYPTION || policy.getEncType() == SRTPPolicy.TWOFISHF8_ENCRYPTION) {
 			/* Encrypt the packet using F8 Mode encryption */
@@ -373,6 +424,7 @@ public class SRTPCryptoContext {
 		if (seqNo == 0xFFFF) {
 			roc++;
 		}
+		return true;
 	}
 
 	/**
@@ -410,6 +462,15 @@ public class SRTPCryptoContext {
 		if (!checkReplay(seqNo, guessedIndex)) {
 			return false;
 		}
+
+		// GCM authenticates and decrypts the packet in a single pass
+		if (policy.getEncType() == SRTPPolicy.AESGCM_ENCRYPTION) {
+			if (!processPacketAESGCM(pkt, guessedROC, false)) {
+				return false;
+			}
+			update(seqNo, guessedIndex);
+			return true;
+		}
 		
 		// Authenticate packet
 		if (policy.getAuthType() != SRTPPolicy.NULL_AUTHENTICATION) {
@@ -480,7 +541,67 @@ public class SRTPCryptoContext {
 		final int payloadOffset = pkt.getHeaderLength();
 		final int payloadLength = pkt.getPayloadLength();
 
-		cipherCtr.process(cipher, pkt.getBuffer(), payloadOffset, payloadLength, ivStore);
+		if (cipherJce != null) {
+			cipherJce.processCTR(pkt.getBuffer(), payloadOffset, payloadLength, ivStore);
+		} else {
+			cipherCtr.process(cipher, pkt.getBuffer(), payloadOffset, payloadLength, ivStore);
+		}
+	}
+
+	/**
+	 * Perform AEAD AES GCM encryption / decryption, as defined in RFC 7714.
+	 * 
+	 * The RTP header is authenticated but not encrypted. On encryption the
+	 * authentication tag is appended to the packet, on decryption it is
+	 * verified and removed.
+	 * 
+	 * @param pkt
+	 *            the RTP packet to be encrypted / decrypted
+	 * @param rocIn
+	 *            the Roll-Over-Counter of the packet
+	 * @param encrypt
+	 *            true to encrypt, false to decrypt
+	 * @return true on success, false if the packet could not be authenticated
+	 */
+	public boolean processPacketAESGCM(RawPacket pkt, int rocIn, boolean encrypt) {
+		long ssrc = pkt.getSSRC();
+		int seqNo = pkt.getSequenceNumber();
+
+		/* Compute the GCM IV (refer to chapter 8.1 in RFC 7714):
+		 *
+		 * 00 00 SSRC SSRC SSRC SSRC ROC ROC ROC ROC SEQ SEQ
+		 * XOR the 12 byte session salt
+		 */
+		ivStore[0] = saltKey[0];
+		ivStore[1] = saltKey[1];
+		ivStore[2] = (byte) (((ssrc >> 24) & 0xff) ^ saltKey[2]);
+		ivStore[3] = (byte) (((ssrc >> 16) & 0xff) ^ saltKey[3]);
+		ivStore[4] = (byte) (((ssrc >> 8) & 0xff) ^ saltKey[4]);
+		ivStore[5] = (byte) ((ssrc & 0xff) ^ saltKey[5]);
+		ivStore[6] = (byte) (((rocIn >> 24) & 0xff) ^ saltKey[6]);
+		ivStore[7] = (byte) (((rocIn >> 16) & 0xff) ^ saltKey[7]);
+		ivStore[8] = (byte) (((rocIn >> 8) & 0xff) ^ saltKey[8]);
+		ivStore[9] = (byte) ((rocIn & 0xff) ^ saltKey[9]);
+		ivStore[10] = (byte) (((seqNo >> 8) & 0xff) ^ saltKey[10]);
+		ivStore[11] = (byte) ((seqNo & 0xff) ^ saltKey[11]);
+
+		final int headerLength = pkt.getHeaderLength();
+		final int length = pkt.getLength();
+
+		if (encrypt) {
+			pkt.grow(SRTPCipherJCE.GCM_TAG_LENGTH);
+			return cipherJce.sealGCM(pkt.getBuffer(), headerLength, length, ivStore, null, 0) > 0;
+		}
+
+		if (length - headerLength < SRTPCipherJCE.GCM_TAG_LENGTH) {
+			return false;
+		}
+		int decrypted = cipherJce.openGCM(pkt.getBuffer(), headerLength, length, ivStore, null, 0);
+		if (decrypted < 0) {
+			return false;
+		}
+		pkt.shrink(length - decrypted);
+		return true;
 	}
 
 	/**
@@ -523,12 +644,16 @@ public class SRTPCryptoContext {
 		ByteBuffer buf = pkt.getBuffer();
 		buf.rewind();
 		int len = buf.remaining();
-		buf.get(tempBuffer, 0, len);
-		mac.update(tempBuffer, 0, len);
 		rbStore[0] = (byte) (rocIn >> 24);
 		rbStore[1] = (byte) (rocIn >> 16);
 		rbStore[2] = (byte) (rocIn >> 8);
 		rbStore[3] = (byte) rocIn;
+		if (cipherJce != null) {
+			cipherJce.authenticate(buf, len, rbStore, tagStore);
+			return;
+		}
+		buf.get(tempBuffer, 0, len);
+		mac.update(tempBuffer, 0, len);
 		mac.update(rbStore, 0, rbStore.length);
 		mac.doFinal(tagStore, 0);
 	}
@@ -626,15 +751,19 @@ public class SRTPCryptoContext {
 
 			switch ((policy.getAuthType())) {
 			case SRTPPolicy.HMACSHA1_AUTHENTICATION:
-				KeyParameter key = new KeyParameter(authKey);
-				mac.init(key);
+				if (cipherJce != null) {
+					cipherJce.initMac(authKey);
+				} else {
+					KeyParameter key = new KeyParameter(authKey);
+					mac.init(key);
+				}
 				break;
 
 			default:
 				break;
 			}
+			Arrays.fill(authKey, (byte) 0);
 		}
-		Arrays.fill(authKey, (byte) 0);
 
 		// compute the session salt
 		label = 0x02;
@@ -648,9 +777,27 @@ public class SRTPCryptoContext {
 		}
 		encryptionKey = new KeyParameter(encKey);
 		cipher.init(true, encryptionKey);
+		if (cipherJce != null) {
+			cipherJce.init(encKey);
+		}
 		Arrays.fill(encKey, (byte) 0);
 	}
 
+	/**
+	 * Installs AEAD GCM session keys directly, skipping the key derivation.
+	 * Used to check the packet transforms against the session key test
+	 * vectors of RFC 7714, section 16.
+	 * 
+	 * @param sessionEncKey
+	 *            the session encryption key
+	 * @param sessionSaltKey
+	 *            the 12 byte session salt
+	 */
+	void setSessionKeys(byte[] sessionEncKey, byte[] sessionSaltKey) {
+		System.arraycopy(sessionSaltKey, 0, saltKey, 0, saltKey.length);
+		cipherJce.init(sessionEncKey);
+	}
+
 	/**
 	 * Compute (guess) the new SRTP index based on the sequence number of a
 	 * received RTP packet.
@@ -729,6 +876,6 @@ public class SRTPCryptoContext {
 	 * @return a new SRTPCryptoContext with all relevant data set.
 	 */
 	public SRTPCryptoContext deriveContext(long ssrc, int roc, long deriveRate) {
-		return new SRTPCryptoContext(ssrc, roc, deriveRate, masterKey, masterSalt, policy);
+		return new SRTPCryptoContext(ssrc, roc, deriveRate, masterKey, masterSalt, policy, cipherJce != null);
 	}
 }
@@ -39,6 +39,13 @@ public class SRTPPolicy
      * F8 Mode TwoFish Cipher
      */
     public final static int TWOFISHF8_ENCRYPTION = 4;
+
+    /**
+     * Galois/Counter Mode AES AEAD Cipher, defined in RFC 7714. Provides
+     * authentication, so it is used with {@link #NULL_AUTHENTICATION} and the
+     * authentication tag length holds the length of the GCM tag.
+     */
+    public final static int AESGCM_ENCRYPTION = 5;
     /**
      * Null Authentication, no authentication
      */
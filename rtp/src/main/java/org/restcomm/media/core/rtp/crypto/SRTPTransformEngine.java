@@ -43,8 +43,30 @@ public class SRTPTransformEngine implements TransformEngine {
 	 *            SRTCP policy
 	 */
 	public SRTPTransformEngine(byte[] masterKey, byte[] masterSalt, SRTPPolicy srtpPolicy, SRTPPolicy srtcpPolicy) {
-		defaultContext = new SRTPCryptoContext(0, 0, 0, masterKey, masterSalt, srtpPolicy);
-		defaultContextControl = new SRTCPCryptoContext(0, masterKey, masterSalt, srtcpPolicy);
+		this(masterKey, masterSalt, srtpPolicy, srtcpPolicy, false);
+	}
+
+	/**
+	 * Construct a SRTPTransformEngine based on given master encryption key,
+	 * master salt key and SRTP/SRTCP policy, choosing the cipher
+	 * implementation.
+	 * 
+	 * @param masterKey
+	 *            the master encryption key
+	 * @param masterSalt
+	 *            the master salt key
+	 * @param srtpPolicy
+	 *            SRTP policy
+	 * @param srtcpPolicy
+	 *            SRTCP policy
+	 * @param useJce
+	 *            whether packets are processed by the JCE ciphers, which are
+	 *            hardware accelerated on most platforms, instead of the
+	 *            BouncyCastle engines
+	 */
+	public SRTPTransformEngine(byte[] masterKey, byte[] masterSalt, SRTPPolicy srtpPolicy, SRTPPolicy srtcpPolicy, boolean useJce) {
+		defaultContext = new SRTPCryptoContext(0, 0, 0, masterKey, masterSalt, srtpPolicy, useJce);
+		defaultContextControl = new SRTCPCryptoContext(0, masterKey, masterSalt, srtcpPolicy, useJce);
 	}
 
 	/**
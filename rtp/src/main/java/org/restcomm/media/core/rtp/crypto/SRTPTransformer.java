@@ -7,6 +7,7 @@
  */
 package org.restcomm.media.core.rtp.crypto;
 
+import java.nio.ByteBuffer;
 import java.util.Hashtable;
 
 import org.apache.logging.log4j.LogManager;
@@ -30,6 +31,7 @@ public class SRTPTransformer implements PacketTransformer {
 	private static final Logger logger = LogManager.getLogger(SRTPTransformer.class);
 	
 	private final RawPacket rawPacket;
+	private final RawPacket bufferPacket;
 	
 	private SRTPTransformEngine forwardEngine;
 	private SRTPTransformEngine reverseEngine;
@@ -39,6 +41,13 @@ public class SRTPTransformer implements PacketTransformer {
 	 */
 	private Hashtable<Long, SRTPCryptoContext> contexts;
 
+	/**
+	 * Crypto context of the last SSRC, so streams that keep their SSRC skip
+	 * the lookup in the table of contexts
+	 */
+	private long cachedSsrc;
+	private SRTPCryptoContext cachedContext;
+
 	/**
 	 * Constructs a SRTPTransformer object.
 	 * 
@@ -65,6 +74,7 @@ public class SRTPTransformer implements PacketTransformer {
 		this.reverseEngine = reverseEngine;
 		this.contexts = new Hashtable<Long, SRTPCryptoContext>();
 		this.rawPacket = new RawPacket();
+		this.bufferPacket = new RawPacket(ByteBuffer.allocate(0));
 	}
 
 	public byte[] transform(byte[] pkt) {
@@ -76,18 +86,13 @@ public class SRTPTransformer implements PacketTransformer {
 		this.rawPacket.wrap(pkt, offset, length);
 		
 		// Associate packet to a crypto context
-		long ssrc = rawPacket.getSSRC();
-		SRTPCryptoContext context = contexts.get(ssrc);
-
-		if (context == null) {
-			context = forwardEngine.getDefaultContext().deriveContext(ssrc, 0, 0);
-			context.deriveSrtpKeys(0);
-			contexts.put(ssrc, context);
-		}
+		SRTPCryptoContext context = getContext(rawPacket.getSSRC(), this.forwardEngine, 0);
 
 		// Transform RTP packet into SRTP
-		context.transformPacket(this.rawPacket);
-		return this.rawPacket.getData();
+		if (context.transformPacket(this.rawPacket)) {
+			return this.rawPacket.getData();
+		}
+		return null;
 	}
 
 	/**
@@ -107,13 +112,7 @@ public class SRTPTransformer implements PacketTransformer {
 		this.rawPacket.wrap(pkt, offset, length);
 		
 		// Associate packet to a crypto context
-		long ssrc = this.rawPacket.getSSRC();
-		SRTPCryptoContext context = this.contexts.get(ssrc);
-		if (context == null) {
-			context = this.reverseEngine.getDefaultContext().deriveContext(ssrc, 0, 0);
-			context.deriveSrtpKeys(this.rawPacket.getSequenceNumber());
-			contexts.put(ssrc, context);
-		}
+		SRTPCryptoContext context = getContext(this.rawPacket.getSSRC(), this.reverseEngine, this.rawPacket.getSequenceNumber());
 
 		boolean reversed = context.reverseTransformPacket(this.rawPacket);
 		if(reversed) {
@@ -122,6 +121,56 @@ public class SRTPTransformer implements PacketTransformer {
 		return null;
 	}
 
+	public boolean transform(ByteBuffer pkt) {
+		this.bufferPacket.wrap(pkt);
+		SRTPCryptoContext context = getContext(this.bufferPacket.getSSRC(), this.forwardEngine, 0);
+
+		// Packet is secured in place, so the authentication tag must fit in the buffer
+		boolean transformed = false;
+		if (pkt.capacity() - pkt.limit() >= context.getAuthTagLength() + context.getMKILength()) {
+			transformed = context.transformPacket(this.bufferPacket);
+		}
+		pkt.rewind();
+		return transformed;
+	}
+
+	public boolean reverseTransform(ByteBuffer pkt) {
+		this.bufferPacket.wrap(pkt);
+		SRTPCryptoContext context = getContext(this.bufferPacket.getSSRC(), this.reverseEngine, this.bufferPacket.getSequenceNumber());
+
+		boolean reversed = context.reverseTransformPacket(this.bufferPacket);
+		pkt.rewind();
+		return reversed;
+	}
+
+	/**
+	 * Gets the crypto context of a stream, deriving it from the default context
+	 * of the engine if the stream is new.
+	 * 
+	 * @param ssrc
+	 *            the SSRC of the stream
+	 * @param engine
+	 *            the engine holding the default context
+	 * @param index
+	 *            the packet index used to derive the session keys
+	 * @return the crypto context of the stream
+	 */
+	private SRTPCryptoContext getContext(long ssrc, SRTPTransformEngine engine, long index) {
+		if (this.cachedContext != null && this.cachedSsrc == ssrc) {
+			return this.cachedContext;
+		}
+
+		SRTPCryptoContext context = this.contexts.get(ssrc);
+		if (context == null) {
+			context = engine.getDefaultContext().deriveContext(ssrc, 0, 0);
+			context.deriveSrtpKeys(index);
+			this.contexts.put(ssrc, context);
+		}
+		this.cachedSsrc = ssrc;
+		this.cachedContext = context;
+		return context;
+	}
+
 	/**
 	 * Close the transformer and underlying transform engine.
 	 * 
@@ -129,6 +178,7 @@ public class SRTPTransformer implements PacketTransformer {
 	 * data and forces a cleanup of the crypto contexts.
 	 */
 	public void close() {
+		this.cachedContext = null;
 		forwardEngine.close();
 		if (forwardEngine != reverseEngine) {
 			reverseEngine.close();
@@ -57,9 +57,9 @@ import org.bouncycastle.util.io.pem.PemReader;
  */
 public class TlsUtils {
 
-	private static final String SHA_1 = "sha-1";
-	private static final String SHA_256 = "sha-256";
-	private static final String SHA_512 = "sha-512";
+	static final String SHA_1 = "sha-1";
+	static final String SHA_256 = "sha-256";
+	static final String SHA_512 = "sha-512";
 
 	static final byte[] rsaCertData = Base64
 			.decode("MIICUzCCAf2gAwIBAgIBATANBgkqhkiG9w0BAQQFADCBjzELMAkGA1UEBhMCQVUxKDAmBgNVBAoMH1RoZSBMZWdpb2"
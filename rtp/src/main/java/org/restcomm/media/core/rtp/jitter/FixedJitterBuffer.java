@@ -81,6 +81,16 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
     // The number of dropped packets
     private int dropCount;
 
+    // quality statistics
+    private final JitterBufferStatistics statistics;
+
+    // highest sequence number written and last sequence number read
+    private int highestSeqNumber = -1;
+    private long lastReadSeqNumber = -1;
+
+    // whether the consumer already found the buffer empty since the last frame it read
+    private boolean starved = false;
+
     // known duration of media wich contains in this buffer.
     private volatile long duration;
 
@@ -118,6 +128,7 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
         this.rtpClock = clock;
         this.jitterBufferSize = jitterBufferSize;
         this.ready = new AtomicBoolean(false);
+        this.statistics = new JitterBufferStatistics(jitterBufferSize);
     }
 
     private void initJitter(RtpPacket firstPacket) {
@@ -142,6 +153,12 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
         // arrival, newPacketTimestamp, transit, d ));
         currentTransit = transit;
         currentJitter += d - ((currentJitter + 8) >> 4);
+
+        // publish jitter in milliseconds
+        int clockRate = rtpClock.getClockRate();
+        if (clockRate > 0) {
+            statistics.updateJitter((getEstimatedJitter() * 1000.0) / clockRate);
+        }
     }
 
     /**
@@ -161,7 +178,7 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
      * @return the current jitter value.
      */
     public double getJitter() {
-        return 0;
+        return statistics.getJitter();
     }
 
     /**
@@ -170,7 +187,7 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
      * @return the jitter value.
      */
     public double getMaxJitter() {
-        return 0;
+        return statistics.getMaxJitter();
     }
 
     /**
@@ -182,6 +199,11 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
         return dropCount;
     }
 
+    @Override
+    public JitterBufferStatistics getStatistics() {
+        return statistics;
+    }
+
     public boolean bufferInUse() {
         return this.useBuffer;
     }
@@ -230,13 +252,13 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
                         + packet.getSeqNumber() + ", payload length=" + packet.getPayloadLength() + ", format="
                         + this.format.toString());
             }
-            dropCount++;
-
             // checking if not dropping too much
             droppedInRaw++;
             if (droppedInRaw == QUEUE_SIZE / 2 || queue.size() == 0) {
                 arrivalDeadLine = 0;
             } else {
+                dropCount++;
+                statistics.incrementLateDrops();
                 return;
             }
         }
@@ -268,9 +290,18 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
 
             // check for duplicate packet
             if (currIndex >= 0 && queue.get(currIndex).getSequenceNumber() == f.getSequenceNumber()) {
+                statistics.incrementDuplicates();
+                f.recycle();
                 return;
             }
 
+            // packet is out of order if an higher sequence number was already received
+            if (highestSeqNumber < 0 || isNewer(packet.getSeqNumber(), highestSeqNumber)) {
+                highestSeqNumber = packet.getSeqNumber();
+            } else {
+                statistics.incrementReordered();
+            }
+
             queue.add(currIndex + 1, f);
 
             // recalculate duration of each frame in queue and overall duration
@@ -302,8 +333,10 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
                     logger.trace("Jitter Buffer overflow! [duration=" + duration + "ms, frames=" + queue.size() + "]");
                 }
                 dropCount++;
+                statistics.incrementOverflowDrops();
                 queue.remove(0).recycle();
             }
+            statistics.setPlayoutDelay(queuedDuration());
 
             // check if this buffer already full
             boolean readyTest = (!useBuffer || (duration >= jitterBufferSize && queue.size() > 1));
@@ -381,6 +414,11 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
 
     private Frame safeRead() {
         if (queue.size() == 0) {
+            // consumer caught up with the network while playing out
+            if (lastReadSeqNumber >= 0 && !starved) {
+                statistics.incrementUnderruns();
+                starved = true;
+            }
             this.ready.set(false);
             if (logger.isTraceEnabled()) {
                 logger.trace("Jitter Buffer is empty. Consumer will wait until buffer is filled.");
@@ -391,6 +429,18 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
         // extract packet
         Frame frame = queue.remove(0);
 
+        // frames missing between two consecutive reads were lost or dropped and must be concealed by consumer
+        long seqNumber = frame.getSequenceNumber();
+        if (lastReadSeqNumber >= 0) {
+            long gap = ((seqNumber - lastReadSeqNumber) & 0xFFFF) - 1;
+            if (gap > 0 && gap < QUEUE_SIZE * QUEUE_SIZE) {
+                statistics.addConcealedFrames(gap);
+            }
+        }
+        lastReadSeqNumber = seqNumber;
+        starved = false;
+        statistics.setPlayoutDelay(queuedDuration());
+
         // buffer empty now? - change ready flag.
         if (queue.size() == 0) {
             this.ready.set(false);
@@ -411,6 +461,27 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
         return frame;
     }
 
+    /**
+     * Gets the amount of media held by the buffer.
+     * 
+     * @return the duration of queued frames, in milliseconds
+     */
+    private long queuedDuration() {
+        long total = 0;
+        for (int i = 0; i < queue.size(); i++) {
+            total += queue.get(i).getDuration();
+        }
+        return total;
+    }
+
+    /**
+     * Checks whether a sequence number is newer than another, taking wrap-around into account.
+     */
+    private static boolean isNewer(int seqNumber, int reference) {
+        int delta = (seqNumber - reference) & 0xFFFF;
+        return delta != 0 && delta < 0x8000;
+    }
+
     /**
      * Resets buffer.
      */
@@ -442,6 +513,11 @@ public class FixedJitterBuffer implements JitterBuffer, Serializable {
         droppedInRaw = 0;
         format = null;
         isn = -1;
+        currentJitter = 0;
+        highestSeqNumber = -1;
+        lastReadSeqNumber = -1;
+        starved = false;
+        statistics.reset();
 
         if (logger.isDebugEnabled()) {
             logger.debug("Restarted jitter buffer.");
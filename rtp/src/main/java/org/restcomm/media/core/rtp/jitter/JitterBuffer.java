@@ -80,4 +80,11 @@ public interface JitterBuffer {
      */
     void restart();
 
+    /**
+     * Gets the quality statistics gathered by the jitter buffer.
+     * 
+     * @return The statistics of the buffer
+     */
+    JitterBufferStatistics getStatistics();
+
 }
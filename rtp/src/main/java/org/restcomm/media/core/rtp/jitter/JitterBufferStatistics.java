@@ -0,0 +1,229 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.jitter;
+
+/**
+ * Quality statistics gathered by a {@link JitterBuffer} during a call.
+ * <p>
+ * Counters are updated by the jitter buffer while it holds its own lock, so there is a single writer at any time. Fields are
+ * volatile so monitoring threads can read them without locking. No objects are allocated while updating the counters.
+ * </p>
+ */
+public class JitterBufferStatistics {
+
+    // Jitter (milliseconds)
+    private volatile double jitter;
+    private volatile double maxJitter;
+
+    // Playout delay (milliseconds)
+    private volatile long playoutDelay;
+    private volatile long maxPlayoutDelay;
+    private volatile long targetPlayoutDelay;
+
+    // Packet counters
+    private volatile long lateDrops;
+    private volatile long overflowDrops;
+    private volatile long duplicates;
+    private volatile long reordered;
+
+    // Playout counters
+    private volatile long concealedFrames;
+    private volatile long underruns;
+
+    public JitterBufferStatistics(long targetPlayoutDelay) {
+        this.targetPlayoutDelay = targetPlayoutDelay;
+    }
+
+    /**
+     * Gets the current interarrival jitter, as estimated by RFC3550 appendix A.8.
+     *
+     * @return The jitter, in milliseconds.
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Gets the highest interarrival jitter observed during the call.
+     *
+     * @return The maximum jitter, in milliseconds.
+     */
+    public double getMaxJitter() {
+        return maxJitter;
+    }
+
+    void updateJitter(double jitter) {
+        this.jitter = jitter;
+        if (jitter > this.maxJitter) {
+            this.maxJitter = jitter;
+        }
+    }
+
+    /**
+     * Gets the amount of media currently held by the buffer.
+     *
+     * @return The current playout delay, in milliseconds.
+     */
+    public long getPlayoutDelay() {
+        return playoutDelay;
+    }
+
+    void setPlayoutDelay(long playoutDelay) {
+        this.playoutDelay = playoutDelay;
+        if (playoutDelay > this.maxPlayoutDelay) {
+            this.maxPlayoutDelay = playoutDelay;
+        }
+    }
+
+    /**
+     * Gets the highest amount of media held by the buffer during the call.
+     *
+     * @return The maximum playout delay, in milliseconds.
+     */
+    public long getMaxPlayoutDelay() {
+        return maxPlayoutDelay;
+    }
+
+    /**
+     * Gets the amount of media the buffer waits for before starting playout.
+     *
+     * @return The target playout delay, in milliseconds.
+     */
+    public long getTargetPlayoutDelay() {
+        return targetPlayoutDelay;
+    }
+
+    void setTargetPlayoutDelay(long targetPlayoutDelay) {
+        this.targetPlayoutDelay = targetPlayoutDelay;
+    }
+
+    /**
+     * Gets the number of packets dropped because they arrived after their playout time.
+     *
+     * @return The number of late packets.
+     */
+    public long getLateDrops() {
+        return lateDrops;
+    }
+
+    void incrementLateDrops() {
+        this.lateDrops++;
+    }
+
+    /**
+     * Gets the number of packets dropped because the buffer was full.
+     *
+     * @return The number of packets dropped on overflow.
+     */
+    public long getOverflowDrops() {
+        return overflowDrops;
+    }
+
+    void incrementOverflowDrops() {
+        this.overflowDrops++;
+    }
+
+    /**
+     * Gets the total number of dropped packets, late or on overflow.
+     *
+     * @return The number of dropped packets.
+     */
+    public long getDropped() {
+        return lateDrops + overflowDrops;
+    }
+
+    /**
+     * Gets the number of duplicate packets discarded by the buffer.
+     *
+     * @return The number of duplicate packets.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    void incrementDuplicates() {
+        this.duplicates++;
+    }
+
+    /**
+     * Gets the number of packets that arrived out of order and had to be re-sorted.
+     *
+     * @return The number of re-ordered packets.
+     */
+    public long getReordered() {
+        return reordered;
+    }
+
+    void incrementReordered() {
+        this.reordered++;
+    }
+
+    /**
+     * Gets the number of frames missing from the stream at playout time, which the consumer had to conceal.
+     *
+     * @return The number of concealed frames.
+     */
+    public long getConcealedFrames() {
+        return concealedFrames;
+    }
+
+    void addConcealedFrames(long count) {
+        this.concealedFrames += count;
+    }
+
+    /**
+     * Gets the number of times the consumer found the buffer empty while playout was ongoing.
+     *
+     * @return The number of buffer underruns.
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    void incrementUnderruns() {
+        this.underruns++;
+    }
+
+    /**
+     * Resets all counters. The target playout delay is preserved.
+     */
+    public void reset() {
+        this.jitter = 0;
+        this.maxJitter = 0;
+        this.playoutDelay = 0;
+        this.maxPlayoutDelay = 0;
+        this.lateDrops = 0;
+        this.overflowDrops = 0;
+        this.duplicates = 0;
+        this.reordered = 0;
+        this.concealedFrames = 0;
+        this.underruns = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "jitter=" + jitter + "ms, maxJitter=" + maxJitter + "ms, playoutDelay=" + playoutDelay + "ms, maxPlayoutDelay=" + maxPlayoutDelay + "ms, targetPlayoutDelay="
+                + targetPlayoutDelay + "ms, lateDrops=" + lateDrops + ", overflowDrops=" + overflowDrops + ", duplicates="
+                + duplicates + ", reordered=" + reordered + ", concealedFrames=" + concealedFrames + ", underruns=" + underruns;
+    }
+
+}
@@ -40,6 +40,10 @@ import io.netty.util.ReferenceCountUtil;
  * <p>
  * Note that RTP Channels may multiplex RTP, RTCP, STUN and DTLS packets for any given call, depending on setup.
  * </p>
+ * <p>
+ * RTP packets are not allocated per datagram. The data is copied into a single {@link RtpPacket} owned by the demultiplexer,
+ * which is reused for every datagram. Downstream handlers must consume the packet while reading it and must not retain it.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
@@ -47,17 +51,22 @@ import io.netty.util.ReferenceCountUtil;
 public class RtpDemultiplexer extends SimpleChannelInboundHandler<ByteBuf> {
 
     private static final Logger log = LogManager.getLogger(RtpDemultiplexer.class);
-    
+
+    // Pooled RTP packet, reused for every datagram
+    private final RtpPacket rtpPacket;
+    private final byte[] rtpData;
+
     public RtpDemultiplexer() {
         super(false);
+        this.rtpPacket = new RtpPacket(0, false);
+        this.rtpData = new byte[RtpPacket.RTP_PACKET_MAX_SIZE];
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) throws Exception {
         // Differentiate between RTP, STUN and DTLS packets in the pipeline
         // https://tools.ietf.org/html/rfc5764#section-5.1.2
-        final int offset = msg.arrayOffset();
-        final byte b0 = msg.getByte(offset);
+        final byte b0 = msg.getByte(msg.readerIndex());
         final int b0Int = b0 & 0xff;
 
         if (b0Int < 2) {
@@ -106,9 +115,6 @@ public class RtpDemultiplexer extends SimpleChannelInboundHandler<ByteBuf> {
     }
 
     private void handleRtpPacket(ChannelHandlerContext ctx, ByteBuf buffer) {
-        // Retrieve data from network
-        final int offset = buffer.arrayOffset();
-        
         /*
          * When RTP and RTCP packets are multiplexed onto a single port, the RTCP packet type field occupies the same position
          * in the packet as the combination of the RTP marker (M) bit and the RTP payload type (PT). This field can be used to
@@ -120,7 +126,7 @@ public class RtpDemultiplexer extends SimpleChannelInboundHandler<ByteBuf> {
          * a direct conflict between RTP payload type and RTCP packet type; the second constraint precludes a conflict between
          * an RTP data packet with the marker bit set and an RTCP packet.
          */
-        int type = buffer.getByte(offset + 1) & 0xff & 0x7f;
+        int type = buffer.getByte(buffer.readerIndex() + 1) & 0xff & 0x7f;
         int rtcpType = type + 128;
 
         // RTP payload types 72-76 conflict with the RTCP SR, RR, SDES, BYE and APP packets defined in the RTP specification
@@ -131,9 +137,21 @@ public class RtpDemultiplexer extends SimpleChannelInboundHandler<ByteBuf> {
             case RtcpHeader.RTCP_BYE:
             case RtcpHeader.RTCP_APP:
                 RtcpPacket rtcpPacket = buildRtcpPacket(buffer);
+                ReferenceCountUtil.release(buffer);
                 ctx.fireChannelRead(rtcpPacket);
+                break;
+
             default:
+                if (buffer.readableBytes() > RtpPacket.RTP_PACKET_MAX_SIZE) {
+                    // Packet does not fit the pooled RTP packet. Drop it.
+                    ReferenceCountUtil.release(buffer);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Channel " + ctx.channel().localAddress() + " dropped oversized RTP packet");
+                    }
+                    break;
+                }
                 RtpPacket rtpPacket = buildRtpPacket(buffer);
+                ReferenceCountUtil.release(buffer);
                 ctx.fireChannelRead(rtpPacket);
                 break;
         }
@@ -141,14 +159,12 @@ public class RtpDemultiplexer extends SimpleChannelInboundHandler<ByteBuf> {
 
     private RtpPacket buildRtpPacket(ByteBuf msg) {
         // Retrieve data from network
-        final byte[] data = msg.array();
         final int length = msg.readableBytes();
-        final int offset = msg.arrayOffset();
 
-        // Wrap data into an RTP packet
-        final RtpPacket rtpPacket = new RtpPacket(length - offset, false);
-        rtpPacket.getBuffer().put(data, offset, length).flip();
-        return rtpPacket;
+        // Copy data into the pooled RTP packet
+        msg.getBytes(msg.readerIndex(), this.rtpData, 0, length);
+        this.rtpPacket.wrapView(this.rtpData, 0, length);
+        return this.rtpPacket;
     }
 
     private RtcpPacket buildRtcpPacket(ByteBuf msg) {
@@ -34,6 +34,10 @@ import io.netty.channel.SimpleChannelInboundHandler;
 
 /**
  * Handler that processes incoming RTP packets for audio or RFC2833 DTMF.
+ * <p>
+ * The state machine only drives lifecycle transitions. Incoming packets are consumed directly, without firing FSM events, so
+ * the per-packet path does not allocate. Packets are not retained after being read, so upstream handlers may reuse them.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
@@ -44,20 +48,26 @@ public class RtpInboundHandler extends SimpleChannelInboundHandler<RtpPacket> {
 
     private final RtpInboundHandlerGlobalContext context;
     private final RtpInboundHandlerFsm fsm;
+    private final RtpInboundPacketProcessor processor;
+    private volatile boolean active;
 
     public RtpInboundHandler(RtpInboundHandlerGlobalContext context) {
         this.context = context;
         this.fsm = RtpInboundHandlerFsmBuilder.INSTANCE.build(context);
+        this.processor = new RtpInboundPacketProcessor(context);
+        this.active = false;
     }
 
     public void activate() {
         if(!this.isActive()) {
             this.fsm.start();
+            this.active = this.isActive();
         }
     }
 
     public void deactivate() {
         if(this.isActive()) {
+            this.active = false;
             this.fsm.fire(RtpInboundHandlerEvent.DEACTIVATE);
         }
     }
@@ -142,9 +152,10 @@ public class RtpInboundHandler extends SimpleChannelInboundHandler<RtpPacket> {
             return;
         }
 
-        // Process incoming packet
-        RtpInboundHandlerPacketReceivedContext txContext = new RtpInboundHandlerPacketReceivedContext(msg);
-        this.fsm.fire(RtpInboundHandlerEvent.PACKET_RECEIVED, txContext);
+        // Process incoming packet directly, bypassing the FSM
+        if (this.active) {
+            this.processor.process(msg);
+        }
 
         // Send packet back if channel is operating in NETWORK_LOOPBACK mode
         if (context.isLoopable()) {
@@ -21,26 +21,19 @@
 
 package org.restcomm.media.core.rtp.netty;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.restcomm.media.core.rtp.RtpChannel;
-import org.restcomm.media.core.rtp.RtpPacket;
-import org.restcomm.media.core.rtp.statistics.RtpStatistics;
-import org.restcomm.media.core.sdp.format.RTPFormat;
-
 /**
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  *
  */
 public class RtpInboundHandlerFsmImpl extends AbstractRtpInboundHandlerFsm {
 
-    private static final Logger log = LogManager.getLogger(RtpInboundHandlerFsmImpl.class);
-
     private final RtpInboundHandlerGlobalContext context;
+    private final RtpInboundPacketProcessor processor;
 
     public RtpInboundHandlerFsmImpl(RtpInboundHandlerGlobalContext context) {
         super();
         this.context = context;
+        this.processor = new RtpInboundPacketProcessor(context);
     }
 
     @Override
@@ -60,28 +53,7 @@ public class RtpInboundHandlerFsmImpl extends AbstractRtpInboundHandlerFsm {
     @Override
     public void onPacketReceived(RtpInboundHandlerState from, RtpInboundHandlerState to, RtpInboundHandlerEvent event, RtpInboundHandlerTransactionContext context) {
         final RtpInboundHandlerPacketReceivedContext txContext = (RtpInboundHandlerPacketReceivedContext) context;
-        final RtpPacket packet = txContext.getPacket();
-        final int payloadType = packet.getPayloadType();
-        final RTPFormat format = this.context.getFormats().find(payloadType);
-        final RtpStatistics statistics = this.context.getStatistics();
-
-        // RTP keep-alive
-        statistics.setLastHeartbeat(this.context.getClock().getTime());
-        
-        if (format == null) {
-            // Drop packet with unknown format
-            log.warn("RTP Channel " + statistics.getSsrc() + " dropped packet because payload type " + payloadType + " is unknown.");
-        } else {
-            // Consume packet
-            if (RtpChannel.DTMF_FORMAT.matches(format.getFormat())) {
-                this.context.getDtmfInput().write(packet);
-            } else {
-                this.context.getJitterBuffer().write(packet, format);
-            }
-
-            // Update statistics
-            statistics.onRtpReceive(packet);
-        }
+        this.processor.process(txContext.getPacket());
     }
 
 }
@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.restcomm.media.core.rtp.RTPInput;
+import org.restcomm.media.core.rtp.RtpInactivityMonitor;
 import org.restcomm.media.core.rtp.jitter.JitterBuffer;
 import org.restcomm.media.core.rtp.rfc2833.DtmfInput;
 import org.restcomm.media.core.rtp.statistics.RtpStatistics;
@@ -50,6 +51,7 @@ public class RtpInboundHandlerGlobalContext {
     private final AtomicReference<RTPFormats> formats;
     private final AtomicBoolean loopable;
     private final AtomicBoolean receivable;
+    private volatile RtpInactivityMonitor.Watch inactivityWatch;
 
     RtpInboundHandlerGlobalContext(Clock clock, RtpStatistics statistics, JitterBuffer jitterBuffer, RTPInput rtpInput, DtmfInput dtmfInput) {
         // RTP Components
@@ -64,6 +66,7 @@ public class RtpInboundHandlerGlobalContext {
         this.formats = new AtomicReference<RTPFormats>(new RTPFormats());
         this.loopable = new AtomicBoolean(false);
         this.receivable = new AtomicBoolean(false);
+        this.inactivityWatch = null;
     }
 
     Clock getClock() {
@@ -102,6 +105,14 @@ public class RtpInboundHandlerGlobalContext {
         this.receivable.set(receivable);
     }
 
+    RtpInactivityMonitor.Watch getInactivityWatch() {
+        return inactivityWatch;
+    }
+
+    void setInactivityWatch(RtpInactivityMonitor.Watch inactivityWatch) {
+        this.inactivityWatch = inactivityWatch;
+    }
+
     RTPFormats getFormats() {
         return this.formats.get();
     }
@@ -23,16 +23,20 @@ package org.restcomm.media.core.rtp.secure;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -40,6 +44,7 @@ import org.bouncycastle.crypto.tls.DTLSServerProtocol;
 import org.bouncycastle.crypto.tls.DatagramTransport;
 import org.restcomm.media.core.network.deprecated.channel.PacketHandler;
 import org.restcomm.media.core.network.deprecated.channel.PacketHandlerException;
+import org.restcomm.media.core.rtp.crypto.DtlsHandshakeService;
 import org.restcomm.media.core.rtp.crypto.DtlsSrtpServer;
 import org.restcomm.media.core.rtp.crypto.DtlsSrtpServerProvider;
 import org.restcomm.media.core.rtp.crypto.PacketTransformer;
@@ -54,8 +59,6 @@ import org.restcomm.media.core.rtp.crypto.SRTPTransformEngine;
  */
 public class DtlsHandler implements PacketHandler, DatagramTransport {
 
-    private static final AtomicLong THREAD_COUNTER = new AtomicLong(0);
-
     private static final Logger logger = LogManager.getLogger(DtlsHandler.class);
 
     public static final int DEFAULT_MTU = 1500;
@@ -65,6 +68,8 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
     private final static int UDP_OVERHEAD = 8;
     public final static int MAX_DELAY = 10000;
 
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     // Packet Handler properties
     private int pipelinePriority;
 
@@ -76,16 +81,18 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
     // DTLS Handshake properties
     private DtlsSrtpServer server;
     private DatagramChannel channel;
-    private final Queue<ByteBuffer> rxQueue;
+    private volatile SocketAddress remotePeer;
+    private final BlockingQueue<ByteBuffer> rxQueue;
     private volatile boolean handshakeComplete;
     private volatile boolean handshakeFailed;
     private volatile boolean handshaking;
-    private Thread worker;
     private String localHashFunction;
     private String remoteHashFunction;
     private String remoteFingerprint;
     private String localFingerprint;
-    private long startTime;
+    private volatile long startTime;
+    // Handshake submitted to the worker pool, which can be cancelled until a worker picks it up
+    private volatile HandshakeWorker worker;
 
     private final List<DtlsListener> listeners;
 
@@ -108,7 +115,7 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
 
         // Handshake properties
         this.server = tlsServerProvider.provide();
-        this.rxQueue = new ConcurrentLinkedQueue<>();
+        this.rxQueue = new LinkedBlockingQueue<>();
         this.handshakeComplete = false;
         this.handshakeFailed = false;
         this.handshaking = false;
@@ -117,6 +124,7 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
         this.remoteFingerprint = "";
         this.localFingerprint = "";
         this.startTime = 0L;
+        this.worker = null;
 
         this.listeners = new ArrayList<DtlsListener>();
         this.tlsServerProvider = tlsServerProvider;
@@ -126,6 +134,15 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
         this.channel = channel;
     }
 
+    /**
+     * Sets the peer handshake records are sent to when the channel is shared by many legs, and thus never connected.
+     * 
+     * @param remotePeer The address of the remote peer. Null to send to the peer the channel is connected to.
+     */
+    public void setRemotePeer(SocketAddress remotePeer) {
+        this.remotePeer = remotePeer;
+    }
+
     public void addListener(DtlsListener listener) {
         if (!this.listeners.contains(listener)) {
             this.listeners.add(listener);
@@ -220,32 +237,32 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
      * Generates an SRTP encoder for outgoing RTP packets using keying material from the DTLS handshake.
      */
     private PacketTransformer generateRtpEncoder() {
-        return new SRTPTransformEngine(getMasterServerKey(), getMasterServerSalt(), getSrtpPolicy(), getSrtcpPolicy())
-                .getRTPTransformer();
+        return new SRTPTransformEngine(getMasterServerKey(), getMasterServerSalt(), getSrtpPolicy(), getSrtcpPolicy(),
+                this.tlsServerProvider.isJceCrypto()).getRTPTransformer();
     }
 
     /**
      * Generates an SRTP decoder for incoming RTP packets using keying material from the DTLS handshake.
      */
     private PacketTransformer generateRtpDecoder() {
-        return new SRTPTransformEngine(getMasterClientKey(), getMasterClientSalt(), getSrtpPolicy(), getSrtcpPolicy())
-                .getRTPTransformer();
+        return new SRTPTransformEngine(getMasterClientKey(), getMasterClientSalt(), getSrtpPolicy(), getSrtcpPolicy(),
+                this.tlsServerProvider.isJceCrypto()).getRTPTransformer();
     }
 
     /**
      * Generates an SRTCP encoder for outgoing RTCP packets using keying material from the DTLS handshake.
      */
     private PacketTransformer generateRtcpEncoder() {
-        return new SRTPTransformEngine(getMasterServerKey(), getMasterServerSalt(), getSrtpPolicy(), getSrtcpPolicy())
-                .getRTCPTransformer();
+        return new SRTPTransformEngine(getMasterServerKey(), getMasterServerSalt(), getSrtpPolicy(), getSrtcpPolicy(),
+                this.tlsServerProvider.isJceCrypto()).getRTCPTransformer();
     }
 
     /**
      * Generates an SRTCP decoder for incoming RTCP packets using keying material from the DTLS handshake.
      */
     private PacketTransformer generateRtcpDecoder() {
-        return new SRTPTransformEngine(getMasterClientKey(), getMasterClientSalt(), getSrtpPolicy(), getSrtcpPolicy())
-                .getRTCPTransformer();
+        return new SRTPTransformEngine(getMasterClientKey(), getMasterClientSalt(), getSrtpPolicy(), getSrtcpPolicy(),
+                this.tlsServerProvider.isJceCrypto()).getRTCPTransformer();
     }
 
     /**
@@ -268,6 +285,27 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
         return this.srtpEncoder.transform(packet, offset, length);
     }
 
+    /**
+     * Decodes an RTP packet in place
+     * 
+     * @param packet The buffer holding the encoded RTP packet, from index zero to its limit
+     * @return Whether the packet was decoded. Returns false if packet is not valid.
+     */
+    public boolean decodeRTP(ByteBuffer packet) {
+        return this.srtpDecoder.reverseTransform(packet);
+    }
+
+    /**
+     * Encodes an RTP packet in place
+     * 
+     * @param packet The buffer holding the decoded RTP packet, from index zero to its limit. Must have room for the
+     *        authentication tag after its limit.
+     * @return Whether the packet was encoded.
+     */
+    public boolean encodeRTP(ByteBuffer packet) {
+        return this.srtpEncoder.transform(packet);
+    }
+
     /**
      * Decodes an RTCP Packet
      * 
@@ -288,15 +326,51 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
         return this.srtcpEncoder.transform(packet, offset, length);
     }
 
+    /**
+     * Encodes an RTCP packet in place
+     * 
+     * @param packet The buffer holding the decoded RTCP packet, from index zero to its limit. Must have room for the
+     *        SRTCP index and authentication tag after its limit.
+     * @return Whether the packet was encoded.
+     */
+    public boolean encodeRTCP(ByteBuffer packet) {
+        return this.srtcpEncoder.transform(packet);
+    }
+
     public void handshake() {
         if (!handshaking && !handshakeComplete) {
             this.handshaking = true;
             this.startTime = System.currentTimeMillis();
-            this.worker = new Thread(new HandshakeWorker(), "DTLS-Server-" + THREAD_COUNTER.incrementAndGet());
-            this.worker.start();
+
+            // Discard leftovers of a previous handshake. Records received from now on are kept for the worker.
+            this.rxQueue.clear();
+
+            // Handshakes of all connections share the worker pool of the provider
+            DtlsHandshakeService handshakeService = this.tlsServerProvider.getHandshakeService();
+            if (handshakeService == null) {
+                logger.warn("DTLS handshake could not start because no handshake service is available.");
+                failHandshake(new IllegalStateException("No DTLS handshake service available"));
+            } else {
+                this.worker = new HandshakeWorker();
+                if (!handshakeService.submit(this.worker)) {
+                    logger.warn("DTLS handshake was not admitted because too many handshakes are ongoing.");
+                    this.worker = null;
+                    failHandshake(new IllegalStateException("DTLS handshake admission limit reached"));
+                }
+            }
         }
     }
 
+    private void failHandshake(Throwable e) {
+        // Declare handshake as failed
+        this.handshakeComplete = false;
+        this.handshakeFailed = true;
+        this.handshaking = false;
+
+        // Warn listeners handshake failed
+        fireHandshakeFailed(e);
+    }
+
     private void fireHandshakeComplete() {
         if (this.listeners.size() > 0) {
             Iterator<DtlsListener> iterator = listeners.iterator();
@@ -315,10 +389,24 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
         }
     }
 
+    /**
+     * Cancels the handshake if it is still waiting for a free worker, so it does not hold a worker once its turn comes.
+     * 
+     * @return Whether a queued handshake was cancelled.
+     */
+    private boolean cancelHandshake() {
+        HandshakeWorker pending = this.worker;
+        this.worker = null;
+        return pending != null && pending.cancel();
+    }
+
     public void reset() {
+        cancelHandshake();
+
         // XXX try not to create the server every time!
         this.server = this.tlsServerProvider.provide();
         this.channel = null;
+        this.remotePeer = null;
         this.srtcpDecoder = null;
         this.srtcpEncoder = null;
         this.srtpDecoder = null;
@@ -362,7 +450,8 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
     @Override
     public byte[] handle(byte[] packet, int dataLength, int offset, InetSocketAddress localPeer, InetSocketAddress remotePeer)
             throws PacketHandlerException {
-        this.rxQueue.offer(ByteBuffer.wrap(packet, offset, dataLength));
+        // Incoming data is only valid while handling, so a copy must be queued for the handshake
+        this.rxQueue.offer(ByteBuffer.wrap(Arrays.copyOfRange(packet, offset, offset + dataLength)));
         return null;
     }
 
@@ -394,22 +483,18 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
             throw new IllegalStateException("Handshake is taking too long! (>" + MAX_DELAY + "ms");
         }
 
-        int attempts = waitMillis;
-        do {
-            ByteBuffer data = this.rxQueue.poll();
+        // Park the worker until a record arrives instead of polling the queue
+        try {
+            ByteBuffer data = this.rxQueue.poll(waitMillis, TimeUnit.MILLISECONDS);
             if (data != null) {
-                data.get(buf, off, data.limit());
-                return data.limit();
-            }
-
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                logger.warn("Could not sleep thread to receive DTLS data.");
-            } finally {
-                attempts--;
+                int length = Math.min(len, data.limit());
+                data.get(buf, off, length);
+                return length;
             }
-        } while (attempts > 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocketTimeoutException("Interrupted while waiting for DTLS packet");
+        }
 
         // Throw IO exception if no data was received in this interval. Restarts outbound flight.
         throw new SocketTimeoutException("Could not receive DTLS packet in " + waitMillis);
@@ -418,8 +503,9 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
     @Override
     public void send(byte[] buf, int off, int len) throws IOException {
         if (!hasTimeout()) {
-            if (this.channel != null && this.channel.isOpen() && this.channel.isConnected()) {
-                this.channel.send(ByteBuffer.wrap(buf, off, len), channel.getRemoteAddress());
+            final SocketAddress destination = this.remotePeer;
+            if (this.channel != null && this.channel.isOpen() && (destination != null || this.channel.isConnected())) {
+                this.channel.send(ByteBuffer.wrap(buf, off, len), (destination != null) ? destination : channel.getRemoteAddress());
             } else {
                 logger.warn("Handler skipped send operation because channel is not open or connected.");
             }
@@ -430,6 +516,10 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
 
     @Override
     public void close() throws IOException {
+        // A running handshake closes the transport when it fails. Only a queued one is cancelled here.
+        if (cancelHandshake()) {
+            this.handshaking = false;
+        }
         this.rxQueue.clear();
         this.startTime = 0L;
         this.channel = null;
@@ -439,15 +529,30 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
         return (System.currentTimeMillis() - this.startTime) > MAX_DELAY;
     }
 
-    private class HandshakeWorker implements Runnable {
+    private class HandshakeWorker implements Callable<Boolean> {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        boolean cancel() {
+            return this.state.compareAndSet(QUEUED, CANCELLED);
+        }
+
+        @Override
+        public Boolean call() {
+            // The handler was closed or reset while the handshake waited for a free worker
+            if (!this.state.compareAndSet(QUEUED, RUNNING)) {
+                return false;
+            }
 
-        public void run() {
-            DtlsHandler.this.rxQueue.clear();
-            SecureRandom secureRandom = new SecureRandom();
-            DTLSServerProtocol serverProtocol = new DTLSServerProtocol(secureRandom);
+            // Time spent waiting for a free worker does not count towards the handshake timeout
+            DtlsHandler.this.startTime = System.currentTimeMillis();
+            DTLSServerProtocol serverProtocol = new DTLSServerProtocol(SECURE_RANDOM);
 
             try {
-                // Perform the handshake in a non-blocking fashion
                 serverProtocol.accept(server, DtlsHandler.this);
 
                 // Prepare the shared key to be used in RTP streaming
@@ -466,6 +571,7 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
 
                 // Warn listeners handshake completed
                 fireHandshakeComplete();
+                return true;
             } catch (Exception e) {
                 logger.error("DTLS handshake failed. Reason:", e);
 
@@ -476,6 +582,7 @@ public class DtlsHandler implements PacketHandler, DatagramTransport {
 
                 // Warn listeners handshake completed
                 fireHandshakeFailed(e);
+                return false;
             }
         }
 
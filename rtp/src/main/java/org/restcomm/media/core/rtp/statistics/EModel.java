@@ -0,0 +1,114 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.statistics;
+
+/**
+ * Simplified ITU-T G.107 E-model, used to estimate call quality from network impairments.
+ * <p>
+ * All parameters other than delay and packet loss take their default values, which yields a basic signal-to-noise ratio
+ * of 93.2 for a call without impairments.
+ * </p>
+ */
+public final class EModel {
+
+	/**
+	 * R factor of a call with default parameters and no impairments
+	 */
+	public static final double DEFAULT_R0 = 93.2;
+
+	/**
+	 * Equipment impairment of G.711 (ITU-T G.113 Appendix I)
+	 */
+	public static final double G711_IE = 0.0;
+
+	/**
+	 * Packet loss robustness of G.711 with packet loss concealment (ITU-T G.113 Appendix I)
+	 */
+	public static final double G711_BPL = 25.1;
+
+	private EModel() {
+		super();
+	}
+
+	/**
+	 * Calculates the delay impairment factor Id for a given one-way delay.
+	 *
+	 * @param delay The mouth-to-ear delay, in milliseconds
+	 * @return The delay impairment
+	 */
+	public static double delayImpairment(double delay) {
+		double impairment = 0.024 * delay;
+		if (delay > 177.3) {
+			impairment += 0.11 * (delay - 177.3);
+		}
+		return impairment;
+	}
+
+	/**
+	 * Calculates the effective equipment impairment factor Ie-eff, which accounts for codec and packet loss.
+	 *
+	 * @param ie The equipment impairment of the codec
+	 * @param bpl The packet loss robustness of the codec
+	 * @param ppl The packet loss probability, in percentage
+	 * @param burstR The burst ratio, which is 1 when losses are random and greater than 1 when they are bursty
+	 * @return The effective equipment impairment
+	 */
+	public static double equipmentImpairment(double ie, double bpl, double ppl, double burstR) {
+		if (ppl <= 0) {
+			return ie;
+		}
+		return ie + (95 - ie) * ppl / (ppl / burstR + bpl);
+	}
+
+	/**
+	 * Calculates the transmission rating factor R.
+	 *
+	 * @param delayImpairment The delay impairment Id
+	 * @param equipmentImpairment The effective equipment impairment Ie-eff
+	 * @return The R factor, from 0 to 100
+	 */
+	public static double rFactor(double delayImpairment, double equipmentImpairment) {
+		final double r = DEFAULT_R0 - delayImpairment - equipmentImpairment;
+		if (r < 0) {
+			return 0;
+		}
+		return r > 100 ? 100 : r;
+	}
+
+	/**
+	 * Converts an R factor into an estimated Mean Opinion Score.
+	 *
+	 * @param r The R factor
+	 * @return The MOS, from 1 to 4.5
+	 */
+	public static double mos(double r) {
+		if (r <= 0) {
+			return 1.0;
+		}
+		if (r >= 100) {
+			return 4.5;
+		}
+		// Formula dips slightly below 1 for very low ratings
+		return Math.max(1.0, 1 + 0.035 * r + r * (r - 60) * (100 - r) * 7.0E-6);
+	}
+
+}
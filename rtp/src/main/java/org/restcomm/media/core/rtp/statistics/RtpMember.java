@@ -24,9 +24,11 @@ import org.apache.commons.net.ntp.TimeStamp;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.restcomm.media.core.rtcp.RtcpSenderReport;
+import org.restcomm.media.core.rtcp.RtcpVoipMetrics;
 import org.restcomm.media.core.rtcp.ntp.NtpUtils;
 import org.restcomm.media.core.rtp.RtpClock;
 import org.restcomm.media.core.rtp.RtpPacket;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
 import org.restcomm.media.core.scheduler.Clock;
 
 /**
@@ -79,6 +81,9 @@ public class RtpMember {
 	private long lastSrTimestamp;
 	private long lastSrReceivedOn;
 
+	// VoIP metrics (RFC3611)
+	private final VoipMetrics voipMetrics;
+
 	public RtpMember(RtpClock clock, long ssrc, String cname) {
 		// Core elements
 		this.rtpClock = clock;
@@ -110,6 +115,9 @@ public class RtpMember {
 		this.lastSrTimestamp = 0;
 		this.lastSrReceivedOn = 0;
 		this.roundTripDelay = 0;
+
+		// VoIP metrics
+		this.voipMetrics = new VoipMetrics(clock);
 	}
 
 	public RtpMember(RtpClock clock, long ssrc) {
@@ -398,6 +406,10 @@ public class RtpMember {
     		return false;
     	} else if (delta < MAX_DROPOUT) {
     		// in order, with permissible gap
+    		int gap = ((sequence - this.highestSequence) & (RTP_SEQ_MOD - 1)) - 1;
+    		if(gap > 0 && gap < MAX_DROPOUT) {
+    			this.voipMetrics.onLost(gap);
+    		}
     		if(sequence < this.highestSequence) {
     			// sequence number wrapped - count another 64k cycle
     			this.sequenceCycle += RTP_SEQ_MOD;
@@ -427,6 +439,7 @@ public class RtpMember {
 			this.receivedSinceSR++;
 			this.receivedPackets++;
 			this.receivedOctets += packet.getPayloadLength();
+			this.voipMetrics.onReceived(packet.getSeqNumber(), packet.getTimestamp());
 			
 			if(this.lastPacketReceivedOn > 0) {
 				estimateJitter(packet);
@@ -455,6 +468,61 @@ public class RtpMember {
 		}
 	}
 	
+	/**
+	 * Gets the burst and gap distribution of the packets lost by this member.
+	 * 
+	 * @return The VoIP metrics tracker
+	 */
+	public VoipMetrics getVoipMetrics() {
+		return voipMetrics;
+	}
+	
+	/**
+	 * Fills a VoIP Metrics Report Block with the quality of the stream received from this member.
+	 * <p>
+	 * Call quality is estimated by the E-model for G.711 with packet loss concealment, taking into account network loss,
+	 * jitter buffer discards, burstiness of loss and the one-way delay.
+	 * </p>
+	 * 
+	 * @param block The block to be filled
+	 * @param jitterBuffer The statistics of the jitter buffer that receives the stream. May be null.
+	 */
+	public void reportVoipMetrics(RtcpVoipMetrics block, JitterBufferStatistics jitterBuffer) {
+		final long expected = Math.max(0, getPacketsExpected());
+		final long lost = Math.max(0, getPacketsLost());
+		final long discarded = jitterBuffer == null ? 0 : jitterBuffer.getDropped();
+		final long packetDuration = this.voipMetrics.getPacketDuration();
+
+		// Loss and discard rates
+		final int lossRate = expected == 0 ? 0 : (int) ((lost << 8) / expected);
+		final int discardRate = expected == 0 ? 0 : (int) ((discarded << 8) / expected);
+
+		// Delay
+		final int rtt = getRTT();
+		final long playoutDelay = jitterBuffer == null ? 0 : jitterBuffer.getPlayoutDelay();
+		final long endSystemDelay = playoutDelay + packetDuration;
+
+		// Call quality
+		final double ppl = expected == 0 ? 0.0 : (100.0 * Math.min(expected, lost + discarded)) / expected;
+		final double ie = EModel.equipmentImpairment(EModel.G711_IE, EModel.G711_BPL, ppl, this.voipMetrics.getBurstRatio());
+		final double id = EModel.delayImpairment((rtt / 2.0) + endSystemDelay);
+		final double r = EModel.rFactor(id, ie);
+		final double rListening = EModel.rFactor(0, ie);
+
+		block.setSsrc(this.ssrc);
+		block.setLoss(lossRate, discardRate);
+		block.setBurst(this.voipMetrics.getBurstDensity(), this.voipMetrics.getGapDensity(), this.voipMetrics.getBurstDuration(), this.voipMetrics.getGapDuration());
+		block.setDelay(rtt, (int) endSystemDelay);
+		block.setGmin(VoipMetrics.GMIN);
+		block.setQuality((int) Math.round(r), (int) Math.round(EModel.mos(rListening) * 10), (int) Math.round(EModel.mos(r) * 10));
+		if (jitterBuffer == null) {
+			block.setJitterBuffer(0, 0, 0, 0);
+		} else {
+			final int maxDelay = (int) Math.max(jitterBuffer.getTargetPlayoutDelay(), jitterBuffer.getMaxPlayoutDelay());
+			block.setJitterBuffer(RtcpVoipMetrics.JBA_NON_ADAPTIVE, (int) jitterBuffer.getTargetPlayoutDelay(), maxDelay, maxDelay);
+		}
+	}
+	
 	public void onReceiveSR(RtcpSenderReport report) {
 		// Update statistics
 		this.lastSrTimestamp = report.getNtpTs();
@@ -20,13 +20,18 @@
 
 package org.restcomm.media.core.rtp.statistics;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.restcomm.media.core.rtcp.RtcpExtendedReport;
 import org.restcomm.media.core.rtcp.RtcpIntervalCalculator;
 import org.restcomm.media.core.rtcp.RtcpPacket;
 import org.restcomm.media.core.rtcp.RtcpPacketType;
@@ -34,14 +39,25 @@ import org.restcomm.media.core.rtcp.RtcpReport;
 import org.restcomm.media.core.rtcp.RtcpReportBlock;
 import org.restcomm.media.core.rtcp.RtcpSdes;
 import org.restcomm.media.core.rtcp.RtcpSenderReport;
+import org.restcomm.media.core.rtcp.RtcpVoipMetrics;
 import org.restcomm.media.core.rtp.CnameGenerator;
 import org.restcomm.media.core.rtp.RtpClock;
 import org.restcomm.media.core.rtp.RtpPacket;
 import org.restcomm.media.core.rtp.SsrcGenerator;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
 import org.restcomm.media.core.scheduler.Clock;
 
 /**
  * Encapsulates statistics of an RTP/RTCP channel
+ * <p>
+ * Counters are updated by a single writer: RTP reception counters by the thread receiving packets, transmission counters
+ * by the thread sending them. The per-packet path takes no locks. The member that sent the last packet is cached, so the
+ * common case of a single remote source skips the member table entirely.
+ * </p>
+ * <p>
+ * The member and sender tables change rarely and are kept in concurrent maps. A snapshot of the members is published on
+ * every change, so RTCP reports can be built without copying the table.
+ * </p>
  * 
  * @author Henrique Rosa (henrique.rosa@telestax.com)
  * 
@@ -73,8 +89,9 @@ public class RtpStatistics {
 	private final Clock wallClock;
 
 	/* SSRC Data */
-	private long ssrc;
-	private String cname;
+	private volatile long ssrc;
+	private volatile String cname;
+	private volatile byte[] cnameBytes;
 
 	/* Global RTP statistics */
 	private long rtpLastHeartbeat;
@@ -87,7 +104,7 @@ public class RtpStatistics {
 	private volatile long rtpTimestamp;
 
 	/* Global RTCP statistics */
-	private RtcpPacketType rtcpNextPacketType;
+	private volatile RtcpPacketType rtcpNextPacketType;
 	private double rtcpBw;
 	private double rtcpAvgSize;
 	private boolean weSent;
@@ -113,11 +130,26 @@ public class RtpStatistics {
 	 * against packet loss.
 	 */
 	private final Map<Long, RtpMember> membersMap;
-	private int pmembers;
-	private int members;
+	private volatile RtpMember[] membersSnapshot;
+	private volatile int pmembers;
+	private volatile int members;
 	
-	private final List<Long> sendersList;
-	private int senders;
+	private final Set<Long> sendersList;
+	private volatile int senders;
+	
+	/** Guards changes to the member and sender tables, which are rare */
+	private final Object membersLock;
+	
+	/**
+	 * Remote member that sent the last RTP packet, known to be in both member and sender tables. Removing a source from
+	 * either table clears it afterwards, only if it still refers to that source.
+	 */
+	private final AtomicReference<RtpMember> lastSender;
+
+	/* RTCP XR (RFC3611) */
+	private volatile JitterBufferStatistics jitterBuffer;
+	private volatile boolean voipMetricsReports;
+	private volatile RtcpVoipMetrics remoteVoipMetrics;
 
 	public RtpStatistics(final RtpClock clock, final long ssrc, final String cname) {
 		// Common
@@ -125,6 +157,7 @@ public class RtpStatistics {
 		this.wallClock = clock.getWallClock();
 		this.ssrc = ssrc;
 		this.cname = cname;
+		this.cnameBytes = cname.getBytes(StandardCharsets.UTF_8);
 
 		// RTP statistics
 		this.rtpLastHeartbeat = 0;
@@ -137,12 +170,16 @@ public class RtpStatistics {
 		this.rtpTimestamp = -1;
 
 		// RTCP statistics
+		this.membersLock = new Object();
 		this.senders = 0;
-		this.sendersList = new ArrayList<Long>();
+		this.sendersList = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
 		this.pmembers = 1;
 		this.members = 1;
-		this.membersMap = new HashMap<Long, RtpMember>();
+		this.membersMap = new ConcurrentHashMap<Long, RtpMember>();
 		this.membersMap.put(Long.valueOf(this.ssrc), new RtpMember(this.rtpClock, this.ssrc));
+		this.membersSnapshot = new RtpMember[0];
+		this.lastSender = new AtomicReference<RtpMember>();
+		updateMembersSnapshot();
 		this.rtcpBw = RTP_DEFAULT_BW * RTCP_BW_FRACTION;
 		this.rtcpAvgSize = RTCP_DEFAULT_AVG_SIZE;
 		this.rtcpNextPacketType = RtcpPacketType.RTCP_REPORT;
@@ -150,6 +187,11 @@ public class RtpStatistics {
 
 		this.rtcpTxPackets = 0;
 		this.rtcpTxOctets = 0;
+
+		// RTCP XR
+		this.jitterBuffer = null;
+		this.voipMetricsReports = false;
+		this.remoteVoipMetrics = null;
 	}
 	
 	public RtpStatistics(final RtpClock clock, final long ssrc) {
@@ -166,6 +208,7 @@ public class RtpStatistics {
 	
 	public void setCname(String cname) {
 		this.cname = cname;
+		this.cnameBytes = cname.getBytes(StandardCharsets.UTF_8);
 	}
 
 	/**
@@ -228,6 +271,15 @@ public class RtpStatistics {
 		return cname;
 	}
 
+	/**
+	 * Gets the CNAME that identifies this source, encoded in UTF-8.
+	 * 
+	 * @return The CNAME of the source. Must not be modified.
+	 */
+	public byte[] getCnameBytes() {
+		return cnameBytes;
+	}
+
 	/*
 	 * RTP Statistics
 	 */
@@ -335,15 +387,12 @@ public class RtpStatistics {
 	}
 
 	public boolean isSender(long ssrc) {
-		synchronized (this.sendersList) {
-			return this.sendersList.contains(Long.valueOf(ssrc));
-		}
+		return this.sendersList.contains(Long.valueOf(ssrc));
 	}
 
 	private void addSender(long ssrc) {
-		synchronized (this.sendersList) {
-			if (!this.sendersList.contains(Long.valueOf(ssrc))) {
-				this.sendersList.add(Long.valueOf(ssrc));
+		synchronized (this.membersLock) {
+			if (this.sendersList.add(Long.valueOf(ssrc))) {
 				this.senders++;
 				if (this.ssrc == ssrc) {
 					this.weSent = true;
@@ -353,21 +402,23 @@ public class RtpStatistics {
 	}
 
 	private void removeSender(long ssrc) {
-		synchronized (this.sendersList) {
+		synchronized (this.membersLock) {
 			if (this.sendersList.remove(Long.valueOf(ssrc))) {
 				this.senders--;
 				if (this.ssrc == ssrc) {
 					this.weSent = false;
 				}
+				invalidateLastSender(ssrc);
 			}
 		}
 	}
 
 	public void clearSenders() {
-		synchronized (this.sendersList) {
+		synchronized (this.membersLock) {
 			this.sendersList.clear();
 			this.senders = 0;
 			this.weSent = false;
+			this.lastSender.set(null);
 		}
 	}
 
@@ -391,23 +442,92 @@ public class RtpStatistics {
 	}
 
 	public RtpMember getMember(long ssrc) {
-		synchronized (this.membersMap) {
-			return this.membersMap.get(Long.valueOf(ssrc));
-		}
+		return this.membersMap.get(Long.valueOf(ssrc));
 	}
 
 	public List<Long> getMembersList() {
-		List<Long> copy;
-		synchronized (this.membersMap) {
-			copy = new ArrayList<Long>(this.membersMap.keySet());
+		RtpMember[] snapshot = this.membersSnapshot;
+		List<Long> copy = new ArrayList<Long>(snapshot.length);
+		for (int i = 0; i < snapshot.length; i++) {
+			copy.add(Long.valueOf(snapshot[i].getSsrc()));
 		}
 		return copy;
 	}
 
+	/**
+	 * Gets the members of the session, including the local source, as of the last change to the member table.
+	 * 
+	 * @return The members of the session. The array must not be modified.
+	 */
+	public RtpMember[] getMembersSnapshot() {
+		return this.membersSnapshot;
+	}
+
 	public boolean isMember(long ssrc) {
-		synchronized (this.membersMap) {
-			return this.membersMap.containsKey(Long.valueOf(ssrc));
+		return this.membersMap.containsKey(Long.valueOf(ssrc));
+	}
+
+	/*
+	 * RTCP XR
+	 */
+	/**
+	 * Sets the statistics of the jitter buffer that receives the RTP stream, which provide the discard rate and the
+	 * jitter buffer delays of the VoIP metrics.
+	 * 
+	 * @param jitterBuffer The jitter buffer statistics
+	 */
+	public void setJitterBufferStatistics(JitterBufferStatistics jitterBuffer) {
+		this.jitterBuffer = jitterBuffer;
+	}
+
+	/**
+	 * Gets whether RTCP compound packets carry an Extended Report with VoIP metrics about each remote source.
+	 * 
+	 * @return Returns true if VoIP metrics are reported; otherwise returns false.
+	 */
+	public boolean isVoipMetricsReports() {
+		return voipMetricsReports;
+	}
+
+	public void setVoipMetricsReports(boolean voipMetricsReports) {
+		this.voipMetricsReports = voipMetricsReports;
+	}
+
+	/**
+	 * Fills a VoIP Metrics Report Block with the quality of the stream received from a member.
+	 * 
+	 * @param member The remote member
+	 * @param block The block to be filled
+	 */
+	public void reportVoipMetrics(RtpMember member, RtcpVoipMetrics block) {
+		member.reportVoipMetrics(block, this.jitterBuffer);
+	}
+
+	/**
+	 * Gets the quality of the stream received from the remote peer, as measured locally.
+	 * 
+	 * @return The VoIP metrics of the first remote source or null if no remote source is known.
+	 */
+	public RtcpVoipMetrics getVoipMetrics() {
+		final RtpMember[] snapshot = this.membersSnapshot;
+		final long localSsrc = this.ssrc;
+		for (int i = 0; i < snapshot.length; i++) {
+			if (snapshot[i].getSsrc() != localSsrc) {
+				final RtcpVoipMetrics block = new RtcpVoipMetrics();
+				reportVoipMetrics(snapshot[i], block);
+				return block;
+			}
 		}
+		return null;
+	}
+
+	/**
+	 * Gets the quality of the local stream, as measured by the remote peer and received in an RTCP Extended Report.
+	 * 
+	 * @return The VoIP metrics reported by the remote peer or null if none was received.
+	 */
+	public RtcpVoipMetrics getRemoteVoipMetrics() {
+		return remoteVoipMetrics;
 	}
 
 	private RtpMember addMember(long ssrc) {
@@ -417,23 +537,49 @@ public class RtpStatistics {
 	private RtpMember addMember(long ssrc, String cname) {
 		RtpMember member = getMember(ssrc);
 		if (member == null) {
-			synchronized (this.membersMap) {
-				member = new RtpMember(this.rtpClock, ssrc, cname);
-				this.membersMap.put(Long.valueOf(ssrc), member);
-				this.members++;
+			synchronized (this.membersLock) {
+				member = getMember(ssrc);
+				if (member == null) {
+					member = new RtpMember(this.rtpClock, ssrc, cname);
+					this.membersMap.put(Long.valueOf(ssrc), member);
+					this.members++;
+					updateMembersSnapshot();
+				}
 			}
 		}
 		return member;
 	}
 
 	private void removeMember(long ssrc) {
-		synchronized (this.membersMap) {
+		synchronized (this.membersLock) {
 			if (this.membersMap.remove(Long.valueOf(ssrc)) != null) {
 				this.members--;
+				updateMembersSnapshot();
+				invalidateLastSender(ssrc);
 			}
 		}
 	}
 
+	/**
+	 * Publishes a new snapshot of the member table. Must be called while holding the members lock.
+	 */
+	private void updateMembersSnapshot() {
+		this.membersSnapshot = this.membersMap.values().toArray(new RtpMember[this.membersMap.size()]);
+	}
+
+	/**
+	 * Clears the cached sender if it refers to a source that was just removed from the member or sender table. Must be
+	 * called after the removal, so a receiver publishing the source concurrently either sees the removal or is cleared.
+	 * 
+	 * @param ssrc The removed source
+	 */
+	private void invalidateLastSender(long ssrc) {
+		RtpMember cached = this.lastSender.get();
+		if (cached != null && cached.getSsrc() == ssrc) {
+			this.lastSender.compareAndSet(cached, null);
+		}
+	}
+
 	/**
 	 * Sets the estimate number of members (pmembers) equal to the number of
 	 * currently registered members.
@@ -443,11 +589,13 @@ public class RtpStatistics {
 	}
 
 	public void resetMembers() {
-		synchronized (this.membersMap) {
+		synchronized (this.membersLock) {
 			this.membersMap.clear();
 			this.membersMap.put(Long.valueOf(this.ssrc), new RtpMember(this.rtpClock, this.ssrc));
 			this.members = 1;
 			this.pmembers = 1;
+			this.lastSender.set(null);
+			updateMembersSnapshot();
 		}
 	}
 
@@ -532,7 +680,7 @@ public class RtpStatistics {
 	public void reset() {
 		// Common
 		this.ssrc = SsrcGenerator.generateSsrc();
-		this.cname = CnameGenerator.generateCname();
+		setCname(CnameGenerator.generateCname());
 		
 		// RTP statistics
 		this.rtpLastHeartbeat = 0;
@@ -543,16 +691,21 @@ public class RtpStatistics {
 		this.rtpTimestamp = -1;
 
 		// RTCP statistics
-		this.senders = 0;
-		this.sendersList.clear();
-		this.pmembers = 1;
-		this.members = 1;
-		this.membersMap.clear();
-		this.membersMap.put(Long.valueOf(this.ssrc), new RtpMember(this.rtpClock, this.ssrc));
+		synchronized (this.membersLock) {
+			this.senders = 0;
+			this.sendersList.clear();
+			this.pmembers = 1;
+			this.members = 1;
+			this.membersMap.clear();
+			this.membersMap.put(Long.valueOf(this.ssrc), new RtpMember(this.rtpClock, this.ssrc));
+			this.lastSender.set(null);
+			updateMembersSnapshot();
+		}
 		this.rtcpBw = RTP_DEFAULT_BW * RTCP_BW_FRACTION;
 		this.rtcpAvgSize = RTCP_DEFAULT_AVG_SIZE;
 		this.rtcpNextPacketType = RtcpPacketType.RTCP_REPORT;
 		this.weSent = false;
+		this.remoteVoipMetrics = null;
 	}
 
 	/*
@@ -568,7 +721,7 @@ public class RtpStatistics {
 		 * itself to the sender table and sets we_sent to true.
 		 */
 		if (!this.weSent) {
-			addSender(Long.valueOf(this.ssrc));
+			addSender(this.ssrc);
 		}
 	}
 
@@ -582,6 +735,13 @@ public class RtpStatistics {
 		if(RtcpPacketType.RTCP_REPORT.equals(this.rtcpNextPacketType)) {
 			long syncSource = packet.getSyncSource();
 
+			// Fast path: same source as the previous packet, already registered as member and sender
+			RtpMember cached = this.lastSender.get();
+			if (cached != null && cached.getSsrc() == syncSource) {
+				cached.onReceiveRtp(packet);
+				return;
+			}
+
 			/*
 			 * When an RTP packet is received from a participant whose SSRC is
 			 * not in the sender table, the SSRC is added to the table, and the
@@ -599,13 +759,29 @@ public class RtpStatistics {
 			
 			// Update member statistics
 			member.onReceiveRtp(packet);
+			if (syncSource != this.ssrc) {
+				this.lastSender.set(member);
+				// Source may have left either table meanwhile (RTCP BYE or timeout)
+				if (!isMember(syncSource) || !isSender(syncSource)) {
+					this.lastSender.compareAndSet(member, null);
+				}
+			}
 		}
 	}
 	
 	public void onRtcpSent(RtcpPacket packet) {
-		calculateAvgRtcpSize(packet.getSize());
+		onRtcpSent(packet.getSize());
+	}
+	
+	/**
+	 * Updates statistics after an RTCP compound packet was sent.
+	 * 
+	 * @param size The size of the compound packet, in octets.
+	 */
+	public void onRtcpSent(int size) {
+		calculateAvgRtcpSize(size);
 		this.rtcpTxPackets++;
-		this.rtcpTxOctets += packet.getSize();
+		this.rtcpTxOctets += size;
 	}
 	
 	public void onRtcpReceive(RtcpPacket rtcpPacket) {
@@ -649,6 +825,15 @@ public class RtpStatistics {
 					member.estimateRtt(this.wallClock.getCurrentTime(), reportBlock.getLsr(), reportBlock.getDlsr());
 				}
 			}
+			
+			// Keep the quality of the local stream as seen by the remote peer
+			RtcpExtendedReport extendedReport = rtcpPacket.getExtendedReport();
+			if(extendedReport != null) {
+				RtcpVoipMetrics voipMetrics = extendedReport.getVoipMetrics(this.ssrc);
+				if(voipMetrics != null) {
+					this.remoteVoipMetrics = voipMetrics;
+				}
+			}
 			break;
 		case RTCP_BYE:
 
@@ -0,0 +1,266 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.statistics;
+
+import org.restcomm.media.core.rtp.RtpClock;
+
+/**
+ * Tracks the burst and gap distribution of packet loss for a source, following the algorithm of RFC3611 appendix A.2.
+ * <p>
+ * A burst is a period with a high proportion of lost packets, separated from the next loss by less than {@link #GMIN}
+ * received packets. A gap is a period of low loss between bursts. Every received or lost packet only updates a few
+ * counters, so the metrics can be kept for every call. Densities and durations are derived from the counters when a
+ * report is built.
+ * </p>
+ */
+public class VoipMetrics {
+
+	/**
+	 * Minimum number of consecutive received packets that ends a burst, as recommended by RFC3611
+	 */
+	public static final int GMIN = 16;
+
+	/**
+	 * Packet duration assumed until two consecutive packets are received
+	 */
+	public static final int DEFAULT_PACKET_DURATION = 20;
+
+	private final RtpClock rtpClock;
+
+	// Packets received since the last loss
+	private long pkt;
+	// Packets lost in the current burst
+	private long lost;
+	// Transition counters between gap (1), burst with loss (3) and burst without loss (2) states
+	private long c11;
+	private long c13;
+	private long c14;
+	private long c22;
+	private long c23;
+	private long c33;
+
+	// Burst ratio
+	private long lossEvents;
+	private long lostPackets;
+	private long receivedPackets;
+
+	// Packet duration, in RTP time units
+	private int lastSequence;
+	private long lastTimestamp;
+	private long packetDuration;
+
+	public VoipMetrics(RtpClock clock) {
+		this.rtpClock = clock;
+		reset();
+	}
+
+	/**
+	 * Registers a packet received in sequence.
+	 *
+	 * @param sequence The sequence number of the packet
+	 * @param timestamp The RTP timestamp of the packet
+	 */
+	public void onReceived(int sequence, long timestamp) {
+		this.pkt++;
+		this.receivedPackets++;
+
+		if (this.lastSequence >= 0 && sequence == ((this.lastSequence + 1) & 0xFFFF) && timestamp > this.lastTimestamp) {
+			this.packetDuration = timestamp - this.lastTimestamp;
+		}
+		this.lastSequence = sequence;
+		this.lastTimestamp = timestamp;
+	}
+
+	/**
+	 * Registers consecutive packets missing from the stream.
+	 *
+	 * @param count The number of lost packets
+	 */
+	public void onLost(int count) {
+		if (count <= 0) {
+			return;
+		}
+		this.lossEvents++;
+		this.lostPackets += count;
+
+		// First loss decides whether a new burst starts
+		if (this.pkt >= GMIN) {
+			// Previous period ended: isolated loss within a gap or burst. Nothing to close before the first loss.
+			if (this.lost == 1) {
+				this.c14++;
+			} else if (this.lost > 1) {
+				this.c13++;
+			}
+			this.lost = 1;
+			this.c11 += this.pkt;
+		} else {
+			this.lost++;
+			if (this.pkt == 0) {
+				this.c33++;
+			} else {
+				this.c23++;
+				this.c22 += (this.pkt - 1);
+			}
+		}
+		this.pkt = 0;
+
+		// Remaining losses follow a loss, so they stay in the burst
+		this.lost += count - 1;
+		this.c33 += count - 1;
+	}
+
+	/**
+	 * Gets the fraction of packets lost within burst periods.
+	 *
+	 * @return The burst density, as a fraction of 256
+	 */
+	public int getBurstDensity() {
+		final long c31 = closedC13();
+		final long c32 = this.c23;
+		final long fromLoss = c31 + c32 + this.c33;
+		if (fromLoss == 0) {
+			return 0;
+		}
+		final double p32 = (double) c32 / fromLoss;
+		final double p23 = (this.c22 + this.c23) < 1 ? 1.0 : 1.0 - ((double) this.c22 / (this.c22 + this.c23));
+		return (int) (256 * p23 / (p23 + p32));
+	}
+
+	/**
+	 * Gets the fraction of packets lost within gap periods.
+	 *
+	 * @return The gap density, as a fraction of 256
+	 */
+	public int getGapDensity() {
+		final long c11 = closedC11();
+		final long c14 = closedC14();
+		if (c11 + c14 == 0) {
+			return 0;
+		}
+		return (int) (256 * c14 / (c11 + c14));
+	}
+
+	/**
+	 * Gets the mean duration of the burst periods.
+	 *
+	 * @return The burst duration, in milliseconds
+	 */
+	public int getBurstDuration() {
+		final long c13 = closedC13();
+		if (c13 == 0) {
+			// No burst ended yet. Whole stream is a single burst if loss is dense.
+			return isBurst() ? (int) (totalPackets() * getPacketDuration()) : 0;
+		}
+		// ctotal less the transitions counted by the gap length, with c31 = c13 and c32 = c23
+		final long burst = c13 + this.c22 + 2 * this.c23 + this.c33;
+		return (int) (burst * getPacketDuration() / c13);
+	}
+
+	/**
+	 * Gets the mean duration of the gap periods.
+	 *
+	 * @return The gap duration, in milliseconds
+	 */
+	public int getGapDuration() {
+		final long c13 = closedC13();
+		if (c13 == 0) {
+			// No burst ended yet. Whole stream is a single gap unless loss is dense.
+			return isBurst() ? 0 : (int) (totalPackets() * getPacketDuration());
+		}
+		final long gap = closedC11() + closedC14() + c13;
+		return (int) (gap * getPacketDuration() / c13);
+	}
+
+	/**
+	 * Gets the ratio between the observed mean length of loss runs and the mean length expected if losses were random, as
+	 * defined by ITU-T G.113.
+	 *
+	 * @return The burst ratio, which is 1 when there is no loss or losses are random
+	 */
+	public double getBurstRatio() {
+		if (this.lostPackets == 0 || this.receivedPackets == 0) {
+			return 1.0;
+		}
+		final double p = (double) this.lossEvents / this.receivedPackets;
+		final double q = (double) this.lossEvents / this.lostPackets;
+		return 1.0 / (p + q);
+	}
+
+	/**
+	 * Gets the amount of media carried by each packet.
+	 *
+	 * @return The packet duration, in milliseconds
+	 */
+	public long getPacketDuration() {
+		final int clockRate = this.rtpClock.getClockRate();
+		if (this.packetDuration <= 0 || clockRate <= 0) {
+			return DEFAULT_PACKET_DURATION;
+		}
+		return this.packetDuration * 1000 / clockRate;
+	}
+
+	public long getLostPackets() {
+		return lostPackets;
+	}
+
+	private boolean isBurst() {
+		return this.c23 + this.c33 > 0 && this.pkt < GMIN;
+	}
+
+	/*
+	 * Counters are only updated when a loss ends a period. When reporting, the current period is closed as if a loss had
+	 * just occurred, provided enough packets were received since the last loss to make it a gap.
+	 */
+	private long closedC11() {
+		return this.pkt >= GMIN ? this.c11 + this.pkt : this.c11;
+	}
+
+	private long closedC13() {
+		return (this.pkt >= GMIN && this.lost > 1) ? this.c13 + 1 : this.c13;
+	}
+
+	private long closedC14() {
+		return (this.pkt >= GMIN && this.lost == 1) ? this.c14 + 1 : this.c14;
+	}
+
+	private long totalPackets() {
+		return this.receivedPackets + this.lostPackets;
+	}
+
+	public void reset() {
+		this.pkt = 0;
+		this.lost = 0;
+		this.c11 = 0;
+		this.c13 = 0;
+		this.c14 = 0;
+		this.c22 = 0;
+		this.c23 = 0;
+		this.c33 = 0;
+		this.lossEvents = 0;
+		this.lostPackets = 0;
+		this.receivedPackets = 0;
+		this.lastSequence = -1;
+		this.lastTimestamp = 0;
+		this.packetDuration = 0;
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class RtcpExtendedReportTest {
+
+	private static RtcpVoipMetrics buildMetrics(long ssrc) {
+		RtcpVoipMetrics metrics = new RtcpVoipMetrics(ssrc);
+		metrics.setLoss(12, 3);
+		metrics.setBurst(200, 5, 120, 3400);
+		metrics.setDelay(80, 60);
+		metrics.setGmin(16);
+		metrics.setQuality(88, 42, 41);
+		metrics.setJitterBuffer(RtcpVoipMetrics.JBA_NON_ADAPTIVE, 50, 70, 70);
+		return metrics;
+	}
+
+	@Test
+	public void testEncodeDecode() {
+		// given
+		RtcpExtendedReport report = new RtcpExtendedReport(false, 0x01020304L);
+		report.addVoipMetrics(buildMetrics(0x0A0B0C0DL));
+		byte[] data = new byte[128];
+
+		// when
+		int length = report.encode(data, 0);
+		RtcpExtendedReport decoded = new RtcpExtendedReport();
+		int decodedLength = decoded.decode(data, 0);
+
+		// then
+		assertEquals(8 + RtcpVoipMetrics.LENGTH, length);
+		assertEquals(length, decodedLength);
+		assertEquals(RtcpHeader.RTCP_XR, decoded.getPacketType());
+		assertEquals(length, decoded.getLength());
+		assertEquals(0x01020304L, decoded.getSsrc());
+		assertEquals(1, decoded.getVoipMetrics().size());
+
+		RtcpVoipMetrics metrics = decoded.getVoipMetrics(0x0A0B0C0DL);
+		assertNotNull(metrics);
+		assertEquals(12, metrics.getLossRate());
+		assertEquals(3, metrics.getDiscardRate());
+		assertEquals(200, metrics.getBurstDensity());
+		assertEquals(5, metrics.getGapDensity());
+		assertEquals(120, metrics.getBurstDuration());
+		assertEquals(3400, metrics.getGapDuration());
+		assertEquals(80, metrics.getRoundTripDelay());
+		assertEquals(60, metrics.getEndSystemDelay());
+		assertEquals(RtcpVoipMetrics.UNAVAILABLE, metrics.getSignalLevel());
+		assertEquals(RtcpVoipMetrics.UNAVAILABLE, metrics.getNoiseLevel());
+		assertEquals(RtcpVoipMetrics.UNAVAILABLE, metrics.getResidualEchoReturnLoss());
+		assertEquals(16, metrics.getGmin());
+		assertEquals(88, metrics.getRFactor());
+		assertEquals(RtcpVoipMetrics.UNAVAILABLE, metrics.getExtRFactor());
+		assertEquals(42, metrics.getMosLq());
+		assertEquals(41, metrics.getMosCq());
+		assertEquals(RtcpVoipMetrics.JBA_NON_ADAPTIVE, metrics.getRxConfig());
+		assertEquals(50, metrics.getJbNominal());
+		assertEquals(70, metrics.getJbMaximum());
+		assertEquals(70, metrics.getJbAbsMaximum());
+		assertNull(decoded.getVoipMetrics(0x01020304L));
+	}
+
+	@Test
+	public void testDecodeSkipsUnsupportedBlocks() {
+		// given
+		byte[] data = new byte[128];
+		int offset = 0;
+		// header: V=2, PT=207, length = SSRC (1) + reference time block (3) + VoIP metrics block (9) words
+		data[offset++] = (byte) 0x80;
+		data[offset++] = (byte) RtcpHeader.RTCP_XR;
+		data[offset++] = 0;
+		data[offset++] = 13;
+		// SSRC
+		data[offset++] = 0;
+		data[offset++] = 0;
+		data[offset++] = 0;
+		data[offset++] = 1;
+		// Receiver Reference Time block (BT=4, length=2)
+		data[offset++] = 4;
+		data[offset++] = 0;
+		data[offset++] = 0;
+		data[offset++] = 2;
+		offset += 8;
+		// VoIP Metrics block
+		offset = buildMetrics(2).encode(data, offset);
+
+		// when
+		RtcpExtendedReport decoded = new RtcpExtendedReport();
+		int decodedLength = decoded.decode(data, 0);
+
+		// then
+		assertEquals(offset, decodedLength);
+		assertEquals(1, decoded.getVoipMetrics().size());
+		assertEquals(2, decoded.getVoipMetrics().get(0).getSsrc());
+		assertEquals(88, decoded.getVoipMetrics().get(0).getRFactor());
+	}
+
+	@Test
+	public void testCompoundPacket() {
+		// given
+		RtcpReceiverReport rr = new RtcpReceiverReport(false, 1);
+		RtcpSdes sdes = new RtcpSdes(false);
+		RtcpSdesChunk chunk = new RtcpSdesChunk(1);
+		chunk.addRtcpSdesItem(new RtcpSdesItem(RtcpSdesItem.RTCP_SDES_CNAME, "cname"));
+		sdes.addRtcpSdesChunk(chunk);
+		RtcpExtendedReport xr = new RtcpExtendedReport(false, 1);
+		xr.addVoipMetrics(buildMetrics(2));
+		RtcpPacket packet = new RtcpPacket(rr, sdes);
+		packet.setExtendedReport(xr);
+		byte[] data = new byte[256];
+
+		// when
+		int length = packet.encode(data, 0);
+		RtcpPacket decoded = new RtcpPacket();
+		decoded.decode(Arrays.copyOf(data, length), 0);
+
+		// then
+		assertTrue(decoded.hasExtendedReport());
+		assertEquals(length, decoded.getSize());
+		assertEquals(41, decoded.getExtendedReport().getVoipMetrics(2).getMosCq());
+		assertEquals("cname", decoded.getSdes().getCname());
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtcp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.restcomm.media.core.rtp.MockWallClock;
+import org.restcomm.media.core.rtp.RtpClock;
+import org.restcomm.media.core.rtp.RtpPacket;
+import org.restcomm.media.core.rtp.statistics.RtpStatistics;
+
+public class RtcpReportWriterTest {
+
+    private static final String CNAME = "127.0.0.1";
+    private static final long SSRC = 123456789L;
+
+    private final MockWallClock wallClock;
+    private final RtpClock rtpClock;
+
+    public RtcpReportWriterTest() {
+        wallClock = new MockWallClock();
+        rtpClock = new RtpClock(wallClock);
+        rtpClock.setClockRate(8000);
+    }
+
+    private static byte[] encode(RtcpPacket packet) {
+        final byte[] data = new byte[RtpPacket.RTP_PACKET_MAX_SIZE];
+        final int length = packet.encode(data, 0);
+        return Arrays.copyOf(data, length);
+    }
+
+    private static byte[] write(RtpStatistics statistics, boolean bye) {
+        final byte[] data = new byte[RtcpReportWriter.MAX_LENGTH];
+        final int length = RtcpReportWriter.write(data, 0, statistics, bye);
+        return Arrays.copyOf(data, length);
+    }
+
+    @Test
+    public void testReceiverReport() {
+        // given
+        final RtpStatistics statistics = new RtpStatistics(rtpClock, SSRC, CNAME);
+        final RtpPacket packet = new RtpPacket(172, false);
+        packet.wrap(false, 8, 1, 160, 111, new byte[160], 0, 160);
+        statistics.onRtpReceive(packet);
+
+        // when
+        final byte[] written = write(statistics, false);
+        final RtcpPacket decoded = new RtcpPacket();
+        decoded.decode(written, 0);
+
+        // then
+        assertArrayEquals(encode(RtcpPacketFactory.buildReport(statistics)), written);
+        assertFalse(decoded.isSender());
+        assertFalse(decoded.hasBye());
+        assertEquals(SSRC, decoded.getReport().getSsrc());
+        assertEquals(1, decoded.getReport().getReportBlocks().length);
+        assertEquals(CNAME, decoded.getSdes().getCname());
+    }
+
+    @Test
+    public void testSenderReportWithBye() {
+        // given
+        final RtpStatistics statistics = new RtpStatistics(rtpClock, SSRC, CNAME);
+        final RtpPacket sent = new RtpPacket(172, false);
+        final RtpPacket received = new RtpPacket(172, false);
+        sent.wrap(false, 8, 1, 160, SSRC, new byte[160], 0, 160);
+        received.wrap(false, 8, 1, 160, 111, new byte[160], 0, 160);
+        statistics.onRtpSent(sent);
+        statistics.onRtpReceive(received);
+        wallClock.tick(20000000L);
+
+        // when
+        final byte[] written = write(statistics, true);
+        final RtcpPacket decoded = new RtcpPacket();
+        decoded.decode(written, 0);
+
+        // then
+        assertArrayEquals(encode(RtcpPacketFactory.buildBye(statistics)), written);
+        assertTrue(decoded.isSender());
+        assertTrue(decoded.hasBye());
+        assertEquals(1, decoded.getSenderReport().getPsent());
+        assertEquals(160, decoded.getSenderReport().getOsent());
+        assertEquals(written.length, decoded.getSize());
+    }
+
+    @Test
+    public void testReportBlocksLimitedToMaxSources() {
+        // given
+        final RtpStatistics statistics = new RtpStatistics(rtpClock, SSRC, CNAME);
+        final RtpPacket packet = new RtpPacket(172, false);
+        for (int i = 0; i < RtcpPacket.MAX_SOURCES + 5; i++) {
+            packet.wrap(false, 8, 1, 160, 1000 + i, new byte[160], 0, 160);
+            statistics.onRtpReceive(packet);
+        }
+
+        // when
+        final byte[] written = write(statistics, false);
+        final RtcpPacket decoded = new RtcpPacket();
+        decoded.decode(written, 0);
+
+        // then
+        assertEquals(RtcpPacket.MAX_SOURCES, decoded.getReport().getCount());
+        assertTrue(written.length <= RtcpReportWriter.MAX_LENGTH);
+    }
+
+    @Test
+    public void testVoipMetricsReport() {
+        // given
+        final RtpStatistics statistics = new RtpStatistics(rtpClock, SSRC, CNAME);
+        statistics.setVoipMetricsReports(true);
+        final RtpPacket packet = new RtpPacket(172, false);
+        for (int i = 1; i <= 50; i++) {
+            packet.wrap(false, 8, i, 160 * i, 111, new byte[160], 0, 160);
+            statistics.onRtpReceive(packet);
+        }
+
+        // when
+        final byte[] data = new byte[RtcpReportWriter.MAX_LENGTH];
+        final int withoutBlock = RtcpReportWriter.write(data, 0, statistics, false);
+        final int length = RtcpReportWriter.write(data, 0, statistics, true, new RtcpVoipMetrics());
+        final RtcpPacket decoded = new RtcpPacket();
+        decoded.decode(Arrays.copyOf(data, length), 0);
+
+        // then
+        assertEquals(withoutBlock + 8 + RtcpVoipMetrics.LENGTH + 8, length);
+        assertTrue(decoded.hasExtendedReport());
+        assertTrue(decoded.hasBye());
+        assertEquals(SSRC, decoded.getExtendedReport().getSsrc());
+        assertEquals(1, decoded.getExtendedReport().getVoipMetrics().size());
+        assertEquals(0, decoded.getExtendedReport().getVoipMetrics(111).getLossRate());
+        assertEquals(length, decoded.getSize());
+    }
+
+}
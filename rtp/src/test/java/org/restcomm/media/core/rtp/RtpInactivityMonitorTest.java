@@ -0,0 +1,202 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restcomm.media.core.scheduler.ServiceScheduler;
+
+public class RtpInactivityMonitorTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private MockWallClock clock;
+    private RtpInactivityMonitor monitor;
+
+    @Before
+    public void before() {
+        // Scheduler is not started, so the sweep is run by the tests
+        this.clock = new MockWallClock();
+        this.monitor = new RtpInactivityMonitor(new ServiceScheduler(), clock, 100, TimeUnit.MILLISECONDS, 8);
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            this.clock.tick(TICK);
+            this.monitor.run();
+        }
+    }
+
+    @Test
+    public void testExpiresWithoutActivity() {
+        // given
+        final CountingListener listener = new CountingListener();
+        final RtpInactivityMonitor.Watch watch = monitor.watch(listener);
+
+        // when
+        watch.arm(1, TimeUnit.SECONDS, true);
+        advance(9);
+
+        // then
+        assertEquals(0, listener.count);
+        assertTrue(watch.isArmed());
+
+        // when
+        advance(1);
+
+        // then
+        assertEquals(1, listener.count);
+        assertEquals(1000, listener.idleTime);
+        assertFalse(watch.isArmed());
+
+        // when - expired watches are not visited again
+        advance(20);
+
+        // then
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void testActivityPostponesExpiry() {
+        // given
+        final CountingListener listener = new CountingListener();
+        final RtpInactivityMonitor.Watch watch = monitor.watch(listener);
+
+        // when - timeout spans more than a full turn of the wheel
+        watch.arm(2, TimeUnit.SECONDS, true);
+        for (int i = 0; i < 50; i++) {
+            advance(1);
+            watch.touch();
+        }
+
+        // then
+        assertEquals(0, listener.count);
+
+        // when
+        advance(19);
+
+        // then
+        assertEquals(0, listener.count);
+
+        // when
+        advance(1);
+
+        // then
+        assertEquals(1, listener.count);
+        assertEquals(2000, listener.idleTime);
+    }
+
+    @Test
+    public void testWaitsForFirstPacket() {
+        // given
+        final CountingListener listener = new CountingListener();
+        final RtpInactivityMonitor.Watch watch = monitor.watch(listener);
+
+        // when
+        watch.arm(1, TimeUnit.SECONDS, false);
+        advance(50);
+
+        // then
+        assertEquals(0, listener.count);
+
+        // when
+        watch.touch();
+        advance(10);
+
+        // then
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void testDisarmAndRearm() {
+        // given
+        final CountingListener listener = new CountingListener();
+        final RtpInactivityMonitor.Watch watch = monitor.watch(listener);
+
+        // when
+        watch.arm(1, TimeUnit.SECONDS, true);
+        advance(5);
+        watch.disarm();
+        advance(20);
+
+        // then
+        assertEquals(0, listener.count);
+
+        // when - armed again with a shorter timeout
+        watch.arm(3, TimeUnit.SECONDS, true);
+        advance(5);
+        watch.arm(500, TimeUnit.MILLISECONDS, true);
+        advance(5);
+
+        // then
+        assertEquals(1, listener.count);
+        assertEquals(500, listener.idleTime);
+
+        // when
+        advance(40);
+
+        // then - stale entries of the watch do not expire it again
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void testMultipleWatches() {
+        // given
+        final CountingListener idle = new CountingListener();
+        final CountingListener active = new CountingListener();
+        final RtpInactivityMonitor.Watch idleWatch = monitor.watch(idle);
+        final RtpInactivityMonitor.Watch activeWatch = monitor.watch(active);
+
+        // when
+        idleWatch.arm(1, TimeUnit.SECONDS, true);
+        activeWatch.arm(1, TimeUnit.SECONDS, true);
+        for (int i = 0; i < 30; i++) {
+            advance(1);
+            activeWatch.touch();
+        }
+
+        // then
+        assertEquals(1, idle.count);
+        assertEquals(0, active.count);
+        assertTrue(activeWatch.isArmed());
+    }
+
+    private static class CountingListener implements RtpInactivityListener {
+
+        private int count = 0;
+        private long idleTime = 0;
+
+        @Override
+        public void onRtpInactivity(long idleTime) {
+            this.count++;
+            this.idleTime = idleTime;
+        }
+
+    }
+
+}
@@ -23,6 +23,7 @@
 package org.restcomm.media.core.rtp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.nio.ByteBuffer;
 
@@ -123,6 +124,33 @@ public class RtpPacketTest {
         assertEquals(true, rtpPacket.getMarker());
     }
 
+    @Test
+    public void testWrapView() {
+        // given
+        byte[] received = new byte[8192];
+        System.arraycopy(p, 0, received, 4, p.length);
+        RtpPacket view = new RtpPacket(0, false);
+
+        // when
+        view.wrapView(received, 4, p.length);
+
+        // then
+        assertEquals(27244, view.getSeqNumber());
+        assertEquals(3249239181l, view.getTimestamp());
+        assertEquals(3001189225l, view.getSyncSource());
+        assertEquals(p.length - 12, view.getPayloadLength());
+
+        // when - view is reused for next packet received in same buffer
+        ByteBuffer buffer = view.getBuffer();
+        received[7] = 0x6d;
+        view.wrapView(received, 4, 20);
+
+        // then
+        assertSame(buffer, view.getBuffer());
+        assertEquals(27245, view.getSeqNumber());
+        assertEquals(8, view.getPayloadLength());
+    }
+
     @Test
     public void testWrapTime() {
         long s = System.nanoTime();
@@ -0,0 +1,121 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DtlsCredentialsCacheTest {
+
+    private static final String SHA256_FINGERPRINT = "sha-256 A2:42:5C:58:C1:11:10:DE:AF:65:82:12:A6:D5:FA:F0:16:5C:9E:BD:A7:67:81:B4:16:6D:CB:FA:D9:5D:DF:D7";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private void copyResource(String resource, File target) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/dtls/" + resource)) {
+            Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Test
+    public void testCredentialsAreParsedOnce() throws Exception {
+        // given
+        final File certificate = folder.newFile("server.pem");
+        final File key = folder.newFile("server-key.pem");
+        copyResource("x509-server.pem", certificate);
+        copyResource("x509-server-key.pem", key);
+        final DtlsCredentialsCache cache = new DtlsCredentialsCache(new String[] { certificate.getPath() }, key.getPath());
+
+        // when
+        final DtlsCredentials first = cache.get();
+        final DtlsCredentials second = cache.get();
+
+        // then
+        assertNotNull(first.getPrivateKey());
+        assertEquals(1, first.getCertificateChain().getLength());
+        assertSame(first, second);
+        assertEquals(SHA256_FINGERPRINT, first.getFingerprint("sha-256"));
+        assertEquals(SHA256_FINGERPRINT, first.getFingerprint("SHA-256"));
+        assertTrue(first.getFingerprint("sha-1").startsWith("sha-1 "));
+        assertTrue(first.getFingerprint("sha-512").startsWith("sha-512 "));
+    }
+
+    @Test
+    public void testHotReload() throws Exception {
+        // given
+        final File certificate = folder.newFile("server.pem");
+        final File key = folder.newFile("server-key.pem");
+        copyResource("x509-server.pem", certificate);
+        copyResource("x509-server-key.pem", key);
+        final DtlsCredentialsCache cache = new DtlsCredentialsCache(new String[] { certificate.getPath() }, key.getPath(), 0);
+        final DtlsCredentials original = cache.get();
+
+        // when
+        copyResource("x509-server-renewed.pem", certificate);
+        copyResource("x509-server-renewed-key.pem", key);
+        certificate.setLastModified(certificate.lastModified() + 2000);
+        key.setLastModified(key.lastModified() + 2000);
+        final DtlsCredentials renewed = cache.get();
+
+        // then
+        assertNotEquals(original.getFingerprint("sha-256"), renewed.getFingerprint("sha-256"));
+        assertSame(renewed, cache.get());
+    }
+
+    @Test
+    public void testFailedReloadKeepsCredentials() throws Exception {
+        // given
+        final File certificate = folder.newFile("server.pem");
+        final File key = folder.newFile("server-key.pem");
+        copyResource("x509-server.pem", certificate);
+        copyResource("x509-server-key.pem", key);
+        final DtlsCredentialsCache cache = new DtlsCredentialsCache(new String[] { certificate.getPath() }, key.getPath(), 0);
+        final DtlsCredentials original = cache.get();
+
+        // when
+        assertTrue(certificate.delete());
+        final DtlsCredentials current = cache.reload();
+
+        // then
+        assertSame(original, current);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingCredentials() throws Exception {
+        new DtlsCredentialsCache(new String[] { "missing.pem" }, "missing-key.pem").get();
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DtlsHandshakeServiceTest {
+
+    private DtlsHandshakeService service;
+
+    @After
+    public void after() {
+        if (this.service != null) {
+            this.service.shutdown();
+            this.service = null;
+        }
+    }
+
+    private static Callable<Boolean> handshake(final CountDownLatch started, final CountDownLatch release,
+            final CountDownLatch finished, final boolean result) {
+        return new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                finished.countDown();
+                return result;
+            }
+        };
+    }
+
+    @Test
+    public void testAdmissionLimit() throws Exception {
+        // given
+        this.service = new DtlsHandshakeService(1, 2);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(2);
+
+        // when
+        final boolean first = service.submit(handshake(started, release, finished, true));
+        final boolean second = service.submit(handshake(started, release, finished, true));
+        final boolean third = service.submit(handshake(started, release, finished, true));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertEquals(1, service.getActiveHandshakes());
+        assertEquals(1, service.getQueueDepth());
+        assertEquals(1, service.getRejectedHandshakes());
+
+        // when
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        // then
+        assertEquals(0, service.getActiveHandshakes());
+        assertEquals(0, service.getQueueDepth());
+        assertEquals(2, service.getCompletedHandshakes());
+        assertTrue(service.submit(handshake(started, release, new CountDownLatch(1), true)));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        // given
+        this.service = new DtlsHandshakeService(2, 10);
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(3);
+        final Callable<Boolean> crashing = new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                finished.countDown();
+                throw new IllegalStateException("testing");
+            }
+        };
+
+        // when
+        service.submit(handshake(started, release, finished, true));
+        service.submit(handshake(started, release, finished, false));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        service.submit(crashing);
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        // then
+        assertEquals(1, service.getCompletedHandshakes());
+        assertEquals(2, service.getFailedHandshakes());
+        assertEquals(0, service.getRejectedHandshakes());
+        assertTrue(service.getMaxLatency() >= 20);
+        assertTrue(service.getAverageLatency() <= service.getMaxLatency());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdmissionLimitLowerThanPoolSize() {
+        new DtlsHandshakeService(4, 2);
+    }
+
+}
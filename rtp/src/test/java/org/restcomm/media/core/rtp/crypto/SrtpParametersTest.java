@@ -51,4 +51,21 @@ public class SrtpParametersTest {
 		Assert.assertEquals(SRTPParameters.SRTP_NULL_HMAC_SHA1_32.getCipherSaltLength(), 0);
 	}
 
+	@Test
+	public void testAeadProfiles() {
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_128_GCM.getProfile(), 0x0007);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_128_GCM.getCipherKeyLength(), 128/8);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_128_GCM.getCipherSaltLength(), 96/8);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtpPolicy().getEncType(), SRTPPolicy.AESGCM_ENCRYPTION);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtpPolicy().getAuthType(), SRTPPolicy.NULL_AUTHENTICATION);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtcpPolicy().getAuthTagLength(), 16);
+
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_256_GCM.getProfile(), 0x0008);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_256_GCM.getCipherKeyLength(), 256/8);
+		Assert.assertEquals(SRTPParameters.SRTP_AEAD_AES_256_GCM.getCipherSaltLength(), 96/8);
+
+		Assert.assertSame(SRTPParameters.SRTP_AEAD_AES_128_GCM, SRTPParameters.getSrtpParametersForProfile(0x0007));
+		Assert.assertSame(SRTPParameters.SRTP_AEAD_AES_256_GCM, SRTPParameters.getSrtpParametersForProfile(0x0008));
+	}
+
 }
@@ -0,0 +1,96 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import org.restcomm.media.core.rtp.RtpPacket;
+
+/**
+ * Measures the per-packet cost of protecting and unprotecting RTP packets with the {@link SRTPTransformEngine}:
+ * <ul>
+ * <li><b>bc-cm</b> - AES_CM_128_HMAC_SHA1_80 on the BouncyCastle engines.</li>
+ * <li><b>jce-cm</b> - AES_CM_128_HMAC_SHA1_80 on the JCE ciphers.</li>
+ * <li><b>jce-gcm</b> - AEAD_AES_128_GCM, which always runs on the JCE ciphers.</li>
+ * </ul>
+ * <p>
+ * Not part of the regular test suite. Run with: <code>java SrtpTransformBenchmark [packets] [payload]</code>
+ * </p>
+ */
+public class SrtpTransformBenchmark {
+
+    private static final byte[] MASTER_KEY = new byte[16];
+    private static final byte[] MASTER_SALT = new byte[14];
+
+    public static void main(String[] args) {
+        final int packets = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final int payload = args.length > 1 ? Integer.parseInt(args[1]) : 160;
+
+        for (int i = 0; i < MASTER_KEY.length; i++) {
+            MASTER_KEY[i] = (byte) i;
+        }
+        for (int i = 0; i < MASTER_SALT.length; i++) {
+            MASTER_SALT[i] = (byte) (0xa0 + i);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + round);
+            run("bc-cm", SRTPParameters.SRTP_AES128_CM_HMAC_SHA1_80, false, packets, payload);
+            run("jce-cm", SRTPParameters.SRTP_AES128_CM_HMAC_SHA1_80, true, packets, payload);
+            run("jce-gcm", SRTPParameters.SRTP_AEAD_AES_128_GCM, true, packets, payload);
+        }
+    }
+
+    private static void run(String name, SRTPParameters parameters, boolean jce, int packets, int payload) {
+        final PacketTransformer encoder = newEngine(parameters, jce).getRTPTransformer();
+        final PacketTransformer decoder = newEngine(parameters, jce).getRTPTransformer();
+        final byte[] packet = new byte[RtpPacket.FIXED_HEADER_SIZE + payload];
+        packet[0] = (byte) 0x80;
+
+        long encodeTime = 0;
+        long decodeTime = 0;
+        for (int i = 0; i < packets; i++) {
+            packet[2] = (byte) (i >> 8);
+            packet[3] = (byte) i;
+
+            long start = System.nanoTime();
+            final byte[] encoded = encoder.transform(packet);
+            encodeTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final byte[] decoded = decoder.reverseTransform(encoded);
+            decodeTime += System.nanoTime() - start;
+
+            if (decoded == null) {
+                throw new IllegalStateException(name + " could not decode packet " + i);
+            }
+        }
+
+        System.out.println(String.format("  %-8s encrypt %8.1f ns/packet  decrypt %8.1f ns/packet", name,
+                (double) encodeTime / packets, (double) decodeTime / packets));
+    }
+
+    private static SRTPTransformEngine newEngine(SRTPParameters parameters, boolean jce) {
+        final byte[] salt = new byte[parameters.getCipherSaltLength()];
+        System.arraycopy(MASTER_SALT, 0, salt, 0, salt.length);
+        return new SRTPTransformEngine(MASTER_KEY, salt, parameters.getSrtpPolicy(), parameters.getSrtcpPolicy(), jce);
+    }
+
+}
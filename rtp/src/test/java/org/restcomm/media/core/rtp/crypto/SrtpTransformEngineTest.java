@@ -0,0 +1,320 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+public class SrtpTransformEngineTest {
+
+    // RFC3711, appendix B.3
+    private static final byte[] MASTER_KEY = { (byte) 0xE1, (byte) 0xF9, 0x7A, 0x0D, 0x3E, 0x01, (byte) 0x8B, (byte) 0xE0,
+            (byte) 0xD6, 0x4F, (byte) 0xA3, 0x2C, 0x06, (byte) 0xDE, 0x41, 0x39 };
+    private static final byte[] MASTER_SALT = { 0x0E, (byte) 0xC6, 0x75, (byte) 0xAD, 0x49, (byte) 0x8A, (byte) 0xFE,
+            (byte) 0xEB, (byte) 0xB6, (byte) 0x96, 0x0B, 0x3A, (byte) 0xAB, (byte) 0xE6 };
+
+    // RFC7714, section 16.1
+    private static final byte[] GCM_SESSION_KEY = hex("000102030405060708090a0b0c0d0e0f");
+    private static final byte[] GCM_SESSION_SALT = hex("517569642070726f2071756f");
+    private static final byte[] GCM_RTP_HEADER = hex("8040f17b8041f8d35501a0b2");
+    private static final byte[] GCM_RTP_PAYLOAD = hex("47616c6c696120657374206f6d6e697320646976697361"
+            + "20696e207061727465732074726573");
+    private static final byte[] GCM_SRTP_PAYLOAD = hex("f24de3a3fb34de6cacba861c9d7e4bcabe633bd50d294e6f42a5f47a51c7d19b36de"
+            + "3adf8833899d7f27beb16a9152cf765ee4390cce");
+
+    private static byte[] hex(String value) {
+        final byte[] data = new byte[value.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) Integer.parseInt(value.substring(2 * i, 2 * i + 2), 16);
+        }
+        return data;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        final byte[] data = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, data, first.length, second.length);
+        return data;
+    }
+
+    private static byte[] buildRtpPacket(int sequence, int payloadLength) {
+        final byte[] packet = new byte[12 + payloadLength];
+        packet[0] = (byte) 0x80;
+        packet[2] = (byte) (sequence >> 8);
+        packet[3] = (byte) sequence;
+        packet[8] = (byte) 0xCA;
+        packet[9] = (byte) 0xFE;
+        packet[10] = (byte) 0xBA;
+        packet[11] = (byte) 0xBE;
+        for (int i = 12; i < packet.length; i++) {
+            packet[i] = (byte) i;
+        }
+        return packet;
+    }
+
+    private static byte[] buildRtcpPacket(int payloadLength) {
+        final byte[] packet = new byte[8 + payloadLength];
+        packet[0] = (byte) 0x80;
+        packet[1] = (byte) 200;
+        packet[4] = (byte) 0xCA;
+        packet[5] = (byte) 0xFE;
+        packet[6] = (byte) 0xBA;
+        packet[7] = (byte) 0xBE;
+        for (int i = 8; i < packet.length; i++) {
+            packet[i] = (byte) i;
+        }
+        return packet;
+    }
+
+    private static ByteBuffer toBuffer(byte[] packet, int capacity) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+        buffer.put(packet);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        buffer.rewind();
+        final byte[] data = new byte[buffer.limit()];
+        buffer.get(data);
+        buffer.rewind();
+        return data;
+    }
+
+    private static SRTPTransformEngine newEngine(SRTPParameters parameters, boolean jce) {
+        final byte[] salt = Arrays.copyOf(MASTER_SALT, parameters.getCipherSaltLength());
+        return new SRTPTransformEngine(MASTER_KEY, salt, parameters.getSrtpPolicy(), parameters.getSrtcpPolicy(), jce);
+    }
+
+    @Test
+    public void testJceMatchesBouncyCastle() {
+        // given
+        final SRTPParameters parameters = SRTPParameters.SRTP_AES128_CM_HMAC_SHA1_80;
+        final PacketTransformer bcEncoder = newEngine(parameters, false).getRTPTransformer();
+        final PacketTransformer jceEncoder = newEngine(parameters, true).getRTPTransformer();
+        final PacketTransformer bcDecoder = newEngine(parameters, false).getRTPTransformer();
+        final PacketTransformer jceDecoder = newEngine(parameters, true).getRTPTransformer();
+
+        for (int sequence = 1; sequence <= 10; sequence++) {
+            final byte[] packet = buildRtpPacket(sequence, 160);
+
+            // when
+            final byte[] bcEncoded = bcEncoder.transform(packet.clone());
+            final byte[] jceEncoded = jceEncoder.transform(packet.clone());
+
+            // then
+            assertArrayEquals(bcEncoded, jceEncoded);
+            assertArrayEquals(packet, bcDecoder.reverseTransform(jceEncoded.clone()));
+            assertArrayEquals(packet, jceDecoder.reverseTransform(bcEncoded.clone()));
+        }
+    }
+
+    @Test
+    public void testAeadGcmRoundTrip() {
+        for (SRTPParameters parameters : new SRTPParameters[] { SRTPParameters.SRTP_AEAD_AES_128_GCM,
+                SRTPParameters.SRTP_AEAD_AES_256_GCM }) {
+            // given
+            final PacketTransformer encoder = newEngine(parameters, false).getRTPTransformer();
+            final PacketTransformer decoder = newEngine(parameters, false).getRTPTransformer();
+            final byte[] packet = buildRtpPacket(1, 160);
+
+            // when
+            final byte[] encoded = encoder.transform(packet.clone());
+            final byte[] decoded = decoder.reverseTransform(encoded.clone());
+
+            // then
+            assertEquals(packet.length + SRTPCipherJCE.GCM_TAG_LENGTH, encoded.length);
+            assertArrayEquals(Arrays.copyOf(packet, 12), Arrays.copyOf(encoded, 12));
+            assertNotNull(decoded);
+            assertArrayEquals(packet, decoded);
+        }
+    }
+
+    @Test
+    public void testAeadGcmRejectsTamperedAndReplayedPackets() {
+        // given
+        final SRTPParameters parameters = SRTPParameters.SRTP_AEAD_AES_128_GCM;
+        final PacketTransformer encoder = newEngine(parameters, false).getRTPTransformer();
+        final PacketTransformer decoder = newEngine(parameters, false).getRTPTransformer();
+        final byte[] encoded = encoder.transform(buildRtpPacket(1, 160));
+
+        // when
+        final byte[] tampered = encoded.clone();
+        tampered[20] ^= 0x01;
+
+        // then
+        assertNull(decoder.reverseTransform(tampered));
+        assertNotNull(decoder.reverseTransform(encoded.clone()));
+        assertNull(decoder.reverseTransform(encoded.clone()));
+    }
+
+    @Test
+    public void testInPlaceTransform() {
+        for (SRTPParameters parameters : new SRTPParameters[] { SRTPParameters.SRTP_AES128_CM_HMAC_SHA1_80,
+                SRTPParameters.SRTP_AEAD_AES_128_GCM }) {
+            // given
+            final PacketTransformer arrayEncoder = newEngine(parameters, false).getRTPTransformer();
+            final PacketTransformer bufferEncoder = newEngine(parameters, false).getRTPTransformer();
+            final PacketTransformer bufferDecoder = newEngine(parameters, false).getRTPTransformer();
+
+            for (int sequence = 1; sequence <= 5; sequence++) {
+                final byte[] packet = buildRtpPacket(sequence, 160);
+                final ByteBuffer buffer = toBuffer(packet, 1500);
+
+                // when
+                final byte[] encoded = arrayEncoder.transform(packet.clone());
+                final boolean transformed = bufferEncoder.transform(buffer);
+
+                // then
+                assertTrue(transformed);
+                assertEquals(0, buffer.position());
+                assertArrayEquals(encoded, toArray(buffer));
+
+                // when
+                final boolean reversed = bufferDecoder.reverseTransform(buffer);
+
+                // then
+                assertTrue(reversed);
+                assertArrayEquals(packet, toArray(buffer));
+            }
+        }
+    }
+
+    @Test
+    public void testInPlaceTransformWithoutTailRoom() {
+        // given
+        final PacketTransformer encoder = newEngine(SRTPParameters.SRTP_AES128_CM_HMAC_SHA1_80, false).getRTPTransformer();
+        final byte[] packet = buildRtpPacket(1, 160);
+        final ByteBuffer buffer = toBuffer(packet, packet.length + 4);
+
+        // when
+        final boolean transformed = encoder.transform(buffer);
+
+        // then
+        assertFalse(transformed);
+        assertArrayEquals(packet, toArray(buffer));
+    }
+
+    @Test
+    public void testInPlaceRtcpTransform() {
+        for (SRTPParameters parameters : new SRTPParameters[] { SRTPParameters.SRTP_AES128_CM_HMAC_SHA1_80,
+                SRTPParameters.SRTP_AEAD_AES_128_GCM }) {
+            // given
+            final PacketTransformer arrayDecoder = newEngine(parameters, false).getRTCPTransformer();
+            final PacketTransformer bufferEncoder = newEngine(parameters, false).getRTCPTransformer();
+            final byte[] packet = buildRtcpPacket(40);
+            final ByteBuffer buffer = toBuffer(packet, 1500);
+
+            // when
+            final boolean transformed = bufferEncoder.transform(buffer);
+            final byte[] decoded = arrayDecoder.reverseTransform(toArray(buffer));
+
+            // then
+            assertTrue(transformed);
+            assertEquals(packet.length + 4 + parameters.getSrtcpPolicy().getAuthTagLength(), buffer.limit());
+            assertArrayEquals(packet, decoded);
+        }
+    }
+
+    @Test
+    public void testAeadAes128GcmEncryptionVector() {
+        // given - RFC7714, section 16.1.1
+        final SRTPCryptoContext context = new SRTPCryptoContext(0x5501a0b2L, 0, 0, new byte[16], new byte[12],
+                SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtpPolicy());
+        context.setSessionKeys(GCM_SESSION_KEY, GCM_SESSION_SALT);
+        final RawPacket packet = new RawPacket(toBuffer(concat(GCM_RTP_HEADER, GCM_RTP_PAYLOAD), 1500));
+
+        // when
+        final boolean transformed = context.transformPacket(packet);
+
+        // then
+        assertTrue(transformed);
+        assertArrayEquals(concat(GCM_RTP_HEADER, GCM_SRTP_PAYLOAD), toArray(packet.getBuffer()));
+    }
+
+    @Test
+    public void testAeadAes128GcmDecryptionVector() {
+        // given - RFC7714, section 16.1.2
+        final SRTPCryptoContext context = new SRTPCryptoContext(0x5501a0b2L, 0, 0, new byte[16], new byte[12],
+                SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtpPolicy());
+        context.setSessionKeys(GCM_SESSION_KEY, GCM_SESSION_SALT);
+        final RawPacket packet = new RawPacket(toBuffer(concat(GCM_RTP_HEADER, GCM_SRTP_PAYLOAD), 1500));
+
+        // when
+        final boolean reversed = context.reverseTransformPacket(packet);
+
+        // then
+        assertTrue(reversed);
+        assertArrayEquals(concat(GCM_RTP_HEADER, GCM_RTP_PAYLOAD), toArray(packet.getBuffer()));
+    }
+
+    @Test
+    public void testAeadGcmKeyDerivationPadsMasterSalt() throws Exception {
+        // given
+        final byte[] masterSalt = Arrays.copyOf(MASTER_SALT, 12);
+        final SRTPCryptoContext context = new SRTPCryptoContext(0x5501a0b2L, 0, 0, MASTER_KEY.clone(), masterSalt,
+                SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtpPolicy());
+        final RawPacket packet = new RawPacket(toBuffer(concat(GCM_RTP_HEADER, GCM_RTP_PAYLOAD), 1500));
+
+        // when
+        context.deriveSrtpKeys(0);
+        context.transformPacket(packet);
+
+        // then - session keys come from the RFC3711 key derivation over the salt padded with zeros to 112 bits
+        final byte[] paddedSalt = Arrays.copyOf(masterSalt, 14);
+        final byte[] sessionKey = Arrays.copyOf(deriveSessionKey(paddedSalt, 0x00), 16);
+        final byte[] sessionSalt = Arrays.copyOf(deriveSessionKey(paddedSalt, 0x02), 12);
+        final SRTPCryptoContext expected = new SRTPCryptoContext(0x5501a0b2L, 0, 0, new byte[16], new byte[12],
+                SRTPParameters.SRTP_AEAD_AES_128_GCM.getSrtpPolicy());
+        expected.setSessionKeys(sessionKey, sessionSalt);
+        final RawPacket expectedPacket = new RawPacket(toBuffer(concat(GCM_RTP_HEADER, GCM_RTP_PAYLOAD), 1500));
+        expected.transformPacket(expectedPacket);
+        assertArrayEquals(toArray(expectedPacket.getBuffer()), toArray(packet.getBuffer()));
+    }
+
+    /**
+     * Key derivation of RFC3711, section 4.3.1, with a key derivation rate of zero.
+     */
+    private static byte[] deriveSessionKey(byte[] masterSalt, int label) throws Exception {
+        final byte[] counter = new byte[32];
+        for (int block = 0; block < 2; block++) {
+            System.arraycopy(masterSalt, 0, counter, block * 16, 14);
+            counter[block * 16 + 7] ^= (byte) label;
+            counter[block * 16 + 15] = (byte) block;
+        }
+        final Cipher aes = Cipher.getInstance("AES/ECB/NoPadding");
+        aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(MASTER_KEY, "AES"));
+        return aes.doFinal(counter);
+    }
+
+}
@@ -23,6 +23,7 @@
 package org.restcomm.media.core.rtp.jitter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
@@ -34,6 +35,7 @@ import org.restcomm.media.core.rtp.RtpClock;
 import org.restcomm.media.core.rtp.RtpPacket;
 import org.restcomm.media.core.rtp.jitter.FixedJitterBuffer;
 import org.restcomm.media.core.sdp.format.AVProfile;
+import org.restcomm.media.core.sdp.format.RTPFormat;
 import org.restcomm.media.core.spi.memory.Frame;
 
 /**
@@ -252,6 +254,59 @@ public class FixedJitterBufferTest {
 
     }
 
+    @Test
+    public void testStatistics() {
+        RtpPacket[] stream = createStream(7);
+        RTPFormat format = AVProfile.audio.find(8);
+
+        // write packets out of order, with one duplicate and one missing packet
+        jitterBuffer.write(stream[0], format);
+        jitterBuffer.write(stream[1], format);
+        jitterBuffer.write(stream[3], format);
+        jitterBuffer.write(stream[2], format);
+        jitterBuffer.write(stream[1], format);
+        jitterBuffer.write(stream[5], format);
+
+        JitterBufferStatistics statistics = jitterBuffer.getStatistics();
+        assertEquals(1, statistics.getReordered());
+        assertEquals(1, statistics.getDuplicates());
+        assertEquals(0, statistics.getDropped());
+        assertEquals(jitter, statistics.getTargetPlayoutDelay());
+
+        // consume all frames
+        assertEquals(1, jitterBuffer.read(wallClock.getTime()).getSequenceNumber());
+        assertEquals(2, jitterBuffer.read(wallClock.getTime()).getSequenceNumber());
+        assertEquals(3, jitterBuffer.read(wallClock.getTime()).getSequenceNumber());
+        assertEquals(4, jitterBuffer.read(wallClock.getTime()).getSequenceNumber());
+        assertEquals(6, jitterBuffer.read(wallClock.getTime()).getSequenceNumber());
+
+        assertEquals(1, statistics.getConcealedFrames());
+        assertEquals(0, statistics.getUnderruns());
+        assertEquals(0, statistics.getPlayoutDelay());
+
+        // consumer finds nothing to play, once per empty period
+        assertNull(jitterBuffer.read(wallClock.getTime()));
+        assertNull(jitterBuffer.read(wallClock.getTime()));
+        assertEquals(1, statistics.getUnderruns());
+
+        // missing packet arrives after its playout time, but nothing is queued so it is kept
+        jitterBuffer.write(stream[4], format);
+        assertEquals(0, statistics.getLateDrops());
+        assertEquals(5, jitterBuffer.read(wallClock.getTime()).getSequenceNumber());
+
+        // late packet arrives while newer media is queued, so it is discarded
+        jitterBuffer.write(stream[6], format);
+        jitterBuffer.write(stream[3], format);
+        assertEquals(1, statistics.getLateDrops());
+        assertEquals(0, statistics.getOverflowDrops());
+
+        // restart clears statistics
+        jitterBuffer.restart();
+        assertEquals(0, statistics.getLateDrops());
+        assertEquals(0, statistics.getReordered());
+        assertEquals(0, statistics.getDuplicates());
+    }
+
     private RtpPacket[] createStream(int size) {
         RtpPacket[] stream = new RtpPacket[size];
 
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -111,6 +112,35 @@ public class RtpDemultiplexerTest {
         assertEquals((long) 0x3E6E7CB5, rtpPacket.getSyncSource());
     }
 
+    @Test
+    public void testRtpPacketIsPooled() throws Exception {
+        // given
+        final URL pcapUrl = RtpDemultiplexer.class.getResource("rtp-packet.pcap");
+        this.pcapFile = new PcapFile(pcapUrl);
+        final RtpDemultiplexer demultiplexer = new RtpDemultiplexer();
+        final EmbeddedChannel channel = new EmbeddedChannel(demultiplexer);
+
+        // when
+        pcapFile.open();
+        final Packet pcapPacket = pcapFile.read();
+        byte[] data = (byte[]) pcapPacket.get(GenericPcapReader.PAYLOAD);
+
+        final ByteBuf buffer1 = Unpooled.wrappedBuffer(data);
+        channel.writeInbound(buffer1);
+        final Object packet1 = channel.readInbound();
+
+        final ByteBuf buffer2 = Unpooled.wrappedBuffer(data);
+        channel.writeInbound(buffer2);
+        final Object packet2 = channel.readInbound();
+
+        // then
+        assertSame(packet1, packet2);
+        assertEquals(0, buffer1.refCnt());
+        assertEquals(0, buffer2.refCnt());
+        assertEquals(data.length, ((RtpPacket) packet2).getLength());
+        assertEquals(1023, ((RtpPacket) packet2).getSeqNumber());
+    }
+
     @Test
     public void testRtcpPacketRecognition() throws Exception {
         // given
@@ -0,0 +1,190 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag. 
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+        
+
+package org.restcomm.media.core.rtp.netty;
+
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.restcomm.media.core.rtp.BufferListener;
+import org.restcomm.media.core.rtp.RTPInput;
+import org.restcomm.media.core.rtp.RtpClock;
+import org.restcomm.media.core.rtp.RtpPacket;
+import org.restcomm.media.core.rtp.jitter.JitterBuffer;
+import org.restcomm.media.core.rtp.jitter.JitterBufferStatistics;
+import org.restcomm.media.core.rtp.rfc2833.DtmfInput;
+import org.restcomm.media.core.rtp.statistics.RtpStatistics;
+import org.restcomm.media.core.scheduler.WallClock;
+import org.restcomm.media.core.sdp.format.AVProfile;
+import org.restcomm.media.core.sdp.format.RTPFormat;
+import org.restcomm.media.core.spi.ConnectionMode;
+import org.restcomm.media.core.spi.memory.Frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Compares the cost of the inbound RTP path in an {@link EmbeddedChannel}:
+ * <ul>
+ * <li><b>fsm</b> - packet allocated per datagram and dispatched through the {@link RtpInboundHandlerFsm}.</li>
+ * <li><b>direct</b> - pooled packet from {@link RtpDemultiplexer} consumed directly by the {@link RtpInboundHandler}.</li>
+ * </ul>
+ * <p>
+ * Not part of the regular test suite. Run with: <code>java RtpInboundPathBenchmark [packets]</code>
+ * </p>
+ */
+public class RtpInboundPathBenchmark {
+
+    private static final int PAYLOAD_SIZE = 160;
+
+    public static void main(String[] args) throws Exception {
+        final int packets = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("Round " + round);
+            run("fsm", newFsmChannel(newContext()), packets);
+            run("direct", newDirectChannel(newContext()), packets);
+        }
+    }
+
+    private static void run(String name, EmbeddedChannel channel, int packets) {
+        final ByteBuf datagram = Unpooled.wrappedBuffer(buildRtpPacket());
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        final long allocatedBefore = allocatedBytes(threads, thread);
+        final long start = System.nanoTime();
+        for (int i = 0; i < packets; i++) {
+            // Demultiplexer releases the datagram once read
+            datagram.retain();
+            datagram.setShort(2, i);
+            channel.writeInbound(datagram);
+        }
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = allocatedBytes(threads, thread) - allocatedBefore;
+
+        channel.finishAndReleaseAll();
+        System.out.println(String.format("  %-6s %8.1f ns/packet %8.1f bytes/packet", name, (double) elapsed / packets,
+                allocated < 0 ? Double.NaN : (double) allocated / packets));
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads, long thread) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread);
+        }
+        return -1L;
+    }
+
+    private static byte[] buildRtpPacket() {
+        final RtpPacket packet = new RtpPacket(RtpPacket.FIXED_HEADER_SIZE + PAYLOAD_SIZE, false);
+        packet.wrap(false, 0, 1, 160L, 0x12345678L, new byte[PAYLOAD_SIZE], 0, PAYLOAD_SIZE);
+        return packet.getRawData();
+    }
+
+    private static RtpInboundHandlerGlobalContext newContext() {
+        final WallClock wallClock = new WallClock();
+        final RtpClock rtpClock = new RtpClock(wallClock);
+        final RtpStatistics statistics = new RtpStatistics(rtpClock, 0x12345678L);
+        final RTPInput rtpInput = mock(RTPInput.class);
+        final DtmfInput dtmfInput = mock(DtmfInput.class);
+        final RtpInboundHandlerGlobalContext context = new RtpInboundHandlerGlobalContext(wallClock, statistics, new NullJitterBuffer(), rtpInput, dtmfInput);
+        context.setReceivable(true);
+        context.setFormats(AVProfile.audio);
+        return context;
+    }
+
+    private static EmbeddedChannel newDirectChannel(RtpInboundHandlerGlobalContext context) {
+        final RtpInboundHandler handler = new RtpInboundHandler(context);
+        handler.activate();
+        handler.updateMode(ConnectionMode.SEND_RECV);
+        return new EmbeddedChannel(new RtpDemultiplexer(), handler);
+    }
+
+    private static EmbeddedChannel newFsmChannel(RtpInboundHandlerGlobalContext context) {
+        final RtpInboundHandlerFsm fsm = RtpInboundHandlerFsmBuilder.INSTANCE.build(context);
+        fsm.start();
+        return new EmbeddedChannel(new FsmInboundHandler(fsm));
+    }
+
+    /**
+     * Reproduces the per-packet FSM dispatch, with a packet allocated for each datagram.
+     */
+    private static final class FsmInboundHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+        private final RtpInboundHandlerFsm fsm;
+
+        FsmInboundHandler(RtpInboundHandlerFsm fsm) {
+            this.fsm = fsm;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) throws Exception {
+            final int length = msg.readableBytes();
+            final RtpPacket packet = new RtpPacket(length, false);
+            msg.getBytes(msg.readerIndex(), packet.getBuffer());
+            packet.getBuffer().flip();
+            this.fsm.fire(RtpInboundHandlerEvent.PACKET_RECEIVED, new RtpInboundHandlerPacketReceivedContext(packet));
+        }
+
+    }
+
+    /**
+     * Jitter buffer that discards every packet, so the benchmark only measures the inbound path.
+     */
+    private static final class NullJitterBuffer implements JitterBuffer {
+
+        private final JitterBufferStatistics statistics = new JitterBufferStatistics(0);
+
+        @Override
+        public void write(RtpPacket packet, RTPFormat format) {
+        }
+
+        @Override
+        public Frame read(long timestamp) {
+            return null;
+        }
+
+        @Override
+        public void setListener(BufferListener listener) {
+        }
+
+        @Override
+        public void setInUse(boolean inUse) {
+        }
+
+        @Override
+        public void restart() {
+        }
+
+        @Override
+        public JitterBufferStatistics getStatistics() {
+            return statistics;
+        }
+
+    }
+
+}
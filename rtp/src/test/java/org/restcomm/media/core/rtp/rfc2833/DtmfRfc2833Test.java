@@ -57,6 +57,7 @@ import org.restcomm.media.core.pcap.PcapPlayer;
 import org.restcomm.media.core.resource.dtmf.DetectorImpl;
 import org.restcomm.media.core.rtp.RtpChannel;
 import org.restcomm.media.core.rtp.RtpClock;
+import org.restcomm.media.core.rtp.RtpInactivityMonitor;
 import org.restcomm.media.core.rtp.crypto.DtlsSrtpServerProvider;
 import org.restcomm.media.core.rtp.statistics.RtpStatistics;
 import org.restcomm.media.core.scheduler.Clock;
@@ -118,6 +119,7 @@ public class DtmfRfc2833Test {
     private RtpClock rtpClock;
     private RtpClock oobClock;
     private RtpStatistics rtpStatistics;
+    private RtpInactivityMonitor inactivityMonitor;
     private RtpChannel rtpChannel;
 
     @Before
@@ -164,7 +166,8 @@ public class DtmfRfc2833Test {
         this.rtpClock = new RtpClock(this.clock);
         this.oobClock = new RtpClock(this.clock);
         this.rtpStatistics = new RtpStatistics(this.rtpClock);
-        this.rtpChannel = new RtpChannel(1, 50, this.rtpStatistics, this.rtpClock, this.oobClock, mediaScheduler, udpManager, mock(DtlsSrtpServerProvider.class));
+        this.inactivityMonitor = new RtpInactivityMonitor(this.ioScheduler, this.clock);
+        this.rtpChannel = new RtpChannel(1, 50, this.rtpStatistics, this.rtpClock, this.oobClock, mediaScheduler, udpManager, mock(DtlsSrtpServerProvider.class), this.inactivityMonitor);
         this.rtpChannel.setInputDsp(this.dspFactory.newProcessor());
         this.mixer.addComponent(this.rtpChannel.getAudioComponent());
         this.oobMixer.addComponent(this.rtpChannel.getOobComponent());
@@ -188,6 +191,10 @@ public class DtmfRfc2833Test {
             this.rtpStatistics.reset();
             this.rtpStatistics = null;
         }
+        if (this.inactivityMonitor != null) {
+            this.inactivityMonitor.stop();
+            this.inactivityMonitor = null;
+        }
         this.rtpClock = null;
 
         // Media Stack
@@ -24,7 +24,12 @@ package org.restcomm.media.core.rtp.secure;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
+import org.restcomm.media.core.rtp.crypto.DtlsHandshakeService;
 import org.restcomm.media.core.rtp.crypto.DtlsSrtpServer;
 import org.restcomm.media.core.rtp.crypto.DtlsSrtpServerProvider;
 import org.restcomm.media.core.rtp.secure.DtlsHandler;
@@ -81,4 +86,48 @@ public class DtlsHandlerTest {
         Assert.assertFalse(canHandleRtp);
     }
 
+    @Test
+    public void testQueuedHandshakeAbandonedOnClose() throws Exception {
+        // given
+        final DtlsHandshakeService handshakeService = new DtlsHandshakeService(1, 2);
+        DtlsSrtpServerProvider mockedDtlsServerProvider = mock(DtlsSrtpServerProvider.class);
+        DtlsSrtpServer mockedDtlsSrtpServer = mock(DtlsSrtpServer.class);
+        when(mockedDtlsServerProvider.provide()).thenReturn(mockedDtlsSrtpServer);
+        when(mockedDtlsServerProvider.getHandshakeService()).thenReturn(handshakeService);
+        DtlsHandler dtlsHandler = new DtlsHandler(mockedDtlsServerProvider);
+
+        final CountDownLatch busy = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        handshakeService.submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                busy.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return true;
+            }
+        });
+        Assert.assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+        try {
+            // when
+            dtlsHandler.handshake();
+            dtlsHandler.close();
+            release.countDown();
+
+            // then
+            final long deadline = System.currentTimeMillis() + 2000;
+            while (handshakeService.getCompletedHandshakes() + handshakeService.getFailedHandshakes() < 2
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, handshakeService.getFailedHandshakes());
+            Assert.assertEquals(0, handshakeService.getActiveHandshakes());
+            Assert.assertFalse(dtlsHandler.isHandshakeFailed());
+            Assert.assertFalse(dtlsHandler.isHandshaking());
+        } finally {
+            handshakeService.shutdown();
+        }
+    }
+
 }
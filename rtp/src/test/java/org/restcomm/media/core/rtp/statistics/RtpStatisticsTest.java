@@ -23,7 +23,9 @@ package org.restcomm.media.core.rtp.statistics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.commons.net.ntp.TimeStamp;
@@ -373,5 +375,67 @@ public class RtpStatisticsTest {
 		avgSize = calculateAvgSize(avgSize, rtcp2.getSize());
 		assertEquals(avgSize, stats.getRtcpAvgSize(), 0);
 	}
+
+	@Test
+	public void testOnRtpReceiveAfterBye() {
+		// given
+		RtpStatistics stats = new RtpStatistics(rtpClock, SSRC, CNAME);
+		stats.setRtcpPacketType(RtcpPacketType.RTCP_REPORT);
+		
+		RtpPacket rtp1 = new RtpPacket(172, false);
+		RtpPacket rtp2 = new RtpPacket(172, false);
+		rtp1.wrap(false, 8, 1, 160 * 1, 123, new byte[160], 0, 160);
+		rtp2.wrap(false, 8, 2, 160 * 2, 123, new byte[160], 0, 160);
+		
+		TimeStamp ntp = new TimeStamp(System.currentTimeMillis());
+		RtcpSenderReport sr = new RtcpSenderReport(false, 123, ntp.getSeconds(), ntp.getFraction(), 160 * 1, 5, 5 * 160);
+		RtcpSdes sdes = new RtcpSdes(false);
+		RtcpSdesChunk sdesChunk = new RtcpSdesChunk(123);
+		sdesChunk.addRtcpSdesItem(new RtcpSdesItem(RtcpSdesItem.RTCP_SDES_CNAME, CNAME));
+		sdes.addRtcpSdesChunk(sdesChunk);
+		RtcpPacket rtcp = new RtcpPacket(sr, sdes, new RtcpBye(false));
+		rtcp.encode(new byte[RtpPacket.RTP_PACKET_MAX_SIZE], 0);
+		
+		// when - sender leaves and comes back
+		stats.onRtpReceive(rtp1);
+		RtpMember previous = stats.getMember(123);
+		wallClock.tick(20000000L);
+		stats.onRtcpReceive(rtcp);
+		wallClock.tick(20000000L);
+		stats.onRtpReceive(rtp2);
+		
+		// then - sender is registered again with a new member
+		RtpMember member = stats.getMember(123);
+		assertNotNull(member);
+		assertNotSame(previous, member);
+		assertTrue(stats.isMember(123));
+		assertTrue(stats.isSender(123));
+		assertEquals(2, stats.getMembers());
+		assertEquals(2, stats.getMembersSnapshot().length);
+	}
+	
+	@Test
+	public void testOnRtpReceiveAfterSendersCleared() {
+		// given
+		RtpStatistics stats = new RtpStatistics(rtpClock, SSRC, CNAME);
+		stats.setRtcpPacketType(RtcpPacketType.RTCP_REPORT);
+		
+		RtpPacket rtp1 = new RtpPacket(172, false);
+		RtpPacket rtp2 = new RtpPacket(172, false);
+		rtp1.wrap(false, 8, 1, 160 * 1, 123, new byte[160], 0, 160);
+		rtp2.wrap(false, 8, 2, 160 * 2, 123, new byte[160], 0, 160);
+		
+		// when - sender table is cleared between two packets of the cached source
+		stats.onRtpReceive(rtp1);
+		RtpMember previous = stats.getMember(123);
+		stats.clearSenders();
+		stats.onRtpReceive(rtp2);
+		
+		// then - source is registered as sender again and keeps its member
+		assertTrue(stats.isSender(123));
+		assertEquals(1, stats.getSenders());
+		assertSame(previous, stats.getMember(123));
+		assertEquals(2, stats.getRtpPacketsReceived());
+	}
 	
 }
@@ -0,0 +1,160 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.rtp.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.restcomm.media.core.rtcp.RtcpVoipMetrics;
+import org.restcomm.media.core.rtp.MockWallClock;
+import org.restcomm.media.core.rtp.RtpClock;
+import org.restcomm.media.core.rtp.RtpPacket;
+
+public class VoipMetricsTest {
+
+	private final RtpClock rtpClock;
+	private int sequence;
+
+	public VoipMetricsTest() {
+		this.rtpClock = new RtpClock(new MockWallClock());
+		this.rtpClock.setClockRate(8000);
+	}
+
+	private void receive(VoipMetrics metrics, int count) {
+		for (int i = 0; i < count; i++) {
+			metrics.onReceived(sequence, sequence * 160L);
+			sequence++;
+		}
+	}
+
+	private void lose(VoipMetrics metrics, int count) {
+		metrics.onLost(count);
+		sequence += count;
+	}
+
+	@Test
+	public void testNoLoss() {
+		// given
+		VoipMetrics metrics = new VoipMetrics(rtpClock);
+
+		// when
+		receive(metrics, 100);
+
+		// then
+		assertEquals(20, metrics.getPacketDuration());
+		assertEquals(0, metrics.getBurstDensity());
+		assertEquals(0, metrics.getGapDensity());
+		assertEquals(0, metrics.getBurstDuration());
+		assertEquals(2000, metrics.getGapDuration());
+		assertEquals(1.0, metrics.getBurstRatio(), 0.0);
+	}
+
+	@Test
+	public void testIsolatedLosses() {
+		// given
+		VoipMetrics metrics = new VoipMetrics(rtpClock);
+
+		// when - losses separated by more than Gmin packets
+		receive(metrics, 20);
+		lose(metrics, 1);
+		receive(metrics, 20);
+		lose(metrics, 1);
+		receive(metrics, 20);
+
+		// then - both losses fall within the gap
+		assertEquals(2, metrics.getLostPackets());
+		assertEquals(0, metrics.getBurstDensity());
+		assertEquals(256 * 2 / 62, metrics.getGapDensity());
+		assertEquals(0, metrics.getBurstDuration());
+		assertEquals(62 * 20, metrics.getGapDuration());
+	}
+
+	@Test
+	public void testBurst() {
+		// given
+		VoipMetrics metrics = new VoipMetrics(rtpClock);
+
+		// when - 5 out of 7 packets lost, then a gap
+		receive(metrics, 20);
+		lose(metrics, 3);
+		receive(metrics, 2);
+		lose(metrics, 2);
+		receive(metrics, 20);
+
+		// then
+		assertEquals(5, metrics.getLostPackets());
+		assertEquals(256 * 5 / 7, metrics.getBurstDensity());
+		assertEquals(0, metrics.getGapDensity());
+		assertEquals(7 * 20, metrics.getBurstDuration());
+		assertEquals(41 * 20, metrics.getGapDuration());
+		assertEquals(1.0 / ((2.0 / 42) + (2.0 / 5)), metrics.getBurstRatio(), 0.0001);
+	}
+
+	@Test
+	public void testEModel() {
+		// given
+		final double noLoss = EModel.equipmentImpairment(EModel.G711_IE, EModel.G711_BPL, 0, 1);
+		final double randomLoss = EModel.equipmentImpairment(EModel.G711_IE, EModel.G711_BPL, 1, 1);
+		final double burstyLoss = EModel.equipmentImpairment(EModel.G711_IE, EModel.G711_BPL, 1, 2);
+
+		// then
+		assertEquals(EModel.DEFAULT_R0, EModel.rFactor(0, noLoss), 0.0);
+		assertEquals(4.41, EModel.mos(EModel.rFactor(0, noLoss)), 0.01);
+		assertEquals(93.2 - (95.0 / 26.1), EModel.rFactor(0, randomLoss), 0.0001);
+		assertTrue(burstyLoss > randomLoss);
+		assertEquals(2.4, EModel.delayImpairment(100), 0.0001);
+		assertEquals(4.8 + 0.11 * 22.7, EModel.delayImpairment(200), 0.0001);
+		assertEquals(1.0, EModel.mos(5), 0.0);
+		assertEquals(4.5, EModel.mos(100), 0.0);
+	}
+
+	@Test
+	public void testMemberReport() {
+		// given
+		RtpMember member = new RtpMember(rtpClock, 123);
+		RtpPacket packet = new RtpPacket(172, false);
+		RtcpVoipMetrics block = new RtcpVoipMetrics();
+
+		// when - 1 packet lost out of 100
+		for (int seq = 1; seq <= 100; seq++) {
+			if (seq != 50) {
+				packet.wrap(false, 8, seq, 160 * seq, 123, new byte[160], 0, 160);
+				member.onReceiveRtp(packet);
+			}
+		}
+		member.reportVoipMetrics(block, null);
+
+		// then
+		assertEquals(123, block.getSsrc());
+		assertEquals(1, member.getVoipMetrics().getLostPackets());
+		assertEquals(256 / 100, block.getLossRate());
+		assertEquals(0, block.getDiscardRate());
+		assertTrue(block.getGapDensity() > 0);
+		assertEquals(20, block.getEndSystemDelay());
+		assertEquals(VoipMetrics.GMIN, block.getGmin());
+		assertTrue(block.getRFactor() > 80 && block.getRFactor() < 93);
+		assertTrue(block.getMosLq() >= block.getMosCq());
+		assertTrue(block.getMosCq() >= 40);
+	}
+
+}
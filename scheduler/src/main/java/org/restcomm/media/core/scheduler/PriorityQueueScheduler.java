@@ -23,6 +23,7 @@
 package org.restcomm.media.core.scheduler;
 
 import java.lang.InterruptedException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
@@ -70,7 +71,10 @@ public class PriorityQueueScheduler  {
     protected OrderedTaskQueue[] taskQueues = new OrderedTaskQueue[7];
 
     protected OrderedTaskQueue[] heartBeatQueue = new OrderedTaskQueue[5];
-    
+
+    //tasks executed on every cycle, once the output queue is complete
+    private final CopyOnWriteArrayList<Task> flushTasks = new CopyOnWriteArrayList<Task>();
+
     //CPU bound threads
     private CoreThread coreThread;
     private CriticalThread criticalThread;
@@ -161,6 +165,26 @@ public class PriorityQueueScheduler  {
         heartBeatQueue[coreThread.runIndex].accept(task);
     }
     
+    /**
+     * Registers a task executed on every cycle, right after all tasks of the output queue complete.
+     * Used to send in a single burst the packets produced during the cycle.
+     *
+     * @param task the task to be executed.
+     */
+    public void addFlushTask(Task task) {
+        task.activate(false);
+        flushTasks.addIfAbsent(task);
+    }
+
+    /**
+     * Unregisters a task executed on every cycle.
+     *
+     * @param task the task to be removed.
+     */
+    public void removeFlushTask(Task task) {
+        flushTasks.remove(task);
+    }
+
     /**
      * Queues chain of the tasks for execution.
      * 
@@ -283,6 +307,10 @@ public class PriorityQueueScheduler  {
 					currQueue++;															
     			}				        		
         		
+        		executeFlushTasks();
+        		while(activeTasksCount.get()!=0)
+					LockSupport.park();
+        		
         		executeQueue(taskQueues[MANAGEMENT_QUEUE]);
         		while(activeTasksCount.get()!=0)
 					LockSupport.park();					
@@ -311,6 +339,15 @@ public class PriorityQueueScheduler  {
         	}
         }
         
+        private void executeFlushTasks()
+        {
+        	for(Task t : flushTasks)
+        	{
+        		activeTasksCount.incrementAndGet();
+        		waitingTasks.offer(t);
+        	}
+        }
+        
         private void executeQueue(OrderedTaskQueue currQueue)
         {
         	Task t;        	
@@ -23,6 +23,7 @@
 package org.restcomm.media.core.sdp.format;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.restcomm.media.core.spi.format.Format;
 import org.restcomm.media.core.spi.format.Formats;
@@ -30,18 +31,36 @@ import org.restcomm.media.core.spi.format.Formats;
  * Implements RTP formats collection with fast search.
  *
  * We assume that RTP formats collection varies slow.
+ * Lookups by payload type read a 128-slot array indexed by payload type.
+ * Lookups by format first check, by identity, the format instances resolved before,
+ * since media frames of a codec always carry the same format instance.
+ * Both indexes live in one immutable holder, rebuilt whenever the collection changes.
+ * Resolved format instances are added by swapping the holder with a compare-and-set,
+ * so readers never see a partially updated index nor revive an index of the previous formats.
+ *
  * @author kulikov
  */
 public class RTPFormats {
     //the default size of this collection
     private final static int size = 10;
 
+    //number of valid RTP payload types
+    private final static int PAYLOAD_TYPES = 128;
+
+    //maximum number of format instances remembered by the format index
+    private final static int FORMAT_INDEX_SIZE = 16;
+    private final static Format[] NO_FORMATS = new Format[0];
+    private final static RTPFormat[] NO_RTP_FORMATS = new RTPFormat[0];
+
     //backing array
     private ArrayList<RTPFormat> rtpFormats;
     
     private Formats formats = new Formats();
 
     private int cursor;
+
+    //lookup indexes of the current formats
+    private final AtomicReference<Index> index = new AtomicReference<Index>(new Index(new RTPFormat[PAYLOAD_TYPES], NO_FORMATS, NO_RTP_FORMATS));
     
     /**
      * Creates new format collection with default size.
@@ -66,6 +85,7 @@ public class RTPFormats {
     public void add(RTPFormat rtpFormat) {
         rtpFormats.add(rtpFormat);
         formats.add(rtpFormat.getFormat());
+        reindex();
     }
 
     public void add(RTPFormats fmts) {
@@ -73,6 +93,7 @@ public class RTPFormats {
             rtpFormats.add(fmts.rtpFormats.get(i));
             formats.add(fmts.rtpFormats.get(i).getFormat());
         }
+        reindex();
     }
     
     public void remove(RTPFormat rtpFormat) {
@@ -88,12 +109,67 @@ public class RTPFormats {
 
         rtpFormats.remove(pos);
         formats.remove(rtpFormat.getFormat());
+        reindex();
     }
 
     public void clean() {
     	rtpFormats.clear();
         formats.clean();
         cursor = 0;
+        reindex();
+    }
+
+    /**
+     * Rebuilds the payload type index and forgets resolved format instances.
+     * The first format added for a payload type wins, as with a linear search.
+     */
+    private void reindex() {
+        RTPFormat[] payloads = new RTPFormat[PAYLOAD_TYPES];
+        for (int i = 0; i < rtpFormats.size(); i++) {
+            RTPFormat rtpFormat = rtpFormats.get(i);
+            int id = rtpFormat.getID();
+            if (id >= 0 && id < PAYLOAD_TYPES && payloads[id] == null) {
+                payloads[id] = rtpFormat;
+            }
+        }
+        this.index.set(new Index(payloads, NO_FORMATS, NO_RTP_FORMATS));
+    }
+
+    /**
+     * Searches the format that matches a format instance.
+     * Instances resolved before are found by identity, without comparing encoding names.
+     *
+     * @param format the format to search
+     * @return the matching RTP format, or null if none matches
+     */
+    private RTPFormat lookup(Format format) {
+        Index current = this.index.get();
+        Format[] keys = current.formatKeys;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == format) {
+                return current.formatValues[i];
+            }
+        }
+
+        RTPFormat rtpFormat = null;
+        for (int i = 0; i < rtpFormats.size(); i++) {
+            if (rtpFormats.get(i).getFormat().matches(format)) {
+                rtpFormat = rtpFormats.get(i);
+                break;
+            }
+        }
+
+        if (rtpFormat != null && keys.length < FORMAT_INDEX_SIZE) {
+            Format[] newKeys = new Format[keys.length + 1];
+            RTPFormat[] newValues = new RTPFormat[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, keys.length);
+            System.arraycopy(current.formatValues, 0, newValues, 0, keys.length);
+            newKeys[keys.length] = format;
+            newValues[keys.length] = rtpFormat;
+            // fails if formats changed meanwhile, or another reader remembered an instance first
+            this.index.compareAndSet(current, new Index(current.payloads, newKeys, newValues));
+        }
+        return rtpFormat;
     }
 
     public int size() {
@@ -101,10 +177,7 @@ public class RTPFormats {
     }
     
     public RTPFormat getRTPFormat(int payload) {
-        for (int i = 0; i < rtpFormats.size(); i++) {
-            if (rtpFormats.get(i).getID() == payload) return rtpFormats.get(i);
-        }
-        return null;
+        return find(payload);
     }
 
     public RTPFormat getRTPFormat(String name) {
@@ -119,10 +192,7 @@ public class RTPFormats {
     }
 
     public RTPFormat getRTPFormat(Format format) {
-        for (int i = 0; i < rtpFormats.size(); i++) {
-            if (rtpFormats.get(i).getFormat().matches(format)) return rtpFormats.get(i);
-        }
-        return null;
+        return lookup(format);
     }
 
     public RTPFormat[] toArray() {
@@ -135,11 +205,15 @@ public class RTPFormats {
     }
     
     public RTPFormat find(int p) {
-    	int size = rtpFormats.size();
-        for (int i = 0; i < size; i++) {
-        	if (rtpFormats.get(i).getID() == p) {
-        		return rtpFormats.get(i);
-        	}
+        if (p >= 0 && p < PAYLOAD_TYPES) {
+            return this.index.get().payloads[p];
+        }
+
+        // internal formats may use identifiers out of the RTP payload type range
+        for (int i = 0; i < rtpFormats.size(); i++) {
+            if (rtpFormats.get(i).getID() == p) {
+                return rtpFormats.get(i);
+            }
         }
         return null;
     }
@@ -149,21 +223,11 @@ public class RTPFormats {
     }
     
     public boolean contains(Format fmt) {
-        for (int i = 0; i < rtpFormats.size(); i++) {
-            if (rtpFormats.get(i).getFormat().matches(fmt)) {
-                return true;
-            }
-        }
-        return false;
+        return lookup(fmt) != null;
     }
     
     public RTPFormat find(Format fmt) {
-        for (int i = 0; i < rtpFormats.size(); i++) {
-            if (rtpFormats.get(i).getFormat().matches(fmt)) {
-                return rtpFormats.get(i);
-            }
-        }
-        return null;
+        return lookup(fmt);
     }
     
     public boolean isEmpty() {
@@ -219,4 +283,24 @@ public class RTPFormats {
         buffer.append("}");                
         return buffer.toString();
     }
+
+    /**
+     * Lookup indexes of a set of formats. Never modified once published.
+     */
+    private static final class Index {
+
+        //formats indexed by payload type
+        private final RTPFormat[] payloads;
+
+        //format instances already resolved, and the RTP format each one matches
+        private final Format[] formatKeys;
+        private final RTPFormat[] formatValues;
+
+        private Index(RTPFormat[] payloads, Format[] formatKeys, RTPFormat[] formatValues) {
+            this.payloads = payloads;
+            this.formatKeys = formatKeys;
+            this.formatValues = formatValues;
+        }
+
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.sdp.format;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.restcomm.media.core.spi.format.AudioFormat;
+import org.restcomm.media.core.spi.format.FormatFactory;
+
+public class RTPFormatsTest {
+
+    private static final AudioFormat PCMU = FormatFactory.createAudioFormat("pcmu", 8000, 8, 1);
+    private static final AudioFormat PCMA = FormatFactory.createAudioFormat("pcma", 8000, 8, 1);
+    private static final AudioFormat LINEAR = FormatFactory.createAudioFormat("linear", 8000, 16, 1);
+
+    @Test
+    public void testFindByPayloadType() {
+        // given
+        final RTPFormat pcmu = new RTPFormat(0, PCMU, 8000);
+        final RTPFormat pcma = new RTPFormat(8, PCMA, 8000);
+        final RTPFormat linear = new RTPFormat(150, LINEAR, 8000);
+        final RTPFormats formats = new RTPFormats();
+
+        // when
+        formats.add(pcmu);
+        formats.add(pcma);
+        formats.add(linear);
+
+        // then
+        assertSame(pcmu, formats.find(0));
+        assertSame(pcma, formats.find(8));
+        assertSame(pcma, formats.getRTPFormat(8));
+        assertSame(linear, formats.find(150));
+        assertNull(formats.find(18));
+        assertNull(formats.find(-1));
+        assertTrue(formats.contains(8));
+        assertFalse(formats.contains(127));
+    }
+
+    @Test
+    public void testIndexFollowsChanges() {
+        // given
+        final RTPFormat pcmu = new RTPFormat(0, PCMU, 8000);
+        final RTPFormat pcma = new RTPFormat(8, PCMA, 8000);
+        final RTPFormats formats = new RTPFormats();
+        formats.add(pcmu);
+        formats.add(pcma);
+        formats.find(PCMA);
+
+        // when
+        formats.remove(pcma);
+
+        // then
+        assertSame(pcmu, formats.find(0));
+        assertNull(formats.find(8));
+        assertNull(formats.find(PCMA));
+
+        // when
+        formats.clean();
+
+        // then
+        assertNull(formats.find(0));
+        assertNull(formats.getRTPFormat(PCMU));
+    }
+
+    @Test
+    public void testFirstFormatWinsPayloadType() {
+        // given
+        final RTPFormat first = new RTPFormat(96, PCMU, 8000);
+        final RTPFormat second = new RTPFormat(96, PCMA, 8000);
+        final RTPFormats formats = new RTPFormats();
+
+        // when
+        formats.add(first);
+        formats.add(second);
+
+        // then
+        assertSame(first, formats.find(96));
+    }
+
+    @Test
+    public void testFindByFormat() {
+        // given
+        final RTPFormat pcmu = new RTPFormat(0, PCMU, 8000);
+        final RTPFormat pcma = new RTPFormat(8, PCMA, 8000);
+        final RTPFormats formats = new RTPFormats();
+        formats.add(pcmu);
+        formats.add(pcma);
+        final AudioFormat otherPcma = FormatFactory.createAudioFormat("pcma", 8000, 8, 1);
+
+        // when
+        final RTPFormat found = formats.getRTPFormat(otherPcma);
+        final RTPFormat foundAgain = formats.getRTPFormat(otherPcma);
+
+        // then
+        assertSame(pcma, found);
+        assertSame(pcma, foundAgain);
+        assertSame(pcmu, formats.find(PCMU));
+        assertTrue(formats.contains(PCMA));
+        assertFalse(formats.contains(LINEAR));
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.stun.messages;
+
+import org.restcomm.media.core.stun.messages.attributes.StunAttribute;
+import org.restcomm.media.core.stun.messages.attributes.general.FingerprintAttribute;
+import org.restcomm.media.core.stun.messages.attributes.general.MessageIntegrityAttribute;
+
+/**
+ * Encodes STUN Binding success responses straight into a caller-provided array, without building message or attribute
+ * objects.
+ * <p>
+ * The response carries XOR-MAPPED-ADDRESS, an optional USERNAME, MESSAGE-INTEGRITY and FINGERPRINT, in this order, which
+ * is the same content produced by {@link StunMessageFactory#createBindingResponse} and {@link StunMessage#encode()} for ICE
+ * connectivity checks.
+ * </p>
+ */
+public class BindingResponseWriter {
+
+    private static final byte ADDRESS_FAMILY_IPV4 = 0x01;
+    private static final byte ADDRESS_FAMILY_IPV6 = 0x02;
+
+    private static final int INTEGRITY_LENGTH = StunAttribute.HEADER_LENGTH + MessageIntegrityAttribute.DATA_LENGTH;
+    private static final int FINGERPRINT_LENGTH = StunAttribute.HEADER_LENGTH + 4;
+
+    /**
+     * Largest response the writer can produce: IPv6 mapped address and a 513-byte username.
+     */
+    public static final int MAX_LENGTH = StunMessage.HEADER_LENGTH + StunAttribute.HEADER_LENGTH + 20
+            + StunAttribute.HEADER_LENGTH + 516 + INTEGRITY_LENGTH + FINGERPRINT_LENGTH;
+
+    private BindingResponseWriter() {
+        super();
+    }
+
+    /**
+     * Encodes a Binding success response.
+     *
+     * @param out The array where the response is written.
+     * @param outOffset The index where the response starts in <code>out</code>.
+     * @param request The request being answered. Provides the transaction ID.
+     * @param address The reflexive address of the peer, as 4 or 16 bytes.
+     * @param port The reflexive port of the peer.
+     * @param username The array holding the USERNAME of the response. May be null to omit the attribute.
+     * @param usernameOffset The index where the username starts in <code>username</code>.
+     * @param usernameLength The length of the username.
+     * @param key The short-term key used to compute MESSAGE-INTEGRITY.
+     * @return The length of the response. Returns -1 if the response does not fit in <code>out</code>.
+     */
+    public static int write(byte[] out, int outOffset, StunMessageReader request, byte[] address, int port, byte[] username,
+            int usernameOffset, int usernameLength, byte[] key) {
+        final int addressLength = StunAttribute.HEADER_LENGTH + 4 + address.length;
+        final int usernameAttributeLength = (username == null) ? 0
+                : StunAttribute.HEADER_LENGTH + usernameLength + ((4 - usernameLength % 4) % 4);
+        final int bodyLength = addressLength + usernameAttributeLength + INTEGRITY_LENGTH + FINGERPRINT_LENGTH;
+        if (outOffset + StunMessage.HEADER_LENGTH + bodyLength > out.length) {
+            return -1;
+        }
+
+        // Header: type, length, magic cookie and the transaction ID of the request
+        int index = outOffset;
+        index = writeShort(out, index, StunMessage.BINDING_SUCCESS_RESPONSE);
+        index = writeShort(out, index, bodyLength);
+        System.arraycopy(StunMessage.MAGIC_COOKIE, 0, out, index, 4);
+        System.arraycopy(request.getData(), request.getTransactionIdOffset(), out, index + 4, StunMessage.TRANSACTION_ID_LENGTH);
+        index += 4 + StunMessage.TRANSACTION_ID_LENGTH;
+
+        // XOR-MAPPED-ADDRESS. The address is XOR'ed with the magic cookie and the transaction ID.
+        index = writeShort(out, index, StunAttribute.XOR_MAPPED_ADDRESS);
+        index = writeShort(out, index, 4 + address.length);
+        out[index++] = 0;
+        out[index++] = (address.length == 4) ? ADDRESS_FAMILY_IPV4 : ADDRESS_FAMILY_IPV6;
+        index = writeShort(out, index, port ^ 0x2112);
+        for (int i = 0; i < address.length; i++) {
+            // Magic cookie is followed by the transaction ID in the header, so the mask is contiguous
+            out[index++] = (byte) (address[i] ^ out[outOffset + 4 + i]);
+        }
+
+        // USERNAME
+        if (username != null) {
+            index = writeShort(out, index, StunAttribute.USERNAME);
+            index = writeShort(out, index, usernameLength);
+            System.arraycopy(username, usernameOffset, out, index, usernameLength);
+            index += usernameLength;
+            while (((index - outOffset) & 0x03) != 0) {
+                out[index++] = 0;
+            }
+        }
+
+        // MESSAGE-INTEGRITY. The length seen by the HMAC goes up to this attribute, excluding FINGERPRINT.
+        writeShort(out, outOffset + 2, bodyLength - FINGERPRINT_LENGTH);
+        final int integrityOffset = index;
+        index = writeShort(out, index, StunAttribute.MESSAGE_INTEGRITY);
+        index = writeShort(out, index, MessageIntegrityAttribute.DATA_LENGTH);
+        MessageIntegrityAttribute.calculateHmacSha1(out, outOffset, integrityOffset - outOffset, key, out, index);
+        index += MessageIntegrityAttribute.DATA_LENGTH;
+
+        // FINGERPRINT. Covers the whole message with its final length.
+        writeShort(out, outOffset + 2, bodyLength);
+        final int fingerprintOffset = index;
+        index = writeShort(out, index, StunAttribute.FINGERPRINT);
+        index = writeShort(out, index, 4);
+        final int crc = FingerprintAttribute.calculateXorCRC32Value(out, outOffset, fingerprintOffset - outOffset);
+        out[index++] = (byte) (crc >> 24);
+        out[index++] = (byte) (crc >> 16);
+        out[index++] = (byte) (crc >> 8);
+        out[index++] = (byte) crc;
+
+        return index - outOffset;
+    }
+
+    private static int writeShort(byte[] out, int index, int value) {
+        out[index] = (byte) (value >> 8);
+        out[index + 1] = (byte) value;
+        return index + 2;
+    }
+
+}
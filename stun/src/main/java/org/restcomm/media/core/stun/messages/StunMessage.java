@@ -946,24 +946,20 @@ public class StunMessage {
 	 *            the message whose CRC32 checksum we'd need to recalculate.
 	 * @param offset
 	 *            the index in <tt>message</tt> where data starts.
-	 * @param length
-	 *            the number of bytes in <tt>message</tt> that the CRC32 would
-	 *            need to be calculated over.
+	 * @param fingerprintOffset
+	 *            the index in <tt>message</tt> where the <tt>FINGERPRINT</tt>
+	 *            attribute starts. The CRC32 is calculated up to this index.
 	 * 
 	 * @return <tt>true</tt> if <tt>FINGERPRINT</tt> contains a valid CRC32
 	 *         value and <tt>false</tt> otherwise.
 	 */
-	private static boolean validateFingerprint(FingerprintAttribute fingerprint, byte[] message, int offset, int length) {
-		byte[] incomingCrcBytes = fingerprint.getChecksum();
+	private static boolean validateFingerprint(FingerprintAttribute fingerprint, byte[] message, int offset, int fingerprintOffset) {
 		// now check whether the CRC really is what it's supposed to be.
-		// re calculate the check sum
-		byte[] realCrcBytes = FingerprintAttribute.calculateXorCRC32(message, offset, length);
-
-		// CRC validation.
-		if (!Arrays.equals(incomingCrcBytes, realCrcBytes)) {
+		if (!FingerprintAttribute.validateXorCRC32(message, offset, fingerprintOffset)) {
 			if (logger.isDebugEnabled()) {
+				byte[] realCrcBytes = FingerprintAttribute.calculateXorCRC32(message, offset, fingerprintOffset - offset);
 				logger.debug("An incoming message arrived with a wrong FINGERPRINT attribute value. "
-						+ "CRC Was:" + Arrays.toString(incomingCrcBytes)
+						+ "CRC Was:" + Arrays.toString(fingerprint.getChecksum())
 						+ ". Should have been:" + Arrays.toString(realCrcBytes)
 						+ ". Will ignore.");
 			}
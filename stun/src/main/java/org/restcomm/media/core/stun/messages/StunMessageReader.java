@@ -0,0 +1,305 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.stun.messages;
+
+import java.nio.charset.StandardCharsets;
+
+import org.restcomm.media.core.stun.messages.attributes.StunAttribute;
+import org.restcomm.media.core.stun.messages.attributes.general.FingerprintAttribute;
+import org.restcomm.media.core.stun.messages.attributes.general.MessageIntegrityAttribute;
+
+/**
+ * Flyweight reader of binary STUN messages.
+ * <p>
+ * Unlike {@link StunMessage#decode(byte[], char, char)}, the reader does not build attribute objects. Wrapping a message
+ * only indexes the offsets of its attributes over the original array, and attributes are decoded on demand. A reader can be
+ * reused for any number of messages, but it is not thread-safe and the wrapped array must not change while it is read.
+ * </p>
+ * <p>
+ * As mandated by RFC 5389, attributes that follow MESSAGE-INTEGRITY are ignored, with the exception of FINGERPRINT.
+ * </p>
+ */
+public class StunMessageReader {
+
+    public static final int MAX_ATTRIBUTES = 32;
+
+    private byte[] data;
+    private int offset;
+    private int length;
+    private char messageType;
+
+    // Attribute index
+    private int attributeCount;
+    private final char[] attributeTypes;
+    private final int[] attributeOffsets;
+    private final int[] attributeLengths;
+
+    public StunMessageReader() {
+        this.attributeTypes = new char[MAX_ATTRIBUTES];
+        this.attributeOffsets = new int[MAX_ATTRIBUTES];
+        this.attributeLengths = new int[MAX_ATTRIBUTES];
+        reset();
+    }
+
+    /**
+     * Wraps a binary STUN message and indexes its attributes.
+     *
+     * @param data The array holding the message.
+     * @param offset The index where the message starts in <code>data</code>.
+     * @param length The number of bytes available in <code>data</code> from <code>offset</code>.
+     * @return Returns true if the message is a well formed RFC 5389 message. Returns false otherwise.
+     */
+    public boolean wrap(byte[] data, int offset, int length) {
+        reset();
+        if (data == null || length < StunMessage.HEADER_LENGTH || offset + length > data.length) {
+            return false;
+        }
+
+        // The most significant 2 bits of every STUN message MUST be zeroes
+        if ((data[offset] & 0xC0) != 0) {
+            return false;
+        }
+
+        // The magic cookie field MUST contain the fixed value 0x2112A442
+        for (int i = 0; i < StunMessage.MAGIC_COOKIE.length; i++) {
+            if (data[offset + 4 + i] != StunMessage.MAGIC_COOKIE[i]) {
+                return false;
+            }
+        }
+
+        // Message length excludes the header and is always a multiple of 4
+        final int messageLength = readUnsignedShort(data, offset + 2);
+        if ((messageLength & 0x03) != 0 || StunMessage.HEADER_LENGTH + messageLength > length) {
+            return false;
+        }
+
+        final int end = offset + StunMessage.HEADER_LENGTH + messageLength;
+        int index = offset + StunMessage.HEADER_LENGTH;
+        boolean integrity = false;
+        while (index < end) {
+            if (index + StunAttribute.HEADER_LENGTH > end) {
+                return false;
+            }
+            final char type = (char) readUnsignedShort(data, index);
+            final int valueLength = readUnsignedShort(data, index + 2);
+            if (index + StunAttribute.HEADER_LENGTH + valueLength > end) {
+                return false;
+            }
+
+            // Only FINGERPRINT is considered after MESSAGE-INTEGRITY
+            if (!integrity || type == StunAttribute.FINGERPRINT) {
+                if (this.attributeCount == MAX_ATTRIBUTES) {
+                    return false;
+                }
+                this.attributeTypes[this.attributeCount] = type;
+                this.attributeOffsets[this.attributeCount] = index;
+                this.attributeLengths[this.attributeCount] = valueLength;
+                this.attributeCount++;
+                integrity |= (type == StunAttribute.MESSAGE_INTEGRITY);
+            }
+
+            // Attributes are padded to a multiple of 4 bytes
+            index += StunAttribute.HEADER_LENGTH + valueLength + ((4 - valueLength % 4) % 4);
+        }
+
+        this.data = data;
+        this.offset = offset;
+        this.length = StunMessage.HEADER_LENGTH + messageLength;
+        this.messageType = (char) readUnsignedShort(data, offset);
+        return true;
+    }
+
+    /**
+     * Releases the wrapped message.
+     */
+    public void reset() {
+        this.data = null;
+        this.offset = 0;
+        this.length = 0;
+        this.messageType = 0;
+        this.attributeCount = 0;
+    }
+
+    private static int readUnsignedShort(byte[] data, int index) {
+        return ((data[index] & 0xff) << 8) | (data[index + 1] & 0xff);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the length of the wrapped message, including its header.
+     *
+     * @return The length of the message, in bytes.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public char getMessageType() {
+        return messageType;
+    }
+
+    public boolean isRequest() {
+        return StunMessage.isRequestType(this.messageType);
+    }
+
+    public boolean isResponse() {
+        return StunMessage.isResponseType(this.messageType);
+    }
+
+    /**
+     * Gets the index where the transaction ID starts in the wrapped array.
+     *
+     * @return The offset of the 12-byte transaction ID.
+     */
+    public int getTransactionIdOffset() {
+        return this.offset + 8;
+    }
+
+    /**
+     * Copies the transaction ID of the message.
+     *
+     * @return A new array holding the transaction ID.
+     */
+    public byte[] getTransactionId() {
+        final byte[] transactionId = new byte[StunMessage.TRANSACTION_ID_LENGTH];
+        System.arraycopy(this.data, getTransactionIdOffset(), transactionId, 0, StunMessage.TRANSACTION_ID_LENGTH);
+        return transactionId;
+    }
+
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    private int indexOf(char attributeType) {
+        for (int i = 0; i < this.attributeCount; i++) {
+            if (this.attributeTypes[i] == attributeType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasAttribute(char attributeType) {
+        return indexOf(attributeType) >= 0;
+    }
+
+    /**
+     * Gets the index where an attribute starts in the wrapped array, including its header.
+     *
+     * @param attributeType The type of the attribute.
+     * @return The offset of the attribute. Returns -1 if the message does not contain the attribute.
+     */
+    public int getAttributeOffset(char attributeType) {
+        final int index = indexOf(attributeType);
+        return index < 0 ? -1 : this.attributeOffsets[index];
+    }
+
+    /**
+     * Gets the index where the value of an attribute starts in the wrapped array.
+     *
+     * @param attributeType The type of the attribute.
+     * @return The offset of the attribute value. Returns -1 if the message does not contain the attribute.
+     */
+    public int getValueOffset(char attributeType) {
+        final int index = indexOf(attributeType);
+        return index < 0 ? -1 : this.attributeOffsets[index] + StunAttribute.HEADER_LENGTH;
+    }
+
+    /**
+     * Gets the length of the value of an attribute, without padding.
+     *
+     * @param attributeType The type of the attribute.
+     * @return The length of the attribute value. Returns -1 if the message does not contain the attribute.
+     */
+    public int getValueLength(char attributeType) {
+        final int index = indexOf(attributeType);
+        return index < 0 ? -1 : this.attributeLengths[index];
+    }
+
+    /**
+     * Decodes the USERNAME attribute.
+     *
+     * @return The username. Returns null if the message does not contain the attribute.
+     */
+    public String getUsername() {
+        final int index = indexOf(StunAttribute.USERNAME);
+        if (index < 0) {
+            return null;
+        }
+        return new String(this.data, this.attributeOffsets[index] + StunAttribute.HEADER_LENGTH, this.attributeLengths[index],
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the PRIORITY attribute.
+     *
+     * @return The priority, as an unsigned 32-bit value. Returns -1 if the message does not contain the attribute.
+     */
+    public long getPriority() {
+        final int index = indexOf(StunAttribute.PRIORITY);
+        if (index < 0 || this.attributeLengths[index] != 4) {
+            return -1;
+        }
+        final int value = this.attributeOffsets[index] + StunAttribute.HEADER_LENGTH;
+        return ((long) readUnsignedShort(this.data, value) << 16) | readUnsignedShort(this.data, value + 2);
+    }
+
+    public boolean isUseCandidate() {
+        return hasAttribute(StunAttribute.USE_CANDIDATE);
+    }
+
+    /**
+     * Checks the FINGERPRINT attribute of the message.
+     *
+     * @return Returns true if the message carries no FINGERPRINT or if its checksum is valid. Returns false otherwise.
+     */
+    public boolean validateFingerprint() {
+        final int fingerprintOffset = getAttributeOffset(StunAttribute.FINGERPRINT);
+        if (fingerprintOffset < 0) {
+            return true;
+        }
+        return getValueLength(StunAttribute.FINGERPRINT) == 4
+                && FingerprintAttribute.validateXorCRC32(this.data, this.offset, fingerprintOffset);
+    }
+
+    /**
+     * Checks the MESSAGE-INTEGRITY attribute of the message.
+     *
+     * @param key The short-term key the message is expected to be signed with.
+     * @return Returns true if the message carries a valid MESSAGE-INTEGRITY. Returns false otherwise.
+     */
+    public boolean validateMessageIntegrity(byte[] key) {
+        final int integrityOffset = getAttributeOffset(StunAttribute.MESSAGE_INTEGRITY);
+        if (integrityOffset < 0 || key == null || getValueLength(StunAttribute.MESSAGE_INTEGRITY) != MessageIntegrityAttribute.DATA_LENGTH) {
+            return false;
+        }
+        return MessageIntegrityAttribute.validateHmacSha1(this.data, this.offset, integrityOffset, key);
+    }
+
+}
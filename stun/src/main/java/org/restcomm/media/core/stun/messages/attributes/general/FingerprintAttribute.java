@@ -49,6 +49,22 @@ public class FingerprintAttribute extends StunAttribute implements
 	 */
 	public static final byte[] XOR_MASK = { 0x53, 0x54, 0x55, 0x4e };
 
+	/**
+	 * The {@link #XOR_MASK} as a 32-bit value.
+	 */
+	private static final int XOR_MASK_VALUE = 0x5354554e;
+
+	/**
+	 * Checksums are reset and reused by each thread instead of allocated per
+	 * message.
+	 */
+	private static final ThreadLocal<CRC32> CHECKSUM = new ThreadLocal<CRC32>() {
+		@Override
+		protected CRC32 initialValue() {
+			return new CRC32();
+		}
+	};
+
 	/**
 	 * The CRC32 checksum that this attribute is carrying. Only used in incoming
 	 * messages.
@@ -129,13 +145,13 @@ public class FingerprintAttribute extends StunAttribute implements
 		binValue[3] = (byte) (getDataLength() & 0x00FF);
 
 		// calculate the check sum
-		byte[] xorCrc32 = calculateXorCRC32(data, offset, length);
+		int xorCrc32 = calculateXorCRC32Value(data, offset, length);
 
 		// copy into the attribute;
-		binValue[4] = xorCrc32[0];
-		binValue[5] = xorCrc32[1];
-		binValue[6] = xorCrc32[2];
-		binValue[7] = xorCrc32[3];
+		binValue[4] = (byte) (xorCrc32 >> 24);
+		binValue[5] = (byte) (xorCrc32 >> 16);
+		binValue[6] = (byte) (xorCrc32 >> 8);
+		binValue[7] = (byte) xorCrc32;
 
 		return binValue;
 	}
@@ -156,20 +172,60 @@ public class FingerprintAttribute extends StunAttribute implements
 	 *         attribute traveling in the <tt>message</tt> message.
 	 */
 	public static byte[] calculateXorCRC32(byte[] message, int offset, int len) {
-		// Check whether the CRC really is what it is supposed to be.
-		// Re-calculate the check sum
-		CRC32 checksum = new CRC32();
-		checksum.update(message, offset, len);
-
-		long crc = checksum.getValue();
+		int crc = calculateXorCRC32Value(message, offset, len);
 		byte[] xorCRC32 = new byte[4];
 
-		xorCRC32[0] = (byte) ((byte) ((crc >> 24) & 0xff) ^ XOR_MASK[0]);
-		xorCRC32[1] = (byte) ((byte) ((crc >> 16) & 0xff) ^ XOR_MASK[1]);
-		xorCRC32[2] = (byte) ((byte) ((crc >> 8) & 0xff) ^ XOR_MASK[2]);
-		xorCRC32[3] = (byte) ((byte) (crc & 0xff) ^ XOR_MASK[3]);
+		xorCRC32[0] = (byte) (crc >> 24);
+		xorCRC32[1] = (byte) (crc >> 16);
+		xorCRC32[2] = (byte) (crc >> 8);
+		xorCRC32[3] = (byte) crc;
 
 		return xorCRC32;
 	}
 
+	/**
+	 * Calculates the CRC32 checksum for <tt>message</tt> after applying the
+	 * <tt>XOR_MASK</tt> specified by RFC 5389, without allocating objects.
+	 * 
+	 * @param message
+	 *            the message whose checksum we'd like to have
+	 * @param offset
+	 *            the location in <tt>message</tt> where the actual message
+	 *            starts.
+	 * @param len
+	 *            the number of message bytes in <tt>message</tt>
+	 * 
+	 * @return the CRC value that should be sent in a <tt>FINGERPRINT</tt>
+	 *         attribute, as a 32-bit value in network order.
+	 */
+	public static int calculateXorCRC32Value(byte[] message, int offset, int len) {
+		CRC32 checksum = CHECKSUM.get();
+		checksum.reset();
+		checksum.update(message, offset, len);
+		return ((int) checksum.getValue()) ^ XOR_MASK_VALUE;
+	}
+
+	/**
+	 * Checks the FINGERPRINT attribute of a received STUN message without
+	 * decoding the message.
+	 * 
+	 * @param message
+	 *            the array holding the received STUN message.
+	 * @param offset
+	 *            the index where the message starts in <tt>message</tt>.
+	 * @param fingerprintOffset
+	 *            the index where the FINGERPRINT attribute starts in
+	 *            <tt>message</tt>, including its header.
+	 * 
+	 * @return <tt>true</tt> if the checksum carried by the message is valid,
+	 *         <tt>false</tt> otherwise.
+	 */
+	public static boolean validateXorCRC32(byte[] message, int offset, int fingerprintOffset) {
+		int expected = calculateXorCRC32Value(message, offset, fingerprintOffset - offset);
+		int value = fingerprintOffset + HEADER_LENGTH;
+		int actual = ((message[value] & 0xff) << 24) | ((message[value + 1] & 0xff) << 16)
+				| ((message[value + 2] & 0xff) << 8) | (message[value + 3] & 0xff);
+		return expected == actual;
+	}
+
 }
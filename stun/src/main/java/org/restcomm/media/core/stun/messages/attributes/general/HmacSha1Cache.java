@@ -0,0 +1,110 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2017, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.restcomm.media.core.stun.messages.attributes.general;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-thread cache of HMAC-SHA1 {@link Mac} instances, each one initialized with the key of an ICE session.
+ * <p>
+ * Looking up a {@link Mac} provider and initializing it with a new {@link SecretKeySpec} for every STUN message is slow and
+ * allocates heavily. Each thread keeps a few initialized instances, so connectivity checks and consent freshness requests of
+ * the sessions served by that thread reuse them. When all slots are taken, the least recently initialized one is replaced.
+ * </p>
+ */
+class HmacSha1Cache {
+
+	static final int SLOTS = 16;
+
+	private static final ThreadLocal<HmacSha1Cache> CACHE = new ThreadLocal<HmacSha1Cache>() {
+		@Override
+		protected HmacSha1Cache initialValue() {
+			return new HmacSha1Cache();
+		}
+	};
+
+	private final byte[][] keys;
+	private final Mac[] macs;
+	private int next;
+
+	// Scratch space to compute HMACs that are only compared
+	private final byte[] output;
+
+	private HmacSha1Cache() {
+		this.keys = new byte[SLOTS][];
+		this.macs = new Mac[SLOTS];
+		this.next = 0;
+		this.output = new byte[MessageIntegrityAttribute.DATA_LENGTH];
+	}
+
+	/**
+	 * Gets the cache of the current thread.
+	 *
+	 * @return The cache owned by the calling thread.
+	 */
+	static HmacSha1Cache get() {
+		return CACHE.get();
+	}
+
+	/**
+	 * Gets a {@link Mac} ready to compute the HMAC-SHA1 of a message with the given key.
+	 *
+	 * @param key The key of the ICE session.
+	 * @return A {@link Mac} initialized with the key. Only valid in the calling thread.
+	 * @throws GeneralSecurityException When the key cannot be used.
+	 */
+	Mac getMac(byte[] key) throws GeneralSecurityException {
+		for (int i = 0; i < SLOTS; i++) {
+			if (this.keys[i] != null && Arrays.equals(this.keys[i], key)) {
+				// doFinal leaves the Mac ready for a new message with the same key
+				return this.macs[i];
+			}
+		}
+
+		final int slot = this.next;
+		this.next = (this.next + 1) % SLOTS;
+
+		Mac mac = this.macs[slot];
+		if (mac == null) {
+			mac = Mac.getInstance(MessageIntegrityAttribute.HMAC_SHA1_ALGORITHM);
+			this.macs[slot] = mac;
+		}
+		this.keys[slot] = null;
+		mac.init(new SecretKeySpec(key, MessageIntegrityAttribute.HMAC_SHA1_ALGORITHM));
+		this.keys[slot] = key.clone();
+		return mac;
+	}
+
+	/**
+	 * Gets a buffer of the current thread where HMACs can be written to.
+	 *
+	 * @return The scratch buffer, with room for one HMAC-SHA1.
+	 */
+	byte[] getOutput() {
+		return output;
+	}
+
+}
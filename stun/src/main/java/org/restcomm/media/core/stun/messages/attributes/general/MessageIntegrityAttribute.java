@@ -11,9 +11,9 @@ package org.restcomm.media.core.stun.messages.attributes.general;
 import java.util.Arrays;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.restcomm.media.core.stun.StunException;
+import org.restcomm.media.core.stun.messages.StunMessage;
 import org.restcomm.media.core.stun.messages.attributes.StunAttribute;
 
 /**
@@ -169,20 +169,92 @@ public class MessageIntegrityAttribute extends StunAttribute implements ContextD
 	 *             if the encoding fails for some reason.
 	 */
 	public static byte[] calculateHmacSha1(byte[] message, int offset, int length, byte[] key) throws IllegalArgumentException {
+		byte[] hmac = new byte[DATA_LENGTH];
+		calculateHmacSha1(message, offset, length, key, hmac, 0);
+		return hmac;
+	}
+
+	/**
+	 * Encodes <tt>message</tt> using <tt>key</tt> and the HMAC-SHA1 algorithm
+	 * and writes the resulting 20 bytes into <tt>output</tt>.
+	 * <p>
+	 * The {@link Mac} is taken from a per-thread cache keyed by <tt>key</tt>,
+	 * so no objects are allocated when the key was used recently by the
+	 * calling thread.
+	 * 
+	 * @param message
+	 *            the STUN message that the resulting content will need to
+	 *            travel in.
+	 * @param offset
+	 *            the index where data starts in <tt>message</tt>.
+	 * @param length
+	 *            the length of the data in <tt>message</tt> that the method
+	 *            should consider.
+	 * @param key
+	 *            the key that we should be using for the encoding.
+	 * @param output
+	 *            the array where the HMAC is written.
+	 * @param outputOffset
+	 *            the index where the HMAC starts in <tt>output</tt>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the encoding fails for some reason.
+	 */
+	public static void calculateHmacSha1(byte[] message, int offset, int length, byte[] key, byte[] output, int outputOffset)
+			throws IllegalArgumentException {
 		try {
-			// get an HMAC-SHA1 key from the raw key bytes
-			SecretKeySpec signingKey = new SecretKeySpec(key, HMAC_SHA1_ALGORITHM);
+			Mac mac = HmacSha1Cache.get().getMac(key);
+			mac.update(message, offset, length);
+			mac.doFinal(output, outputOffset);
+		} catch (Exception exc) {
+			throw new IllegalArgumentException("Could not create HMAC-SHA1 request encoding", exc);
+		}
+	}
 
-			// get an HMAC-SHA1 Mac instance and initialize it with the key
-			Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
-			mac.init(signingKey);
+	/**
+	 * Checks the MESSAGE-INTEGRITY attribute of a received STUN message
+	 * without decoding the message.
+	 * <p>
+	 * As mandated by RFC 5389, the HMAC is computed with the length in the
+	 * message header pointing to the end of the MESSAGE-INTEGRITY attribute,
+	 * since a FINGERPRINT attribute may follow it. The message is left
+	 * untouched.
+	 * 
+	 * @param message
+	 *            the array holding the received STUN message.
+	 * @param offset
+	 *            the index where the message starts in <tt>message</tt>.
+	 * @param integrityOffset
+	 *            the index where the MESSAGE-INTEGRITY attribute starts in
+	 *            <tt>message</tt>, including its header.
+	 * @param key
+	 *            the short-term key the message was signed with.
+	 * 
+	 * @return <tt>true</tt> if the HMAC carried by the message is valid,
+	 *         <tt>false</tt> otherwise.
+	 */
+	public static boolean validateHmacSha1(byte[] message, int offset, int integrityOffset, byte[] key) {
+		final int adjustedLength = integrityOffset - offset - StunMessage.HEADER_LENGTH + HEADER_LENGTH + DATA_LENGTH;
+		try {
+			HmacSha1Cache cache = HmacSha1Cache.get();
+			Mac mac = cache.getMac(key);
+
+			// Message type, followed by the adjusted length and the rest of the message up to the attribute
+			mac.update(message, offset, 2);
+			mac.update((byte) (adjustedLength >> 8));
+			mac.update((byte) adjustedLength);
+			mac.update(message, offset + 4, integrityOffset - offset - 4);
 
-			// compute the hmac on input data bytes
-			byte[] macInput = new byte[length];
-			System.arraycopy(message, offset, macInput, 0, length);
-			return mac.doFinal(macInput);
+			byte[] hmac = cache.getOutput();
+			mac.doFinal(hmac, 0);
+
+			int diff = 0;
+			for (int i = 0; i < DATA_LENGTH; i++) {
+				diff |= hmac[i] ^ message[integrityOffset + HEADER_LENGTH + i];
+			}
+			return diff == 0;
 		} catch (Exception exc) {
-			throw new IllegalArgumentException("Could not create HMAC-SHA1 request encoding", exc);
+			return false;
 		}
 	}
 
@@ -201,10 +273,8 @@ public class MessageIntegrityAttribute extends StunAttribute implements ContextD
 		char msgType = (char) ((data[0] << 8) + data[1]);
 
 		// now calculate the HMAC-SHA1
-		this.hmacSha1Content = calculateHmacSha1(data, offset, length, this.key);
-
-		// username
-		System.arraycopy(hmacSha1Content, 0, binValue, 4, getDataLength());
+		calculateHmacSha1(data, offset, length, this.key, binValue, HEADER_LENGTH);
+		this.hmacSha1Content = Arrays.copyOfRange(binValue, HEADER_LENGTH, HEADER_LENGTH + DATA_LENGTH);
 		return binValue;
 	}
 